@@ -0,0 +1,66 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One rate write on an {@link ArbitrageMonitor} holding every pair of {@code currencies} currencies
+ * at three banks, with rates that are consistent up to a small noise. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArbitrageMonitorBenchmark {
+
+    private static final int BANKS = 3;
+
+    @Param({"20", "60"})
+    private int currencies;
+
+    private ArbitrageMonitor monitor;
+    private double[] values;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        monitor = new ArbitrageMonitor(4, new BigDecimal("0.0001"));
+        values = new double[currencies];
+        for (int i = 0; i < currencies; i++) {
+            values[i] = 0.01 + random.nextDouble() * 100;
+        }
+        for (int bank = 0; bank < BANKS; bank++) {
+            for (int from = 0; from < currencies; from++) {
+                for (int to = 0; to < currencies; to++) {
+                    if (from != to) {
+                        monitor.put(bank, "C" + from, "C" + to, rate(from, to));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int put() {
+        int from = random.nextInt(currencies);
+        int to = (from + 1 + random.nextInt(currencies - 1)) % currencies;
+        monitor.put(random.nextInt(BANKS), "C" + from, "C" + to, rate(from, to));
+        return monitor.loops().size();
+    }
+
+    private BigDecimal rate(int from, int to) {
+        double noise = 1 + (random.nextDouble() - 0.5) * 0.001;
+        return BigDecimal.valueOf(values[to] / values[from] * noise).setScale(6, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Converting an amount with a rate of scale 4 and rounding the result to 4 digits: {@link FixedPoint}
+ * against {@code multiply} and {@code setScale} on {@link BigDecimal}. Run with {@code ./gradlew jmh};
+ * the gc profiler shows the bytes allocated per conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixedPointBenchmark {
+
+    private static final int SCALE = 4;
+
+    private BigDecimal[] amounts;
+    private BigDecimal[] rates;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        amounts = new BigDecimal[1024];
+        rates = new BigDecimal[1024];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = BigDecimal.valueOf(random.nextInt(100_000_000), 2);
+            rates[i] = BigDecimal.valueOf(1 + random.nextInt(5_000_000), RateMatrix.SCALE);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int i = next++ & 1023;
+        return amounts[i].multiply(rates[i]).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public BigDecimal fixedPoint() {
+        int i = next++ & 1023;
+        return FixedPoint.multiply(amounts[i], rates[i], SCALE, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Mixed read/write workload (90% get, 10% put) over a skewed key set shaped like the
+ * "bankId-FROM-TO" rate keys, run against the current cache and the old LinkedHashMap one.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InMemoryCacheBenchmark {
+
+    private static final int KEY_COUNT = 4096;
+    private static final int MAX_SIZE = 64 * 1024;
+    private static final String[] CODES = {"USD", "EUR", "BYN", "RUB", "GBP", "PLN", "CNY", "JPY"};
+
+    @Param({"concurrent", "legacy"})
+    private String implementation;
+
+    private String[] keys;
+    private BigDecimal[] values;
+    private InMemoryCache<String, Object> concurrentCache;
+    private LegacyInMemoryCache<String, Object> legacyCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[KEY_COUNT];
+        values = new BigDecimal[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = (i / 64 + 1) + "-" + CODES[i % 8] + "-" + CODES[(i / 8) % 8];
+            values[i] = BigDecimal.valueOf(10_000 + i, 4);
+        }
+        // Same weights as the legacy cache, so both hold the same number of entries.
+        concurrentCache = new InMemoryCache<>(MAX_SIZE,
+                (key, value) -> key.length() * 2 + value.toString().length() * 2);
+        legacyCache = new LegacyInMemoryCache<>(MAX_SIZE);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            concurrentCache.put(keys[i], values[i]);
+            legacyCache.put(keys[i], values[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final SplittableRandom random = new SplittableRandom();
+
+        int nextIndex() {
+            // Squaring a uniform sample skews traffic towards the low indices, like real hot pairs.
+            double u = random.nextDouble();
+            return (int) (u * u * KEY_COUNT);
+        }
+
+        boolean isWrite() {
+            return random.nextInt(10) == 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object mixed1Thread(ThreadState state) {
+        return operate(state);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object mixed8Threads(ThreadState state) {
+        return operate(state);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object mixed32Threads(ThreadState state) {
+        return operate(state);
+    }
+
+    private Object operate(ThreadState state) {
+        int index = state.nextIndex();
+        boolean concurrent = "concurrent".equals(implementation);
+        if (state.isWrite()) {
+            if (concurrent) {
+                concurrentCache.put(keys[index], values[index]);
+            } else {
+                legacyCache.put(keys[index], values[index]);
+            }
+            return values[index];
+        }
+        return concurrent ? concurrentCache.get(keys[index]) : legacyCache.get(keys[index]);
+    }
+}
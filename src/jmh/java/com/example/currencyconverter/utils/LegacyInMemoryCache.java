@@ -0,0 +1,50 @@
+package com.example.currencyconverter.utils;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Baseline for {@link InMemoryCacheBenchmark}: the access-ordered LinkedHashMap cache that
+ * InMemoryCache used to be. Methods are synchronized, otherwise the multi-threaded runs corrupt
+ * the linked list instead of measuring anything.
+ */
+public class LegacyInMemoryCache<K, V> {
+
+    private final int maxCacheSize;
+    private final Map<K, V> cache;
+    private final ByteBuffer sizeBuffer;
+
+    public LegacyInMemoryCache(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.sizeBuffer = ByteBuffer.allocate(maxCacheSize);
+    }
+
+    public synchronized V get(K key) {
+        return cache.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        int entrySize = estimateSize(key, value);
+        if (entrySize > maxCacheSize) {
+            return;
+        }
+        while (sizeBuffer.position() + entrySize > maxCacheSize) {
+            K eldestKey = cache.keySet().iterator().next();
+            V eldestValue = cache.get(eldestKey);
+            cache.remove(eldestKey);
+            removeSize(eldestKey, eldestValue);
+        }
+        cache.put(key, value);
+        sizeBuffer.position(sizeBuffer.position() + entrySize);
+    }
+
+    private int estimateSize(K key, V value) {
+        return key.toString().length() * 2 + value.toString().length() * 2;
+    }
+
+    private void removeSize(K key, V value) {
+        sizeBuffer.position(Math.max(0, sizeBuffer.position() - estimateSize(key, value)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Best-path lookups over a cross-bank graph of a few hundred currencies, and the cost of a rate
+ * change that improves an edge (incremental update) or worsens one (recomputed in the background,
+ * or on the lookup itself when its previous path went through the changed edge).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RateGraphBenchmark {
+
+    @Param({"50", "300"})
+    private int currencies;
+
+    private RateGraph graph;
+    private String[] codes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        graph = new RateGraph();
+        codes = new String[currencies];
+        for (int i = 0; i < currencies; i++) {
+            codes[i] = "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+        }
+        for (long bank = 1; bank <= 20; bank++) {
+            for (int edge = 0; edge < currencies * 4; edge++) {
+                String from = codes[random.nextInt(currencies)];
+                String to = codes[random.nextInt(currencies)];
+                if (!from.equals(to)) {
+                    graph.put(bank, from, to, BigDecimal.valueOf(500 + random.nextInt(500), 3));
+                }
+            }
+        }
+        graph.findBestPath(RateGraph.ANY_BANK, codes[0], codes[1]);
+    }
+
+    @Benchmark
+    public RateGraph.Path lookup() {
+        int i = next++;
+        return graph.findBestPath(RateGraph.ANY_BANK, codes[i % currencies], codes[(i * 7 + 3) % currencies]);
+    }
+
+    @Benchmark
+    public RateGraph.Path improveThenLookup() {
+        int i = next++;
+        graph.put(1L, codes[i % currencies], codes[(i + 1) % currencies], BigDecimal.valueOf(1000 + i % 10, 3));
+        return graph.findBestPath(RateGraph.ANY_BANK, codes[0], codes[currencies - 1]);
+    }
+
+    @Benchmark
+    public RateGraph.Path removeThenLookup() {
+        int i = next++;
+        graph.remove(1L, codes[i % currencies], codes[(i + 1) % currencies]);
+        return graph.findBestPath(RateGraph.ANY_BANK, codes[0], codes[currencies - 1]);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cache-hit path of a rate lookup keyed by the old "bankId-FROM-TO" string against the packed
+ * {@link RateKey}. Run with {@code ./gradlew jmh}; the gc profiler shows the bytes allocated per
+ * lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateKeyBenchmark {
+
+    private static final String[] CODES = {"USD", "EUR", "BYN", "RUB", "GBP", "PLN", "CNY", "JPY"};
+    private static final Function<Object, BigDecimal> LOADER = key -> BigDecimal.ONE;
+    private static final BiFunction<Object, BigDecimal, List<String>> TAGGER = (key, value) -> List.of();
+
+    private InMemoryCache<String, BigDecimal> stringCache;
+    private InMemoryCache<RateKey, BigDecimal> packedCache;
+    private Long[] bankIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stringCache = new InMemoryCache<>(Long.MAX_VALUE, (key, value) -> 1);
+        packedCache = new InMemoryCache<>(Long.MAX_VALUE, (key, value) -> 1);
+        bankIds = new Long[64];
+        for (int bank = 0; bank < bankIds.length; bank++) {
+            bankIds[bank] = 1000L + bank;
+            for (String from : CODES) {
+                for (String to : CODES) {
+                    stringCache.put(bankIds[bank] + "-" + from + "-" + to, BigDecimal.ONE);
+                    packedCache.put(RateKey.of(bankIds[bank], from, to), BigDecimal.ONE);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public BigDecimal stringKey() {
+        int i = next++ & 4095;
+        Long bankId = bankIds[i >>> 6];
+        return stringCache.get(bankId + "-" + CODES[i & 7] + "-" + CODES[(i >>> 3) & 7], LOADER, TAGGER);
+    }
+
+    @Benchmark
+    public BigDecimal packedKey() {
+        int i = next++ & 4095;
+        Long bankId = bankIds[i >>> 6];
+        return packedCache.get(RateKey.of(bankId, CODES[i & 7], CODES[(i >>> 3) & 7]), LOADER, TAGGER);
+    }
+}
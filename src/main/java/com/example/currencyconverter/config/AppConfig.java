@@ -26,6 +26,7 @@ public class AppConfig implements WebMvcConfigurer {
                         "/api/visits/count/total",
                         "/api/visits/count/total/",
                         "/api/logs/**",
+                        "/admin/cache/**",
                         "/swagger-ui/**",
                         "/swagger-ui.html",
                         "/v3/api-docs/**",
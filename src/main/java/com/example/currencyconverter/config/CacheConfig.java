@@ -1,27 +1,76 @@
 package com.example.currencyconverter.config;
 
+import com.example.currencyconverter.utils.CacheRegion;
+import com.example.currencyconverter.utils.EncodedResponse;
 import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
+import com.example.currencyconverter.utils.RateKey;
+import com.example.currencyconverter.utils.Weigher;
+import java.math.BigDecimal;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
 
 @Configuration
+@RequiredArgsConstructor
 public class CacheConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(CacheConfig.class);
 
-    @Value("${cache.max-size:5242}")
-    private int cacheSize;
+    /** Exchange rate values by packed bank and currency pair, used by conversions. */
+    public static final CacheRegion<RateKey, BigDecimal> RATE_VALUES = CacheRegion.of("rate-values");
+    /** Pairs recently looked up and not found. */
+    public static final CacheRegion<RateKey, Boolean> RATE_MISSES = CacheRegion.of("rate-misses");
+    /** Exchange rate DTO responses by request path. */
+    public static final CacheRegion<String, ResponseEntity<?>> RATE_DTOS = CacheRegion.of("rate-dtos");
+    public static final CacheRegion<String, ResponseEntity<?>> BANK_DTOS = CacheRegion.of("bank-dtos");
+    public static final CacheRegion<String, ResponseEntity<?>> CURRENCY_DTOS = CacheRegion.of("currency-dtos");
+    public static final CacheRegion<String, ResponseEntity<?>> MIN_RATES = CacheRegion.of("min-rates");
+    /** Serialized JSON bodies with their ETags, keyed by request path. */
+    public static final CacheRegion<String, EncodedResponse> ENCODED_RESPONSES = CacheRegion.of("encoded-responses");
+    /** Bank search and by-currency results, keyed by request path and query. */
+    public static final CacheRegion<String, ResponseEntity<?>> SEARCH_RESULTS = CacheRegion.of("search-results");
+
+    private final CacheProperties cacheProperties;
+
+    @Bean
+    public InMemoryCacheManager cacheManager() {
+        return new InMemoryCacheManager()
+                .register(RATE_VALUES, buildCache(RATE_VALUES))
+                .register(RATE_MISSES, buildCache(RATE_MISSES))
+                .register(RATE_DTOS, buildCache(RATE_DTOS))
+                .register(BANK_DTOS, buildCache(BANK_DTOS))
+                .register(CURRENCY_DTOS, buildCache(CURRENCY_DTOS))
+                .register(MIN_RATES, buildCache(MIN_RATES))
+                .register(SEARCH_RESULTS, buildCache(SEARCH_RESULTS))
+                .register(ENCODED_RESPONSES, buildCache(ENCODED_RESPONSES));
+    }
 
     @Bean
-    public InMemoryCache<String, Object> applicationCache() {
-        logger.info("Creating applicationCache with max size: {}", cacheSize);
-        return new InMemoryCache<String, Object>(cacheSize);
+    public InMemoryCache<RateKey, BigDecimal> rateValueCache(InMemoryCacheManager cacheManager) {
+        return cacheManager.getCache(RATE_VALUES);
     }
 
     public double getCacheSizeInKB() {
-        return 1.0;
+        return cacheManager().getCurrentSize() / 1024.0;
+    }
+
+    private <K, V> InMemoryCache<K, V> buildCache(CacheRegion<K, V> region) {
+        CacheProperties.Region settings = cacheProperties.region(region.getName());
+        logger.info("Creating cache region '{}' with max size: {}, eviction: {}, expire after write: {}, refresh after write: {}",
+                region, settings.getMaxSize(), settings.getEvictionPolicy(),
+                settings.getExpireAfterWrite(), settings.getRefreshAfterWrite());
+        return InMemoryCache.<K, V>builder()
+                .maximumSize(settings.getMaxSize().toBytes())
+                .weigher(Weigher.retainedSize())
+                .evictionPolicy(settings.getEvictionPolicy())
+                .expireAfterWrite(settings.getExpireAfterWrite())
+                .expireAfterAccess(settings.getExpireAfterAccess())
+                .refreshAfterWrite(settings.getRefreshAfterWrite())
+                .loadTimeout(settings.getLoadTimeout())
+                .build();
     }
-}
\ No newline at end of file
+}
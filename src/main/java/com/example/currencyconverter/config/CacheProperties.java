@@ -0,0 +1,36 @@
+package com.example.currencyconverter.config;
+
+import com.example.currencyconverter.utils.EvictionPolicy;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the cache regions, bound from {@code cache.regions.<name>.*}. Regions that are not
+ * configured use the defaults of {@link Region}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache")
+@Data
+public class CacheProperties {
+
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    public Region region(String name) {
+        return regions.getOrDefault(name, new Region());
+    }
+
+    @Data
+    public static class Region {
+        private DataSize maxSize = DataSize.ofMegabytes(8);
+        private EvictionPolicy evictionPolicy = EvictionPolicy.TINY_LFU;
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+        private Duration expireAfterAccess = Duration.ZERO;
+        private Duration refreshAfterWrite = Duration.ZERO;
+        private Duration loadTimeout = Duration.ofSeconds(5);
+    }
+}
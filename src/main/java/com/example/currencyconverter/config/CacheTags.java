@@ -0,0 +1,63 @@
+package com.example.currencyconverter.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tags that cached entries carry for the data they were built from. Services invalidate these
+ * tags on writes, see {@link com.example.currencyconverter.utils.InMemoryCacheManager#invalidateTags}.
+ */
+public final class CacheTags {
+
+    /** Any list of all banks, or a search over bank names. */
+    public static final String BANKS = "banks";
+    /** Any list of all exchange rates. */
+    public static final String RATES = "rates";
+    /** Any list of all currencies. */
+    public static final String CURRENCIES = "currencies";
+
+    private CacheTags() {
+    }
+
+    public static String bank(Long bankId) {
+        return "bank:" + bankId;
+    }
+
+    public static String currency(String code) {
+        return "currency:" + code;
+    }
+
+    public static String currencyId(Long currencyId) {
+        return "currency-id:" + currencyId;
+    }
+
+    public static String pair(String fromCurrencyCode, String toCurrencyCode) {
+        return "pair:" + fromCurrencyCode + "-" + toCurrencyCode;
+    }
+
+    public static String rate(Long rateId) {
+        return "rate:" + rateId;
+    }
+
+    /** Tags touched by a change to one exchange rate of a bank. */
+    public static List<String> forRate(Long rateId, Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        List<String> tags = new ArrayList<>();
+        if (rateId != null) {
+            tags.add(rate(rateId));
+        }
+        tags.add(bank(bankId));
+        tags.add(pair(fromCurrencyCode, toCurrencyCode));
+        tags.add(currency(fromCurrencyCode));
+        tags.add(currency(toCurrencyCode));
+        tags.add(RATES);
+        return tags;
+    }
+
+    /** A bank list tagged with every bank in it. */
+    public static List<String> forBanks(Collection<Long> bankIds, String... extraTags) {
+        List<String> tags = new ArrayList<>(List.of(extraTags));
+        bankIds.forEach(id -> tags.add(bank(id)));
+        return tags;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.currencyconverter.controller;
 
+import com.example.currencyconverter.config.CacheConfig;
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.dto.BankDto;
 import com.example.currencyconverter.dto.ErrorResponseDto;
 import com.example.currencyconverter.dto.ExchangeRateDto;
@@ -7,8 +9,10 @@ import com.example.currencyconverter.entity.Bank;
 import com.example.currencyconverter.entity.ExchangeRate;
 import com.example.currencyconverter.exception.CurrencyNotFoundException;
 import com.example.currencyconverter.service.BankService;
+import com.example.currencyconverter.service.DataSnapshot;
 import com.example.currencyconverter.service.ExchangeRateService;
-import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.service.SnapshotStore;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -44,12 +48,13 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 @RequiredArgsConstructor
 @Validated
 @Tag(name = "Bank Management", description = "Endpoints for managing banks and their exchange rates.")
-@CrossOrigin(origins = "https://currency-converter-ui-wccs.onrender.com") // Разрешаем запросы с http://localhost:3000
+@CrossOrigin(origins = "https://currency-converter-ui-wccs.onrender.com", exposedHeaders = SnapshotStore.VERSION_HEADER) // Разрешаем запросы с http://localhost:3000
 public class BankController {
 
     private final BankService bankService;
     private final ExchangeRateService exchangeRateService;
-    private final InMemoryCache<String, Object> controllerCache;
+    private final InMemoryCacheManager cacheManager;
+    private final SnapshotStore snapshotStore;
 
     @PostMapping
     @Operation(summary = "Create a new bank", description = "Creates a new bank record. The name must be unique.")
@@ -61,7 +66,6 @@ public class BankController {
             @Parameter(description = "Name of the new bank (must be unique)", required = true, example = "Central Bank")
             @RequestParam @NotBlank(message = "Bank name cannot be blank") @Size(min = 2, max = 100) String name) {
         Bank newBank = bankService.createBank(name);
-        controllerCache.clear();
 
         return new ResponseEntity<>(convertToDto(newBank), HttpStatus.CREATED);
     }
@@ -80,7 +84,7 @@ public class BankController {
             @Parameter(description = "ID of the bank to retrieve", required = true, example = "1")
             @PathVariable @Positive(message = "Bank ID must be positive") Long id) {
         String cacheKey = "/banks/" + id;
-        ResponseEntity<BankDto> cachedResponse = (ResponseEntity<BankDto>) controllerCache.get(cacheKey);
+        ResponseEntity<BankDto> cachedResponse = (ResponseEntity<BankDto>) cacheManager.getCache(CacheConfig.BANK_DTOS).get(cacheKey);
         if (cachedResponse != null) {
 
             return cachedResponse;
@@ -89,21 +93,26 @@ public class BankController {
         Bank bank = bankService.getBank(id).orElseThrow(() -> new CurrencyNotFoundException("Bank not found with id: " + id));
         BankDto bankDto = convertToDto(bank);
         ResponseEntity<BankDto> response = new ResponseEntity<>(bankDto, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
+        cacheManager.getCache(CacheConfig.BANK_DTOS).put(cacheKey, response, List.of(CacheTags.bank(id)));
         return response;
     }
 
     @GetMapping
-    @Operation(summary = "Get all banks", description = "Retrieves a list of all banks with their exchange rates.")
+    @Operation(summary = "Get all banks", description = "Retrieves a list of all banks with their exchange rates. "
+            + "The X-Data-Version header names the data version the list was read from.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                             array = @ArraySchema(schema = @Schema(implementation = BankDto.class))))
     })
     public ResponseEntity<List<BankDto>> getAllBanks() {
+        DataSnapshot snapshot = snapshotStore.current();
+        if (snapshot != null) {
+            return getAllBanks(snapshot);
+        }
         String cacheKey = "/banks";
         @SuppressWarnings("unchecked")
-        ResponseEntity<List<BankDto>> cachedResponse = (ResponseEntity<List<BankDto>>) controllerCache.get(cacheKey);
+        ResponseEntity<List<BankDto>> cachedResponse = (ResponseEntity<List<BankDto>>) cacheManager.getCache(CacheConfig.BANK_DTOS).get(cacheKey);
         if (cachedResponse != null) {
             return cachedResponse;
         }
@@ -112,8 +121,26 @@ public class BankController {
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
         ResponseEntity<List<BankDto>> response = new ResponseEntity<>(bankDtos, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
+        cacheManager.getCache(CacheConfig.BANK_DTOS).put(cacheKey, response, CacheTags.forBanks(bankDtos.stream().map(BankDto::getId).collect(Collectors.toList()), CacheTags.BANKS));
+
+        return response;
+    }
 
+    /** Builds the list from one snapshot, so banks and rates are of the same version; cached per version. */
+    private ResponseEntity<List<BankDto>> getAllBanks(DataSnapshot snapshot) {
+        String cacheKey = "/banks@" + snapshot.getVersion();
+        @SuppressWarnings("unchecked")
+        ResponseEntity<List<BankDto>> cachedResponse = (ResponseEntity<List<BankDto>>) cacheManager.getCache(CacheConfig.BANK_DTOS).get(cacheKey);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        List<BankDto> bankDtos = snapshot.getBanks().stream()
+                .map(bank -> convertToDto(bank, snapshot))
+                .collect(Collectors.toList());
+        ResponseEntity<List<BankDto>> response = ResponseEntity.ok()
+                .header(SnapshotStore.VERSION_HEADER, Long.toString(snapshot.getVersion()))
+                .body(bankDtos);
+        cacheManager.getCache(CacheConfig.BANK_DTOS).put(cacheKey, response, CacheTags.forBanks(bankDtos.stream().map(BankDto::getId).collect(Collectors.toList()), CacheTags.BANKS));
         return response;
     }
 
@@ -132,16 +159,17 @@ public class BankController {
             @Parameter(description = "Optional: Exact exchange rate to BYN for the specified currency code", required = false, example = "3.2500")
             @RequestParam(required = false) @Positive @Digits(integer = 15, fraction = 4) BigDecimal rateToBYN) {
         String cacheKey = "/banks/by-currency?currencyCode=" + currencyCode + "&rateToBYN=" + rateToBYN;
-        ResponseEntity<List<BankDto>> cachedResponse = (ResponseEntity<List<BankDto>>) controllerCache.get(cacheKey);
-        if (cachedResponse != null) {
-            return cachedResponse;
-        }
-        List<Bank> banks = bankService.findBanksByCurrencyAndRateToBYN(currencyCode, rateToBYN);
-        List<BankDto> bankDtos = banks.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        ResponseEntity<List<BankDto>> response = new ResponseEntity<>(bankDtos, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
+        // Concurrent misses for the same query share one lookup.
+        ResponseEntity<List<BankDto>> response = (ResponseEntity<List<BankDto>>) cacheManager.getCache(CacheConfig.SEARCH_RESULTS).get(cacheKey,
+                key -> {
+                    List<Bank> banks = bankService.findBanksByCurrencyAndRateToBYN(currencyCode, rateToBYN);
+                    List<BankDto> bankDtos = banks.stream()
+                            .map(this::convertToDto)
+                            .collect(Collectors.toList());
+                    return new ResponseEntity<>(bankDtos, HttpStatus.OK);
+                },
+                (key, loaded) -> CacheTags.forBanks(((List<BankDto>) loaded.getBody()).stream().map(BankDto::getId).collect(Collectors.toList()),
+                        CacheTags.currency(currencyCode)));
         return response;
     }
 
@@ -158,7 +186,7 @@ public class BankController {
             @Parameter(description = "Part of the bank name to search for", required = true, example = "Bank")
             @RequestParam @NotBlank @Size(min = 1, max = 100) String name) {
         String cacheKey = "/banks/search?name=" + name;
-        ResponseEntity<List<BankDto>> cachedResponse = (ResponseEntity<List<BankDto>>) controllerCache.get(cacheKey);
+        ResponseEntity<List<BankDto>> cachedResponse = (ResponseEntity<List<BankDto>>) cacheManager.getCache(CacheConfig.SEARCH_RESULTS).get(cacheKey);
         if (cachedResponse != null) {
             return cachedResponse;
         }
@@ -167,7 +195,7 @@ public class BankController {
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
         ResponseEntity<List<BankDto>> response = new ResponseEntity<>(bankDtos, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
+        cacheManager.getCache(CacheConfig.SEARCH_RESULTS).put(cacheKey, response, CacheTags.forBanks(bankDtos.stream().map(BankDto::getId).collect(Collectors.toList()), CacheTags.BANKS));
         return response;
     }
 
@@ -187,7 +215,6 @@ public class BankController {
             @Parameter(description = "New unique name for the bank", required = true, example = "National Bank")
             @RequestParam @NotBlank @Size(min = 2, max = 100) String newName) {
         Bank updatedBank = bankService.updateBank(id, newName);
-        controllerCache.clear();
         return new ResponseEntity<>(convertToDto(updatedBank), HttpStatus.OK);
     }
 
@@ -204,7 +231,6 @@ public class BankController {
             @Parameter(description = "ID of the bank to delete", required = true, example = "1")
             @PathVariable @Positive Long id) {
         bankService.deleteBank(id);
-        controllerCache.clear();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -220,6 +246,26 @@ public class BankController {
         return bankDto;
     }
 
+    private BankDto convertToDto(DataSnapshot.BankRow bank, DataSnapshot snapshot) {
+        BankDto bankDto = new BankDto();
+        bankDto.setId(bank.getId());
+        bankDto.setName(bank.getName());
+        bankDto.setExchangeRates(snapshot.getRatesOfBank(bank.getId()).stream()
+                .map(this::convertToExchangeRateDto)
+                .collect(Collectors.toList()));
+        return bankDto;
+    }
+
+    private ExchangeRateDto convertToExchangeRateDto(DataSnapshot.RateRow rate) {
+        ExchangeRateDto exchangeRateDto = new ExchangeRateDto();
+        exchangeRateDto.setId(rate.getId());
+        exchangeRateDto.setRate(rate.getRate());
+        exchangeRateDto.setFromCurrencyCode(rate.getFromCurrencyCode());
+        exchangeRateDto.setToCurrencyCode(rate.getToCurrencyCode());
+        exchangeRateDto.setBankId(rate.getBankId());
+        return exchangeRateDto;
+    }
+
     private ExchangeRateDto convertToExchangeRateDto(ExchangeRate exchangeRate) {
         ExchangeRateDto exchangeRateDto = new ExchangeRateDto();
         exchangeRateDto.setId(exchangeRate.getId());
@@ -0,0 +1,36 @@
+package com.example.currencyconverter.controller;
+
+import com.example.currencyconverter.utils.CacheStats;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/cache")
+@RequiredArgsConstructor
+@Tag(name = "Cache Management", description = "Endpoints for inspecting the in-memory cache regions (Administrative).")
+public class CacheController {
+
+    private final InMemoryCacheManager cacheManager;
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get cache statistics", description = "Returns hit, miss, eviction and size counters for every cache region.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics per region",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE))
+    })
+    public ResponseEntity<Map<String, CacheStats>> getStats() {
+        return new ResponseEntity<>(cacheManager.stats(), HttpStatus.OK);
+    }
+}
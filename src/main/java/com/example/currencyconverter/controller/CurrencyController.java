@@ -1,12 +1,21 @@
 package com.example.currencyconverter.controller;
 
+import com.example.currencyconverter.config.CacheConfig;
+import com.example.currencyconverter.config.CacheTags;
+import com.example.currencyconverter.dto.BatchConversionResultDto;
 import com.example.currencyconverter.dto.ConversionResponseDto;
 import com.example.currencyconverter.dto.ErrorResponseDto;
+import com.example.currencyconverter.dto.FanOutConversionDto;
 import com.example.currencyconverter.entity.Currency;
 import com.example.currencyconverter.exception.CurrencyNotFoundException;
 import com.example.currencyconverter.model.ConversionRequest;
+import com.example.currencyconverter.service.BatchConversionService;
 import com.example.currencyconverter.service.CurrencyService;
-import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.service.DataSnapshot;
+import com.example.currencyconverter.service.ResponseBodyCache;
+import com.example.currencyconverter.service.SnapshotStore;
+import com.example.currencyconverter.service.StreamingConversionService;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -16,12 +25,18 @@ import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -31,6 +46,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -39,14 +55,22 @@ import org.springframework.web.bind.annotation.CrossOrigin; // Импорт ан
 
 @RestController
 @RequestMapping("/currencies")
+@Slf4j
 @RequiredArgsConstructor
 @Validated
 @Tag(name = "Currency Operations", description = "Endpoints for managing currencies and performing conversions")
-@CrossOrigin(origins = "https://currency-converter-ui-wccs.onrender.com") // Разрешаем запросы с http://localhost:3000
+@CrossOrigin(origins = "https://currency-converter-ui-wccs.onrender.com", exposedHeaders = SnapshotStore.VERSION_HEADER) // Разрешаем запросы с http://localhost:3000
 public class CurrencyController {
 
+    private static final String CSV_MEDIA_TYPE = "text/csv";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     private final CurrencyService currencyService;
-    private final InMemoryCache<String, Object> controllerCache;
+    private final InMemoryCacheManager cacheManager;
+    private final ResponseBodyCache responseBodyCache;
+    private final SnapshotStore snapshotStore;
+    private final BatchConversionService batchConversionService;
+    private final StreamingConversionService streamingConversionService;
 
     @PostMapping
     @Operation(summary = "Create a new currency", description = "Creates a new currency. The 3-letter code must be unique.")
@@ -62,7 +86,6 @@ public class CurrencyController {
             @Parameter(description = "Full name of the currency", required = true, example = "Japanese Yen")
             @RequestParam @NotBlank @Size(min = 2, max = 100) String name) {
         Currency newCurrency = currencyService.createCurrency(code, name);
-        controllerCache.clear();
         return new ResponseEntity<>(newCurrency, HttpStatus.CREATED);
     }
 
@@ -81,34 +104,37 @@ public class CurrencyController {
             @PathVariable @Positive Long id) {
         String cacheKey = "/currencies/" + id;
         @SuppressWarnings("unchecked")
-        ResponseEntity<Currency> cachedResponse = (ResponseEntity<Currency>) controllerCache.get(cacheKey);
+        ResponseEntity<Currency> cachedResponse = (ResponseEntity<Currency>) cacheManager.getCache(CacheConfig.CURRENCY_DTOS).get(cacheKey);
         if (cachedResponse != null) {
             return cachedResponse;
         }
         Currency currency = currencyService.getCurrency(id).orElseThrow(() -> new CurrencyNotFoundException("Currency not found with id: " + id));
         ResponseEntity<Currency> response = new ResponseEntity<>(currency, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
+        cacheManager.getCache(CacheConfig.CURRENCY_DTOS).put(cacheKey, response,
+                List.of(CacheTags.currencyId(id), CacheTags.currency(currency.getCode())));
         return response;
     }
 
     @GetMapping
-    @Operation(summary = "Get all currencies", description = "Retrieves a list of all available currencies.")
+    @Operation(summary = "Get all currencies", description = "Retrieves a list of all available currencies. "
+            + "The X-Data-Version header names the data version the list was read from.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
-                            array = @ArraySchema(schema = @Schema(implementation = Currency.class))))
+                            array = @ArraySchema(schema = @Schema(implementation = Currency.class)))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match", content = @Content)
     })
-    public ResponseEntity<List<Currency>> getAllCurrencies() {
-        String cacheKey = "/currencies";
-        @SuppressWarnings("unchecked")
-        ResponseEntity<List<Currency>> cachedResponse = (ResponseEntity<List<Currency>>) controllerCache.get(cacheKey);
-        if (cachedResponse != null) {
-            return cachedResponse;
+    public ResponseEntity<byte[]> getAllCurrencies(
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DataSnapshot snapshot = snapshotStore.current();
+        if (snapshot != null) {
+            // Rows serialize to the same fields as the entities.
+            return responseBodyCache.get("/currencies", snapshot, ifNoneMatch, acceptEncoding,
+                    snapshot::getCurrencies, List.of(CacheTags.CURRENCIES));
         }
-        List<Currency> currencies = currencyService.getAllCurrencies();
-        ResponseEntity<List<Currency>> response = new ResponseEntity<>(currencies, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
-        return response;
+        return responseBodyCache.get("/currencies", ifNoneMatch, acceptEncoding,
+                currencyService::getAllCurrencies, List.of(CacheTags.CURRENCIES));
     }
 
     @PutMapping("/{id}")
@@ -129,7 +155,6 @@ public class CurrencyController {
             @Parameter(description = "New full name for the currency", required = true, example = "Japanese Yen")
             @RequestParam @NotBlank @Size(min = 2, max = 100) String newName) {
         Currency updatedCurrency = currencyService.updateCurrency(id, newCode, newName);
-        controllerCache.clear();
         return new ResponseEntity<>(updatedCurrency, HttpStatus.OK);
     }
 
@@ -148,13 +173,16 @@ public class CurrencyController {
             @Parameter(description = "ID of the currency to delete", required = true, example = "3")
             @PathVariable @Positive Long id) {
         currencyService.deleteCurrency(id);
-        controllerCache.clear();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
     @PostMapping("/convert")
     @Operation(summary = "Convert currency",
-            description = "Converts an amount from one currency to another using the exchange rate of a specific bank.")
+            description = "Converts an amount from one currency to another using the exchange rate of a specific bank. "
+                    + "With mode BEST_PATH the best chain of the bank's rates is used when that beats the direct rate "
+                    + "or there is none; BEST_PATH_ANY_BANK also combines the rates of different banks. "
+                    + "With asOf set, a direct conversion uses the rate in effect at that time. "
+                    + "The response lists the rates used.")
     @RequestBody(description = "Details for the currency conversion: bank ID, from/to currency codes, and amount.", required = true,
             content = @Content(schema = @Schema(implementation = ConversionRequest.class)))
     @ApiResponses(value = {
@@ -170,4 +198,73 @@ public class CurrencyController {
         ConversionResponseDto response = currencyService.convertCurrency(request);
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/convert/fan-out")
+    @Operation(summary = "Convert into every currency",
+            description = "Converts one amount from a currency into every currency the bank has a rate to, "
+                    + "or into every currency of every bank when no bank ID is given.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Conversions, ordered by bank and target currency",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = FanOutConversionDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid currency code or amount",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponseDto.class))),
+    })
+    public ResponseEntity<FanOutConversionDto> convertToAll(
+            @Parameter(description = "3-letter code of the currency to convert from", required = true, example = "USD")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String fromCurrencyCode,
+            @Parameter(description = "Amount to convert", required = true, example = "100")
+            @RequestParam @Positive BigDecimal amount,
+            @Parameter(description = "ID of the bank whose rates are used; all banks if omitted", example = "1")
+            @RequestParam(required = false) Long bankId) {
+        return new ResponseEntity<>(currencyService.convertToAll(bankId, fromCurrencyCode, amount), HttpStatus.OK);
+    }
+
+    @PostMapping("/convert/batch")
+    @Operation(summary = "Convert many amounts",
+            description = "Converts each request like POST /currencies/convert. Each distinct bank, currency pair, "
+                    + "mode and asOf is looked up once. Results come in the order of the requests; a request that "
+                    + "cannot be converted gets an error instead of a result and does not fail the others.")
+    @RequestBody(description = "Conversion requests, at most 100000.", required = true,
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ConversionRequest.class))))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see each result for its outcome",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = BatchConversionResultDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Empty or too large batch",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ErrorResponseDto.class))),
+    })
+    public ResponseEntity<List<BatchConversionResultDto>> convertCurrencies(
+            @org.springframework.web.bind.annotation.RequestBody
+            @Size(min = 1, max = 100000, message = "A batch must hold between 1 and 100000 requests") List<ConversionRequest> requests) {
+        return new ResponseEntity<>(batchConversionService.convert(requests), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/convert/stream", consumes = {CSV_MEDIA_TYPE, NDJSON_MEDIA_TYPE},
+            produces = {CSV_MEDIA_TYPE, NDJSON_MEDIA_TYPE})
+    @Operation(summary = "Convert a stream of amounts",
+            description = "Converts a CSV body of bankId,fromCurrencyCode,toCurrencyCode,amount records, or an NDJSON "
+                    + "body of conversion requests, record by record and streams the results back in the same format "
+                    + "and order. All records use the rates current when the request started, whose version is sent in "
+                    + "the " + SnapshotStore.VERSION_HEADER + " header. Records that cannot be converted carry an error. "
+                    + "Only direct conversions at current rates are supported.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Records converted, see each record for its outcome"),
+            @ApiResponse(responseCode = "415", description = "Body is neither CSV nor NDJSON"),
+    })
+    public void convertStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StreamingConversionService.PinnedRates rates = streamingConversionService.pinRates();
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(CSV_MEDIA_TYPE));
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType((csv ? CSV_MEDIA_TYPE : NDJSON_MEDIA_TYPE) + ";charset=UTF-8");
+        if (rates.getVersion() != null) {
+            response.setHeader(SnapshotStore.VERSION_HEADER, String.valueOf(rates.getVersion()));
+        }
+        long records = csv
+                ? streamingConversionService.convertCsv(request.getInputStream(), response.getOutputStream(), rates)
+                : streamingConversionService.convertNdjson(request.getInputStream(), response.getOutputStream(), rates);
+        log.debug("Streamed the conversion of {} records", records);
+    }
+}
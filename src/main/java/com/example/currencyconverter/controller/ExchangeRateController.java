@@ -1,12 +1,27 @@
 package com.example.currencyconverter.controller;
 
+import com.example.currencyconverter.config.CacheConfig;
+import com.example.currencyconverter.config.CacheTags;
+import com.example.currencyconverter.dto.ArbitrageLoopDto;
+import com.example.currencyconverter.dto.ConversionStepDto;
 import com.example.currencyconverter.dto.ErrorResponseDto;
 import com.example.currencyconverter.dto.ExchangeRateCreateRequestDto;
 import com.example.currencyconverter.dto.ExchangeRateDto;
+import com.example.currencyconverter.dto.ExchangeRateUpsertResultDto;
+import com.example.currencyconverter.dto.RateHistoryDto;
+import com.example.currencyconverter.dto.RateImportChunkDto;
+import com.example.currencyconverter.dto.RateImportResultDto;
 import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.entity.ExchangeRateHistory;
 import com.example.currencyconverter.exception.CurrencyNotFoundException;
+import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.service.DataSnapshot;
 import com.example.currencyconverter.service.ExchangeRateService;
-import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.service.RateHistoryService;
+import com.example.currencyconverter.service.RateImportService;
+import com.example.currencyconverter.service.ResponseBodyCache;
+import com.example.currencyconverter.service.SnapshotStore;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -16,16 +31,23 @@ import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -35,6 +57,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -46,11 +69,17 @@ import org.springframework.web.bind.annotation.CrossOrigin; // Импорт ан
 @RequiredArgsConstructor
 @Validated
 @Tag(name = "Exchange Rate Management", description = "Endpoints for managing exchange rates between currencies for specific banks.")
-@CrossOrigin(origins = "https://currency-converter-ui-wccs.onrender.com") // Разрешаем запросы с http://localhost:3000
+@CrossOrigin(origins = "https://currency-converter-ui-wccs.onrender.com", exposedHeaders = SnapshotStore.VERSION_HEADER) // Разрешаем запросы с http://localhost:3000
 public class ExchangeRateController {
 
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     private final ExchangeRateService exchangeRateService;
-    private final InMemoryCache<String, Object> controllerCache;
+    private final InMemoryCacheManager cacheManager;
+    private final ResponseBodyCache responseBodyCache;
+    private final SnapshotStore snapshotStore;
+    private final RateHistoryService rateHistoryService;
+    private final RateImportService rateImportService;
 
     @PostMapping
     @Operation(summary = "Create an exchange rate", description = "Creates a new exchange rate for a specific bank between two currencies. The combination of bank, from_currency, and to_currency must be unique.")
@@ -72,7 +101,6 @@ public class ExchangeRateController {
             @Parameter(description = "The exchange rate (how many target units for one source unit)", required = true, example = "0.9250")
             @RequestParam @NotNull @Positive @Digits(integer = 15, fraction = 4) BigDecimal rate) {
         ExchangeRate newExchangeRate = exchangeRateService.createExchangeRateWithCodes(bankId, fromCurrencyCode, toCurrencyCode, rate);
-        controllerCache.clear();
         return new ResponseEntity<>(convertToDto(newExchangeRate), HttpStatus.CREATED);
     }
 
@@ -99,10 +127,62 @@ public class ExchangeRateController {
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
 
-        controllerCache.clear();
         return new ResponseEntity<>(createdRateDtos, HttpStatus.CREATED);
     }
 
+    @PutMapping("/bulk")
+    @Operation(summary = "Create or update multiple exchange rates", description = "Inserts each rate, or replaces the rate if the bank already quotes the pair. "
+            + "Rates equal to the stored ones are not written. An invalid rate (non-existent bank/currency, pair listed twice for a bank) is rejected "
+            + "on its own and the others are still written. Returns one outcome per rate: INSERTED, UPDATED, UNCHANGED or REJECTED.")
+    @RequestBody(description = "A list of exchange rates to create or update.", required = true,
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    array = @ArraySchema(schema = @Schema(implementation = ExchangeRateCreateRequestDto.class))))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Outcome of each rate, in the order of the request",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = ExchangeRateUpsertResultDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid request body (validation error on list or individual items)",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<List<ExchangeRateUpsertResultDto>> upsertExchangeRatesBulk(
+            @org.springframework.web.bind.annotation.RequestBody
+            List<@Valid ExchangeRateCreateRequestDto> requests
+    ) {
+        return new ResponseEntity<>(exchangeRateService.upsertExchangeRatesBulk(requests), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    @Operation(summary = "Import exchange rates from CSV", description = "Imports a CSV body of bankId,fromCurrencyCode,toCurrencyCode,rate "
+            + "records, inserting new rates and replacing changed ones in one transaction. Meant for large files such as nightly reloads: "
+            + "records are streamed into the database and validated there. Records with an unknown bank or currency or a non-positive rate "
+            + "are skipped, and of records for the same bank and pair the last one wins. A first line that does not start with a digit is "
+            + "taken as a header.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rates imported, with the count of each outcome",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = RateImportResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Body is not CSV of the expected fields; nothing was imported",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<RateImportResultDto> importExchangeRates(HttpServletRequest request) throws IOException {
+        return new ResponseEntity<>(rateImportService.importCsv(request.getInputStream()), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON_MEDIA_TYPE, produces = NDJSON_MEDIA_TYPE)
+    @Operation(summary = "Import exchange rates from NDJSON in chunks", description = "Imports an NDJSON body of exchange rates shaped like "
+            + "the items of POST /exchange-rates/bulk, one per line, inserting new rates and replacing changed ones. The body is read as "
+            + "a stream and committed in chunks, each in its own transaction, so uploads of any size are supported. After each chunk a line "
+            + "reporting it is streamed back: the count of each outcome and the rejected records with their position and reason. A chunk "
+            + "that fails is rolled back and reported as such, its cause only logged; the chunks before it stay committed.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Chunks imported, see each chunk report for its outcome",
+                    content = @Content(mediaType = NDJSON_MEDIA_TYPE, schema = @Schema(implementation = RateImportChunkDto.class)))
+    })
+    public void importExchangeRatesStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(NDJSON_MEDIA_TYPE + ";charset=UTF-8");
+        rateImportService.importNdjson(request.getInputStream(), response.getOutputStream());
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get exchange rate by ID", description = "Retrieves details of a specific exchange rate by its unique ID.")
     @ApiResponses(value = {
@@ -118,38 +198,42 @@ public class ExchangeRateController {
             @PathVariable @Positive Long id) {
         String cacheKey = "/exchange-rates/" + id;
         @SuppressWarnings("unchecked")
-        ResponseEntity<ExchangeRateDto> cachedResponse = (ResponseEntity<ExchangeRateDto>) controllerCache.get(cacheKey);
+        ResponseEntity<ExchangeRateDto> cachedResponse = (ResponseEntity<ExchangeRateDto>) cacheManager.getCache(CacheConfig.RATE_DTOS).get(cacheKey);
         if (cachedResponse != null) {
             return cachedResponse;
         }
         ExchangeRate exchangeRate = exchangeRateService.getExchangeRate(id).orElseThrow(() -> new CurrencyNotFoundException("Exchange Rate not found with id: " + id));
         ExchangeRateDto dto = convertToDto(exchangeRate);
         ResponseEntity<ExchangeRateDto> response = new ResponseEntity<>(dto, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
+        cacheManager.getCache(CacheConfig.RATE_DTOS).put(cacheKey, response, List.of(CacheTags.rate(id), CacheTags.bank(dto.getBankId())));
         return response;
     }
 
     @GetMapping
-    @Operation(summary = "Get all exchange rates", description = "Retrieves a list of all exchange rates across all banks.")
+    @Operation(summary = "Get all exchange rates", description = "Retrieves a list of all exchange rates across all banks. "
+            + "The X-Data-Version header names the data version the list was read from.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
-                            array = @ArraySchema(schema = @Schema(implementation = ExchangeRateDto.class))))
+                            array = @ArraySchema(schema = @Schema(implementation = ExchangeRateDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag given in If-None-Match", content = @Content)
     })
-    public ResponseEntity<List<ExchangeRateDto>> getAllExchangeRates() {
-        String cacheKey = "/exchange-rates";
-        @SuppressWarnings("unchecked")
-        ResponseEntity<List<ExchangeRateDto>> cachedResponse = (ResponseEntity<List<ExchangeRateDto>>) controllerCache.get(cacheKey);
-        if (cachedResponse != null) {
-            return cachedResponse;
+    public ResponseEntity<byte[]> getAllExchangeRates(
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DataSnapshot snapshot = snapshotStore.current();
+        if (snapshot != null) {
+            return responseBodyCache.get("/exchange-rates", snapshot, ifNoneMatch, acceptEncoding,
+                    () -> snapshot.getRates().stream()
+                            .map(this::convertToDto)
+                            .collect(Collectors.toList()),
+                    List.of(CacheTags.RATES));
         }
-        List<ExchangeRate> exchangeRates = exchangeRateService.getAllExchangeRates();
-        List<ExchangeRateDto> exchangeRateDtos = exchangeRates.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        ResponseEntity<List<ExchangeRateDto>> response = new ResponseEntity<>(exchangeRateDtos, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
-        return response;
+        return responseBodyCache.get("/exchange-rates", ifNoneMatch, acceptEncoding,
+                () -> exchangeRateService.getAllExchangeRates().stream()
+                        .map(this::convertToDto)
+                        .collect(Collectors.toList()),
+                List.of(CacheTags.RATES));
     }
 
     @PutMapping("/{id}")
@@ -172,7 +256,6 @@ public class ExchangeRateController {
             @Parameter(description = "New exchange rate", required = true, example = "1.3550")
             @RequestParam @NotNull @Positive @Digits(integer = 15, fraction = 4) BigDecimal newRate) {
         ExchangeRate updatedExchangeRate = exchangeRateService.updateExchangeRate(id, fromCurrencyCode, toCurrencyCode, newRate);
-        controllerCache.clear();
         return new ResponseEntity<>(convertToDto(updatedExchangeRate), HttpStatus.OK);
     }
 
@@ -192,7 +275,6 @@ public class ExchangeRateController {
         if (!deleted) {
             throw new CurrencyNotFoundException("Exchange rate not found with id: " + id);
         }
-        controllerCache.clear();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -211,21 +293,170 @@ public class ExchangeRateController {
             @RequestParam @NotBlank @Size(min = 3, max = 3) String fromCurrencyCode,
             @Parameter(description = "3-letter code of the target currency", required = true, example = "USD")
             @RequestParam @NotBlank @Size(min = 3, max = 3) String toCurrencyCode) {
+        if (exchangeRateService.isRankedInMemory(fromCurrencyCode, toCurrencyCode)) {
+            return new ResponseEntity<>(convertToDto(requireRate(
+                    exchangeRateService.getMinRate(fromCurrencyCode, toCurrencyCode), fromCurrencyCode, toCurrencyCode)), HttpStatus.OK);
+        }
         String cacheKey = "/exchange-rates/min-rate?fromCurrencyCode=" + fromCurrencyCode + "&toCurrencyCode=" + toCurrencyCode;
+        // Concurrent misses for the same pair share one lookup.
         @SuppressWarnings("unchecked")
-        ResponseEntity<ExchangeRateDto> cachedResponse = (ResponseEntity<ExchangeRateDto>) controllerCache.get(cacheKey);
-        if (cachedResponse != null) {
-            return cachedResponse;
+        ResponseEntity<ExchangeRateDto> response = (ResponseEntity<ExchangeRateDto>) cacheManager.getCache(CacheConfig.MIN_RATES).get(cacheKey,
+                key -> {
+                    ExchangeRate exchangeRate = requireRate(
+                            exchangeRateService.getMinRate(fromCurrencyCode, toCurrencyCode), fromCurrencyCode, toCurrencyCode);
+                    return new ResponseEntity<>(convertToDto(exchangeRate), HttpStatus.OK);
+                },
+                (key, loaded) -> List.of(CacheTags.pair(fromCurrencyCode, toCurrencyCode),
+                        CacheTags.bank(((ExchangeRateDto) loaded.getBody()).getBankId())));
+        return response;
+    }
+
+    @GetMapping("/max-rate")
+    @Operation(summary = "Get maximum exchange rate", description = "Finds the bank offering the maximum exchange rate for a given currency pair.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Maximum rate found",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ExchangeRateDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid currency code supplied",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class))),
+            @ApiResponse(responseCode = "404", description = "No exchange rate found for this currency pair",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<ExchangeRateDto> getMaxRate(
+            @Parameter(description = "3-letter code of the source currency", required = true, example = "GBP")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String fromCurrencyCode,
+            @Parameter(description = "3-letter code of the target currency", required = true, example = "USD")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String toCurrencyCode) {
+        ExchangeRate exchangeRate = requireRate(
+                exchangeRateService.getMaxRate(fromCurrencyCode, toCurrencyCode), fromCurrencyCode, toCurrencyCode);
+        return new ResponseEntity<>(convertToDto(exchangeRate), HttpStatus.OK);
+    }
+
+    @GetMapping("/ranked")
+    @Operation(summary = "Rank banks by exchange rate", description = "Lists the rates of all banks for a given currency pair, ordered by rate.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rates ranked, empty if no bank quotes the pair",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = ExchangeRateDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid currency code or limit supplied",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<List<ExchangeRateDto>> getRankedRates(
+            @Parameter(description = "3-letter code of the source currency", required = true, example = "GBP")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String fromCurrencyCode,
+            @Parameter(description = "3-letter code of the target currency", required = true, example = "USD")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String toCurrencyCode,
+            @Parameter(description = "Start with the highest rate instead of the lowest", example = "false")
+            @RequestParam(defaultValue = "false") boolean descending,
+            @Parameter(description = "Maximum number of rates to return", example = "10")
+            @RequestParam(defaultValue = "100") @Positive int limit) {
+        List<ExchangeRateDto> rates = exchangeRateService.getRankedRates(fromCurrencyCode, toCurrencyCode, descending, limit).stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(rates, HttpStatus.OK);
+    }
+
+    @GetMapping("/arbitrage")
+    @Operation(summary = "List arbitrage loops", description = "Lists the loops of conversions, at the best rate of any bank for "
+            + "each pair, whose rates multiply to more than one, the most profitable first. Kept up to date on every rate change.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Loops listed, empty if the rates are consistent",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = ArbitrageLoopDto.class)))),
+            @ApiResponse(responseCode = "503", description = "The rates are still being loaded",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<List<ArbitrageLoopDto>> getArbitrageLoops() {
+        List<ArbitrageLoopDto> loops = exchangeRateService.getArbitrageLoops().stream()
+                .map(loop -> new ArbitrageLoopDto(loop.getHops().stream()
+                        .map(hop -> new ConversionStepDto(hop.getBankId(), hop.getFromCurrencyCode(), hop.getToCurrencyCode(), hop.getRate()))
+                        .collect(Collectors.toList()), loop.getRate()))
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(loops, HttpStatus.OK);
+    }
+
+    @GetMapping("/as-of")
+    @Operation(summary = "Get exchange rate as of a time", description = "Returns the rate a bank had for a currency pair at the given time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rate found",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = RateHistoryDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters supplied",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class))),
+            @ApiResponse(responseCode = "404", description = "The bank had no rate for the pair at that time",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<RateHistoryDto> getRateAsOf(
+            @Parameter(description = "ID of the bank", required = true, example = "1")
+            @RequestParam @NotNull @Positive Long bankId,
+            @Parameter(description = "3-letter code of the source currency", required = true, example = "USD")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String fromCurrencyCode,
+            @Parameter(description = "3-letter code of the target currency", required = true, example = "EUR")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String toCurrencyCode,
+            @Parameter(description = "ISO-8601 instant", required = true, example = "2024-05-01T14:00:00Z")
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        ExchangeRateHistory rate = rateHistoryService.getRateAsOf(bankId, fromCurrencyCode, toCurrencyCode, at);
+        if (rate == null || rate.getRate() == null) {
+            throw new CurrencyNotFoundException(String.format("Bank %d had no exchange rate from %s to %s at %s",
+                    bankId, fromCurrencyCode, toCurrencyCode, at));
         }
-        ExchangeRate exchangeRate = exchangeRateService.getMinRate(fromCurrencyCode, toCurrencyCode);
+        return new ResponseEntity<>(convertToDto(rate), HttpStatus.OK);
+    }
+
+    @GetMapping("/history")
+    @Operation(summary = "Get exchange rate history", description = "Lists the changes of a bank's rate for a currency pair that took effect "
+            + "in the given time range, oldest first. A change without a rate means the bank stopped quoting the pair.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Changes listed, empty if there were none",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, array = @ArraySchema(schema = @Schema(implementation = RateHistoryDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters supplied",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ErrorResponseDto.class)))
+    })
+    public ResponseEntity<List<RateHistoryDto>> getRateHistory(
+            @Parameter(description = "ID of the bank", required = true, example = "1")
+            @RequestParam @NotNull @Positive Long bankId,
+            @Parameter(description = "3-letter code of the source currency", required = true, example = "USD")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String fromCurrencyCode,
+            @Parameter(description = "3-letter code of the target currency", required = true, example = "EUR")
+            @RequestParam @NotBlank @Size(min = 3, max = 3) String toCurrencyCode,
+            @Parameter(description = "Start of the range, ISO-8601 instant", required = true, example = "2024-05-01T00:00:00Z")
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @Parameter(description = "End of the range, ISO-8601 instant", required = true, example = "2024-05-02T00:00:00Z")
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @Parameter(description = "Maximum number of changes to return", example = "1000")
+            @RequestParam(defaultValue = "1000") @Positive @Max(100000) int limit) {
+        if (from.isAfter(to)) {
+            throw new InvalidInputDataException("'from' must not be after 'to'");
+        }
+        List<RateHistoryDto> history = rateHistoryService.getHistory(bankId, fromCurrencyCode, toCurrencyCode, from, to, limit).stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(history, HttpStatus.OK);
+    }
+
+    private ExchangeRate requireRate(ExchangeRate exchangeRate, String fromCurrencyCode, String toCurrencyCode) {
         if (exchangeRate == null) {
             throw new CurrencyNotFoundException(String.format("No exchange rates found for conversion from %s to %s", fromCurrencyCode, toCurrencyCode));
         }
-        ExchangeRateDto dto = convertToDto(exchangeRate);
-        ResponseEntity<ExchangeRateDto> response = new ResponseEntity<>(dto, HttpStatus.OK);
-        controllerCache.put(cacheKey, response);
-        return response;
+        return exchangeRate;
+    }
+
+    private ExchangeRateDto convertToDto(DataSnapshot.RateRow rate) {
+        ExchangeRateDto dto = new ExchangeRateDto();
+        dto.setId(rate.getId());
+        dto.setRate(rate.getRate());
+        dto.setFromCurrencyCode(rate.getFromCurrencyCode());
+        dto.setToCurrencyCode(rate.getToCurrencyCode());
+        dto.setBankId(rate.getBankId());
+        return dto;
+    }
+
+    private RateHistoryDto convertToDto(ExchangeRateHistory rate) {
+        RateHistoryDto dto = new RateHistoryDto();
+        dto.setBankId(rate.getBankId());
+        dto.setFromCurrencyCode(rate.getFromCurrencyCode());
+        dto.setToCurrencyCode(rate.getToCurrencyCode());
+        dto.setRate(rate.getRate());
+        dto.setValidFrom(rate.getValidFrom());
+        return dto;
     }
+
     private ExchangeRateDto convertToDto(ExchangeRate exchangeRate) {
         if (exchangeRate == null) {
             return null;
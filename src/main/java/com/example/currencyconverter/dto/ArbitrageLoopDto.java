@@ -0,0 +1,17 @@
+package com.example.currencyconverter.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Conversions that lead back to the currency they started from with more than was converted. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArbitrageLoopDto {
+    private List<ConversionStepDto> path;
+    /** Product of the rates of the path. */
+    private BigDecimal rate;
+}
@@ -0,0 +1,16 @@
+package com.example.currencyconverter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one request of a batch: either the conversion or the reason it failed. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchConversionResultDto {
+    /** Position of the request in the batch. */
+    private int index;
+    private ConversionResponseDto result;
+    private String error;
+}
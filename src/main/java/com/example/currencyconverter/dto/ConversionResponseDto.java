@@ -1,6 +1,7 @@
 package com.example.currencyconverter.dto;
 
 import java.math.BigDecimal;
+import java.util.List;
 import lombok.Data;
 
 @Data
@@ -10,4 +11,6 @@ public class ConversionResponseDto {
     private BigDecimal amount;
     private BigDecimal convertedAmount;
     private BigDecimal exchangeRate;
+    /** Rates the conversion went through, one step for a direct rate. */
+    private List<ConversionStepDto> path;
 }
\ No newline at end of file
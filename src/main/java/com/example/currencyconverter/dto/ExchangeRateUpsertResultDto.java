@@ -0,0 +1,19 @@
+package com.example.currencyconverter.dto;
+
+import com.example.currencyconverter.model.UpsertOutcome;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one rate of a bulk upsert. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeRateUpsertResultDto {
+    /** Position of the rate in the request, or in the stream for a streamed import. */
+    private long index;
+    private UpsertOutcome outcome;
+    /** Id of the inserted or updated rate; {@code null} for the others. */
+    private Long id;
+    private String error;
+}
@@ -0,0 +1,17 @@
+package com.example.currencyconverter.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FanOutConversionDto {
+    private String fromCurrency;
+    private BigDecimal amount;
+    /** One entry per bank and target currency, ordered by bank id and then by currency code. */
+    private List<FanOutTargetDto> conversions;
+}
@@ -0,0 +1,16 @@
+package com.example.currencyconverter.dto;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FanOutTargetDto {
+    private Long bankId;
+    private String toCurrency;
+    private BigDecimal exchangeRate;
+    private BigDecimal convertedAmount;
+}
@@ -0,0 +1,15 @@
+package com.example.currencyconverter.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.Data;
+
+@Data
+public class RateHistoryDto {
+    private Long bankId;
+    private String fromCurrencyCode;
+    private String toCurrencyCode;
+    /** {@code null} while the bank did not quote the pair. */
+    private BigDecimal rate;
+    private Instant validFrom;
+}
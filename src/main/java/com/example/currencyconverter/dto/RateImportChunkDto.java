@@ -0,0 +1,26 @@
+package com.example.currencyconverter.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one chunk of a streamed import, reported once the chunk is committed or rolled back. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateImportChunkDto {
+    /** Number of the chunk, from 1. */
+    private int chunk;
+    /** Position in the stream of the chunk's first record. */
+    private long firstRecord;
+    private int records;
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private int rejected;
+    /** The rejected records, with their position in the stream and the reason. */
+    private List<ExchangeRateUpsertResultDto> rejections;
+    /** Why the chunk was rolled back; {@code null} if it was committed. */
+    private String error;
+}
@@ -0,0 +1,22 @@
+package com.example.currencyconverter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Counts of what an import did with its records; every record is counted exactly once. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateImportResultDto {
+    /** Records read. */
+    private long received;
+    /** Records with an unknown bank or currency, or a missing or non-positive rate. */
+    private long rejected;
+    /** Records whose bank and pair appear again on a later line, which wins. */
+    private long superseded;
+    private long inserted;
+    private long updated;
+    /** Records equal to the stored rate; nothing was written for them. */
+    private long unchanged;
+}
@@ -6,8 +6,10 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import java.math.BigDecimal;
 import lombok.AllArgsConstructor;
@@ -16,9 +18,19 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-
+/**
+ * A bank's current rate for a currency pair.
+ *
+ * <p>Ids are drawn from the {@code BIGSERIAL} sequence in blocks of 50 by Hibernate's pooled
+ * optimizer, so a bulk insert needs one sequence call per block and its inserts can be batched,
+ * which identity columns rule out. {@code schema.sql} makes the sequence step by the block size.
+ *
+ * <p>A bank has one rate per pair. {@code schema.sql} enforces it with a unique index, which bulk
+ * upserts resolve conflicts on, after deleting all but the newest rate of pairs stored twice.
+ */
 @Entity
-@Table(name = "exchange_rates")
+@Table(name = "exchange_rates", indexes = @Index(name = "uk_exchange_rates_bank_pair",
+        columnList = "bank_id, from_currency_code, to_currency_code", unique = true))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -27,7 +39,8 @@ import lombok.Setter;
 public class ExchangeRate {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exchange_rates_id_seq")
+    @SequenceGenerator(name = "exchange_rates_id_seq", sequenceName = "exchange_rates_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,59 @@
+package com.example.currencyconverter.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One change of a bank's rate for a currency pair, appended on every write and never updated.
+ * The rate holds from {@code validFrom} until the next row of the same pair; a {@code null} rate
+ * means the bank stopped quoting the pair. The bank is kept as a plain id, so history outlives a
+ * deleted bank. Ids are drawn in blocks of 50, like those of {@link ExchangeRate}, so the rows of
+ * a bulk write are inserted in batches. The table, its indexes and the sequence step are set up
+ * by {@code schema.sql} on startup.
+ */
+@Entity
+@Table(name = "exchange_rate_history", indexes = {
+        @Index(name = "idx_rate_history_pair_time", columnList = "bank_id, from_currency_code, to_currency_code, valid_from"),
+        @Index(name = "idx_rate_history_time", columnList = "valid_from")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExchangeRateHistory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exchange_rate_history_id_seq")
+    @SequenceGenerator(name = "exchange_rate_history_id_seq", sequenceName = "exchange_rate_history_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "bank_id", nullable = false)
+    private Long bankId;
+
+    @Column(name = "from_currency_code", nullable = false, length = 3)
+    private String fromCurrencyCode;
+
+    @Column(name = "to_currency_code", nullable = false, length = 3)
+    private String toCurrencyCode;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal rate;
+
+    @Column(name = "valid_from", nullable = false)
+    private Instant validFrom;
+
+}
@@ -0,0 +1,8 @@
+package com.example.currencyconverter.exception;
+
+public class CacheLoadTimeoutException extends RuntimeException {
+
+    public CacheLoadTimeoutException(String message) {
+        super(message);
+    }
+}
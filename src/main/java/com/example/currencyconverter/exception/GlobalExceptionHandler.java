@@ -129,6 +129,22 @@ public class GlobalExceptionHandler {
         );
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
+    @ExceptionHandler(CacheLoadTimeoutException.class)
+    public ResponseEntity<ErrorResponseDto> handleCacheLoadTimeoutException(
+            CacheLoadTimeoutException ex, HttpServletRequest request) {
+        log.warn("Cache Load Timeout: {}", ex.getMessage());
+        Map<String, List<String>> details = new HashMap<>();
+        details.computeIfAbsent("error", k -> new ArrayList<>()).add(ex.getMessage());
+        ErrorResponseDto errorResponse = new ErrorResponseDto(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "The request timed out waiting for a concurrent lookup, please retry",
+                request.getRequestURI(),
+                details
+        );
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponseDto> handleGenericException(
             Exception ex, HttpServletRequest request) {
@@ -0,0 +1,11 @@
+package com.example.currencyconverter.model;
+
+/** How {@code convertCurrency} finds the rate for a conversion. */
+public enum ConversionMode {
+    /** The bank's rate for the pair, as stored. */
+    DIRECT,
+    /** The path with the best overall rate over the bank's rates, possibly through other currencies. */
+    BEST_PATH,
+    /** The path with the best overall rate over the rates of all banks; the bank id is not used. */
+    BEST_PATH_ANY_BANK
+}
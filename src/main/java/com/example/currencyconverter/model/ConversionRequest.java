@@ -1,6 +1,7 @@
 package com.example.currencyconverter.model;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import lombok.Data;
 
 @Data
@@ -9,4 +10,8 @@ public class ConversionRequest {
     private String fromCurrencyCode;
     private String toCurrencyCode;
     private BigDecimal amount;
+    /** Defaults to {@link ConversionMode#DIRECT}. */
+    private ConversionMode mode;
+    /** Converts with the rate in effect at this time instead of the current one; direct mode only. */
+    private Instant asOf;
 }
\ No newline at end of file
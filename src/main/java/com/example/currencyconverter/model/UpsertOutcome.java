@@ -0,0 +1,13 @@
+package com.example.currencyconverter.model;
+
+/** What a bulk upsert did with one rate. */
+public enum UpsertOutcome {
+    /** The bank did not quote the pair; the rate was added. */
+    INSERTED,
+    /** The bank's rate for the pair was replaced. */
+    UPDATED,
+    /** The bank already had this rate for the pair; nothing was written. */
+    UNCHANGED,
+    /** The rate was invalid and skipped; the error says why. */
+    REJECTED
+}
@@ -0,0 +1,80 @@
+package com.example.currencyconverter.model;
+
+import com.example.currencyconverter.entity.ExchangeRate;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rates written by a set-based statement, such as an import, kept column-wise: ids and bank ids in
+ * primitive arrays, and each currency code stored once however many rates use it. The rows of a
+ * large import are appended here as they are read, without an entity or row array per rate.
+ */
+public final class WrittenRates {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, String> codes = new HashMap<>();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] bankIds = new long[INITIAL_CAPACITY];
+    private String[] fromCurrencyCodes = new String[INITIAL_CAPACITY];
+    private String[] toCurrencyCodes = new String[INITIAL_CAPACITY];
+    private BigDecimal[] rates = new BigDecimal[INITIAL_CAPACITY];
+    private int size;
+
+    /** Copies saved entities, for writes that went through the persistence context. */
+    public static WrittenRates of(List<ExchangeRate> rates) {
+        WrittenRates written = new WrittenRates();
+        for (ExchangeRate rate : rates) {
+            written.add(rate.getId(), rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode(), rate.getRate());
+        }
+        return written;
+    }
+
+    public void add(long id, long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            bankIds = Arrays.copyOf(bankIds, capacity);
+            fromCurrencyCodes = Arrays.copyOf(fromCurrencyCodes, capacity);
+            toCurrencyCodes = Arrays.copyOf(toCurrencyCodes, capacity);
+            rates = Arrays.copyOf(rates, capacity);
+        }
+        ids[size] = id;
+        bankIds[size] = bankId;
+        fromCurrencyCodes[size] = codes.computeIfAbsent(fromCurrencyCode, code -> code);
+        toCurrencyCodes[size] = codes.computeIfAbsent(toCurrencyCode, code -> code);
+        rates[size] = rate;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public long getBankId(int index) {
+        return bankIds[index];
+    }
+
+    public String getFromCurrencyCode(int index) {
+        return fromCurrencyCodes[index];
+    }
+
+    public String getToCurrencyCode(int index) {
+        return toCurrencyCodes[index];
+    }
+
+    public BigDecimal getRate(int index) {
+        return rates[index];
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.currencyconverter.repository;
+
+import com.example.currencyconverter.entity.ExchangeRateHistory;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ExchangeRateHistoryRepository extends JpaRepository<ExchangeRateHistory, Long> {
+
+    /** The row in effect at {@code at}: the latest one of the pair not after it. */
+    Optional<ExchangeRateHistory> findFirstByBankIdAndFromCurrencyCodeAndToCurrencyCodeAndValidFromLessThanEqualOrderByValidFromDescIdDesc(
+            Long bankId, String fromCurrencyCode, String toCurrencyCode, Instant at);
+
+    /** Rows of the pair with {@code validFrom} in [from, to], oldest first, limited by the page size. */
+    List<ExchangeRateHistory> findByBankIdAndFromCurrencyCodeAndToCurrencyCodeAndValidFromBetweenOrderByValidFromAscIdAsc(
+            Long bankId, String fromCurrencyCode, String toCurrencyCode, Instant from, Instant to, Pageable pageable);
+
+    /** (bankId, fromCurrencyCode, toCurrencyCode, validFrom, rate) of the rows since {@code since}, oldest first. */
+    @Query("SELECT h.bankId, h.fromCurrencyCode, h.toCurrencyCode, h.validFrom, h.rate FROM ExchangeRateHistory h "
+            + "WHERE h.validFrom >= :since ORDER BY h.validFrom, h.id")
+    List<Object[]> findTicksSince(@Param("since") Instant since);
+
+    /** Appends a removal row for every current rate of the bank; to be run before the bank is deleted. */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO exchange_rate_history (bank_id, from_currency_code, to_currency_code, rate, valid_from) "
+            + "SELECT bank_id, from_currency_code, to_currency_code, NULL, :at FROM exchange_rates WHERE bank_id = :bankId",
+            nativeQuery = true)
+    int insertBankRemoval(@Param("bankId") Long bankId, @Param("at") Instant at);
+
+    /** Appends a row for every current rate whose pair has no history yet, such as rates older than the history. */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO exchange_rate_history (bank_id, from_currency_code, to_currency_code, rate, valid_from) "
+            + "SELECT r.bank_id, r.from_currency_code, r.to_currency_code, r.rate, :at FROM exchange_rates r "
+            + "WHERE NOT EXISTS (SELECT 1 FROM exchange_rate_history h WHERE h.bank_id = r.bank_id "
+            + "AND h.from_currency_code = r.from_currency_code AND h.to_currency_code = r.to_currency_code)",
+            nativeQuery = true)
+    int insertMissingHistory(@Param("at") Instant at);
+}
@@ -3,11 +3,12 @@ package com.example.currencyconverter.repository;
 import com.example.currencyconverter.entity.ExchangeRate;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long>, ExchangeRateUpsertRepository {
     Optional<ExchangeRate> findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
             Long bankId, String fromCurrencyCode, String toCurrencyCode);
 
@@ -18,4 +19,35 @@ public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long
             + "ORDER BY rate ASC LIMIT 1", nativeQuery = true)
     List<ExchangeRate> findMinRate(@Param("fromCurrencyCode") String fromCurrencyCode, @Param("toCurrencyCode") String toCurrencyCode);
 
+    @Query(value = "SELECT * FROM exchange_rates "
+            + "WHERE from_currency_code = :fromCurrencyCode AND to_currency_code = :toCurrencyCode "
+            + "ORDER BY rate DESC LIMIT 1", nativeQuery = true)
+    List<ExchangeRate> findMaxRate(@Param("fromCurrencyCode") String fromCurrencyCode, @Param("toCurrencyCode") String toCurrencyCode);
+
+    List<ExchangeRate> findByFromCurrencyCodeAndToCurrencyCodeOrderByRateAscBankIdAsc(String fromCurrencyCode, String toCurrencyCode);
+
+    /** (bankId, fromCurrencyCode, toCurrencyCode) of every rate, without loading the entities. */
+    @Query("SELECT r.bank.id, r.fromCurrencyCode, r.toCurrencyCode FROM ExchangeRate r")
+    List<Object[]> findAllRateKeys();
+
+    /** (bankId, fromCurrencyCode, toCurrencyCode, rate, id) of every rate. */
+    @Query("SELECT r.bank.id, r.fromCurrencyCode, r.toCurrencyCode, r.rate, r.id FROM ExchangeRate r")
+    List<Object[]> findAllRateValues();
+
+    /** (bankId, toCurrencyCode, rate) of the rates from the currency, of the bank or, if {@code bankId} is null, of all banks. */
+    @Query("SELECT r.bank.id, r.toCurrencyCode, r.rate FROM ExchangeRate r "
+            + "WHERE r.fromCurrencyCode = :fromCurrencyCode AND (:bankId IS NULL OR r.bank.id = :bankId)")
+    List<Object[]> findRatesFrom(@Param("bankId") Long bankId, @Param("fromCurrencyCode") String fromCurrencyCode);
+
+    /**
+     * (id, bankId, fromCurrencyCode, toCurrencyCode, rate) of the first rates by id with ids in
+     * (afterId, maxId]. Ids are not dense, so pages are read by keyset rather than by id range.
+     */
+    @Query("SELECT r.id, r.bank.id, r.fromCurrencyCode, r.toCurrencyCode, r.rate FROM ExchangeRate r "
+            + "WHERE r.id > :afterId AND r.id <= :maxId ORDER BY r.id")
+    List<Object[]> findRateValuesAfterId(@Param("afterId") long afterId, @Param("maxId") long maxId, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(r.id), 0) FROM ExchangeRate r")
+    long findMaxId();
+
 }
\ No newline at end of file
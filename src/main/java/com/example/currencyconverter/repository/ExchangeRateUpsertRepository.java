@@ -0,0 +1,53 @@
+package com.example.currencyconverter.repository;
+
+import com.example.currencyconverter.model.WrittenRates;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/** Queries and writes of exchange rates that Spring Data cannot derive, mixed into {@link ExchangeRateRepository}. */
+public interface ExchangeRateUpsertRepository {
+
+    /**
+     * Finds which of the rates exist already, in one query. The arrays hold one bank and pair per
+     * index; only exact matches are returned, not other combinations of the same banks and currencies.
+     *
+     * @return (bankId, fromCurrencyCode, toCurrencyCode) of the rates that exist
+     */
+    List<Object[]> findExistingRateKeys(Long[] bankIds, String[] fromCurrencyCodes, String[] toCurrencyCodes);
+
+    /**
+     * Inserts the rates, or updates those whose bank and pair exist already, in one statement. Rates
+     * equal to the stored ones are not written. The arrays hold one rate per index and must not hold
+     * the same bank and pair twice.
+     *
+     * @return (id, bankId, fromCurrencyCode, toCurrencyCode, rate, inserted) of the rates written
+     */
+    List<Object[]> upsertRates(Long[] bankIds, String[] fromCurrencyCodes, String[] toCurrencyCodes, BigDecimal[] rates);
+
+    /**
+     * Copies CSV records of {@code bankId,fromCurrencyCode,toCurrencyCode,rate} into a staging table
+     * that lives until the current transaction ends. The staging methods below must run in the
+     * same transaction. The table is analyzed once copied, so the statements below are planned for
+     * its actual size.
+     *
+     * @return number of records copied
+     */
+    long copyToStaging(Reader csv);
+
+    /** Deletes the staged rates with an unknown bank or currency, or a missing or non-positive rate. */
+    int deleteInvalidStaged();
+
+    /** Deletes the staged rates whose bank and pair are staged again on a later line, so the last one wins. */
+    int deleteSupersededStaged();
+
+    /**
+     * Merges the staged rates into the rates like {@link #upsertRates} and, if {@code historyAt} is
+     * not {@code null}, appends the rates written to the history as of then. The rates written are
+     * added to {@code written} as they are read.
+     *
+     * @return number of the rates written that were inserted rather than updated
+     */
+    long mergeStaged(Instant historyAt, WrittenRates written);
+}
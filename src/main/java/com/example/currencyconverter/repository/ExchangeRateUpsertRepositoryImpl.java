@@ -0,0 +1,151 @@
+package com.example.currencyconverter.repository;
+
+import com.example.currencyconverter.model.WrittenRates;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Upserts with PostgreSQL's {@code INSERT ... ON CONFLICT}, passing the rates as arrays so a list of
+ * any length is one statement and one round trip. The conflict target is the unique index on
+ * (bank_id, from_currency_code, to_currency_code) created by {@code schema.sql}. {@code xmax} is 0 only
+ * in a row version created by an insert, which tells inserted rates from updated ones.
+ *
+ * <p>Imports stream the records through PostgreSQL's {@code COPY} into a temporary staging table,
+ * validate and deduplicate them there and merge them with one statement, without Hibernate
+ * managing a single record. The rows the merge returns are fetched in pages and appended to a
+ * {@link WrittenRates} as they arrive.
+ *
+ * <p>New rows take their id from the column default, so each of them uses a whole block of the id
+ * sequence; the ids stay unique, only sparser.
+ */
+@RequiredArgsConstructor
+public class ExchangeRateUpsertRepositoryImpl implements ExchangeRateUpsertRepository {
+
+    private static final String FIND_EXISTING = "SELECT bank_id, from_currency_code, to_currency_code FROM exchange_rates "
+            + "WHERE (bank_id, from_currency_code, to_currency_code) IN "
+            + "(SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[]))";
+
+    private static final String UPSERT = "INSERT INTO exchange_rates (bank_id, from_currency_code, to_currency_code, rate) "
+            + "SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::numeric[]) "
+            + "ON CONFLICT (bank_id, from_currency_code, to_currency_code) "
+            + "DO UPDATE SET rate = EXCLUDED.rate WHERE exchange_rates.rate <> EXCLUDED.rate "
+            + "RETURNING id, bank_id, from_currency_code, to_currency_code, rate, (xmax = 0) AS inserted";
+
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE IF NOT EXISTS exchange_rates_staging ("
+            + "line BIGINT GENERATED ALWAYS AS IDENTITY, bank_id BIGINT, from_currency_code VARCHAR(3), "
+            + "to_currency_code VARCHAR(3), rate NUMERIC(19, 4)) ON COMMIT DROP";
+
+    private static final String COPY_STAGING = "COPY exchange_rates_staging (bank_id, from_currency_code, to_currency_code, rate) "
+            + "FROM STDIN WITH (FORMAT csv)";
+
+    // Temporary tables are never analyzed by autovacuum, and the planner would guess their size.
+    private static final String ANALYZE_STAGING = "ANALYZE exchange_rates_staging";
+
+    private static final String DELETE_INVALID = "DELETE FROM exchange_rates_staging s "
+            + "WHERE s.rate IS NULL OR s.rate <= 0 "
+            + "OR NOT EXISTS (SELECT 1 FROM banks b WHERE b.id = s.bank_id) "
+            + "OR NOT EXISTS (SELECT 1 FROM currencies c WHERE c.code = s.from_currency_code) "
+            + "OR NOT EXISTS (SELECT 1 FROM currencies c WHERE c.code = s.to_currency_code)";
+
+    private static final String DELETE_SUPERSEDED = "DELETE FROM exchange_rates_staging s USING exchange_rates_staging later "
+            + "WHERE later.bank_id = s.bank_id AND later.from_currency_code = s.from_currency_code "
+            + "AND later.to_currency_code = s.to_currency_code AND later.line > s.line";
+
+    private static final String MERGE = "WITH written AS ("
+            + "INSERT INTO exchange_rates (bank_id, from_currency_code, to_currency_code, rate) "
+            + "SELECT bank_id, from_currency_code, to_currency_code, rate FROM exchange_rates_staging "
+            + "ORDER BY bank_id, from_currency_code, to_currency_code "
+            + "ON CONFLICT (bank_id, from_currency_code, to_currency_code) "
+            + "DO UPDATE SET rate = EXCLUDED.rate WHERE exchange_rates.rate <> EXCLUDED.rate "
+            + "RETURNING id, bank_id, from_currency_code, to_currency_code, rate, (xmax = 0) AS inserted), "
+            + "history AS ("
+            + "INSERT INTO exchange_rate_history (bank_id, from_currency_code, to_currency_code, rate, valid_from) "
+            + "SELECT bank_id, from_currency_code, to_currency_code, rate, ?::timestamptz FROM written WHERE ?::boolean) "
+            + "SELECT * FROM written";
+
+    private static final int MERGE_FETCH_SIZE = 10_000;
+
+    private static final RowMapper<Object[]> WRITTEN_RATE = (resultSet, rowNum) -> new Object[]{
+            resultSet.getLong(1), resultSet.getLong(2), resultSet.getString(3),
+            resultSet.getString(4), resultSet.getBigDecimal(5), resultSet.getBoolean(6)
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Object[]> findExistingRateKeys(Long[] bankIds, String[] fromCurrencyCodes, String[] toCurrencyCodes) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_EXISTING);
+            statement.setArray(1, connection.createArrayOf("bigint", bankIds));
+            statement.setArray(2, connection.createArrayOf("varchar", fromCurrencyCodes));
+            statement.setArray(3, connection.createArrayOf("varchar", toCurrencyCodes));
+            return statement;
+        }, (resultSet, rowNum) -> new Object[]{resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)});
+    }
+
+    @Override
+    public List<Object[]> upsertRates(Long[] bankIds, String[] fromCurrencyCodes, String[] toCurrencyCodes, BigDecimal[] rates) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT);
+            statement.setArray(1, connection.createArrayOf("bigint", bankIds));
+            statement.setArray(2, connection.createArrayOf("varchar", fromCurrencyCodes));
+            statement.setArray(3, connection.createArrayOf("varchar", toCurrencyCodes));
+            statement.setArray(4, connection.createArrayOf("numeric", rates));
+            return statement;
+        }, WRITTEN_RATE);
+    }
+
+    @Override
+    public long copyToStaging(Reader csv) {
+        jdbcTemplate.execute(CREATE_STAGING);
+        long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING, csv);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        jdbcTemplate.execute(ANALYZE_STAGING);
+        return copied;
+    }
+
+    @Override
+    public int deleteInvalidStaged() {
+        return jdbcTemplate.update(DELETE_INVALID);
+    }
+
+    @Override
+    public int deleteSupersededStaged() {
+        return jdbcTemplate.update(DELETE_SUPERSEDED);
+    }
+
+    @Override
+    public long mergeStaged(Instant historyAt, WrittenRates written) {
+        long[] inserted = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(MERGE);
+            statement.setFetchSize(MERGE_FETCH_SIZE);
+            statement.setObject(1, historyAt == null ? null : historyAt.atOffset(ZoneOffset.UTC));
+            statement.setBoolean(2, historyAt != null);
+            return statement;
+        }, resultSet -> {
+            written.add(resultSet.getLong(1), resultSet.getLong(2), resultSet.getString(3),
+                    resultSet.getString(4), resultSet.getBigDecimal(5));
+            if (resultSet.getBoolean(6)) {
+                inserted[0]++;
+            }
+        });
+        return inserted[0];
+    }
+}
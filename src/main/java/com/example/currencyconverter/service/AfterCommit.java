@@ -0,0 +1,62 @@
+package com.example.currencyconverter.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Applies changes to in-memory state only once the transaction that made them commits, so readers
+ * never see rows that may still roll back. Outside a transaction changes are applied right away.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /** Runs the change after the current transaction commits, or now if there is none. */
+    static void run(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    /**
+     * Collects the change with the others the current transaction made under {@code owner} and
+     * passes them all to {@code apply} once after it commits; without a transaction the change is
+     * passed alone right away.
+     */
+    static <T> void collect(Object owner, T change, Consumer<List<T>> apply) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.accept(List.of(change));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<T> pending = (List<T>) TransactionSynchronizationManager.getResource(owner);
+        if (pending == null) {
+            List<T> changes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(owner, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.accept(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(owner);
+                }
+            });
+            pending = changes;
+        }
+        pending.add(change);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.currencyconverter.service;
 
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.entity.Bank;
 import com.example.currencyconverter.repository.BankRepository;
 import java.math.BigDecimal;
@@ -7,16 +8,24 @@ import java.util.List;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
 public class BankService {
 
     private final BankRepository bankRepository;
+    private final CacheInvalidator cacheInvalidator;
+    private final RateEngine rateEngine;
+    private final SnapshotStore snapshotStore;
+    private final RateHistoryService rateHistoryService;
 
     public Bank createBank(String name) {
         Bank bank = Bank.builder().name(name).build();
-        return bankRepository.save(bank);
+        Bank savedBank = bankRepository.save(bank);
+        snapshotStore.recordBank(savedBank);
+        cacheInvalidator.invalidate(CacheTags.BANKS);
+        return savedBank;
     }
 
     public Optional<Bank> getBank(Long id) {
@@ -31,14 +40,27 @@ public class BankService {
         return bankRepository.findById(id)
                 .map(bank -> {
                     bank.setName(newName);
-                    return bankRepository.save(bank);
+                    Bank savedBank = bankRepository.save(bank);
+                    snapshotStore.recordBank(savedBank);
+                    cacheInvalidator.invalidate(CacheTags.BANKS, CacheTags.bank(id));
+                    return savedBank;
                 })
                 .orElse(null);
     }
 
+    /**
+     * Deletes the bank and its rates. The history rows marking its rates removed, the delete and the
+     * in-memory updates after commit all belong to one transaction.
+     */
+    @Transactional
     public boolean deleteBank(Long id) {
         if (bankRepository.existsById(id)) {
+            rateHistoryService.recordBankRemoval(id);
             bankRepository.deleteById(id);
+            rateEngine.recordBankRemoval(id);
+            snapshotStore.recordBankRemoval(id);
+            // The bank's rates go with it, so lists of all rates are stale too.
+            cacheInvalidator.invalidate(CacheTags.BANKS, CacheTags.RATES, CacheTags.bank(id));
             return true;
         }
         return false;
@@ -0,0 +1,175 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.dto.BatchConversionResultDto;
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
+import com.example.currencyconverter.exception.CurrencyNotFoundException;
+import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.model.ConversionMode;
+import com.example.currencyconverter.model.ConversionRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Converts many amounts in one call. Requests are grouped by bank, currency pair, mode and
+ * {@code asOf}; each group is quoted once by {@link CurrencyService#quote} and the quote applied to
+ * all its amounts. A request that cannot be converted gets an error in its result, the others are
+ * still converted; only unexpected failures, such as the database being down, fail the batch.
+ *
+ * <p>Quoting and converting run in chunks of {@code chunk-size} on {@code parallelism} threads once
+ * there are more than {@code parallel-threshold} of them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchConversionService {
+
+    private final CurrencyService currencyService;
+
+    @Value("${currencies.convert.batch.parallel-threshold:2000}")
+    private int parallelThreshold;
+
+    @Value("${currencies.convert.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${currencies.convert.batch.parallelism:4}")
+    private int parallelism;
+
+    private ExecutorService pool;
+
+    @PostConstruct
+    void createPool() {
+        pool = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "batch-conversion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    /** Returns one result per request, in the order of the requests. */
+    public List<BatchConversionResultDto> convert(List<ConversionRequest> requests) {
+        int size = requests.size();
+        String[] errors = new String[size];
+        int[] groupOf = new int[size];
+        Map<GroupKey, Integer> groups = new HashMap<>();
+        List<ConversionRequest> firstOfGroup = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ConversionRequest request = requests.get(i);
+            errors[i] = validate(request);
+            if (errors[i] == null) {
+                groupOf[i] = groups.computeIfAbsent(GroupKey.of(request), key -> {
+                    firstOfGroup.add(request);
+                    return firstOfGroup.size() - 1;
+                });
+            }
+        }
+
+        // Each slot holds the quote of its group or the reason there is none.
+        Object[] quotes = new Object[firstOfGroup.size()];
+        forEachChunk(quotes.length, (from, to) -> {
+            for (int group = from; group < to; group++) {
+                quotes[group] = quoteOrError(firstOfGroup.get(group));
+            }
+        });
+
+        BatchConversionResultDto[] results = new BatchConversionResultDto[size];
+        forEachChunk(size, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                Object quote = errors[i] == null ? quotes[groupOf[i]] : errors[i];
+                results[i] = quote instanceof CurrencyService.Quote
+                        ? new BatchConversionResultDto(i, currencyService.toResponse(requests.get(i), (CurrencyService.Quote) quote), null)
+                        : new BatchConversionResultDto(i, null, (String) quote);
+            }
+        });
+        log.debug("Converted a batch of {} requests with {} distinct quotes", size, quotes.length);
+        return Arrays.asList(results);
+    }
+
+    private Object quoteOrError(ConversionRequest request) {
+        try {
+            return currencyService.quote(request);
+        } catch (IllegalArgumentException | InvalidInputDataException | CurrencyNotFoundException
+                 | CacheLoadTimeoutException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String validate(ConversionRequest request) {
+        if (request == null) {
+            return "Request must not be null.";
+        }
+        if (request.getBankId() == null && request.getMode() != ConversionMode.BEST_PATH_ANY_BANK) {
+            return "bankId is required.";
+        }
+        if (request.getFromCurrencyCode() == null || request.getToCurrencyCode() == null) {
+            return "fromCurrencyCode and toCurrencyCode are required.";
+        }
+        if (request.getAmount() == null) {
+            return "amount is required.";
+        }
+        return null;
+    }
+
+    /** Runs the task over [0, count), split into chunks on the pool if there are enough items. */
+    private void forEachChunk(int count, ChunkTask task) {
+        if (count <= parallelThreshold) {
+            task.run(0, count);
+            return;
+        }
+        int step = Math.max(1, chunkSize);
+        CompletableFuture<?>[] chunks = new CompletableFuture<?>[(count + step - 1) / step];
+        for (int c = 0; c < chunks.length; c++) {
+            int from = c * step;
+            int to = Math.min(count, from + step);
+            chunks[c] = CompletableFuture.runAsync(() -> task.run(from, to), pool);
+        }
+        try {
+            CompletableFuture.allOf(chunks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int from, int to);
+    }
+
+    /** What a quote depends on: everything of a request but the amount. */
+    @lombok.Value
+    private static class GroupKey {
+        Long bankId;
+        String fromCurrencyCode;
+        String toCurrencyCode;
+        ConversionMode mode;
+        Instant asOf;
+
+        static GroupKey of(ConversionRequest request) {
+            ConversionMode mode = request.getMode() == null ? ConversionMode.DIRECT : request.getMode();
+            // Quotes over the rates of all banks do not depend on the bank given, if any.
+            Long bankId = mode == ConversionMode.BEST_PATH_ANY_BANK ? null : request.getBankId();
+            return new GroupKey(bankId, request.getFromCurrencyCode(), request.getToCurrencyCode(), mode, request.getAsOf());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.utils.InMemoryCacheManager;
+import java.util.Collection;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops cached entries that depend on data changed by a service write. Inside a transaction the
+ * tags are invalidated after commit, so a concurrent read cannot cache the old rows again between
+ * the invalidation and the commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidator {
+
+    private final InMemoryCacheManager cacheManager;
+
+    public void invalidate(String... tags) {
+        invalidate(List.of(tags));
+    }
+
+    public void invalidate(Collection<String> tags) {
+        List<String> pending = List.copyOf(tags);
+        AfterCommit.run(() -> cacheManager.invalidateTags(pending));
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.utils.RateKey;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the rate cache before the application reports ready, so the first requests after a deploy
+ * do not all go to the database.
+ *
+ * <p>Runs as an {@link ApplicationRunner}, which Spring Boot completes before it switches readiness
+ * to accepting traffic. First the hot keys saved by the previous instance on shutdown are loaded,
+ * then the whole {@code exchange_rates} table is read in pages of {@code page-size} rows, each
+ * thread paging by keyset through its own slice of the ids. Both phases run on {@code parallelism} threads and share one time budget; when it runs out the
+ * warm-up stops and the remaining rates are loaded on demand as usual. Progress is reported as the
+ * {@code cacheWarmer} health indicator, which is part of the readiness group and is out of service
+ * while the warm-up runs.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheWarmer implements ApplicationRunner, HealthIndicator {
+
+    private final ExchangeRateService exchangeRateService;
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final InMemoryCache<RateKey, BigDecimal> exchangeRateCache;
+
+    @Value("${cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.preload-all:true}")
+    private boolean preloadAll;
+
+    @Value("${cache.warmup.page-size:1000}")
+    private int pageSize;
+
+    @Value("${cache.warmup.parallelism:4}")
+    private int parallelism;
+
+    @Value("${cache.warmup.time-budget:30s}")
+    private Duration timeBudget;
+
+    @Value("${cache.warmup.hot-keys.enabled:true}")
+    private boolean hotKeysEnabled;
+
+    @Value("${cache.warmup.hot-keys.file:cache/hot-rate-keys.txt}")
+    private String hotKeysFile;
+
+    @Value("${cache.warmup.hot-keys.max:10000}")
+    private int maxHotKeys;
+
+    private enum Phase { PENDING, HOT_KEYS, PRELOAD, COMPLETED, TIMED_OUT, FAILED, DISABLED }
+
+    private volatile Phase phase = Phase.PENDING;
+    private volatile long startNanos;
+    private volatile long finishNanos;
+    private final AtomicInteger hotKeysLoaded = new AtomicInteger();
+    private final AtomicLong ratesLoaded = new AtomicLong();
+    private volatile long maxRateId;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || !cacheEnabled) {
+            phase = Phase.DISABLED;
+            return;
+        }
+        startNanos = System.nanoTime();
+        long deadline = startNanos + timeBudget.toNanos();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "cache-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            boolean finished = true;
+            if (hotKeysEnabled) {
+                phase = Phase.HOT_KEYS;
+                finished = loadHotKeys(pool, deadline);
+            }
+            if (finished && preloadAll) {
+                phase = Phase.PRELOAD;
+                finished = preloadRates(pool, deadline);
+            }
+            phase = finished ? Phase.COMPLETED : Phase.TIMED_OUT;
+        } catch (RuntimeException e) {
+            phase = Phase.FAILED;
+            log.error("Cache warm-up failed, rates will be loaded on demand", e);
+        } finally {
+            pool.shutdownNow();
+            finishNanos = System.nanoTime();
+        }
+        log.info("Cache warm-up {} in {} ms: {} hot keys and {} rates loaded",
+                phase.name().toLowerCase(), TimeUnit.NANOSECONDS.toMillis(finishNanos - startNanos),
+                hotKeysLoaded.get(), ratesLoaded.get());
+    }
+
+    /** Saves the hottest rate keys, so the next instance can load them first. */
+    @PreDestroy
+    public void saveHotKeys() {
+        if (!enabled || !cacheEnabled || !hotKeysEnabled) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        for (RateKey key : exchangeRateCache.hottestKeys(maxHotKeys)) {
+            // Keys that do not pack may contain '-' in their codes and would not parse back.
+            if (key.getPacked() != RateKey.NOT_PACKED) {
+                lines.add(key.toString());
+            }
+        }
+        Path file = Paths.get(hotKeysFile);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved {} hot rate keys to {}", lines.size(), file);
+        } catch (IOException e) {
+            log.warn("Failed to save hot rate keys to {}", file, e);
+        }
+    }
+
+    @Override
+    public Health health() {
+        Phase current = phase;
+        Health.Builder builder = current == Phase.PENDING || current == Phase.HOT_KEYS || current == Phase.PRELOAD
+                ? Health.outOfService() : Health.up();
+        builder.withDetail("phase", current)
+                .withDetail("hotKeysLoaded", hotKeysLoaded.get())
+                .withDetail("ratesLoaded", ratesLoaded.get());
+        if (maxRateId > 0) {
+            builder.withDetail("maxRateId", maxRateId);
+        }
+        if (startNanos != 0) {
+            long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+            builder.withDetail("elapsedMs", TimeUnit.NANOSECONDS.toMillis(end - startNanos));
+        }
+        return builder.build();
+    }
+
+    private boolean loadHotKeys(ExecutorService pool, long deadline) {
+        List<RateKey> keys = readHotKeys();
+        if (keys.isEmpty()) {
+            return true;
+        }
+        AtomicInteger next = new AtomicInteger();
+        boolean inTime = runWorkers(pool, deadline, () -> {
+            while (System.nanoTime() < deadline) {
+                int index = next.getAndIncrement();
+                if (index >= keys.size()) {
+                    return;
+                }
+                RateKey key = keys.get(index);
+                if (exchangeRateService.getExchangeRateValue(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode()) != null) {
+                    hotKeysLoaded.incrementAndGet();
+                }
+            }
+        });
+        return inTime && next.get() >= keys.size();
+    }
+
+    private List<RateKey> readHotKeys() {
+        Path file = Paths.get(hotKeysFile);
+        if (!Files.isReadable(file)) {
+            log.info("No hot rate keys at {}, skipping", file);
+            return List.of();
+        }
+        List<RateKey> keys = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (keys.size() >= maxHotKeys) {
+                    break;
+                }
+                if (!line.isBlank()) {
+                    try {
+                        keys.add(RateKey.parse(line.trim()));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Skipping malformed hot rate key: {}", line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read hot rate keys from " + file, e);
+        }
+        log.info("Loading {} hot rate keys from {}", keys.size(), file);
+        return keys;
+    }
+
+    private boolean preloadRates(ExecutorService pool, long deadline) {
+        long maxId = exchangeRateRepository.findMaxId();
+        maxRateId = maxId;
+        int limit = Math.max(1, pageSize);
+        // One slice of (0, maxId] per worker; ids have gaps, so a slice is paged by the last id read.
+        int slices = Math.max(1, parallelism);
+        AtomicInteger nextSlice = new AtomicInteger();
+        AtomicInteger slicesDone = new AtomicInteger();
+        boolean inTime = runWorkers(pool, deadline, () -> {
+            int slice = nextSlice.getAndIncrement();
+            long lastId = maxId / slices * slice;
+            long sliceMaxId = slice == slices - 1 ? maxId : maxId / slices * (slice + 1);
+            while (System.nanoTime() < deadline) {
+                ExchangeRateService.PreloadedPage page = exchangeRateService.preloadExchangeRateValues(lastId, sliceMaxId, limit);
+                ratesLoaded.addAndGet(page.getCount());
+                if (page.getCount() < limit) {
+                    slicesDone.incrementAndGet();
+                    return;
+                }
+                lastId = page.getLastId();
+            }
+        });
+        return inTime && slicesDone.get() == slices;
+    }
+
+    /** Runs {@code worker} on every pool thread and returns {@code false} if they did not finish by the deadline. */
+    private boolean runWorkers(ExecutorService pool, long deadline, Runnable worker) {
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.max(1, parallelism)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = CompletableFuture.runAsync(worker, pool);
+        }
+        try {
+            CompletableFuture.allOf(workers).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Cache warm-up time budget of {} exhausted", timeBudget);
+            return false;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.currencyconverter.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An immutable value loaded from the tables once and rebuilt from a builder for each committed
+ * change. Changes committed while the load runs are replayed on top of the rows it read, so the
+ * loaded value misses none of them. Readers take no lock.
+ *
+ * @param <T> the value
+ * @param <B> its builder
+ */
+final class CommittedState<T, B> {
+
+    private final Function<T, B> toBuilder;
+    // Builds the next value; the previous one is null for the value of the load.
+    private final BiFunction<B, T, T> build;
+    private final Object writeLock = new Object();
+    private volatile T current;
+    private List<Consumer<B>> committedDuringLoad;
+
+    CommittedState(Function<T, B> toBuilder, BiFunction<B, T, T> build) {
+        this.toBuilder = toBuilder;
+        this.build = build;
+    }
+
+    /** Returns the current value, or {@code null} until a load succeeded. */
+    T current() {
+        return current;
+    }
+
+    /**
+     * Reads the rows into a builder with {@code read} and publishes the value built from them.
+     * If {@code read} fails, nothing is published and its exception is rethrown.
+     */
+    T load(Supplier<B> read) {
+        synchronized (writeLock) {
+            committedDuringLoad = new ArrayList<>();
+        }
+        try {
+            B builder = read.get();
+            synchronized (writeLock) {
+                committedDuringLoad.forEach(change -> change.accept(builder));
+                committedDuringLoad = null;
+                T loaded = build.apply(builder, null);
+                current = loaded;
+                return loaded;
+            }
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                committedDuringLoad = null;
+            }
+            throw e;
+        }
+    }
+
+    /** Publishes the value with the committed changes applied, in order, as one step. */
+    void apply(List<? extends Consumer<B>> changes) {
+        synchronized (writeLock) {
+            if (committedDuringLoad != null) {
+                committedDuringLoad.addAll(changes);
+            }
+            T value = current;
+            if (value != null) {
+                B builder = toBuilder.apply(value);
+                changes.forEach(change -> change.accept(builder));
+                current = build.apply(builder, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.entity.Currency;
+import com.example.currencyconverter.repository.CurrencyRepository;
+import com.example.currencyconverter.utils.CurrencyTable;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Knows every currency, so that currency codes are validated without a query.
+ *
+ * <p>The currencies are loaded into a {@link CurrencyTable} at startup. {@link CurrencyService}
+ * records each change, which replaces the table after commit. Until the load finished, and if it
+ * failed, lookups go to the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CurrencyRegistry {
+
+    private final CurrencyRepository currencyRepository;
+
+    @Value("${currencies.registry.enabled:true}")
+    private boolean enabled;
+
+    private final CommittedState<CurrencyTable, CurrencyTable.Builder> state =
+            new CommittedState<>(CurrencyTable::toBuilder, (builder, previous) -> builder.build());
+
+    /** Returns {@code true} if a currency with the code exists. */
+    public boolean contains(String code) {
+        CurrencyTable current = state.current();
+        if (current != null) {
+            return current.contains(code);
+        }
+        return currencyRepository.findByCode(code) != null;
+    }
+
+    /** Returns the currency with the code, detached from the persistence context, or {@code null}. */
+    public Currency find(String code) {
+        CurrencyTable current = state.current();
+        if (current == null) {
+            return currencyRepository.findByCode(code);
+        }
+        long id = current.idOf(code);
+        return id == CurrencyTable.NO_ID ? null : new Currency(id, code, current.nameOf(code));
+    }
+
+    public boolean isLoaded() {
+        return state.current() != null;
+    }
+
+    public void recordCurrency(Currency currency) {
+        Long id = currency.getId();
+        String code = currency.getCode();
+        String name = currency.getName();
+        // The code may have changed, so the entry under the old one goes first.
+        record(builder -> builder.removeId(id).put(id, code, name));
+    }
+
+    public void recordCurrencyRemoval(Long id) {
+        record(builder -> builder.removeId(id));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            CurrencyTable loaded = state.load(() -> {
+                CurrencyTable.Builder builder = CurrencyTable.EMPTY.toBuilder();
+                for (Currency currency : currencyRepository.findAll()) {
+                    builder.put(currency.getId(), currency.getCode(), currency.getName());
+                }
+                return builder;
+            });
+            log.info("Currency registry loaded with {} currencies", loaded.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to load the currency registry, currency codes will be checked in the database", e);
+        }
+    }
+
+    private void record(Consumer<CurrencyTable.Builder> change) {
+        if (enabled) {
+            AfterCommit.run(() -> state.apply(List.of(change)));
+        }
+    }
+}
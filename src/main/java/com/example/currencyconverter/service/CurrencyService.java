@@ -1,13 +1,27 @@
 package com.example.currencyconverter.service;
 
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.dto.ConversionResponseDto;
+import com.example.currencyconverter.dto.ConversionStepDto;
+import com.example.currencyconverter.dto.FanOutConversionDto;
+import com.example.currencyconverter.dto.FanOutTargetDto;
 import com.example.currencyconverter.entity.Currency;
+import com.example.currencyconverter.entity.ExchangeRateHistory;
+import com.example.currencyconverter.model.ConversionMode;
 import com.example.currencyconverter.model.ConversionRequest;
 import com.example.currencyconverter.repository.CurrencyRepository;
+import com.example.currencyconverter.utils.FixedPoint;
+import com.example.currencyconverter.utils.RateGraph;
+import com.example.currencyconverter.utils.RateMatrix;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -15,41 +29,158 @@ import org.springframework.stereotype.Service;
 public class CurrencyService {
     private final CurrencyRepository currencyRepository;
     private final ExchangeRateService exchangeRateService;
+    private final CacheInvalidator cacheInvalidator;
+    private final RateEngine rateEngine;
+    private final SnapshotStore snapshotStore;
+    private final RateHistoryService rateHistoryService;
+    private final CurrencyRegistry currencyRegistry;
 
+    private static final Comparator<FanOutTargetDto> BY_BANK_AND_CURRENCY =
+            Comparator.comparing(FanOutTargetDto::getBankId).thenComparing(FanOutTargetDto::getToCurrency);
+
+    // Initialized for instances made without Spring, such as in tests.
+    @Value("${currencies.convert.result-scale:4}")
+    private int resultScale = 4;
+
+    @Value("${currencies.convert.rounding:HALF_UP}")
+    private RoundingMode rounding = RoundingMode.HALF_UP;
+
+    /**
+     * Converts the amount with the bank's rate for the pair. The rate comes from the
+     * {@link RateEngine} once it is loaded, otherwise from {@link ExchangeRateService}. In the
+     * best-path modes the rate is the best product of rates over any chain of currencies, within
+     * the bank or across banks; before the engine is loaded they fall back to the direct rate.
+     * With {@code asOf} set the direct rate in effect at that time is taken from the
+     * {@link RateHistoryService}.
+     */
     public ConversionResponseDto convertCurrency(ConversionRequest request) {
-        BigDecimal exchangeRateValue = exchangeRateService.getExchangeRateValue(
-                request.getBankId(),
-                request.getFromCurrencyCode(),
-                request.getToCurrencyCode()
-        );
+        return toResponse(request, quote(request));
+    }
+
+    /**
+     * Finds the rate the request converts with. Requests that differ only in their amount get
+     * equal quotes, so a quote can be reused for all of them.
+     *
+     * @throws IllegalArgumentException if no rate is found, a conversion other than across banks names
+     *                                  no bank or the request combines asOf with a best-path mode
+     */
+    public Quote quote(ConversionRequest request) {
+        ConversionMode mode = request.getMode() == null ? ConversionMode.DIRECT : request.getMode();
+        if (request.getAsOf() != null && mode != ConversionMode.DIRECT) {
+            throw new IllegalArgumentException("asOf is only supported for direct conversions.");
+        }
+        // Without a bank, BEST_PATH would silently search the rates of all banks.
+        if (request.getBankId() == null && mode != ConversionMode.BEST_PATH_ANY_BANK) {
+            throw new IllegalArgumentException("bankId is required.");
+        }
+        if (mode != ConversionMode.DIRECT && rateEngine.isLoaded()) {
+            return quoteOverBestPath(request, mode);
+        }
+        BigDecimal exchangeRateValue = request.getAsOf() != null
+                ? getExchangeRateValueAsOf(request)
+                : getExchangeRateValue(
+                        request.getBankId(),
+                        request.getFromCurrencyCode(),
+                        request.getToCurrencyCode()
+                );
 
         if (exchangeRateValue == null) {
             throw new IllegalArgumentException(
                     "Exchange rate not found for this bank and currency pair.");
         }
+        return new Quote(exchangeRateValue, List.of(new ConversionStepDto(request.getBankId(),
+                request.getFromCurrencyCode(), request.getToCurrencyCode(), exchangeRateValue)));
+    }
 
+    /**
+     * Converts the amount of the request with a quote found for it. The converted amount is rounded
+     * to {@code currencies.convert.result-scale} digits with {@code currencies.convert.rounding}.
+     */
+    public ConversionResponseDto toResponse(ConversionRequest request, Quote quote) {
         BigDecimal amount = request.getAmount();
-        BigDecimal convertedAmount = amount.multiply(exchangeRateValue);
 
         ConversionResponseDto response = new ConversionResponseDto();
         response.setFromCurrency(request.getFromCurrencyCode());
         response.setToCurrency(request.getToCurrencyCode());
         response.setAmount(amount);
-        response.setConvertedAmount(convertedAmount);
-        response.setExchangeRate(exchangeRateValue);
-
+        response.setConvertedAmount(FixedPoint.multiply(amount, quote.getRate(), resultScale, rounding));
+        response.setExchangeRate(quote.getRate());
+        response.setPath(quote.getPath());
         return response;
     }
 
+    /**
+     * Converts the amount into every currency the bank has a rate to from {@code fromCurrencyCode}
+     * or, if {@code bankId} is {@code null}, into every such currency of every bank. Once the
+     * {@link RateEngine} is loaded this is one pass over its rates from the currency, otherwise one
+     * query; no rate is looked up per target.
+     *
+     * @throws IllegalArgumentException if the currency is unknown
+     */
+    public FanOutConversionDto convertToAll(Long bankId, String fromCurrencyCode, BigDecimal amount) {
+        if (!currencyRegistry.contains(fromCurrencyCode)) {
+            throw new IllegalArgumentException("Invalid 'from' currency code: " + fromCurrencyCode);
+        }
+        List<FanOutTargetDto> conversions = new ArrayList<>();
+        if (rateEngine.canFanOut(bankId, fromCurrencyCode)) {
+            rateEngine.forEachRateFrom(bankId, fromCurrencyCode, (rateBankId, toCurrencyCode, scaledRate) ->
+                    conversions.add(new FanOutTargetDto(rateBankId, toCurrencyCode,
+                            BigDecimal.valueOf(scaledRate, RateMatrix.SCALE),
+                            FixedPoint.multiply(amount, scaledRate, RateMatrix.SCALE, resultScale, rounding))));
+        } else {
+            for (Object[] row : exchangeRateService.getRatesFrom(bankId, fromCurrencyCode)) {
+                BigDecimal rate = (BigDecimal) row[2];
+                conversions.add(new FanOutTargetDto((Long) row[0], (String) row[1], rate,
+                        FixedPoint.multiply(amount, rate, resultScale, rounding)));
+            }
+        }
+        conversions.sort(BY_BANK_AND_CURRENCY);
+        return new FanOutConversionDto(fromCurrencyCode, amount, conversions);
+    }
+
+    private Quote quoteOverBestPath(ConversionRequest request, ConversionMode mode) {
+        RateGraph.Path path = rateEngine.findBestPath(
+                mode == ConversionMode.BEST_PATH_ANY_BANK ? null : request.getBankId(),
+                request.getFromCurrencyCode(),
+                request.getToCurrencyCode()
+        );
+        if (path == null) {
+            throw new IllegalArgumentException(
+                    "No chain of exchange rates found for this currency pair.");
+        }
+        return new Quote(path.getRate(), path.getHops().stream()
+                .map(hop -> new ConversionStepDto(hop.getBankId(), hop.getFromCurrencyCode(),
+                        hop.getToCurrencyCode(), hop.getRate()))
+                .collect(Collectors.toList()));
+    }
+
+    private BigDecimal getExchangeRateValue(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        if (rateEngine.canAnswer(bankId, fromCurrencyCode, toCurrencyCode)) {
+            return rateEngine.getRate(bankId, fromCurrencyCode, toCurrencyCode);
+        }
+        return exchangeRateService.getExchangeRateValue(bankId, fromCurrencyCode, toCurrencyCode);
+    }
+
+    private BigDecimal getExchangeRateValueAsOf(ConversionRequest request) {
+        ExchangeRateHistory rate = rateHistoryService.getRateAsOf(request.getBankId(),
+                request.getFromCurrencyCode(), request.getToCurrencyCode(), request.getAsOf());
+        return rate == null ? null : rate.getRate();
+    }
+
+    /** Returns the currency from the {@link CurrencyRegistry}, detached once the registry is loaded. */
     public Currency getCurrencyByCode(String code) {
-        return currencyRepository.findByCode(code);
+        return currencyRegistry.find(code);
     }
 
     public Currency createCurrency(String code, String name) {
         Currency currency = new Currency();
         currency.setCode(code);
         currency.setName(name);
-        return currencyRepository.save(currency);
+        Currency savedCurrency = currencyRepository.save(currency);
+        snapshotStore.recordCurrency(savedCurrency);
+        currencyRegistry.recordCurrency(savedCurrency);
+        cacheInvalidator.invalidate(CacheTags.CURRENCIES);
+        return savedCurrency;
     }
 
     public Optional<Currency> getCurrency(Long id) {
@@ -63,9 +194,15 @@ public class CurrencyService {
     public Currency updateCurrency(Long id, String newCode, String newName) {
         return currencyRepository.findById(id)
                 .map(currency -> {
+                    String oldCode = currency.getCode();
                     currency.setCode(newCode);
                     currency.setName(newName);
-                    return currencyRepository.save(currency);
+                    Currency savedCurrency = currencyRepository.save(currency);
+                    snapshotStore.recordCurrency(savedCurrency);
+                    currencyRegistry.recordCurrency(savedCurrency);
+                    cacheInvalidator.invalidate(CacheTags.CURRENCIES, CacheTags.currencyId(id),
+                            CacheTags.currency(oldCode), CacheTags.currency(newCode));
+                    return savedCurrency;
                 })
                 .orElse(null);
     }
@@ -73,8 +210,19 @@ public class CurrencyService {
     public boolean deleteCurrency(Long id) {
         if (currencyRepository.existsById(id)) {
             currencyRepository.deleteById(id);
+            snapshotStore.recordCurrencyRemoval(id);
+            currencyRegistry.recordCurrencyRemoval(id);
+            // Currencies referenced by rates cannot be deleted, so only currency responses depend on it.
+            cacheInvalidator.invalidate(CacheTags.CURRENCIES, CacheTags.currencyId(id));
             return true;
         }
         return false;
     }
-}
\ No newline at end of file
+
+    /** The rate a conversion uses and the rates it is made of. */
+    @lombok.Value
+    public static class Quote {
+        BigDecimal rate;
+        List<ConversionStepDto> path;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.utils.PersistentLongMap;
+import com.example.currencyconverter.utils.RateKey;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import lombok.Value;
+
+/**
+ * Immutable view of all banks, currencies and exchange rates as of one committed version.
+ *
+ * <p>Rows are ordered by id. A new version is made by {@link #toBuilder()}, which copies only the
+ * kinds of rows that change, so a reader holding a snapshot never sees later writes. Rates are kept
+ * in a {@link PersistentLongMap}, so a version shares all but the changed paths of the rates with
+ * the one it was built from; the few banks and currencies are copied whole. The index of rates by
+ * bank and pair is kept the same way and updated by the builder along with the rates.
+ */
+public final class DataSnapshot {
+
+    /** Version 0, without rows; the first version is built from it. */
+    public static final DataSnapshot EMPTY = new DataSnapshot(0, new TreeMap<>(), new TreeMap<>(), PersistentLongMap.empty(),
+            PersistentLongMap.empty(), Map.of());
+
+    private final long version;
+    // Never changed once the snapshot is built, and shared with later snapshots.
+    private final NavigableMap<Long, BankRow> banks;
+    private final NavigableMap<Long, CurrencyRow> currencies;
+    private final PersistentLongMap<RateRow> rates;
+    // Rates by the packed RateKey of their bank and pair, and the rare ones whose key does not pack.
+    private final PersistentLongMap<RateRow> ratesByPackedKey;
+    private final Map<RateKey, RateRow> ratesByUnpackedKey;
+    // Built on first use, racing builders compute the same index.
+    private volatile Map<Long, List<RateRow>> ratesByBank;
+
+    private DataSnapshot(long version, NavigableMap<Long, BankRow> banks, NavigableMap<Long, CurrencyRow> currencies,
+                         PersistentLongMap<RateRow> rates, PersistentLongMap<RateRow> ratesByPackedKey,
+                         Map<RateKey, RateRow> ratesByUnpackedKey) {
+        this.version = version;
+        this.banks = banks;
+        this.currencies = currencies;
+        this.rates = rates;
+        this.ratesByPackedKey = ratesByPackedKey;
+        this.ratesByUnpackedKey = ratesByUnpackedKey;
+    }
+
+    /** Grows by one with each committed transaction applied; the first version is set by the initial load. */
+    public long getVersion() {
+        return version;
+    }
+
+    public Collection<BankRow> getBanks() {
+        return Collections.unmodifiableCollection(banks.values());
+    }
+
+    public Collection<CurrencyRow> getCurrencies() {
+        return Collections.unmodifiableCollection(currencies.values());
+    }
+
+    public Collection<RateRow> getRates() {
+        return rates.values();
+    }
+
+    /** Returns the rate with the id, or {@code null}. */
+    public RateRow getRate(long id) {
+        return rates.get(id);
+    }
+
+    /** Returns the rate of the bank for the pair, or {@code null}. */
+    public RateRow getRate(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        long packed = RateKey.pack(bankId, fromCurrencyCode, toCurrencyCode);
+        return packed != RateKey.NOT_PACKED ? ratesByPackedKey.get(packed)
+                : ratesByUnpackedKey.get(RateKey.of(bankId, fromCurrencyCode, toCurrencyCode));
+    }
+
+    public List<RateRow> getRatesOfBank(long bankId) {
+        Map<Long, List<RateRow>> index = ratesByBank;
+        if (index == null) {
+            index = rates.values().stream().collect(Collectors.groupingBy(RateRow::getBankId));
+            ratesByBank = index;
+        }
+        return index.getOrDefault(bankId, List.of());
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /** Changes to apply on top of a snapshot. A builder makes one snapshot and must not be reused. */
+    public static final class Builder {
+        private final DataSnapshot base;
+        // Copied from the base on the first change of their kind.
+        private TreeMap<Long, BankRow> banks;
+        private TreeMap<Long, CurrencyRow> currencies;
+        private PersistentLongMap.Editor<RateRow> rates;
+        private PersistentLongMap.Editor<RateRow> ratesByPackedKey;
+        private HashMap<RateKey, RateRow> ratesByUnpackedKey;
+
+        private Builder(DataSnapshot base) {
+            this.base = base;
+        }
+
+        public Builder putBank(BankRow bank) {
+            banks().put(bank.getId(), bank);
+            return this;
+        }
+
+        /** Removes the bank together with its rates. */
+        public Builder removeBank(long id) {
+            if (banks().remove(id) != null) {
+                rates().removeIf(rate -> rate.getBankId() == id).forEach(this::unindex);
+            }
+            return this;
+        }
+
+        public Builder putCurrency(CurrencyRow currency) {
+            currencies().put(currency.getId(), currency);
+            return this;
+        }
+
+        public Builder removeCurrency(long id) {
+            currencies().remove(id);
+            return this;
+        }
+
+        public Builder putRate(RateRow rate) {
+            RateRow previous = rates().put(rate.getId(), rate);
+            if (previous != null) {
+                unindex(previous);
+            }
+            long packed = RateKey.pack(rate.getBankId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
+            if (packed != RateKey.NOT_PACKED) {
+                ratesByPackedKey().put(packed, rate);
+            } else {
+                ratesByUnpackedKey().put(RateKey.of(rate.getBankId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode()), rate);
+            }
+            return this;
+        }
+
+        public Builder removeRate(long id) {
+            RateRow previous = rates().remove(id);
+            if (previous != null) {
+                unindex(previous);
+            }
+            return this;
+        }
+
+        public DataSnapshot build(long version) {
+            return new DataSnapshot(version,
+                    banks != null ? banks : base.banks,
+                    currencies != null ? currencies : base.currencies,
+                    rates != null ? rates.build() : base.rates,
+                    ratesByPackedKey != null ? ratesByPackedKey.build() : base.ratesByPackedKey,
+                    ratesByUnpackedKey != null ? ratesByUnpackedKey : base.ratesByUnpackedKey);
+        }
+
+        /** Drops the rate from the key index unless another rate took its key. */
+        private void unindex(RateRow rate) {
+            long packed = RateKey.pack(rate.getBankId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
+            if (packed != RateKey.NOT_PACKED) {
+                RateRow indexed = ratesByPackedKey().get(packed);
+                if (indexed != null && indexed.getId() == rate.getId()) {
+                    ratesByPackedKey().remove(packed);
+                }
+            } else {
+                RateKey key = RateKey.of(rate.getBankId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
+                RateRow indexed = ratesByUnpackedKey().get(key);
+                if (indexed != null && indexed.getId() == rate.getId()) {
+                    ratesByUnpackedKey().remove(key);
+                }
+            }
+        }
+
+        private TreeMap<Long, BankRow> banks() {
+            if (banks == null) {
+                banks = new TreeMap<>(base.banks);
+            }
+            return banks;
+        }
+
+        private TreeMap<Long, CurrencyRow> currencies() {
+            if (currencies == null) {
+                currencies = new TreeMap<>(base.currencies);
+            }
+            return currencies;
+        }
+
+        private PersistentLongMap.Editor<RateRow> rates() {
+            if (rates == null) {
+                rates = base.rates.edit();
+            }
+            return rates;
+        }
+
+        private PersistentLongMap.Editor<RateRow> ratesByPackedKey() {
+            if (ratesByPackedKey == null) {
+                ratesByPackedKey = base.ratesByPackedKey.edit();
+            }
+            return ratesByPackedKey;
+        }
+
+        private HashMap<RateKey, RateRow> ratesByUnpackedKey() {
+            if (ratesByUnpackedKey == null) {
+                ratesByUnpackedKey = new HashMap<>(base.ratesByUnpackedKey);
+            }
+            return ratesByUnpackedKey;
+        }
+    }
+
+    @Value
+    public static class BankRow {
+        long id;
+        String name;
+    }
+
+    @Value
+    public static class CurrencyRow {
+        long id;
+        String code;
+        String name;
+    }
+
+    @Value
+    public static class RateRow {
+        long id;
+        long bankId;
+        String fromCurrencyCode;
+        String toCurrencyCode;
+        BigDecimal rate;
+    }
+}
@@ -1,27 +1,38 @@
 package com.example.currencyconverter.service;
 
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.dto.ExchangeRateCreateRequestDto;
+import com.example.currencyconverter.dto.ExchangeRateUpsertResultDto;
 import com.example.currencyconverter.entity.Bank;
-import com.example.currencyconverter.entity.Currency;
 import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
 import com.example.currencyconverter.exception.CurrencyNotFoundException;
 import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.model.UpsertOutcome;
 import com.example.currencyconverter.repository.BankRepository;
-import com.example.currencyconverter.repository.CurrencyRepository;
 import com.example.currencyconverter.repository.ExchangeRateRepository;
 import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.utils.RateGraph;
+import com.example.currencyconverter.utils.RateKey;
+import com.example.currencyconverter.utils.RateRanking;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,14 +43,28 @@ public class ExchangeRateService {
 
     private final ExchangeRateRepository exchangeRateRepository;
     private final BankRepository bankRepository;
-    private final CurrencyRepository currencyRepository;
-    private final InMemoryCache<String, Object> exchangeRateCache;
+    private final CurrencyRegistry currencyRegistry;
+    private final InMemoryCache<RateKey, BigDecimal> exchangeRateCache;
+    private final CacheInvalidator cacheInvalidator;
+    private final NegativeLookupCache negativeLookupCache;
+    private final RateEngine rateEngine;
+    private final SnapshotStore snapshotStore;
+    private final RateHistoryService rateHistoryService;
+
+    // Kept in fields so that a cache hit does not allocate capturing lambdas.
+    private final Function<RateKey, BigDecimal> rateLoader = key ->
+            loadExchangeRateValue(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+    private final BiFunction<RateKey, BigDecimal, List<String>> rateTagger = (key, value) ->
+            List.of(CacheTags.bank(key.getBankId()), CacheTags.pair(key.getFromCurrencyCode(), key.getToCurrencyCode()));
 
     @Value("${cache.enabled:true}")
     private boolean cacheEnabled;
 
-    private String getCacheKey(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
-        return bankId + "-" + fromCurrencyCode + "-" + toCurrencyCode;
+    private RateKey getCacheKey(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        if (bankId == null) {
+            throw new IllegalArgumentException("bankId is required.");
+        }
+        return RateKey.of(bankId, fromCurrencyCode, toCurrencyCode);
     }
 
     @Transactional
@@ -67,13 +92,19 @@ public class ExchangeRateService {
 
         ExchangeRate savedRate = exchangeRateRepository.save(exchangeRate);
         log.info("Successfully created exchange rate with id: {}", savedRate.getId());
-        clearCacheForRate(bankId, fromCurrencyCode, toCurrencyCode);
+        negativeLookupCache.recordRate(bankId, fromCurrencyCode, toCurrencyCode);
+        rateEngine.recordRate(savedRate.getId(), bankId, fromCurrencyCode, toCurrencyCode, savedRate.getRate());
+        snapshotStore.recordRate(savedRate);
+        rateHistoryService.recordRate(bankId, fromCurrencyCode, toCurrencyCode, savedRate.getRate());
+        clearCacheForRate(savedRate.getId(), bankId, fromCurrencyCode, toCurrencyCode);
         return savedRate;
     }
 
 
     /**
-     * Creates multiple exchange rates in a single transaction using Stream API.
+     * Creates multiple exchange rates in a single transaction. Duplicates are checked with one query
+     * for all rates, the inserts are batched and the caches and in-memory structures are updated
+     * once for the whole list.
      *
      * @param requests List of DTOs containing data for new exchange rates.
      * @return List of created ExchangeRate entities.
@@ -90,15 +121,8 @@ public class ExchangeRateService {
         Set<Long> bankIds = requests.stream()
                 .map(ExchangeRateCreateRequestDto::getBankId)
                 .collect(Collectors.toSet());
-        Set<String> currencyCodes = requests.stream()
-                .flatMap(r -> Stream.of(r.getFromCurrencyCode(), r.getToCurrencyCode()))
-                .collect(Collectors.toSet());
         Map<Long, Bank> banksMap = bankRepository.findAllById(bankIds).stream()
                 .collect(Collectors.toMap(Bank::getId, Function.identity()));
-        Map<String, Currency> currenciesMap = currencyRepository.findAll().stream()
-                .filter(c -> currencyCodes.contains(c.getCode()))
-                .collect(Collectors.toMap(Currency::getCode, Function.identity()));
-
 
         List<ExchangeRate> entitiesToSave = requests.stream()
                 .map(request -> {
@@ -107,15 +131,14 @@ public class ExchangeRateService {
                         log.error("Bank not found for ID: {} in bulk request.", request.getBankId());
                         throw new CurrencyNotFoundException("Bank not found with id: " + request.getBankId());
                     }
-                    if (!currenciesMap.containsKey(request.getFromCurrencyCode())) {
+                    if (!currencyRegistry.contains(request.getFromCurrencyCode())) {
                         log.error("FromCurrency not found for code: {} in bulk request.", request.getFromCurrencyCode());
                         throw new InvalidInputDataException("Invalid 'from' currency code: " + request.getFromCurrencyCode());
                     }
-                    if (!currenciesMap.containsKey(request.getToCurrencyCode())) {
+                    if (!currencyRegistry.contains(request.getToCurrencyCode())) {
                         log.error("ToCurrency not found for code: {} in bulk request.", request.getToCurrencyCode());
                         throw new InvalidInputDataException("Invalid 'to' currency code: " + request.getToCurrencyCode());
                     }
-                    validateDuplicateRate(request.getBankId(), request.getFromCurrencyCode(), request.getToCurrencyCode());
                     return ExchangeRate.builder()
                             .bank(bank)
                             .fromCurrencyCode(request.getFromCurrencyCode())
@@ -124,13 +147,103 @@ public class ExchangeRateService {
                             .build();
                 })
                 .collect(Collectors.toList());
+        validateNoDuplicateRates(entitiesToSave);
         List<ExchangeRate> savedEntities = exchangeRateRepository.saveAll(entitiesToSave);
         log.info("Successfully saved {} exchange rates.", savedEntities.size());
-        savedEntities.forEach(rate -> clearCacheForRate(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode()));
+        negativeLookupCache.recordRates(savedEntities);
+        rateEngine.recordRates(savedEntities);
+        snapshotStore.recordRates(savedEntities);
+        rateHistoryService.recordRates(savedEntities);
+        clearCacheForRates(savedEntities);
         log.debug("Cache cleared for {} newly created exchange rates.", savedEntities.size());
 
         return savedEntities;
     }
+
+    /**
+     * Inserts the rates, or replaces the rate of those the bank already quotes, in one statement.
+     * Each rate is validated on its own: an unknown bank or currency, or a pair listed again for the
+     * same bank, rejects only that rate. Rates equal to the stored ones are not written, and only the
+     * rates written are recorded and invalidated in the caches.
+     *
+     * @return one result per request, in the order of the requests
+     */
+    @Transactional
+    public List<ExchangeRateUpsertResultDto> upsertExchangeRatesBulk(List<ExchangeRateCreateRequestDto> requests) {
+        if (requests == null || requests.isEmpty()) {
+            log.warn("Bulk upsert request list is null or empty.");
+            return new ArrayList<>();
+        }
+        log.info("Attempting to upsert {} exchange rates in bulk.", requests.size());
+        Map<Long, Bank> banks = bankRepository.findAllById(requests.stream()
+                        .map(ExchangeRateCreateRequestDto::getBankId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Bank::getId, Function.identity()));
+
+        List<ExchangeRateUpsertResultDto> results = new ArrayList<>(requests.size());
+        Map<RateKey, Integer> indexByKey = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ExchangeRateCreateRequestDto request = requests.get(i);
+            RateKey key = getCacheKey(request.getBankId(), request.getFromCurrencyCode(), request.getToCurrencyCode());
+            String error = null;
+            if (!banks.containsKey(request.getBankId())) {
+                error = "Bank not found with id: " + request.getBankId();
+            } else if (!currencyRegistry.contains(request.getFromCurrencyCode())) {
+                error = "Invalid 'from' currency code: " + request.getFromCurrencyCode();
+            } else if (!currencyRegistry.contains(request.getToCurrencyCode())) {
+                error = "Invalid 'to' currency code: " + request.getToCurrencyCode();
+            } else if (indexByKey.putIfAbsent(key, i) != null) {
+                error = String.format("Exchange rate from %s to %s is listed more than once for this bank.",
+                        request.getFromCurrencyCode(), request.getToCurrencyCode());
+            }
+            results.add(new ExchangeRateUpsertResultDto(i, error == null ? UpsertOutcome.UNCHANGED : UpsertOutcome.REJECTED, null, error));
+        }
+        if (indexByKey.isEmpty()) {
+            log.warn("All {} exchange rates of the bulk upsert were rejected.", requests.size());
+            return results;
+        }
+
+        // Sorted so that concurrent upserts lock the rows in the same order.
+        List<RateKey> keys = new ArrayList<>(indexByKey.keySet());
+        keys.sort(Comparator.comparingLong(RateKey::getBankId)
+                .thenComparing(RateKey::getFromCurrencyCode)
+                .thenComparing(RateKey::getToCurrencyCode));
+        Long[] bankIds = new Long[keys.size()];
+        String[] fromCodes = new String[keys.size()];
+        String[] toCodes = new String[keys.size()];
+        BigDecimal[] rates = new BigDecimal[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            RateKey key = keys.get(i);
+            bankIds[i] = key.getBankId();
+            fromCodes[i] = key.getFromCurrencyCode();
+            toCodes[i] = key.getToCurrencyCode();
+            rates[i] = requests.get(indexByKey.get(key)).getRate();
+        }
+
+        List<ExchangeRate> written = new ArrayList<>();
+        for (Object[] row : exchangeRateRepository.upsertRates(bankIds, fromCodes, toCodes, rates)) {
+            ExchangeRate rate = ExchangeRate.builder()
+                    .id((Long) row[0])
+                    .bank(banks.get((Long) row[1]))
+                    .fromCurrencyCode((String) row[2])
+                    .toCurrencyCode((String) row[3])
+                    .rate((BigDecimal) row[4])
+                    .build();
+            ExchangeRateUpsertResultDto result = results.get(indexByKey.get(getCacheKey(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode())));
+            result.setOutcome((Boolean) row[5] ? UpsertOutcome.INSERTED : UpsertOutcome.UPDATED);
+            result.setId(rate.getId());
+            written.add(rate);
+        }
+        log.info("Bulk upsert wrote {} of {} exchange rates.", written.size(), requests.size());
+        if (!written.isEmpty()) {
+            negativeLookupCache.recordRates(written);
+            rateEngine.recordRates(written);
+            snapshotStore.recordRates(written);
+            rateHistoryService.recordRates(written);
+            clearCacheForRates(written);
+        }
+        return results;
+    }
     @Transactional
     public ExchangeRate updateExchangeRate(
             Long id, String fromCurrencyCode, String toCurrencyCode, BigDecimal newRate) {
@@ -157,7 +270,13 @@ public class ExchangeRateService {
                 }
             });
         }
-        clearCacheForRate(exchangeRate.getBank().getId(), exchangeRate.getFromCurrencyCode(), exchangeRate.getToCurrencyCode());
+        clearCacheForRate(id, exchangeRate.getBank().getId(), exchangeRate.getFromCurrencyCode(), exchangeRate.getToCurrencyCode());
+        boolean pairChanged = !exchangeRate.getFromCurrencyCode().equals(fromCurrencyCode) || !exchangeRate.getToCurrencyCode().equals(toCurrencyCode);
+        boolean rateChanged = pairChanged || exchangeRate.getRate() == null || exchangeRate.getRate().compareTo(newRate) != 0;
+        if (pairChanged) {
+            rateEngine.recordRemoval(exchangeRate.getBank().getId(), exchangeRate.getFromCurrencyCode(), exchangeRate.getToCurrencyCode());
+            rateHistoryService.recordRemoval(exchangeRate.getBank().getId(), exchangeRate.getFromCurrencyCode(), exchangeRate.getToCurrencyCode());
+        }
 
         exchangeRate.setFromCurrencyCode(fromCurrencyCode);
         exchangeRate.setToCurrencyCode(toCurrencyCode);
@@ -165,7 +284,13 @@ public class ExchangeRateService {
 
         ExchangeRate updatedRate = exchangeRateRepository.save(exchangeRate);
         log.info("Successfully updated exchange rate with id: {}", updatedRate.getId());
-        clearCacheForRate(updatedRate.getBank().getId(), updatedRate.getFromCurrencyCode(), updatedRate.getToCurrencyCode());
+        negativeLookupCache.recordRate(updatedRate.getBank().getId(), updatedRate.getFromCurrencyCode(), updatedRate.getToCurrencyCode());
+        rateEngine.recordRate(updatedRate.getId(), updatedRate.getBank().getId(), updatedRate.getFromCurrencyCode(), updatedRate.getToCurrencyCode(), updatedRate.getRate());
+        snapshotStore.recordRate(updatedRate);
+        if (rateChanged) {
+            rateHistoryService.recordRate(updatedRate.getBank().getId(), updatedRate.getFromCurrencyCode(), updatedRate.getToCurrencyCode(), updatedRate.getRate());
+        }
+        clearCacheForRate(id, updatedRate.getBank().getId(), updatedRate.getFromCurrencyCode(), updatedRate.getToCurrencyCode());
         return updatedRate;
     }
 
@@ -186,44 +311,73 @@ public class ExchangeRateService {
         return exchangeRateRepository.findById(id);
     }
 
+    /**
+     * Returns the rate for the pair, served from the cache when enabled. Cached rates expire after
+     * {@code cache.regions.rate-values.expire-after-write}; hot ones are reloaded in the background once
+     * they are older than {@code refresh-after-write}, so readers keep getting the current value meanwhile.
+     * Pairs that are known not to exist are answered with {@code null} by the {@link NegativeLookupCache}
+     * without querying the database.
+     */
     public BigDecimal getExchangeRateValue(
             Long bankId, String fromCurrencyCode, String toCurrencyCode) {
-        log.trace("Attempting to get exchange rate value for bankId: {}, from: {}, to: {}", bankId, fromCurrencyCode, toCurrencyCode);
-        String cacheKey = getCacheKey(bankId, fromCurrencyCode, toCurrencyCode);
+        if (log.isTraceEnabled()) {
+            log.trace("Attempting to get exchange rate value for bankId: {}, from: {}, to: {}", bankId, fromCurrencyCode, toCurrencyCode);
+        }
+        RateKey cacheKey = getCacheKey(bankId, fromCurrencyCode, toCurrencyCode);
+        if (negativeLookupCache.isKnownMissing(cacheKey)) {
+            log.debug("Exchange rate known to be missing for bankId: {}, from: {}, to: {}", bankId, fromCurrencyCode, toCurrencyCode);
+            return null;
+        }
+        if (!cacheEnabled) {
+            return loadExchangeRateValue(bankId, fromCurrencyCode, toCurrencyCode);
+        }
+        return exchangeRateCache.get(cacheKey, rateLoader, rateTagger);
+    }
 
-        if (cacheEnabled) {
-            Object cachedValue = exchangeRateCache.get(cacheKey);
-            if (cachedValue instanceof BigDecimal) {
-                log.trace("Cache hit for key: {}", cacheKey);
-                return (BigDecimal) cachedValue;
-            } else if (cachedValue != null) {
-                log.warn("Invalid cache entry type found for key: {}. Expected BigDecimal, got {}. Evicting.", cacheKey, cachedValue.getClass().getName());
-                exchangeRateCache.evict(cacheKey);
-            }
-            log.trace("Cache miss for key: {}", cacheKey);
+    /**
+     * Puts the first {@code limit} rates by id with ids in {@code (afterId, maxId]} into the rate
+     * cache, keeping values that are already cached. Used to warm the cache at startup; the next
+     * page starts after {@link PreloadedPage#getLastId()}.
+     */
+    public PreloadedPage preloadExchangeRateValues(long afterId, long maxId, int limit) {
+        if (!cacheEnabled) {
+            return new PreloadedPage(0, afterId);
+        }
+        // Rates rewritten and evicted while the page is read are not stored from it.
+        long stamp = exchangeRateCache.invalidationStamp();
+        List<Object[]> rows = exchangeRateRepository.findRateValuesAfterId(afterId, maxId, PageRequest.of(0, limit));
+        long lastId = afterId;
+        for (Object[] row : rows) {
+            lastId = (Long) row[0];
+            RateKey cacheKey = getCacheKey((Long) row[1], (String) row[2], (String) row[3]);
+            BigDecimal rate = (BigDecimal) row[4];
+            exchangeRateCache.putIfAbsent(cacheKey, rate, rateTagger.apply(cacheKey, rate), stamp);
         }
+        log.debug("Preloaded {} exchange rates with ids in ({}, {}]", rows.size(), afterId, lastId);
+        return new PreloadedPage(rows.size(), lastId);
+    }
 
+    private BigDecimal loadExchangeRateValue(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        // A rate created while the row is read must not be remembered as missing.
+        long missStamp = negativeLookupCache.invalidationStamp();
         Optional<ExchangeRate> exchangeRateOpt = exchangeRateRepository
                 .findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                         bankId, fromCurrencyCode, toCurrencyCode);
 
         if (exchangeRateOpt.isEmpty()) {
             log.warn("Exchange rate not found in DB for bankId: {}, from: {}, to: {}", bankId, fromCurrencyCode, toCurrencyCode);
+            negativeLookupCache.recordMiss(getCacheKey(bankId, fromCurrencyCode, toCurrencyCode), missStamp);
             return null;
         }
-
-        BigDecimal rate = exchangeRateOpt.get().getRate();
-
-        if (cacheEnabled) {
-            log.trace("Putting value into cache for key: {}", cacheKey);
-            exchangeRateCache.put(cacheKey, rate);
-        }
-
-        return rate;
+        return exchangeRateOpt.get().getRate();
     }
 
     public ExchangeRate getMinRate(String fromCurrencyCode, String toCurrencyCode) {
         log.debug("Finding minimum exchange rate from {} to {}", fromCurrencyCode, toCurrencyCode);
+        if (rateEngine.canRank(fromCurrencyCode, toCurrencyCode)) {
+            RateRanking.Ranking ranking = rankingOf(fromCurrencyCode, toCurrencyCode);
+            return ranking.size() == 0 ? null : toExchangeRate(ranking, 0, fromCurrencyCode, toCurrencyCode);
+        }
         validateCurrencyCode(fromCurrencyCode, "from");
         validateCurrencyCode(toCurrencyCode, "to");
 
@@ -237,14 +391,113 @@ public class ExchangeRateService {
         return rates.get(0);
     }
 
+    public ExchangeRate getMaxRate(String fromCurrencyCode, String toCurrencyCode) {
+        log.debug("Finding maximum exchange rate from {} to {}", fromCurrencyCode, toCurrencyCode);
+        if (rateEngine.canRank(fromCurrencyCode, toCurrencyCode)) {
+            RateRanking.Ranking ranking = rankingOf(fromCurrencyCode, toCurrencyCode);
+            int last = ranking.size() - 1;
+            return last < 0 ? null : toExchangeRate(ranking, last, fromCurrencyCode, toCurrencyCode);
+        }
+        validateCurrencyCode(fromCurrencyCode, "from");
+        validateCurrencyCode(toCurrencyCode, "to");
+
+        List<ExchangeRate> rates = exchangeRateRepository.findMaxRate(fromCurrencyCode, toCurrencyCode);
+        if (rates.isEmpty()) {
+            log.info("No exchange rates found from {} to {}", fromCurrencyCode, toCurrencyCode);
+            return null;
+        }
+        return rates.get(0);
+    }
+
+    /**
+     * Returns the rates of all banks for the pair, ordered by rate and then by bank id.
+     *
+     * @param descending {@code true} to start with the highest rate
+     * @param limit      maximum number of rates to return
+     */
+    public List<ExchangeRate> getRankedRates(String fromCurrencyCode, String toCurrencyCode, boolean descending, int limit) {
+        log.debug("Ranking exchange rates from {} to {}, descending: {}, limit: {}", fromCurrencyCode, toCurrencyCode, descending, limit);
+        if (rateEngine.canRank(fromCurrencyCode, toCurrencyCode)) {
+            RateRanking.Ranking ranking = rankingOf(fromCurrencyCode, toCurrencyCode);
+            int count = Math.min(limit, ranking.size());
+            List<ExchangeRate> rates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = descending ? ranking.size() - 1 - i : i;
+                rates.add(toExchangeRate(ranking, index, fromCurrencyCode, toCurrencyCode));
+            }
+            return rates;
+        }
+        validateCurrencyCode(fromCurrencyCode, "from");
+        validateCurrencyCode(toCurrencyCode, "to");
+
+        List<ExchangeRate> rates = new ArrayList<>(exchangeRateRepository
+                .findByFromCurrencyCodeAndToCurrencyCodeOrderByRateAscBankIdAsc(fromCurrencyCode, toCurrencyCode));
+        if (descending) {
+            Collections.reverse(rates);
+        }
+        return rates.size() > limit ? new ArrayList<>(rates.subList(0, limit)) : rates;
+    }
+
+    /**
+     * Returns (bankId, toCurrencyCode, rate) of every rate from the currency, of the bank or, if
+     * {@code bankId} is {@code null}, of all banks, in one query.
+     */
+    public List<Object[]> getRatesFrom(Long bankId, String fromCurrencyCode) {
+        log.debug("Fetching exchange rates from {} for bankId: {}", fromCurrencyCode, bankId);
+        return exchangeRateRepository.findRatesFrom(bankId, fromCurrencyCode);
+    }
+
+    /**
+     * Returns the loops of rates, at any banks, whose rates multiply to more than one, the most
+     * profitable first.
+     *
+     * @throws CacheLoadTimeoutException while the rates are still being loaded
+     */
+    public List<RateGraph.Path> getArbitrageLoops() {
+        if (!rateEngine.isLoaded()) {
+            throw new CacheLoadTimeoutException("Exchange rates are still being loaded, try again later");
+        }
+        return rateEngine.getArbitrageLoops();
+    }
+
+    /** Returns {@code true} if the best rates of the pair are answered from memory, so caching them gains nothing. */
+    public boolean isRankedInMemory(String fromCurrencyCode, String toCurrencyCode) {
+        return rateEngine.canRank(fromCurrencyCode, toCurrencyCode);
+    }
+
+    /** Returns the in-memory ranking of the pair, validating the codes only when no bank quotes it. */
+    private RateRanking.Ranking rankingOf(String fromCurrencyCode, String toCurrencyCode) {
+        RateRanking.Ranking ranking = rateEngine.getRanking(fromCurrencyCode, toCurrencyCode);
+        if (ranking.size() == 0) {
+            validateCurrencyCode(fromCurrencyCode, "from");
+            validateCurrencyCode(toCurrencyCode, "to");
+        }
+        return ranking;
+    }
+
+    /** Builds a detached entity for a ranked rate; only the id of its bank is set. */
+    private ExchangeRate toExchangeRate(RateRanking.Ranking ranking, int index, String fromCurrencyCode, String toCurrencyCode) {
+        return ExchangeRate.builder()
+                .id(ranking.rateId(index))
+                .bank(Bank.builder().id(ranking.bankId(index)).build())
+                .fromCurrencyCode(fromCurrencyCode)
+                .toCurrencyCode(toCurrencyCode)
+                .rate(ranking.rate(index))
+                .build();
+    }
+
     @Transactional
     public boolean deleteExchangeRate(Long id) {
         log.debug("Attempting to delete exchange rate with id: {}", id);
         Optional<ExchangeRate> rateOpt = exchangeRateRepository.findById(id);
         if (rateOpt.isPresent()) {
             ExchangeRate rate = rateOpt.get();
-            clearCacheForRate(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
+            clearCacheForRate(id, rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
             exchangeRateRepository.deleteById(id);
+            negativeLookupCache.recordRemoval();
+            rateEngine.recordRemoval(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
+            snapshotStore.recordRateRemoval(id);
+            rateHistoryService.recordRemoval(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
             log.info("Successfully deleted exchange rate with id: {}", id);
             return true;
         } else {
@@ -252,15 +505,27 @@ public class ExchangeRateService {
             return false;
         }
     }
-    private void clearCacheForRate(Long bankId, String fromCode, String toCode) {
+    private void clearCacheForRate(Long rateId, Long bankId, String fromCode, String toCode) {
         if (cacheEnabled) {
-            String cacheKey = getCacheKey(bankId, fromCode, toCode);
+            RateKey cacheKey = getCacheKey(bankId, fromCode, toCode);
             log.trace("Clearing cache for key: {}", cacheKey);
             exchangeRateCache.evict(cacheKey);
         }
+        cacheInvalidator.invalidate(CacheTags.forRate(rateId, bankId, fromCode, toCode));
+    }
+    /** Evicts the rates and invalidates the union of their cache tags in one step. */
+    private void clearCacheForRates(List<ExchangeRate> rates) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (ExchangeRate rate : rates) {
+            if (cacheEnabled) {
+                exchangeRateCache.evict(getCacheKey(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode()));
+            }
+            tags.addAll(CacheTags.forRate(rate.getId(), rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode()));
+        }
+        cacheInvalidator.invalidate(tags);
     }
     private void validateCurrencyCode(String currencyCode, String type) {
-        if (currencyRepository.findByCode(currencyCode) == null) {
+        if (!currencyRegistry.contains(currencyCode)) {
             log.warn("{}Currency not found with code: {}", type.substring(0, 1).toUpperCase() + type.substring(1), currencyCode);
             throw new InvalidInputDataException(String.format("Invalid '%s' currency code: %s", type, currencyCode));
         }
@@ -270,10 +535,41 @@ public class ExchangeRateService {
                 bankId, fromCurrencyCode, toCurrencyCode
         );
         if (existingRate.isPresent()) {
-            log.warn("Duplicate exchange rate detected for bankId: {}, from: {}, to: {}", bankId, fromCurrencyCode, toCurrencyCode);
-            throw new InvalidInputDataException(String.format(
-                    "Exchange rate from %s to %s already exists for this bank.", fromCurrencyCode, toCurrencyCode
-            ));
+            throw duplicateRate(bankId, fromCurrencyCode, toCurrencyCode);
         }
     }
-}
\ No newline at end of file
+    /** Rejects rates that exist already or are in the list twice, with one query for all of them. */
+    private void validateNoDuplicateRates(List<ExchangeRate> rates) {
+        Set<RateKey> keys = new HashSet<>();
+        Long[] bankIds = new Long[rates.size()];
+        String[] fromCodes = new String[rates.size()];
+        String[] toCodes = new String[rates.size()];
+        for (int i = 0; i < rates.size(); i++) {
+            ExchangeRate rate = rates.get(i);
+            if (!keys.add(RateKey.of(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode()))) {
+                throw duplicateRate(rate.getBank().getId(), rate.getFromCurrencyCode(), rate.getToCurrencyCode());
+            }
+            bankIds[i] = rate.getBank().getId();
+            fromCodes[i] = rate.getFromCurrencyCode();
+            toCodes[i] = rate.getToCurrencyCode();
+        }
+        List<Object[]> existing = exchangeRateRepository.findExistingRateKeys(bankIds, fromCodes, toCodes);
+        if (!existing.isEmpty()) {
+            Object[] row = existing.get(0);
+            throw duplicateRate((Long) row[0], (String) row[1], (String) row[2]);
+        }
+    }
+    private InvalidInputDataException duplicateRate(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        log.warn("Duplicate exchange rate detected for bankId: {}, from: {}, to: {}", bankId, fromCurrencyCode, toCurrencyCode);
+        return new InvalidInputDataException(String.format(
+                "Exchange rate from %s to %s already exists for this bank.", fromCurrencyCode, toCurrencyCode
+        ));
+    }
+
+    /** The rates read by one {@link #preloadExchangeRateValues} call; a short page is the last one. */
+    @lombok.Value
+    public static class PreloadedPage {
+        int count;
+        long lastId;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.config.CacheConfig;
+import com.example.currencyconverter.config.CacheTags;
+import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.model.WrittenRates;
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.utils.BloomFilter;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
+import com.example.currencyconverter.utils.RateKey;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Answers lookups of exchange rates that do not exist without querying the database.
+ *
+ * <p>A {@link BloomFilter} holds every existing (bankId, from, to) triple; a triple it does not
+ * contain certainly has no rate. It is built when the application is ready and rates are added
+ * as they are created. Deleted rates cannot be taken out, so once enough rates were deleted since
+ * the last build the filter is rebuilt in the background. Triples that pass the filter but were
+ * not found are remembered for a short time in the {@link CacheConfig#RATE_MISSES} region, tagged
+ * like the rate so creating it drops the entry.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NegativeLookupCache {
+
+    private static final int MIN_EXPECTED_RATES = 1024;
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final InMemoryCacheManager cacheManager;
+
+    @Value("${rates.negative-lookup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rates.negative-lookup.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private final Object filterLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong removedSinceBuild = new AtomicLong();
+    // Null until the first build, until then every triple might exist.
+    private volatile BloomFilter filter;
+    // Filter being built, receives the rates added meanwhile as well.
+    private BloomFilter pending;
+    private volatile long sizedFor;
+
+    /** Returns {@code true} when the triple is known to have no exchange rate. */
+    public boolean isKnownMissing(RateKey key) {
+        if (!enabled) {
+            return false;
+        }
+        BloomFilter current = filter;
+        // Keys that do not pack are never put in the filter, so it cannot rule them out.
+        if (current != null && key.getPacked() != RateKey.NOT_PACKED && !current.mightContain(key.getPacked())) {
+            log.trace("Bloom filter rules out rate for key: {}", key);
+            return true;
+        }
+        return cacheManager.getCache(CacheConfig.RATE_MISSES).get(key) != null;
+    }
+
+    /** Returns the stamp to take before the database read whose miss is passed to {@link #recordMiss}. */
+    public long invalidationStamp() {
+        return cacheManager.getCache(CacheConfig.RATE_MISSES).invalidationStamp();
+    }
+
+    /**
+     * Remembers for a short time that the triple was looked up and not found. The miss is not
+     * stored if the rate was created after {@link #invalidationStamp()} returned {@code stamp}:
+     * the read may have missed the new row, and its tag invalidation has already run.
+     */
+    public void recordMiss(RateKey key, long stamp) {
+        if (enabled) {
+            cacheManager.getCache(CacheConfig.RATE_MISSES).putIfAbsent(key, Boolean.TRUE,
+                    List.of(CacheTags.bank(key.getBankId()), CacheTags.pair(key.getFromCurrencyCode(), key.getToCurrencyCode())),
+                    stamp);
+        }
+    }
+
+    /**
+     * Adds a created rate. It is added right away, so readers never see the committed row ruled
+     * out, and again after commit, in case a rebuild read the table before the row was committed.
+     */
+    public void recordRate(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        long key = RateKey.pack(bankId, fromCurrencyCode, toCurrencyCode);
+        if (key == RateKey.NOT_PACKED) {
+            return;
+        }
+        add(key);
+        AfterCommit.run(() -> add(key));
+    }
+
+    /** Adds created rates, like {@link #recordRate}, with one after-commit step for all of them. */
+    public void recordRates(List<ExchangeRate> rates) {
+        recordRates(WrittenRates.of(rates));
+    }
+
+    /** Adds the rates written by a set-based statement, like {@link #recordRates(List)}. */
+    public void recordRates(WrittenRates rates) {
+        long[] keys = IntStream.range(0, rates.size())
+                .mapToLong(i -> RateKey.pack(rates.getBankId(i), rates.getFromCurrencyCode(i), rates.getToCurrencyCode(i)))
+                .filter(key -> key != RateKey.NOT_PACKED)
+                .toArray();
+        for (long key : keys) {
+            add(key);
+        }
+        AfterCommit.run(() -> {
+            for (long key : keys) {
+                add(key);
+            }
+        });
+    }
+
+    /** Notes a deleted rate; the filter keeps matching it until the next rebuild. */
+    public void recordRemoval() {
+        long threshold = Math.max(MIN_EXPECTED_RATES, sizedFor / 10);
+        if (enabled && removedSinceBuild.incrementAndGet() >= threshold && !rebuilding.get()) {
+            log.info("{} rates deleted since the last build, rebuilding the negative lookup filter", threshold);
+            CompletableFuture.runAsync(this::rebuild);
+        }
+    }
+
+    /** Builds the filter from the table; does nothing while another build is running. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long expected = Math.max(MIN_EXPECTED_RATES, exchangeRateRepository.count() * 2);
+            BloomFilter next = new BloomFilter(expected, falsePositiveRate);
+            synchronized (filterLock) {
+                pending = next;
+            }
+            long removedBefore = removedSinceBuild.get();
+            List<Object[]> keys = exchangeRateRepository.findAllRateKeys();
+            for (Object[] row : keys) {
+                long key = RateKey.pack((Long) row[0], (String) row[1], (String) row[2]);
+                if (key != RateKey.NOT_PACKED) {
+                    next.put(key);
+                }
+            }
+            synchronized (filterLock) {
+                filter = next;
+                pending = null;
+                sizedFor = expected;
+            }
+            removedSinceBuild.addAndGet(-removedBefore);
+            log.info("Negative lookup filter built for {} rates ({} bits, {} hashes)",
+                    keys.size(), next.bitSize(), next.hashCount());
+        } catch (RuntimeException e) {
+            synchronized (filterLock) {
+                pending = null;
+            }
+            log.error("Failed to build the negative lookup filter, lookups will go to the database", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private void add(long key) {
+        synchronized (filterLock) {
+            if (filter != null) {
+                filter.put(key);
+            }
+            if (pending != null) {
+                pending.put(key);
+            }
+        }
+    }
+}
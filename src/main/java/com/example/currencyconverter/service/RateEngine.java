@@ -0,0 +1,247 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.model.WrittenRates;
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.utils.ArbitrageMonitor;
+import com.example.currencyconverter.utils.RateGraph;
+import com.example.currencyconverter.utils.RateKey;
+import com.example.currencyconverter.utils.RateMatrix;
+import com.example.currencyconverter.utils.RateRanking;
+import jakarta.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps every exchange rate in a {@link RateMatrix}, so conversions are answered from memory, and
+ * in a {@link RateGraph} for conversions over several hops. A {@link RateRanking} orders the rates
+ * of all banks for each pair, for the best-rate lookups. An {@link ArbitrageMonitor} follows the
+ * same writes and reports the loops of rates that multiply to more than one.
+ *
+ * <p>The matrix is loaded from the table when the application is ready and is kept current by the
+ * service writes, which are applied after their transaction commits. Writes that happen while the
+ * table is being loaded win over the rows the load read. Until the load finished, and for the rare
+ * rates too large for the matrix, {@link #canAnswer} and {@link #canRank} are {@code false} and
+ * callers go to {@link ExchangeRateService} or the database instead.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateEngine {
+
+    private final ExchangeRateRepository exchangeRateRepository;
+
+    @Value("${rates.engine.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rates.arbitrage.max-cycle-length:4}")
+    private int maxCycleLength;
+
+    @Value("${rates.arbitrage.min-profit:0.0001}")
+    private BigDecimal minProfit;
+
+    @Value("${rates.arbitrage.max-loops-per-search:100}")
+    private int maxLoopsPerSearch;
+
+    private final RateMatrix matrix = new RateMatrix();
+    private final RateGraph graph = new RateGraph();
+    private final RateRanking ranking = new RateRanking();
+    private ArbitrageMonitor arbitrage;
+    private final Object loadLock = new Object();
+    // Keys whose rate does not fit the matrix, answered by the service.
+    private final Set<RateKey> unsupported = ConcurrentHashMap.newKeySet();
+    // Keys written since the running load started, which the load must not overwrite.
+    private Set<RateKey> writtenDuringLoad;
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void createArbitrageMonitor() {
+        arbitrage = new ArbitrageMonitor(maxCycleLength, minProfit, maxLoopsPerSearch);
+    }
+
+    /**
+     * Returns {@code true} if {@link #getRate} gives the current rate of the pair, present or not;
+     * {@code false} without a bank, whose lookup is left to the caller.
+     */
+    public boolean canAnswer(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        return loaded && bankId != null
+                && (unsupported.isEmpty() || !unsupported.contains(RateKey.of(bankId, fromCurrencyCode, toCurrencyCode)));
+    }
+
+    /** Returns the rate, or {@code null} if the bank has none for the pair or no bank is given. */
+    public BigDecimal getRate(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        return bankId == null ? null : matrix.get(bankId, fromCurrencyCode, toCurrencyCode);
+    }
+
+    /** Returns {@code true} if {@link #getRanking} holds every rate of the pair. */
+    public boolean canRank(String fromCurrencyCode, String toCurrencyCode) {
+        return loaded && (unsupported.isEmpty() || unsupported.stream().noneMatch(key ->
+                key.getFromCurrencyCode().equals(fromCurrencyCode) && key.getToCurrencyCode().equals(toCurrencyCode)));
+    }
+
+    /** Returns the rates of all banks for the pair, from the lowest to the highest. */
+    public RateRanking.Ranking getRanking(String fromCurrencyCode, String toCurrencyCode) {
+        return ranking.get(fromCurrencyCode, toCurrencyCode);
+    }
+
+    /**
+     * Returns {@code true} if {@link #forEachRateFrom} passes every rate from the currency of the
+     * bank or, if {@code bankId} is {@code null}, of all banks.
+     */
+    public boolean canFanOut(Long bankId, String fromCurrencyCode) {
+        return loaded && (unsupported.isEmpty() || unsupported.stream().noneMatch(key ->
+                key.getFromCurrencyCode().equals(fromCurrencyCode) && (bankId == null || key.getBankId() == bankId)));
+    }
+
+    /** Passes the rates from the currency of the bank or, if {@code bankId} is {@code null}, of all banks. */
+    public void forEachRateFrom(Long bankId, String fromCurrencyCode, RateMatrix.RateConsumer consumer) {
+        if (bankId == null) {
+            matrix.forEachRateFrom(fromCurrencyCode, consumer);
+        } else {
+            matrix.forEachRateFrom(bankId, fromCurrencyCode, consumer);
+        }
+    }
+
+    /** Returns {@code true} once the rates were loaded, before that {@link #findBestPath} finds nothing. */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns the path with the best overall rate between the currencies, over the rates of the
+     * bank or, if {@code bankId} is {@code null}, of all banks; {@code null} if there is none.
+     */
+    public RateGraph.Path findBestPath(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        return graph.findBestPath(bankId == null ? RateGraph.ANY_BANK : bankId, fromCurrencyCode, toCurrencyCode);
+    }
+
+    /**
+     * Returns the loops of rates, at any banks, that multiply to more than {@code 1 + min-profit},
+     * the most profitable first. Complete only once {@link #isLoaded}.
+     */
+    public List<RateGraph.Path> getArbitrageLoops() {
+        return arbitrage.loops();
+    }
+
+    /** Stores a created or updated rate once the current transaction commits. */
+    public void recordRate(Long rateId, Long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        afterCommit(() -> apply(RateKey.of(bankId, fromCurrencyCode, toCurrencyCode), rateId, rate));
+    }
+
+    /** Stores created or updated rates once the current transaction commits, all under one lock. */
+    public void recordRates(List<ExchangeRate> rates) {
+        recordRates(WrittenRates.of(rates));
+    }
+
+    /** Stores the rates written by a set-based statement once the current transaction commits, all under one lock. */
+    public void recordRates(WrittenRates rates) {
+        afterCommit(() -> {
+            synchronized (loadLock) {
+                graph.invalidate();
+                arbitrage.batch(() -> {
+                    for (int i = 0; i < rates.size(); i++) {
+                        apply(RateKey.of(rates.getBankId(i), rates.getFromCurrencyCode(i), rates.getToCurrencyCode(i)),
+                                rates.getId(i), rates.getRate(i));
+                    }
+                });
+            }
+        });
+    }
+
+    /** Removes a rate once the current transaction commits. */
+    public void recordRemoval(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        afterCommit(() -> apply(RateKey.of(bankId, fromCurrencyCode, toCurrencyCode), 0, null));
+    }
+
+    /** Removes every rate of a deleted bank once the current transaction commits. */
+    public void recordBankRemoval(Long bankId) {
+        afterCommit(() -> {
+            synchronized (loadLock) {
+                matrix.removeBank(bankId);
+                graph.removeBank(bankId);
+                arbitrage.removeBank(bankId);
+                ranking.removeBank(bankId);
+                unsupported.removeIf(key -> key.getBankId() == bankId);
+            }
+        });
+    }
+
+    /** Loads the matrix, the graph and the ranking from the table. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (loadLock) {
+            writtenDuringLoad = ConcurrentHashMap.newKeySet();
+        }
+        try {
+            List<Object[]> rows = exchangeRateRepository.findAllRateValues();
+            synchronized (loadLock) {
+                arbitrage.batch(() -> {
+                    for (Object[] row : rows) {
+                        RateKey key = RateKey.of((Long) row[0], (String) row[1], (String) row[2]);
+                        if (!writtenDuringLoad.contains(key)) {
+                            store(key, (Long) row[4], (BigDecimal) row[3]);
+                        }
+                    }
+                });
+                writtenDuringLoad = null;
+            }
+            loaded = true;
+            log.info("Rate engine loaded {} rates over {} currencies ({} answered by the database)",
+                    matrix.size(), matrix.currencyCount(), unsupported.size());
+        } catch (RuntimeException e) {
+            synchronized (loadLock) {
+                writtenDuringLoad = null;
+            }
+            log.error("Failed to load the rate engine, conversions will use the rate cache", e);
+        }
+    }
+
+    private void apply(RateKey key, long rateId, BigDecimal rate) {
+        synchronized (loadLock) {
+            if (writtenDuringLoad != null) {
+                writtenDuringLoad.add(key);
+            }
+            if (rate == null) {
+                matrix.remove(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+                graph.remove(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+                arbitrage.remove(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+                ranking.remove(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+                unsupported.remove(key);
+            } else {
+                store(key, rateId, rate);
+            }
+        }
+    }
+
+    private void store(RateKey key, long rateId, BigDecimal rate) {
+        graph.put(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode(), rate);
+        arbitrage.put(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode(), rate);
+        try {
+            matrix.put(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode(), rate);
+            ranking.put(rateId, key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode(), RateMatrix.toScaled(rate));
+            unsupported.remove(key);
+        } catch (ArithmeticException e) {
+            log.warn("Rate {} for {} does not fit the rate engine, it will be read from the database", rate, key);
+            matrix.remove(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+            ranking.remove(key.getBankId(), key.getFromCurrencyCode(), key.getToCurrencyCode());
+            unsupported.add(key);
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (enabled) {
+            AfterCommit.run(change);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.entity.ExchangeRateHistory;
+import com.example.currencyconverter.model.WrittenRates;
+import com.example.currencyconverter.repository.ExchangeRateHistoryRepository;
+import com.example.currencyconverter.utils.RateHistory;
+import com.example.currencyconverter.utils.RateMatrix;
+import jakarta.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the history of every exchange rate: each write appends a row to
+ * {@code exchange_rate_history} in the writer's transaction, and after commit a point to an
+ * in-memory {@link RateHistory} of the last {@code cache-window}.
+ *
+ * <p>As-of lookups and range scans are answered from memory when it reaches back far enough and
+ * from the history table otherwise. Current rates never go through this class. At startup, pairs
+ * without any history get a row with their current rate, so every rate has a starting point.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateHistoryService {
+
+    private final ExchangeRateHistoryRepository historyRepository;
+
+    @Value("${rates.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rates.history.cache-window:7d}")
+    private Duration cacheWindow;
+
+    @Value("${rates.history.max-points-per-series:100000}")
+    private int maxPointsPerSeries;
+
+    private RateHistory recent;
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void createCache() {
+        recent = new RateHistory(maxPointsPerSeries, cacheWindow.toMillis());
+    }
+
+    /** Appends the new rate of the pair. */
+    public void recordRate(Long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        append(bankId, fromCurrencyCode, toCurrencyCode, rate);
+    }
+
+    /** Appends the new rates, saved together so that their inserts are batched. */
+    public void recordRates(List<ExchangeRate> rates) {
+        if (!enabled) {
+            return;
+        }
+        Instant now = now();
+        List<ExchangeRateHistory> rows = new ArrayList<>(rates.size());
+        for (ExchangeRate rate : rates) {
+            rows.add(ExchangeRateHistory.builder()
+                    .bankId(rate.getBank().getId())
+                    .fromCurrencyCode(rate.getFromCurrencyCode())
+                    .toCurrencyCode(rate.getToCurrencyCode())
+                    .rate(rate.getRate())
+                    .validFrom(now)
+                    .build());
+        }
+        historyRepository.saveAll(rows);
+        AfterCommit.run(() -> rows.forEach(row -> appendToMemory(row.getBankId(), row.getFromCurrencyCode(),
+                row.getToCurrencyCode(), now.toEpochMilli(), row.getRate())));
+    }
+
+    /**
+     * Returns the time to stamp the history rows of a set-based write with, such as an import, or
+     * {@code null} if history is disabled and no rows should be written. The rates written are then
+     * passed to {@link #recordWrittenRates}.
+     */
+    public Instant historyTimestamp() {
+        return enabled ? now() : null;
+    }
+
+    /** Appends to memory the rates whose history rows a set-based write inserted as of {@code at}. */
+    public void recordWrittenRates(WrittenRates rates, Instant at) {
+        if (!enabled || at == null) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            for (int i = 0; i < rates.size(); i++) {
+                appendToMemory(rates.getBankId(i), rates.getFromCurrencyCode(i), rates.getToCurrencyCode(i),
+                        at.toEpochMilli(), rates.getRate(i));
+            }
+        });
+    }
+
+    /** Appends that the bank no longer quotes the pair. */
+    public void recordRemoval(Long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        append(bankId, fromCurrencyCode, toCurrencyCode, null);
+    }
+
+    /** Appends the removal of every rate of the bank; must be called before the bank is deleted. */
+    public void recordBankRemoval(Long bankId) {
+        if (!enabled) {
+            return;
+        }
+        Instant now = now();
+        int removed = historyRepository.insertBankRemoval(bankId, now);
+        log.debug("Recorded the removal of {} rates of bank {}", removed, bankId);
+        AfterCommit.run(() -> recent.appendRemovalOfBank(bankId, now.toEpochMilli()));
+    }
+
+    /**
+     * Returns the history row in effect at {@code at}, whose rate is {@code null} if the bank did
+     * not quote the pair then; {@code null} if there is no row before {@code at}.
+     *
+     * @throws IllegalArgumentException if no bank is given
+     */
+    public ExchangeRateHistory getRateAsOf(Long bankId, String fromCurrencyCode, String toCurrencyCode, Instant at) {
+        requireBank(bankId);
+        if (loaded) {
+            RateHistory.Point point = recent.asOf(bankId, fromCurrencyCode, toCurrencyCode, at.toEpochMilli());
+            if (point != null) {
+                return toEntity(bankId, fromCurrencyCode, toCurrencyCode, point);
+            }
+        }
+        return historyRepository
+                .findFirstByBankIdAndFromCurrencyCodeAndToCurrencyCodeAndValidFromLessThanEqualOrderByValidFromDescIdDesc(
+                        bankId, fromCurrencyCode, toCurrencyCode, at)
+                .orElse(null);
+    }
+
+    /** Returns at most {@code limit} rows of the pair that took effect in [{@code from}, {@code to}], oldest first. */
+    public List<ExchangeRateHistory> getHistory(Long bankId, String fromCurrencyCode, String toCurrencyCode,
+                                                Instant from, Instant to, int limit) {
+        requireBank(bankId);
+        if (loaded) {
+            List<RateHistory.Point> points = recent.range(bankId, fromCurrencyCode, toCurrencyCode,
+                    from.toEpochMilli(), to.toEpochMilli(), limit);
+            if (points != null) {
+                return points.stream()
+                        .map(point -> toEntity(bankId, fromCurrencyCode, toCurrencyCode, point))
+                        .collect(Collectors.toList());
+            }
+        }
+        return historyRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCodeAndValidFromBetweenOrderByValidFromAscIdAsc(
+                bankId, fromCurrencyCode, toCurrencyCode, from, to, PageRequest.of(0, limit));
+    }
+
+    private static void requireBank(Long bankId) {
+        // The in-memory series are keyed by the primitive bank id.
+        if (bankId == null) {
+            throw new IllegalArgumentException("bankId is required.");
+        }
+    }
+
+    /** Starts the history of rates that have none and loads the last {@code cache-window} into memory. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Instant now = now();
+            int started = historyRepository.insertMissingHistory(now);
+            if (started > 0) {
+                log.info("Started the history of {} exchange rates", started);
+            }
+            List<Object[]> rows = historyRepository.findTicksSince(now.minus(cacheWindow));
+            for (Object[] row : rows) {
+                appendToMemory((Long) row[0], (String) row[1], (String) row[2], ((Instant) row[3]).toEpochMilli(), (BigDecimal) row[4]);
+            }
+            loaded = true;
+            log.info("Rate history loaded {} points of {} pairs from the last {}",
+                    recent.pointCount(), recent.seriesCount(), cacheWindow);
+        } catch (RuntimeException e) {
+            log.error("Failed to load the rate history, history lookups will use the database", e);
+        }
+    }
+
+    private void append(Long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        if (!enabled) {
+            return;
+        }
+        Instant now = now();
+        historyRepository.save(ExchangeRateHistory.builder()
+                .bankId(bankId)
+                .fromCurrencyCode(fromCurrencyCode)
+                .toCurrencyCode(toCurrencyCode)
+                .rate(rate)
+                .validFrom(now)
+                .build());
+        AfterCommit.run(() -> appendToMemory(bankId, fromCurrencyCode, toCurrencyCode, now.toEpochMilli(), rate));
+    }
+
+    private void appendToMemory(long bankId, String fromCurrencyCode, String toCurrencyCode, long timeMillis, BigDecimal rate) {
+        try {
+            long scaled = rate == null ? RateHistory.REMOVED : RateMatrix.toScaled(rate);
+            recent.append(bankId, fromCurrencyCode, toCurrencyCode, timeMillis, scaled);
+        } catch (ArithmeticException e) {
+            // Lookups of this pair go to the database until a rate that fits starts a new series.
+            recent.evict(bankId, fromCurrencyCode, toCurrencyCode);
+        }
+    }
+
+    private static ExchangeRateHistory toEntity(Long bankId, String fromCurrencyCode, String toCurrencyCode, RateHistory.Point point) {
+        return ExchangeRateHistory.builder()
+                .bankId(bankId)
+                .fromCurrencyCode(fromCurrencyCode)
+                .toCurrencyCode(toCurrencyCode)
+                .rate(point.getRate())
+                .validFrom(Instant.ofEpochMilli(point.getTimeMillis()))
+                .build();
+    }
+
+    /** The current time at the precision kept in memory, so rows and points agree. */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+}
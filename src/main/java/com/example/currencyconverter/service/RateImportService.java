@@ -0,0 +1,234 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.config.CacheTags;
+import com.example.currencyconverter.dto.ExchangeRateCreateRequestDto;
+import com.example.currencyconverter.dto.ExchangeRateUpsertResultDto;
+import com.example.currencyconverter.dto.RateImportChunkDto;
+import com.example.currencyconverter.dto.RateImportResultDto;
+import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.model.UpsertOutcome;
+import com.example.currencyconverter.model.WrittenRates;
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Imports large rate files, such as nightly reloads, without creating an entity per record. The
+ * records are streamed into a staging table with PostgreSQL's {@code COPY}; unknown banks and
+ * currencies are rejected and repeated pairs resolved there in SQL, and the rest is merged into the
+ * rates with one statement that also writes their history.
+ *
+ * <p>Only the rates actually written are read back, page by page into column-wise
+ * {@link WrittenRates}, and recorded with one change per structure, so readers of the
+ * {@link DataSnapshot} see the whole import in a single new version once it commits. Caches are
+ * invalidated by bank and pair rather than per rate.
+ *
+ * <p>NDJSON imports are read record by record instead and upserted in chunks of {@code chunk-size}
+ * by {@link ExchangeRateService#upsertExchangeRatesBulk}, each chunk in its own transaction, so
+ * memory and the time locks are held are bounded by the chunk, not the upload.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateImportService {
+
+    private static final String CHUNK_ROLLED_BACK = "Chunk rolled back; no record of it was imported.";
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final CacheInvalidator cacheInvalidator;
+    private final NegativeLookupCache negativeLookupCache;
+    private final RateEngine rateEngine;
+    private final SnapshotStore snapshotStore;
+    private final RateHistoryService rateHistoryService;
+    private final ExchangeRateService exchangeRateService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${rates.import.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${rates.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Imports CSV records of {@code bankId,fromCurrencyCode,toCurrencyCode,rate}, inserting new rates
+     * and replacing changed ones. A first line that does not start with a digit is taken as a
+     * header and skipped. Invalid records are counted and skipped; a record that is not CSV of
+     * these four fields fails the whole import.
+     */
+    @Transactional
+    public RateImportResultDto importCsv(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), bufferSize);
+        skipHeader(reader);
+        long received;
+        try {
+            received = exchangeRateRepository.copyToStaging(reader);
+        } catch (DataAccessException e) {
+            log.warn("Rate import rejected: {}", e.getMostSpecificCause().getMessage());
+            throw new InvalidInputDataException("Invalid rate file: " + e.getMostSpecificCause().getMessage());
+        }
+        int rejected = exchangeRateRepository.deleteInvalidStaged();
+        int superseded = exchangeRateRepository.deleteSupersededStaged();
+        Instant historyAt = rateHistoryService.historyTimestamp();
+        WrittenRates written = new WrittenRates();
+        long inserted = exchangeRateRepository.mergeStaged(historyAt, written);
+
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add(CacheTags.RATES);
+        for (int i = 0; i < written.size(); i++) {
+            tags.add(CacheTags.bank(written.getBankId(i)));
+            tags.add(CacheTags.pair(written.getFromCurrencyCode(i), written.getToCurrencyCode(i)));
+            tags.add(CacheTags.currency(written.getFromCurrencyCode(i)));
+            tags.add(CacheTags.currency(written.getToCurrencyCode(i)));
+        }
+        if (!written.isEmpty()) {
+            negativeLookupCache.recordRates(written);
+            rateEngine.recordRates(written);
+            snapshotStore.recordRates(written);
+            rateHistoryService.recordWrittenRates(written, historyAt);
+            cacheInvalidator.invalidate(tags);
+        }
+        RateImportResultDto result = new RateImportResultDto(received, rejected, superseded, inserted,
+                written.size() - inserted, received - rejected - superseded - written.size());
+        log.info("Imported {} exchange rates: {} inserted, {} updated, {} unchanged, {} rejected, {} superseded",
+                received, result.getInserted(), result.getUpdated(), result.getUnchanged(), rejected, superseded);
+        return result;
+    }
+
+    /**
+     * Imports NDJSON records shaped like an {@link ExchangeRateCreateRequestDto}, one JSON object per
+     * line; blank lines are skipped. Every {@code chunk-size} records are upserted and committed
+     * together, and a {@link RateImportChunkDto} line reporting the chunk is written and flushed.
+     * Malformed or invalid records are rejected on their own. A chunk that fails is rolled back and
+     * reported as such, with its cause logged; the chunks before it stay committed and the import
+     * goes on.
+     *
+     * @return number of records read
+     */
+    public long importNdjson(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), bufferSize);
+        ObjectReader requestReader = objectMapper.readerFor(ExchangeRateCreateRequestDto.class);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+        // Reports are separated by the new line written after each of them.
+        generator.setRootValueSeparator(null);
+        List<ExchangeRateCreateRequestDto> requests = new ArrayList<>(chunkSize);
+        long[] positions = new long[chunkSize];
+        List<ExchangeRateUpsertResultDto> rejections = new ArrayList<>();
+        int chunk = 0;
+        long records = 0;
+        long firstRecord = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long position = records++;
+            String error;
+            try {
+                ExchangeRateCreateRequestDto request = requestReader.readValue(line);
+                error = validate(request);
+                if (error == null) {
+                    positions[requests.size()] = position;
+                    requests.add(request);
+                }
+            } catch (JsonProcessingException e) {
+                error = "Malformed record: " + e.getOriginalMessage();
+            }
+            if (error != null) {
+                rejections.add(new ExchangeRateUpsertResultDto(position, UpsertOutcome.REJECTED, null, error));
+            }
+            if (records - firstRecord == chunkSize) {
+                writeChunk(generator, importChunk(++chunk, firstRecord, (int) (records - firstRecord), requests, positions, rejections));
+                requests = new ArrayList<>(chunkSize);
+                rejections.clear();
+                firstRecord = records;
+            }
+        }
+        if (records > firstRecord) {
+            writeChunk(generator, importChunk(++chunk, firstRecord, (int) (records - firstRecord), requests, positions, rejections));
+        }
+        generator.flush();
+        log.info("Streamed the import of {} exchange rates in {} chunks", records, chunk);
+        return records;
+    }
+
+    /** Upserts the valid records of a chunk in one transaction and reports it. */
+    private RateImportChunkDto importChunk(int chunk, long firstRecord, int records, List<ExchangeRateCreateRequestDto> requests,
+                                           long[] positions, List<ExchangeRateUpsertResultDto> rejections) {
+        RateImportChunkDto report = new RateImportChunkDto(chunk, firstRecord, records, 0, 0, 0, 0, new ArrayList<>(rejections), null);
+        try {
+            List<ExchangeRateUpsertResultDto> results = requests.isEmpty() ? List.of() : exchangeRateService.upsertExchangeRatesBulk(requests);
+            for (ExchangeRateUpsertResultDto result : results) {
+                switch (result.getOutcome()) {
+                    case INSERTED -> report.setInserted(report.getInserted() + 1);
+                    case UPDATED -> report.setUpdated(report.getUpdated() + 1);
+                    case UNCHANGED -> report.setUnchanged(report.getUnchanged() + 1);
+                    case REJECTED -> {
+                        result.setIndex(positions[(int) result.getIndex()]);
+                        report.getRejections().add(result);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // The cause may carry SQL and driver details, so the client only learns that the chunk failed.
+            log.error("Chunk {} of the rate import was rolled back", chunk, e);
+            report.setError(CHUNK_ROLLED_BACK);
+        }
+        report.getRejections().sort(Comparator.comparingLong(ExchangeRateUpsertResultDto::getIndex));
+        report.setRejected(report.getRejections().size());
+        return report;
+    }
+
+    /** Returns the bean validation messages of the record, or {@code null} if it is valid. */
+    private String validate(ExchangeRateCreateRequestDto request) {
+        if (request == null) {
+            return "Malformed record: expected a JSON object.";
+        }
+        Set<ConstraintViolation<ExchangeRateCreateRequestDto>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void writeChunk(JsonGenerator generator, RateImportChunkDto report) throws IOException {
+        objectMapper.writeValue(generator, report);
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private static void skipHeader(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        int first = reader.read();
+        reader.reset();
+        if (first != -1 && !Character.isDigit(first)) {
+            reader.readLine();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.config.CacheConfig;
+import com.example.currencyconverter.utils.EncodedResponse;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Collection;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches JSON response bodies already serialized to UTF-8 (and gzip), so that a hit copies the
+ * stored bytes to the response instead of running Jackson over the DTOs again. Each body carries a
+ * strong ETag; a request whose {@code If-None-Match} names the cached body gets a 304 without the
+ * body being loaded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseBodyCache {
+
+    private final InMemoryCacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${cache.response.gzip-min-size:1024}")
+    private int gzipMinSize;
+
+    /**
+     * Returns the response for {@code cacheKey}, serializing what {@code bodySupplier} gives and
+     * caching it under {@code tags} on a miss.
+     *
+     * @param ifNoneMatch    the request's {@code If-None-Match} header, or {@code null}
+     * @param acceptEncoding the request's {@code Accept-Encoding} header, or {@code null}
+     */
+    public ResponseEntity<byte[]> get(String cacheKey, String ifNoneMatch, String acceptEncoding,
+                                      Supplier<?> bodySupplier, Collection<String> tags) {
+        return get(cacheKey, null, ifNoneMatch, acceptEncoding, bodySupplier, tags);
+    }
+
+    /**
+     * Like {@link #get(String, String, String, Supplier, Collection)}, for a body built from the
+     * given {@link DataSnapshot}: the body is cached per version and the response names the version
+     * in {@value SnapshotStore#VERSION_HEADER}.
+     */
+    public ResponseEntity<byte[]> get(String cacheKey, DataSnapshot snapshot, String ifNoneMatch, String acceptEncoding,
+                                      Supplier<?> bodySupplier, Collection<String> tags) {
+        if (snapshot != null) {
+            cacheKey = cacheKey + "@" + snapshot.getVersion();
+        }
+        EncodedResponse encoded = cacheManager.getCache(CacheConfig.ENCODED_RESPONSES).get(cacheKey,
+                key -> encode(bodySupplier.get()), (key, value) -> tags);
+        boolean gzip = encoded.hasGzipBody() && acceptsGzip(acceptEncoding);
+        String etag = gzip ? encoded.getGzipEtag() : encoded.getEtag();
+        if (encoded.matches(ifNoneMatch)) {
+            log.debug("Response for {} not modified, etag: {}", cacheKey, etag);
+            return withVersion(ResponseEntity.status(HttpStatus.NOT_MODIFIED), snapshot)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder builder = withVersion(ResponseEntity.ok(), snapshot)
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.getGzipBody());
+        }
+        return builder.body(encoded.getBody());
+    }
+
+    private static ResponseEntity.BodyBuilder withVersion(ResponseEntity.BodyBuilder builder, DataSnapshot snapshot) {
+        return snapshot == null ? builder : builder.header(SnapshotStore.VERSION_HEADER, Long.toString(snapshot.getVersion()));
+    }
+
+    private EncodedResponse encode(Object body) {
+        try {
+            return EncodedResponse.of(objectMapper.writeValueAsBytes(body), gzipMinSize);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response body", e);
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
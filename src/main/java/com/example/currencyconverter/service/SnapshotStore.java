@@ -0,0 +1,139 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.entity.Bank;
+import com.example.currencyconverter.entity.Currency;
+import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.model.WrittenRates;
+import com.example.currencyconverter.repository.BankRepository;
+import com.example.currencyconverter.repository.CurrencyRepository;
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the current {@link DataSnapshot}, which list reads use instead of the database so that
+ * they always see whole transactions.
+ *
+ * <p>The services record each change they make. The changes of one transaction are collected and,
+ * once it commits, applied together to build the next version, which replaces the current one in
+ * a single volatile write. Readers take no lock. Until the tables were loaded at startup
+ * {@link #current()} is {@code null} and readers go to the database.
+ *
+ * <p>Versions name response bodies in caches and headers, so they must not repeat across restarts:
+ * the first version of a run is the load time in milliseconds times 1000, above every version of
+ * an earlier run unless it applied a thousand transactions per millisecond of uptime.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SnapshotStore {
+
+    /** Response header naming the snapshot version a body was built from. */
+    public static final String VERSION_HEADER = "X-Data-Version";
+
+    private static final long VERSIONS_PER_MILLI = 1_000;
+
+    private final BankRepository bankRepository;
+    private final CurrencyRepository currencyRepository;
+    private final ExchangeRateRepository exchangeRateRepository;
+
+    @Value("${data.snapshot.enabled:true}")
+    private boolean enabled;
+
+    private final CommittedState<DataSnapshot, DataSnapshot.Builder> state = new CommittedState<>(
+            DataSnapshot::toBuilder,
+            (builder, previous) -> builder.build(previous == null
+                    ? System.currentTimeMillis() * VERSIONS_PER_MILLI : previous.getVersion() + 1));
+
+    /** Returns the current snapshot, or {@code null} if the tables were not loaded yet. */
+    public DataSnapshot current() {
+        return state.current();
+    }
+
+    public void recordRate(ExchangeRate rate) {
+        DataSnapshot.RateRow row = new DataSnapshot.RateRow(rate.getId(), rate.getBank().getId(),
+                rate.getFromCurrencyCode(), rate.getToCurrencyCode(), rate.getRate());
+        record(builder -> builder.putRate(row));
+    }
+
+    /** Records created or updated rates as one change. */
+    public void recordRates(List<ExchangeRate> rates) {
+        recordRates(WrittenRates.of(rates));
+    }
+
+    /** Records the rates written by a set-based statement as one change; their rows are built when it is published. */
+    public void recordRates(WrittenRates rates) {
+        record(builder -> {
+            for (int i = 0; i < rates.size(); i++) {
+                builder.putRate(new DataSnapshot.RateRow(rates.getId(i), rates.getBankId(i),
+                        rates.getFromCurrencyCode(i), rates.getToCurrencyCode(i), rates.getRate(i)));
+            }
+        });
+    }
+
+    public void recordRateRemoval(Long id) {
+        record(builder -> builder.removeRate(id));
+    }
+
+    public void recordBank(Bank bank) {
+        DataSnapshot.BankRow row = new DataSnapshot.BankRow(bank.getId(), bank.getName());
+        record(builder -> builder.putBank(row));
+    }
+
+    /** Removes the bank and its rates. */
+    public void recordBankRemoval(Long id) {
+        record(builder -> builder.removeBank(id));
+    }
+
+    public void recordCurrency(Currency currency) {
+        DataSnapshot.CurrencyRow row = new DataSnapshot.CurrencyRow(currency.getId(), currency.getCode(), currency.getName());
+        record(builder -> builder.putCurrency(row));
+    }
+
+    public void recordCurrencyRemoval(Long id) {
+        record(builder -> builder.removeCurrency(id));
+    }
+
+    /** Loads the first version from the tables. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            DataSnapshot loaded = state.load(this::read);
+            log.info("Data snapshot loaded with {} banks, {} currencies and {} rates",
+                    loaded.getBanks().size(), loaded.getCurrencies().size(), loaded.getRates().size());
+        } catch (RuntimeException e) {
+            log.error("Failed to load the data snapshot, lists will be read from the database", e);
+        }
+    }
+
+    private DataSnapshot.Builder read() {
+        DataSnapshot.Builder builder = DataSnapshot.EMPTY.toBuilder();
+        for (Currency currency : currencyRepository.findAll()) {
+            builder.putCurrency(new DataSnapshot.CurrencyRow(currency.getId(), currency.getCode(), currency.getName()));
+        }
+        for (Bank bank : bankRepository.findAll()) {
+            builder.putBank(new DataSnapshot.BankRow(bank.getId(), bank.getName()));
+        }
+        for (Object[] row : exchangeRateRepository.findAllRateValues()) {
+            builder.putRate(new DataSnapshot.RateRow((Long) row[4], (Long) row[0], (String) row[1], (String) row[2], (BigDecimal) row[3]));
+        }
+        return builder;
+    }
+
+    /** Collects the change with the others of its transaction; they build the next version together. */
+    private void record(Consumer<DataSnapshot.Builder> change) {
+        if (enabled) {
+            AfterCommit.collect(this, change, state::apply);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.currencyconverter.service;
+
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
+import com.example.currencyconverter.exception.CurrencyNotFoundException;
+import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.model.ConversionMode;
+import com.example.currencyconverter.model.ConversionRequest;
+import com.example.currencyconverter.utils.FixedPoint;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Converts a stream of amounts record by record, reading and writing through fixed-size buffers,
+ * so memory does not grow with the input.
+ *
+ * <p>All records of a stream are converted with the same rates: those of the {@link DataSnapshot}
+ * current when the stream starts. Without a snapshot each pair is looked up once, on its first
+ * record. Each input record gives exactly one output record, in the same order; records that
+ * cannot be converted carry an error instead of the converted amount. Only direct conversions at
+ * the current rates are supported.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StreamingConversionService {
+
+    /** First line of every CSV output. */
+    public static final String CSV_HEADER = "bankId,fromCurrencyCode,toCurrencyCode,amount,rate,convertedAmount,error";
+
+    private static final String RATE_NOT_FOUND = "Exchange rate not found for this bank and currency pair.";
+
+    private final SnapshotStore snapshotStore;
+    private final CurrencyService currencyService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${currencies.convert.stream.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${currencies.convert.stream.max-cached-pairs:100000}")
+    private int maxCachedPairs;
+
+    // Same rounding as CurrencyService#toResponse; initialized for instances made without Spring.
+    @Value("${currencies.convert.result-scale:4}")
+    private int resultScale = 4;
+
+    @Value("${currencies.convert.rounding:HALF_UP}")
+    private RoundingMode rounding = RoundingMode.HALF_UP;
+
+    /** Pins the rates a stream is converted with; call once per stream. */
+    public PinnedRates pinRates() {
+        return new PinnedRates(snapshotStore.current());
+    }
+
+    /**
+     * Converts CSV records of {@code bankId,fromCurrencyCode,toCurrencyCode,amount}. A first line
+     * that does not start with a digit is taken as a header and skipped; blank lines are skipped.
+     * The output starts with {@link #CSV_HEADER}.
+     *
+     * @return number of records written
+     */
+    public long convertCsv(InputStream input, OutputStream output, PinnedRates rates) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), bufferSize);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), bufferSize);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long records = 0;
+        String line;
+        boolean first = true;
+        String[] fields = new String[4];
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (first) {
+                first = false;
+                if (!Character.isDigit(line.strip().charAt(0))) {
+                    continue;
+                }
+            }
+            records++;
+            if (!split(line, fields)) {
+                writeCsvError(writer, line, "Expected 4 fields: bankId,fromCurrencyCode,toCurrencyCode,amount.");
+                continue;
+            }
+            long bankId;
+            BigDecimal amount;
+            try {
+                bankId = Long.parseLong(fields[0]);
+                amount = new BigDecimal(fields[3]);
+            } catch (NumberFormatException e) {
+                writeCsvError(writer, line, "bankId and amount must be numbers.");
+                continue;
+            }
+            Object rateOrError = rates.rateOrError(bankId, fields[1], fields[2]);
+            if (!(rateOrError instanceof BigDecimal)) {
+                writeCsvError(writer, line, (String) rateOrError);
+                continue;
+            }
+            BigDecimal rate = (BigDecimal) rateOrError;
+            for (String field : fields) {
+                writer.write(field);
+                writer.write(',');
+            }
+            writer.write(rate.toPlainString());
+            writer.write(',');
+            writer.write(FixedPoint.multiply(amount, rate, resultScale, rounding).toPlainString());
+            writer.write(",\n");
+        }
+        writer.flush();
+        return records;
+    }
+
+    /**
+     * Converts NDJSON records shaped like a {@link ConversionRequest}, one JSON object per line;
+     * blank lines are skipped. Each output line echoes the request with {@code rate} and
+     * {@code convertedAmount}, or {@code error}.
+     *
+     * @return number of records written
+     */
+    public long convertNdjson(InputStream input, OutputStream output, PinnedRates rates) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), bufferSize);
+        ObjectReader requestReader = objectMapper.readerFor(ConversionRequest.class);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+        // Records are separated by the new line written after each of them.
+        generator.setRootValueSeparator(null);
+        long records = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            records++;
+            ConversionRequest request;
+            try {
+                request = requestReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                writeJson(generator, null, null, null, "Malformed record: " + e.getOriginalMessage());
+                continue;
+            }
+            String error = validate(request);
+            BigDecimal rate = null;
+            if (error == null) {
+                Object rateOrError = rates.rateOrError(request.getBankId(), request.getFromCurrencyCode(), request.getToCurrencyCode());
+                if (rateOrError instanceof BigDecimal) {
+                    rate = (BigDecimal) rateOrError;
+                } else {
+                    error = (String) rateOrError;
+                }
+            }
+            writeJson(generator, request, rate,
+                    rate == null ? null : FixedPoint.multiply(request.getAmount(), rate, resultScale, rounding), error);
+        }
+        generator.flush();
+        return records;
+    }
+
+    private static String validate(ConversionRequest request) {
+        if (request == null || request.getBankId() == null || request.getFromCurrencyCode() == null
+                || request.getToCurrencyCode() == null || request.getAmount() == null) {
+            return "bankId, fromCurrencyCode, toCurrencyCode and amount are required.";
+        }
+        if (request.getAsOf() != null || request.getMode() != null && request.getMode() != ConversionMode.DIRECT) {
+            return "Only direct conversions at the current rates are supported when streaming.";
+        }
+        return null;
+    }
+
+    private static void writeJson(JsonGenerator generator, ConversionRequest request, BigDecimal rate,
+                                  BigDecimal convertedAmount, String error) throws IOException {
+        generator.writeStartObject();
+        if (request != null) {
+            if (request.getBankId() != null) {
+                generator.writeNumberField("bankId", request.getBankId());
+            }
+            generator.writeStringField("fromCurrencyCode", request.getFromCurrencyCode());
+            generator.writeStringField("toCurrencyCode", request.getToCurrencyCode());
+            generator.writeNumberField("amount", request.getAmount());
+        }
+        if (error == null) {
+            generator.writeNumberField("rate", rate);
+            generator.writeNumberField("convertedAmount", convertedAmount);
+        } else {
+            generator.writeStringField("error", error);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /** Splits a line into exactly four trimmed fields. */
+    private static boolean split(String line, String[] fields) {
+        int start = 0;
+        for (int i = 0; i < 3; i++) {
+            int comma = line.indexOf(',', start);
+            if (comma < 0) {
+                return false;
+            }
+            fields[i] = line.substring(start, comma).trim();
+            start = comma + 1;
+        }
+        if (line.indexOf(',', start) >= 0) {
+            return false;
+        }
+        fields[3] = line.substring(start).trim();
+        return true;
+    }
+
+    /** Writes the line's fields, when it has four, followed by empty rate columns and the error. */
+    private static void writeCsvError(Writer writer, String line, String error) throws IOException {
+        String[] fields = new String[4];
+        if (split(line, fields)) {
+            for (String field : fields) {
+                writeCsvField(writer, field);
+                writer.write(',');
+            }
+        } else {
+            writer.write(",,,,");
+        }
+        writer.write(",,");
+        writeCsvField(writer, error);
+        writer.write('\n');
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /** Rates of one stream: a pinned snapshot, or the first rate looked up for each pair. */
+    public final class PinnedRates {
+        private final DataSnapshot snapshot;
+        // Only used without a snapshot; a pair without a rate is kept with the error of its lookup.
+        private final Map<String, Object> looked = new HashMap<>();
+
+        private PinnedRates(DataSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        /** Returns the version of the pinned snapshot, or {@code null} if there is none. */
+        public Long getVersion() {
+            return snapshot == null ? null : snapshot.getVersion();
+        }
+
+        /** Returns the rate of the pair, or the error to write for records of it. */
+        Object rateOrError(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+            if (snapshot != null) {
+                DataSnapshot.RateRow rate = snapshot.getRate(bankId, fromCurrencyCode, toCurrencyCode);
+                return rate == null ? RATE_NOT_FOUND : rate.getRate();
+            }
+            String key = bankId + "-" + fromCurrencyCode + "-" + toCurrencyCode;
+            Object rateOrError = looked.get(key);
+            if (rateOrError != null) {
+                return rateOrError;
+            }
+            ConversionRequest request = new ConversionRequest();
+            request.setBankId(bankId);
+            request.setFromCurrencyCode(fromCurrencyCode);
+            request.setToCurrencyCode(toCurrencyCode);
+            try {
+                rateOrError = currencyService.quote(request).getRate();
+            } catch (IllegalArgumentException | InvalidInputDataException | CurrencyNotFoundException e) {
+                rateOrError = e.getMessage();
+            } catch (CacheLoadTimeoutException e) {
+                // Not kept, a later record of the pair may find the rate loaded by then.
+                return e.getMessage();
+            }
+            // Past the cap, pairs of this stream are looked up per record instead of held until it ends.
+            if (looked.size() < maxCachedPairs) {
+                looked.put(key, rateOrError);
+            }
+            return rateOrError;
+        }
+    }
+}
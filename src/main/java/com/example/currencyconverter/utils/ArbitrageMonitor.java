@@ -0,0 +1,415 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Arbitrage loops among the exchange rates: cycles of conversions, possibly at different banks,
+ * whose rates multiply to more than {@code 1 + minProfit}.
+ *
+ * <p>The graph has a node per currency and, for each pair, an edge with the best rate any bank
+ * offers, weighted {@code -log(rate)}; a loop is a cycle of negative weight. The loops are kept up
+ * to date on every write without looking at the whole graph: when the best rate of a pair changes,
+ * the loops through that pair are dropped and every cycle of at most {@code maxCycleLength} hops
+ * through it is searched for. The search walks the simple paths from the pair back to its start,
+ * cutting each one as soon as even the lightest way back, found beforehand by a Bellman-Ford pass
+ * bounded to that many hops, cannot make its weight negative; so it costs
+ * O(maxCycleLength * edges) plus the paths that can still close into a loop. {@link #batch} defers
+ * the searches of many writes, such as a bulk import, to its end.
+ *
+ * <p>Each search keeps at most {@code maxLoopsPerSearch} loops, which bounds its cost when the rates
+ * are far off; loops beyond that show up once a pair of theirs changes.
+ */
+public final class ArbitrageMonitor {
+
+    private static final MathContext PRODUCT_CONTEXT = MathContext.DECIMAL64;
+    // Slack for the double weights; candidates are confirmed on the exact product.
+    private static final double EPSILON = 1e-9;
+
+    /** Loops kept by one search unless given otherwise. */
+    public static final int DEFAULT_MAX_LOOPS_PER_SEARCH = 100;
+
+    private final int maxCycleLength;
+    private final int maxLoopsPerSearch;
+    private final BigDecimal minProduct;
+    private final double maxWeight;
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final List<String> codes = new ArrayList<>();
+    // Edges leaving each node, by target node.
+    private final List<Map<Integer, Edge>> out = new ArrayList<>();
+    private final BestRates bestRates = new BestRates();
+    private final Map<String, Loop> loops = new HashMap<>();
+    private final Map<Long, Set<String>> loopsByPair = new HashMap<>();
+    private volatile List<RateGraph.Path> published = List.of();
+    // Pairs changed by the running batch, searched when it ends.
+    private Set<Long> changedInBatch;
+
+    /**
+     * @param maxCycleLength most hops of a reported loop, at least 1
+     * @param minProfit      how much more than 1 the rates of a loop must multiply to, so that
+     *                       rounded rates are not reported
+     */
+    public ArbitrageMonitor(int maxCycleLength, BigDecimal minProfit) {
+        this(maxCycleLength, minProfit, DEFAULT_MAX_LOOPS_PER_SEARCH);
+    }
+
+    /**
+     * @param maxCycleLength    most hops of a reported loop, at least 1
+     * @param minProfit         how much more than 1 the rates of a loop must multiply to, so that
+     *                          rounded rates are not reported
+     * @param maxLoopsPerSearch most loops kept by the search through one pair, at least 1
+     */
+    public ArbitrageMonitor(int maxCycleLength, BigDecimal minProfit, int maxLoopsPerSearch) {
+        if (maxCycleLength < 1 || minProfit.signum() < 0 || maxLoopsPerSearch < 1) {
+            throw new IllegalArgumentException(
+                    "maxCycleLength and maxLoopsPerSearch must be positive and minProfit not negative");
+        }
+        this.maxCycleLength = maxCycleLength;
+        this.maxLoopsPerSearch = maxLoopsPerSearch;
+        this.minProduct = BigDecimal.ONE.add(minProfit);
+        this.maxWeight = -Math.log(minProduct.doubleValue()) + EPSILON;
+    }
+
+    /** Sets the bank's rate for the pair. */
+    public synchronized void put(long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        if (rate.signum() <= 0) {
+            remove(bankId, fromCurrencyCode, toCurrencyCode);
+            return;
+        }
+        long pair = pair(node(fromCurrencyCode), node(toCurrencyCode));
+        bestRates.put(bankId, fromCurrencyCode, toCurrencyCode, rate);
+        updatePair(pair);
+    }
+
+    /** Removes the bank's rate for the pair. */
+    public synchronized void remove(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        if (bestRates.remove(bankId, fromCurrencyCode, toCurrencyCode)) {
+            updatePair(pair(index.get(fromCurrencyCode), index.get(toCurrencyCode)));
+        }
+    }
+
+    /** Removes every rate of the bank. */
+    public synchronized void removeBank(long bankId) {
+        bestRates.removeBank(bankId, (from, to) -> updatePair(pair(index.get(from), index.get(to))));
+    }
+
+    public synchronized void clear() {
+        bestRates.clear();
+        out.forEach(Map::clear);
+        loops.clear();
+        loopsByPair.clear();
+        published = List.of();
+    }
+
+    /** Returns the current loops, the most profitable first; the rate of each is its product. */
+    public List<RateGraph.Path> loops() {
+        return published;
+    }
+
+    /**
+     * Runs the writes, then searches for loops once for all the pairs they changed instead of
+     * after each write: through each changed pair or, when more pairs than currencies changed, all
+     * loops from each currency.
+     */
+    public synchronized void batch(Runnable writes) {
+        if (changedInBatch != null) {
+            writes.run();
+            return;
+        }
+        Set<Long> changed = new HashSet<>();
+        changedInBatch = changed;
+        try {
+            writes.run();
+        } finally {
+            changedInBatch = null;
+        }
+        if (changed.size() > codes.size()) {
+            for (int node = 0; node < codes.size(); node++) {
+                findLoopsFrom(node).forEach(this::addLoop);
+            }
+        } else {
+            search(changed);
+        }
+        publish();
+    }
+
+    private void updatePair(long pair) {
+        int from = (int) (pair >>> 32);
+        int to = (int) pair;
+        Edge previous = out.get(from).get(to);
+        Edge best = bestEdge(pair);
+        if (best == null) {
+            out.get(from).remove(to);
+        } else if (previous != null && previous.bankId == best.bankId && previous.rate.compareTo(best.rate) == 0) {
+            return;
+        } else {
+            out.get(from).put(to, best);
+        }
+        if (previous == null && best == null) {
+            return;
+        }
+
+        Set<String> through = loopsByPair.remove(pair);
+        if (through != null) {
+            for (String key : List.copyOf(through)) {
+                dropLoop(key);
+            }
+        }
+        if (changedInBatch != null) {
+            changedInBatch.add(pair);
+        } else {
+            search(Set.of(pair));
+            publish();
+        }
+    }
+
+    private void search(Set<Long> pairs) {
+        for (long pair : pairs) {
+            Edge edge = out.get((int) (pair >>> 32)).get((int) pair);
+            if (edge != null) {
+                findLoopsThrough(edge).forEach(this::addLoop);
+            }
+        }
+    }
+
+    private Edge bestEdge(long pair) {
+        int from = (int) (pair >>> 32);
+        int to = (int) pair;
+        BestRates.Offer best = bestRates.best(codes.get(from), codes.get(to));
+        return best == null ? null : new Edge(from, to, best.bankId, best.rate);
+    }
+
+    /** Returns the loops of at most {@code maxCycleLength} hops starting with the edge. */
+    private List<List<Edge>> findLoopsThrough(Edge first) {
+        List<List<Edge>> found = new ArrayList<>();
+        if (first.from == first.to) {
+            addChecked(found, List.of(first));
+            return found;
+        }
+        if (maxCycleLength < 2) {
+            return found;
+        }
+        double[][] back = lightestWaysBack(first.from, 0);
+        boolean[] visited = new boolean[codes.size()];
+        visited[first.from] = true;
+        visited[first.to] = true;
+        List<Edge> path = new ArrayList<>(maxCycleLength);
+        path.add(first);
+        extend(first.from, 0, first.to, first.weight, path, visited, back, found);
+        return found;
+    }
+
+    /** Returns the loops of at most {@code maxCycleLength} hops whose other currencies come after {@code start}. */
+    private List<List<Edge>> findLoopsFrom(int start) {
+        List<List<Edge>> found = new ArrayList<>();
+        Edge self = out.get(start).get(start);
+        if (self != null) {
+            addChecked(found, List.of(self));
+        }
+        if (maxCycleLength < 2) {
+            return found;
+        }
+        double[][] back = lightestWaysBack(start, start + 1);
+        boolean[] visited = new boolean[codes.size()];
+        visited[start] = true;
+        List<Edge> path = new ArrayList<>(maxCycleLength);
+        for (Edge edge : out.get(start).values()) {
+            if (found.size() >= maxLoopsPerSearch) {
+                break;
+            }
+            if (edge.to > start && edge.weight + back[maxCycleLength - 1][edge.to] <= maxWeight) {
+                visited[edge.to] = true;
+                path.add(edge);
+                extend(start, start + 1, edge.to, edge.weight, path, visited, back, found);
+                path.remove(path.size() - 1);
+                visited[edge.to] = false;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Closes the simple path from {@code start} to {@code at} with an edge back to {@code start},
+     * then extends it by each edge to a currency not visited yet, at least {@code minNode}, from
+     * which a loop can still be made, until {@code maxLoopsPerSearch} loops are found.
+     */
+    private void extend(int start, int minNode, int at, double weight, List<Edge> path, boolean[] visited,
+                        double[][] back, List<List<Edge>> found) {
+        Edge closing = out.get(at).get(start);
+        if (closing != null && weight + closing.weight <= maxWeight) {
+            path.add(closing);
+            addChecked(found, List.copyOf(path));
+            path.remove(path.size() - 1);
+        }
+        // Hops left for the way back after the next one.
+        int remaining = maxCycleLength - path.size() - 1;
+        if (remaining < 1) {
+            return;
+        }
+        for (Edge edge : out.get(at).values()) {
+            if (found.size() >= maxLoopsPerSearch) {
+                return;
+            }
+            int to = edge.to;
+            double extended = weight + edge.weight;
+            if (to < minNode || visited[to] || extended + back[remaining][to] > maxWeight) {
+                continue;
+            }
+            visited[to] = true;
+            path.add(edge);
+            extend(start, minNode, to, extended, path, visited, back, found);
+            path.remove(path.size() - 1);
+            visited[to] = false;
+        }
+    }
+
+    /**
+     * Returns, for up to {@code maxCycleLength - 1} hops {@code h}, the weight of the lightest walk
+     * of at most {@code h} hops from each currency to {@code start} through currencies of at least
+     * {@code minNode}. A path is only extended to a currency if this still makes a loop.
+     */
+    private double[][] lightestWaysBack(int start, int minNode) {
+        int n = codes.size();
+        double[][] back = new double[maxCycleLength][];
+        back[0] = new double[n];
+        Arrays.fill(back[0], Double.POSITIVE_INFINITY);
+        for (int hops = 1; hops < maxCycleLength; hops++) {
+            double[] previous = back[hops - 1];
+            double[] current = previous.clone();
+            for (int node = minNode; node < n; node++) {
+                if (node == start) {
+                    continue;
+                }
+                for (Edge edge : out.get(node).values()) {
+                    double rest = edge.to == start ? 0 : edge.to >= minNode ? previous[edge.to] : Double.POSITIVE_INFINITY;
+                    if (edge.weight + rest < current[node]) {
+                        current[node] = edge.weight + rest;
+                    }
+                }
+            }
+            back[hops] = current;
+        }
+        return back;
+    }
+
+    private void addChecked(List<List<Edge>> found, List<Edge> loop) {
+        if (found.size() < maxLoopsPerSearch && checked(loop) != null) {
+            found.add(loop);
+        }
+    }
+
+    private List<Edge> checked(List<Edge> loop) {
+        return product(loop).compareTo(minProduct) > 0 ? loop : null;
+    }
+
+    private static BigDecimal product(List<Edge> loop) {
+        BigDecimal product = BigDecimal.ONE;
+        for (Edge edge : loop) {
+            product = product.multiply(edge.rate, PRODUCT_CONTEXT);
+        }
+        return product;
+    }
+
+    private void addLoop(List<Edge> loop) {
+        if (loop == null) {
+            return;
+        }
+        // Starts at the smallest code, so the same loop found from different pairs is kept once.
+        int first = 0;
+        for (int i = 1; i < loop.size(); i++) {
+            if (codes.get(loop.get(i).from).compareTo(codes.get(loop.get(first).from)) < 0) {
+                first = i;
+            }
+        }
+        List<Edge> rotated = new ArrayList<>(loop.size());
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < loop.size(); i++) {
+            Edge edge = loop.get((first + i) % loop.size());
+            rotated.add(edge);
+            key.append(codes.get(edge.from)).append('>');
+        }
+        String loopKey = key.toString();
+        if (loops.putIfAbsent(loopKey, new Loop(rotated, toPath(rotated))) == null) {
+            for (Edge edge : rotated) {
+                loopsByPair.computeIfAbsent(pair(edge.from, edge.to), pair -> new HashSet<>()).add(loopKey);
+            }
+        }
+    }
+
+    private void dropLoop(String key) {
+        List<Edge> loop = loops.remove(key).edges;
+        for (Edge edge : loop) {
+            Set<String> keys = loopsByPair.get(pair(edge.from, edge.to));
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                loopsByPair.remove(pair(edge.from, edge.to));
+            }
+        }
+    }
+
+    private RateGraph.Path toPath(List<Edge> loop) {
+        List<RateGraph.Hop> hops = new ArrayList<>(loop.size());
+        for (Edge edge : loop) {
+            hops.add(new RateGraph.Hop(edge.bankId, codes.get(edge.from), codes.get(edge.to), edge.rate));
+        }
+        return new RateGraph.Path(hops);
+    }
+
+    private void publish() {
+        List<RateGraph.Path> paths = new ArrayList<>(loops.size());
+        for (Loop loop : loops.values()) {
+            paths.add(loop.path);
+        }
+        paths.sort(Comparator.comparing(RateGraph.Path::getRate).reversed());
+        published = List.copyOf(paths);
+    }
+
+    private int node(String code) {
+        Integer id = index.get(code);
+        if (id == null) {
+            id = codes.size();
+            index.put(code, id);
+            codes.add(code);
+            out.add(new HashMap<>());
+        }
+        return id;
+    }
+
+    private static long pair(int from, int to) {
+        return (long) from << 32 | to & 0xFFFFFFFFL;
+    }
+
+    private static final class Edge {
+        final int from;
+        final int to;
+        final long bankId;
+        final BigDecimal rate;
+        final double weight;
+
+        Edge(int from, int to, long bankId, BigDecimal rate) {
+            this.from = from;
+            this.to = to;
+            this.bankId = bankId;
+            this.rate = rate;
+            this.weight = -Math.log(rate.doubleValue());
+        }
+    }
+
+    private static final class Loop {
+        final List<Edge> edges;
+        final RateGraph.Path path;
+
+        Loop(List<Edge> edges, RateGraph.Path path) {
+            this.edges = edges;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The rate every bank offers for each pair, to find the best one again when the bank offering it
+ * changes or drops its rate. Not thread-safe; {@link RateGraph} and {@link ArbitrageMonitor} use it
+ * under their own locks for their edges across all banks.
+ */
+final class BestRates {
+
+    // Rates by source code, target code and bank.
+    private final Map<String, Map<String, Map<Long, BigDecimal>>> rates = new HashMap<>();
+
+    void put(long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        rates.computeIfAbsent(fromCurrencyCode, code -> new HashMap<>())
+                .computeIfAbsent(toCurrencyCode, code -> new HashMap<>())
+                .put(bankId, rate);
+    }
+
+    /** Removes the bank's rate for the pair; returns {@code false} if it had none. */
+    boolean remove(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        Map<String, Map<Long, BigDecimal>> from = rates.get(fromCurrencyCode);
+        Map<Long, BigDecimal> banks = from == null ? null : from.get(toCurrencyCode);
+        if (banks == null || banks.remove(bankId) == null) {
+            return false;
+        }
+        if (banks.isEmpty()) {
+            from.remove(toCurrencyCode);
+            if (from.isEmpty()) {
+                rates.remove(fromCurrencyCode);
+            }
+        }
+        return true;
+    }
+
+    /** Removes every rate of the bank and passes each pair it had a rate for to {@code removed}. */
+    void removeBank(long bankId, BiConsumer<String, String> removed) {
+        List<String[]> pairs = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Map<Long, BigDecimal>>> from : rates.entrySet()) {
+            for (Map.Entry<String, Map<Long, BigDecimal>> to : from.getValue().entrySet()) {
+                if (to.getValue().containsKey(bankId)) {
+                    pairs.add(new String[]{from.getKey(), to.getKey()});
+                }
+            }
+        }
+        for (String[] pair : pairs) {
+            remove(bankId, pair[0], pair[1]);
+            removed.accept(pair[0], pair[1]);
+        }
+    }
+
+    /** Returns the best rate any bank offers for the pair, or {@code null} if none does. */
+    Offer best(String fromCurrencyCode, String toCurrencyCode) {
+        Map<String, Map<Long, BigDecimal>> from = rates.get(fromCurrencyCode);
+        Map<Long, BigDecimal> banks = from == null ? null : from.get(toCurrencyCode);
+        if (banks == null) {
+            return null;
+        }
+        Offer best = null;
+        for (Map.Entry<Long, BigDecimal> entry : banks.entrySet()) {
+            if (best == null || entry.getValue().compareTo(best.rate) > 0) {
+                best = new Offer(entry.getKey(), entry.getValue());
+            }
+        }
+        return best;
+    }
+
+    void clear() {
+        rates.clear();
+    }
+
+    /** A bank's rate for a pair. */
+    static final class Offer {
+        final long bankId;
+        final BigDecimal rate;
+
+        Offer(long bankId, BigDecimal rate) {
+            this.bankId = bankId;
+            this.rate = rate;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.currencyconverter.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over string or {@code long} keys. {@code mightContain} never returns {@code false}
+ * for a key that was put, and returns {@code true} for an absent key with about the configured
+ * probability. Keys cannot be removed. The bit table is a power of two so bit positions come from a mask, and
+ * the probe positions are derived from one 64-bit hash by double hashing. All operations are
+ * lock-free.
+ */
+public final class BloomFilter {
+
+    private static final int MAX_WORDS = 1 << 26; // 4G bits, 512MB
+
+    private final AtomicLongArray words;
+    private final long bitMask;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions number of keys the filter is sized for
+     * @param falsePositiveRate  wanted false positive probability at that many keys, in (0, 1)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        long insertions = Math.max(1, expectedInsertions);
+        double optimalBits = -insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long wordCount = Math.max(1, Math.min(MAX_WORDS, (long) Math.ceil(optimalBits / Long.SIZE)));
+        int words = (int) Math.max(1, Long.highestOneBit(wordCount - 1) << 1);
+        this.words = new AtomicLongArray(words);
+        this.bitMask = (long) words * Long.SIZE - 1;
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round(optimalBits / insertions * Math.log(2))));
+    }
+
+    public void put(CharSequence key) {
+        putHash(hash(key));
+    }
+
+    public void put(long key) {
+        putHash(mix(key));
+    }
+
+    public boolean mightContain(CharSequence key) {
+        return mightContainHash(hash(key));
+    }
+
+    public boolean mightContain(long key) {
+        return mightContainHash(mix(key));
+    }
+
+    public long bitSize() {
+        return bitMask + 1;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private void putHash(long hash) {
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            setBit((hash + i * step) & bitMask);
+        }
+    }
+
+    private boolean mightContainHash(long hash) {
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (hash + i * step) & bitMask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current = words.get(index);
+        while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask)) {
+            current = words.get(index);
+        }
+    }
+
+    /** FNV-1a over the chars, finished with the murmur3 64-bit mixer. */
+    private static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.currencyconverter.utils;
+
+import java.util.Objects;
+
+/**
+ * Typed name of a cache held by {@link InMemoryCacheManager}. The type parameters let callers get
+ * the region's cache back without casts.
+ */
+public final class CacheRegion<K, V> {
+
+    private final String name;
+
+    private CacheRegion(String name) {
+        this.name = Objects.requireNonNull(name, "name");
+    }
+
+    public static <K, V> CacheRegion<K, V> of(String name) {
+        return new CacheRegion<>(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CacheRegion && name.equals(((CacheRegion<?, ?>) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.currencyconverter.utils;
+
+/** Point-in-time counters of an {@link InMemoryCache}; counts are totals since the cache was created. */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expirationCount;
+    private final long invalidationCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long entryCount;
+    private final long weightedSize;
+    private final long maxSize;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long expirationCount,
+                      long invalidationCount, long loadSuccessCount, long loadFailureCount,
+                      long entryCount, long weightedSize, long maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+        this.invalidationCount = invalidationCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.entryCount = entryCount;
+        this.weightedSize = weightedSize;
+        this.maxSize = maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.currencyconverter.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of currencies, looked up by code without hashing: a code of three upper-case
+ * letters is read as a base-26 number, which indexes arrays of 26<sup>3</sup> slots holding the
+ * id and the name. The few codes of another form are kept in a map.
+ *
+ * <p>A changed table is made by {@link #toBuilder()}; readers holding a table never see the change.
+ */
+public final class CurrencyTable {
+
+    /** Number of codes of three upper-case letters. */
+    public static final int SLOTS = 26 * 26 * 26;
+
+    /** Returned by {@link #idOf} for unknown codes; ids start at 1. */
+    public static final long NO_ID = 0;
+
+    public static final CurrencyTable EMPTY = new CurrencyTable(new long[SLOTS], new String[SLOTS], Map.of(), 0);
+
+    private final long[] ids;
+    private final String[] names;
+    private final Map<String, Entry> others;
+    private final int size;
+
+    private CurrencyTable(long[] ids, String[] names, Map<String, Entry> others, int size) {
+        this.ids = ids;
+        this.names = names;
+        this.others = others;
+        this.size = size;
+    }
+
+    /** Returns the slot of a code of three upper-case letters, or -1 for any other code. */
+    public static int slotOf(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int slot = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            slot = slot * 26 + (c - 'A');
+        }
+        return slot;
+    }
+
+    public boolean contains(String code) {
+        return idOf(code) != NO_ID;
+    }
+
+    /** Returns the id of the currency, or {@link #NO_ID}. */
+    public long idOf(String code) {
+        int slot = slotOf(code);
+        if (slot >= 0) {
+            return ids[slot];
+        }
+        Entry entry = code == null ? null : others.get(code);
+        return entry == null ? NO_ID : entry.id;
+    }
+
+    /** Returns the name of the currency, or {@code null} if it is unknown or has no name. */
+    public String nameOf(String code) {
+        int slot = slotOf(code);
+        if (slot >= 0) {
+            return names[slot];
+        }
+        Entry entry = code == null ? null : others.get(code);
+        return entry == null ? null : entry.name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final String name;
+
+        Entry(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    /** Changes to apply on top of a table. A builder makes one table and must not be reused. */
+    public static final class Builder {
+        private final long[] ids;
+        private final String[] names;
+        private final Map<String, Entry> others;
+        private int size;
+
+        private Builder(CurrencyTable base) {
+            this.ids = Arrays.copyOf(base.ids, SLOTS);
+            this.names = Arrays.copyOf(base.names, SLOTS);
+            this.others = new HashMap<>(base.others);
+            this.size = base.size;
+        }
+
+        /** Adds the currency or replaces the one with the code. */
+        public Builder put(long id, String code, String name) {
+            if (id <= NO_ID) {
+                throw new IllegalArgumentException("Currency id must be positive: " + id);
+            }
+            int slot = slotOf(code);
+            if (slot >= 0) {
+                if (ids[slot] == NO_ID) {
+                    size++;
+                }
+                ids[slot] = id;
+                names[slot] = name;
+            } else if (code != null && others.put(code, new Entry(id, name)) == null) {
+                size++;
+            }
+            return this;
+        }
+
+        public Builder remove(String code) {
+            int slot = slotOf(code);
+            if (slot >= 0) {
+                if (ids[slot] != NO_ID) {
+                    size--;
+                }
+                ids[slot] = NO_ID;
+                names[slot] = null;
+            } else if (code != null && others.remove(code) != null) {
+                size--;
+            }
+            return this;
+        }
+
+        /** Removes the currency with the id, whatever its code. */
+        public Builder removeId(long id) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (ids[slot] == id) {
+                    ids[slot] = NO_ID;
+                    names[slot] = null;
+                    size--;
+                }
+            }
+            int before = others.size();
+            others.values().removeIf(entry -> entry.id == id);
+            size -= before - others.size();
+            return this;
+        }
+
+        public CurrencyTable build() {
+            return new CurrencyTable(ids, names, Map.copyOf(others), size);
+        }
+    }
+}
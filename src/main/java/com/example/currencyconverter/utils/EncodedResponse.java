@@ -0,0 +1,112 @@
+package com.example.currencyconverter.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body encoded once for reuse: the UTF-8 bytes, optionally their gzip form, and a
+ * strong ETag per representation derived from a SHA-256 of the bytes. The byte arrays are
+ * shared by every response written from the instance and must not be modified.
+ */
+public final class EncodedResponse {
+
+    private static final int ETAG_BYTES = 16;
+
+    private final byte[] body;
+    private final byte[] gzipBody;
+    private final String etag;
+    private final String gzipEtag;
+
+    private EncodedResponse(byte[] body, byte[] gzipBody, String etag) {
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.etag = "\"" + etag + "\"";
+        this.gzipEtag = "\"" + etag + "-gzip\"";
+    }
+
+    /**
+     * Wraps the encoded body, also compressing it when it is at least {@code gzipMinSize} bytes
+     * (a negative value disables compression) and the compressed form is actually smaller.
+     */
+    public static EncodedResponse of(byte[] body, int gzipMinSize) {
+        byte[] gzipBody = null;
+        if (gzipMinSize >= 0 && body.length >= gzipMinSize) {
+            byte[] compressed = gzip(body);
+            if (compressed.length < body.length) {
+                gzipBody = compressed;
+            }
+        }
+        return new EncodedResponse(body, gzipBody, digest(body));
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /** The gzip-compressed body, or {@code null} if it was not worth compressing. */
+    public byte[] getGzipBody() {
+        return gzipBody;
+    }
+
+    public boolean hasGzipBody() {
+        return gzipBody != null;
+    }
+
+    /** Strong ETag of the identity body, quoted. */
+    public String getEtag() {
+        return etag;
+    }
+
+    /** Strong ETag of the gzip body, quoted; differs from {@link #getEtag()} as the bytes differ. */
+    public String getGzipEtag() {
+        return gzipEtag;
+    }
+
+    /**
+     * Returns {@code true} if an {@code If-None-Match} header value names either representation of
+     * this body, or is {@code *}. Weak validators are compared by their opaque tag.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(Arrays.copyOf(hash, ETAG_BYTES));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.currencyconverter.utils;
+
+/** How {@link InMemoryCache} picks entries to drop when it is over its size budget. */
+public enum EvictionPolicy {
+    /** Admits new entries only if they are read more often than the entry they would replace. */
+    TINY_LFU,
+    /** Drops the least recently used entry; suits regions whose keys are mostly read once. */
+    LRU
+}
@@ -0,0 +1,127 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Multiplies decimal amounts by rates on scaled {@code long}s.
+ *
+ * <p>An amount and a rate of at most 18 digits are multiplied as unscaled longs and the product
+ * rounded to the requested scale with integer division, which allocates only the result. When a
+ * step would overflow, the same product is computed with {@link BigDecimal}, so the result is
+ * always equal to {@code amount.multiply(rate).setScale(scale, roundingMode)}.
+ */
+public final class FixedPoint {
+
+    private static final int MAX_DIGITS = 18;
+    // Returned instead of a product that does not fit; a product equal to it is recomputed too.
+    private static final long OVERFLOW = Long.MIN_VALUE;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Returns {@code amount * rate} rounded to {@code scale} digits.
+     *
+     * @throws ArithmeticException if {@code roundingMode} is {@link RoundingMode#UNNECESSARY} and the product needs rounding
+     */
+    public static BigDecimal multiply(BigDecimal amount, BigDecimal rate, int scale, RoundingMode roundingMode) {
+        if (fits(amount) && fits(rate)) {
+            long product = multiply(amount.unscaledValue().longValue(), amount.scale() + rate.scale(),
+                    rate.unscaledValue().longValue(), scale, roundingMode);
+            if (product != OVERFLOW) {
+                return BigDecimal.valueOf(product, scale);
+            }
+        }
+        return amount.multiply(rate).setScale(scale, roundingMode);
+    }
+
+    /**
+     * Returns {@code amount * rate} rounded to {@code scale} digits, for a rate given unscaled at
+     * {@code rateScale}, such as the rates of a {@link RateMatrix}.
+     */
+    public static BigDecimal multiply(BigDecimal amount, long unscaledRate, int rateScale, int scale, RoundingMode roundingMode) {
+        if (fits(amount) && rateScale >= 0 && rateScale <= MAX_DIGITS) {
+            long product = multiply(amount.unscaledValue().longValue(), amount.scale() + rateScale,
+                    unscaledRate, scale, roundingMode);
+            if (product != OVERFLOW) {
+                return BigDecimal.valueOf(product, scale);
+            }
+        }
+        return amount.multiply(BigDecimal.valueOf(unscaledRate, rateScale)).setScale(scale, roundingMode);
+    }
+
+    /** Returns the unscaled product at {@code scale}, or {@link #OVERFLOW}. */
+    private static long multiply(long amount, int productScale, long rate, int scale, RoundingMode roundingMode) {
+        long product;
+        try {
+            product = Math.multiplyExact(amount, rate);
+        } catch (ArithmeticException e) {
+            return OVERFLOW;
+        }
+        int shift = productScale - scale;
+        if (shift == 0) {
+            return product;
+        }
+        if (shift < 0) {
+            if (-shift > MAX_DIGITS) {
+                return product == 0 ? 0 : OVERFLOW;
+            }
+            long high = Math.multiplyHigh(product, POWERS_OF_TEN[-shift]);
+            long scaled = product * POWERS_OF_TEN[-shift];
+            // The full product fits only if the high word is the sign extension of the low one.
+            if (high != (scaled >> 63) || scaled == OVERFLOW) {
+                return OVERFLOW;
+            }
+            return scaled;
+        }
+        if (shift > MAX_DIGITS) {
+            return OVERFLOW;
+        }
+        long divisor = POWERS_OF_TEN[shift];
+        long quotient = product / divisor;
+        long remainder = product % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        return roundUp(quotient, remainder, divisor, roundingMode) ? quotient + Long.signum(product) : quotient;
+    }
+
+    /** Returns whether a truncated quotient moves one unit away from zero. */
+    private static boolean roundUp(long quotient, long remainder, long divisor, RoundingMode roundingMode) {
+        boolean negative = remainder < 0;
+        long twice = Math.abs(remainder) * 2;
+        switch (roundingMode) {
+            case UP:
+                return true;
+            case DOWN:
+                return false;
+            case CEILING:
+                return !negative;
+            case FLOOR:
+                return negative;
+            case HALF_UP:
+                return twice >= divisor;
+            case HALF_DOWN:
+                return twice > divisor;
+            case HALF_EVEN:
+                return twice > divisor || twice == divisor && (quotient & 1) != 0;
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            default:
+                throw new IllegalArgumentException("Unknown rounding mode: " + roundingMode);
+        }
+    }
+
+    private static boolean fits(BigDecimal value) {
+        return value.scale() >= 0 && value.scale() <= MAX_DIGITS && value.precision() <= MAX_DIGITS;
+    }
+}
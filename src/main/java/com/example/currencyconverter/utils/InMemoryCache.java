@@ -1,100 +1,915 @@
 package com.example.currencyconverter.utils;
 
-import java.nio.ByteBuffer;
-import java.util.LinkedHashMap;
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
 
-@Component
+/**
+ * Thread-safe size-bounded cache.
+ *
+ * <p>Values live in a {@link ConcurrentHashMap}, so {@link #get} never blocks. Eviction order is
+ * kept per segment (keys are striped over a power-of-two number of segments, each with its own
+ * lock) using a W-TinyLFU layout: new entries enter a small LRU window, then compete for the main
+ * space against the probation victim by estimated access frequency. Entries read again while in
+ * probation are promoted to the protected area. Reads only reorder when the segment lock is free,
+ * so a hot key never turns into a serialization point. {@link EvictionPolicy#LRU} skips the
+ * frequency filter and keeps exact LRU order in a single segment instead.
+ *
+ * <p>Entry weights come from a {@link Weigher}; by default the approximate retained heap size in
+ * bytes, so {@code maxCacheSize} is a memory budget. The weighted size is changed only while
+ * holding the lock of the segment that owns the entry, which keeps it equal to the sum of the
+ * resident entry weights under any interleaving.
+ *
+ * <p>Entries can expire a fixed time after they were written (per cache or per entry) or after they
+ * were last read. Expired entries are never returned; they are removed by a {@link TimerWheel}
+ * that is advanced at most once a second from reads and writes, so no scan over the entries is
+ * needed.
+ *
+ * <p>Entries can carry tags naming the data they were derived from (a bank, a currency, a pair).
+ * An inverted tag-to-keys index, updated together with the entries under the segment locks, lets
+ * {@link #invalidateTag(String)} drop exactly the dependent entries instead of clearing the cache.
+ *
+ * <p>Loads through {@link #get(Object, Function)} are coalesced per key: while one caller runs the
+ * loader, other callers missing the same key wait on its future instead of hitting the database.
+ * A load that overlaps an eviction of its segment, a tag invalidation or a clear returns its value
+ * without storing it, since it may have read the data before the write that caused the eviction.
+ */
 public class InMemoryCache<K, V> {
 
     private static final Logger logger = LoggerFactory.getLogger(InMemoryCache.class);
 
-    private final int maxCacheSize;
-    private final Map<K, V> cache;
-    private ByteBuffer sizeBuffer;
-
-    public InMemoryCache(@Value("${cache.max-size:5242}") int maxCacheSize) {
-        this.maxCacheSize = maxCacheSize;
-        this.cache = new LinkedHashMap<K, V>(16, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-                if (sizeBuffer.position() > maxCacheSize) {
-                    removeSize(eldest.getKey(), eldest.getValue());
-                    logger.info("Cache is full, removing eldest entry: {}", eldest.getKey());
-                    return true;
-                }
-                return false;
-            }
-        };
-        this.sizeBuffer = ByteBuffer.allocate(maxCacheSize);
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int ESTIMATED_ENTRY_SIZE = 64;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int EVICT_PROBATION = 0;
+    private static final int EVICT_PROTECTED = 1;
+    private static final int EVICT_WINDOW = 2;
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long maxCacheSize;
+    private final Weigher<? super K, ? super V> weigher;
+    private final EvictionPolicy evictionPolicy;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long refreshAfterWriteNanos;
+    private final long loadTimeoutNanos;
+    private final Executor executor;
+    private final LongSupplier ticker;
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final Segment<K, V>[] segments;
+    private final FrequencySketch sketch;
+    private final AtomicLong weightedSize = new AtomicLong();
+    private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock timerLock = new ReentrantLock();
+    private final TimerWheel<Node<K, V>> timerWheel;
+    private volatile long lastCleanUpNanos;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final ConcurrentHashMap<String, Set<K>> tagIndex = new ConcurrentHashMap<>();
+    // Stamps order invalidations against loads; a load may store its value only if no invalidation
+    // that could cover its key got a stamp after the one taken before the load started.
+    private final AtomicLong invalidationStamps = new AtomicLong();
+    private volatile long lastWideInvalidation;
+
+    public InMemoryCache(long maxCacheSize) {
+        this(maxCacheSize, Weigher.retainedSize());
+    }
+
+    public InMemoryCache(long maxCacheSize, Weigher<? super K, ? super V> weigher) {
+        this(InMemoryCache.<K, V>builder().maximumSize(maxCacheSize).weigher(weigher));
+    }
+
+    @SuppressWarnings("unchecked")
+    private InMemoryCache(Builder<K, V> builder) {
+        this.maxCacheSize = builder.maximumSize;
+        this.weigher = builder.weigher;
+        this.evictionPolicy = builder.evictionPolicy;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.loadTimeoutNanos = builder.loadTimeoutNanos;
+        this.executor = builder.executor;
+        this.ticker = builder.ticker;
+        this.data = new ConcurrentHashMap<>();
+        // LRU order is only exact within a segment, so that policy keeps a single one.
+        int segmentCount = evictionPolicy == EvictionPolicy.LRU ? 1 : Math.min(MAX_SEGMENTS,
+                Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>();
+        }
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxCacheSize / ESTIMATED_ENTRY_SIZE));
+        this.lastCleanUpNanos = ticker.getAsLong();
+        this.timerWheel = new TimerWheel<>(lastCleanUpNanos);
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
     }
 
     public V get(K key) {
-        V value = cache.get(key);
-        if (value != null) {
-            logger.debug("Cache hit for key: {}", key);
-        } else {
-            logger.debug("Cache miss for key: {}", key);
+        Node<K, V> node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Returns the cached value, loading and storing it with {@code loader} on a miss. Concurrent
+     * misses on the same key share one load: the first caller runs the loader on its own thread and
+     * the others wait for its result (at most the configured load timeout) or get its exception.
+     * When refresh-after-write is configured and the entry is older than that, the current value is
+     * returned and a reload is started in the background; the reloaded value replaces the entry
+     * unless it was changed or removed in the meantime. A {@code null} result is not cached.
+     *
+     * @throws CacheLoadTimeoutException if another caller's load did not finish within the load timeout
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return get(key, loader, (k, value) -> Set.of());
+    }
+
+    /**
+     * Same as {@link #get(Object, Function)}, storing a loaded value under the tags {@code tagger}
+     * gives for the key and value. Passing loader and tagger that capture nothing keeps the hit path
+     * free of allocations.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader,
+                 BiFunction<? super K, ? super V, ? extends Collection<String>> tagger) {
+        Node<K, V> node = getNode(key);
+        if (node != null) {
+            refreshIfNeeded(node, loader, tagger);
+            return node.value;
+        }
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return awaitLoad(key, inFlight);
+        }
+        try {
+            long stamp = invalidationStamps.get();
+            V value = loader.apply(key);
+            if (value != null) {
+                put(key, value, expireAfterWriteNanos, tagger.apply(key, value), false, stamp);
+            }
+            loadSuccessCount.increment();
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            loadFailureCount.increment();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private V awaitLoad(K key, CompletableFuture<V> load) {
+        logger.debug("Waiting for in-flight load of key: {}", key);
+        try {
+            return loadTimeoutNanos > 0 ? load.get(loadTimeoutNanos, TimeUnit.NANOSECONDS) : load.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        } catch (TimeoutException e) {
+            throw new CacheLoadTimeoutException("Timed out waiting for cache load of key: " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheLoadTimeoutException("Interrupted while waiting for cache load of key: " + key);
         }
-        return value;
     }
 
     public void put(K key, V value) {
-        int entrySize = estimateSize(key, value);
+        put(key, value, expireAfterWriteNanos, Set.of());
+    }
+
+    /** Stores an entry that expires {@code timeToLive} after this write, regardless of the cache default. */
+    public void put(K key, V value, Duration timeToLive) {
+        put(key, value, timeToLive.toNanos(), Set.of());
+    }
+
+    /**
+     * Stores an entry labelled with the tags of the data it was built from, so that
+     * {@link #invalidateTag(String)} can drop it when that data changes. The tags replace the ones
+     * of a previous value under the same key.
+     */
+    public void put(K key, V value, Collection<String> tags) {
+        put(key, value, expireAfterWriteNanos, tags);
+    }
+
+    /**
+     * Stores the tagged entry only if the key has no live value, leaving newer data written by a
+     * concurrent load or update in place. Unlike {@link #get(Object, Function)} it records no hit or
+     * miss, so bulk preloading does not skew the statistics. Returns {@code true} if it was stored.
+     */
+    public boolean putIfAbsent(K key, V value, Collection<String> tags) {
+        return put(key, value, expireAfterWriteNanos, tags, true);
+    }
+
+    /**
+     * Same as {@link #putIfAbsent(Object, Object, Collection)} for a value read after
+     * {@link #invalidationStamp()} returned {@code stamp}: it is not stored if the key may have been
+     * evicted or invalidated since, as {@link #get(Object, Function)} does for its loads.
+     */
+    public boolean putIfAbsent(K key, V value, Collection<String> tags, long stamp) {
+        return put(key, value, expireAfterWriteNanos, tags, true, stamp);
+    }
+
+    /** Returns the stamp to take before reading values stored later with {@link #putIfAbsent(Object, Object, Collection, long)}. */
+    public long invalidationStamp() {
+        return invalidationStamps.get();
+    }
+
+    private void put(K key, V value, long timeToLiveNanos, Collection<String> tags) {
+        put(key, value, timeToLiveNanos, tags, false);
+    }
+
+    private boolean put(K key, V value, long timeToLiveNanos, Collection<String> tags, boolean onlyIfAbsent) {
+        return put(key, value, timeToLiveNanos, tags, onlyIfAbsent, Long.MAX_VALUE);
+    }
+
+    /** Stores the entry unless an invalidation stamped after {@code stamp} may cover it. */
+    private boolean put(K key, V value, long timeToLiveNanos, Collection<String> tags, boolean onlyIfAbsent,
+                        long stamp) {
+        int entrySize = weigher.weigh(key, value);
         if (entrySize > maxCacheSize) {
             logger.warn("Entry size {} exceeds max cache size {}", entrySize, maxCacheSize);
-            return;
+            if (!onlyIfAbsent) {
+                evict(key);
+            }
+            return false;
         }
-        while (sizeBuffer.position() + entrySize > maxCacheSize) {
-            K eldestKey = cache.keySet().iterator().next();
-            V eldestValue = cache.get(eldestKey);
-            cache.remove(eldestKey);
-            removeSize(eldestKey, eldestValue);
-            logger.info("Evicting entry {} to make room", eldestKey);
+        long now = ticker.getAsLong();
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            if (segment.lastInvalidation > stamp || lastWideInvalidation > stamp) {
+                logger.debug("Discarding loaded value for key {}: invalidated during the load", key);
+                return false;
+            }
+            Node<K, V> existing = data.get(key);
+            if (existing != null && onlyIfAbsent && !isExpired(existing, now)) {
+                return false;
+            }
+            if (existing != null) {
+                setValue(segment, existing, value, entrySize, now);
+                setTags(existing, tags);
+                existing.timeToLiveNanos = timeToLiveNanos;
+                onAccess(segment, existing);
+                scheduleExpiration(existing, now);
+            } else {
+                Node<K, V> node = new Node<>(key, value, entrySize);
+                node.writeTime = now;
+                node.accessTime = now;
+                node.timeToLiveNanos = timeToLiveNanos;
+                data.put(key, node);
+                setTags(node, tags);
+                segment.window.addLast(node);
+                weightedSize.addAndGet(entrySize);
+                scheduleExpiration(node, now);
+                if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+                    sketch.increment(key);
+                    drainWindow(segment);
+                }
+            }
+            evictEntries(segment, EVICT_PROBATION);
+        } finally {
+            segment.lock.unlock();
         }
-
-        cache.put(key, value);
-        addSize(key, value);
+        if (weightedSize.get() > maxCacheSize) {
+            evictAcrossSegments();
+        }
+        cleanUpIfDue(now);
         logger.debug("Cache put for key: {}", key);
+        return true;
     }
 
     public void evict(K key) {
-        V value = cache.remove(key);
-        if (value != null) {
-            removeSize(key, value);
-            logger.debug("Cache evict for key: {}", key);
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            // Stamped even without an entry, which a load of the key may be about to store.
+            segment.lastInvalidation = invalidationStamps.incrementAndGet();
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                removeNode(segment, node);
+                logger.debug("Cache evict for key: {}", key);
+            }
+        } finally {
+            segment.lock.unlock();
         }
     }
 
+    /** Removes every entry stored with the given tag. Returns how many were removed. */
+    public int invalidateTag(String tag) {
+        // The tags of a value still loading are unknown, so this stops every load in flight from
+        // storing. It is stamped before the index is read: a load storing earlier is in the index.
+        lastWideInvalidation = invalidationStamps.incrementAndGet();
+        Set<K> keys = tagIndex.get(tag);
+        if (keys == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (K key : List.copyOf(keys)) {
+            Segment<K, V> segment = segmentFor(key);
+            segment.lock.lock();
+            try {
+                Node<K, V> node = data.get(key);
+                if (node != null && node.tags.contains(tag)) {
+                    removeNode(segment, node);
+                    removed++;
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        if (removed > 0) {
+            invalidationCount.add(removed);
+            logger.debug("Cache invalidated {} entries tagged {}", removed, tag);
+        }
+        return removed;
+    }
+
     public void clear() {
-        cache.clear();
-        sizeBuffer.clear();
+        lastWideInvalidation = invalidationStamps.incrementAndGet();
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Node<K, V> node = segment.first(); node != null; node = segment.first()) {
+                    removeNode(segment, node);
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
         logger.info("Cache cleared");
     }
 
-    private int estimateSize(K key, V value) {
-        return key.toString().length() * 2 + value.toString().length() * 2;
+    /** Removes every entry whose expiration time has passed. Also runs as a side effect of reads and writes. */
+    public void cleanUp() {
+        long now = ticker.getAsLong();
+        lastCleanUpNanos = now;
+        expireEntries(now);
     }
 
-    private void addSize(K key, V value) {
-        int entrySize = estimateSize(key, value);
-        if (sizeBuffer.position() + entrySize <= maxCacheSize) {
-            sizeBuffer.position(sizeBuffer.position() + entrySize);
-        } else {
-            logger.error("Attempted to add an entry of size {} when only {} bytes remained", entrySize, maxCacheSize - sizeBuffer.position());
+    /**
+     * Returns up to {@code limit} live keys, hottest first: by estimated access frequency under
+     * {@link EvictionPolicy#TINY_LFU}, most recently used first under {@link EvictionPolicy#LRU}.
+     * Meant for snapshots; each segment is locked in turn while its keys are copied.
+     */
+    public List<K> hottestKeys(int limit) {
+        long now = ticker.getAsLong();
+        List<K> keys = new ArrayList<>(Math.min(limit, data.size()));
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                addKeysByRecency(keys, segment.protectedArea, now);
+                addKeysByRecency(keys, segment.probation, now);
+                addKeysByRecency(keys, segment.window, now);
+            } finally {
+                segment.lock.unlock();
+            }
         }
+        if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+            Map<K, Integer> frequencies = new HashMap<>(keys.size() * 2);
+            for (K key : keys) {
+                frequencies.put(key, sketch.frequency(key));
+            }
+            keys.sort(Comparator.comparingInt((K key) -> frequencies.get(key)).reversed());
+        }
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
     }
 
-    private void removeSize(K key, V value) {
-        int entrySize = estimateSize(key, value);
-        sizeBuffer.position(Math.max(0, sizeBuffer.position() - entrySize));
+    private void addKeysByRecency(List<K> keys, AccessOrderDeque<K, V> queue, long now) {
+        for (Node<K, V> node = queue.tail; node != null; node = node.prev) {
+            if (!isExpired(node, now)) {
+                keys.add(node.key);
+            }
+        }
     }
 
     public int getCurrentSize() {
-        return sizeBuffer.position();
+        return (int) Math.min(Integer.MAX_VALUE, weightedSize.get());
+    }
+
+    public long getMaxSize() {
+        return maxCacheSize;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), expirationCount.sum(),
+                invalidationCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                data.size(), weightedSize.get(), maxCacheSize);
+    }
+
+    private Node<K, V> getNode(K key) {
+        Node<K, V> node = data.get(key);
+        if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+            sketch.increment(key);
+        }
+        long now = ticker.getAsLong();
+        if (node != null && isExpired(node, now)) {
+            expireNode(node, now);
+            node = null;
+        }
+        if (node == null) {
+            missCount.increment();
+            logger.debug("Cache miss for key: {}", key);
+            cleanUpIfDue(now);
+            return null;
+        }
+        if (expireAfterAccessNanos > 0) {
+            node.accessTime = now;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        if (segment.lock.tryLock()) {
+            try {
+                onAccess(segment, node);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        cleanUpIfDue(now);
+        hitCount.increment();
+        logger.debug("Cache hit for key: {}", key);
+        return node;
+    }
+
+    private void setValue(Segment<K, V> segment, Node<K, V> node, V value, int entrySize, long now) {
+        node.value = value;
+        node.version++;
+        weightedSize.addAndGet(entrySize - node.weight);
+        segment.queue(node.queue).weight += entrySize - node.weight;
+        node.weight = entrySize;
+        node.writeTime = now;
+        node.accessTime = now;
+    }
+
+    private void refreshIfNeeded(Node<K, V> node, Function<? super K, ? extends V> loader,
+                                 BiFunction<? super K, ? super V, ? extends Collection<String>> tagger) {
+        if (refreshAfterWriteNanos <= 0 || ticker.getAsLong() - node.writeTime < refreshAfterWriteNanos) {
+            return;
+        }
+        K key = node.key;
+        if (!refreshing.add(key)) {
+            return;
+        }
+        long version = node.version;
+        try {
+            executor.execute(() -> {
+                try {
+                    completeRefresh(node, version, loader.apply(key), tagger);
+                } catch (RuntimeException e) {
+                    logger.warn("Background refresh failed for key: {}", key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            logger.warn("Background refresh rejected for key: {}", key);
+        }
+    }
+
+    private void completeRefresh(Node<K, V> node, long version, V value,
+                                 BiFunction<? super K, ? super V, ? extends Collection<String>> tagger) {
+        Segment<K, V> segment = segmentFor(node.key);
+        long now = ticker.getAsLong();
+        segment.lock.lock();
+        try {
+            // Replaced, removed, or updated in place by a put since the refresh was scheduled.
+            if (data.get(node.key) != node || node.version != version) {
+                logger.debug("Discarding refreshed value for key {}: entry changed meanwhile", node.key);
+                return;
+            }
+            if (value == null) {
+                removeNode(segment, node);
+                return;
+            }
+            int entrySize = weigher.weigh(node.key, value);
+            if (entrySize > maxCacheSize) {
+                removeNode(segment, node);
+                return;
+            }
+            setValue(segment, node, value, entrySize, now);
+            setTags(node, tagger.apply(node.key, value));
+            scheduleExpiration(node, now);
+            evictEntries(segment, EVICT_PROBATION);
+        } finally {
+            segment.lock.unlock();
+        }
+        logger.debug("Cache refreshed key: {}", node.key);
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return (node.timeToLiveNanos > 0 && now - node.writeTime >= node.timeToLiveNanos)
+                || (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    /** Puts the node on the timer wheel at its earliest possible expiration; callers hold the segment lock. */
+    private void scheduleExpiration(Node<K, V> node, long now) {
+        long remaining = Long.MAX_VALUE;
+        if (node.timeToLiveNanos > 0) {
+            remaining = node.timeToLiveNanos - (now - node.writeTime);
+        }
+        if (expireAfterAccessNanos > 0) {
+            remaining = Math.min(remaining, expireAfterAccessNanos - (now - node.accessTime));
+        }
+        timerLock.lock();
+        try {
+            if (remaining == Long.MAX_VALUE) {
+                timerWheel.deschedule(node);
+            } else {
+                timerWheel.schedule(node, now + Math.max(0, remaining));
+            }
+        } finally {
+            timerLock.unlock();
+        }
+    }
+
+    private void cleanUpIfDue(long now) {
+        if (now - lastCleanUpNanos >= CLEANUP_INTERVAL_NANOS) {
+            lastCleanUpNanos = now;
+            expireEntries(now);
+        }
+    }
+
+    private void expireEntries(long now) {
+        List<Node<K, V>> due;
+        if (!timerLock.tryLock()) {
+            return;
+        }
+        try {
+            due = timerWheel.advance(now);
+        } finally {
+            timerLock.unlock();
+        }
+        // Timers are a lower bound: an entry read since it was scheduled only gets rescheduled here.
+        for (Node<K, V> node : due) {
+            expireNode(node, now);
+        }
+    }
+
+    private void expireNode(Node<K, V> node, long now) {
+        Segment<K, V> segment = segmentFor(node.key);
+        segment.lock.lock();
+        try {
+            if (data.get(node.key) != node) {
+                return;
+            }
+            if (isExpired(node, now)) {
+                removeNode(segment, node);
+                expirationCount.increment();
+                logger.debug("Cache entry expired: {}", node.key);
+            } else {
+                scheduleExpiration(node, now);
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    private long segmentCapacity() {
+        return Math.max(1, maxCacheSize / segments.length);
+    }
+
+    private void onAccess(Segment<K, V> segment, Node<K, V> node) {
+        if (node.removed) {
+            return;
+        }
+        if (node.queue == Queue.PROBATION) {
+            segment.probation.remove(node);
+            node.queue = Queue.PROTECTED;
+            segment.protectedArea.addLast(node);
+            demoteProtected(segment);
+        } else {
+            segment.queue(node.queue).moveToBack(node);
+        }
+    }
+
+    private void drainWindow(Segment<K, V> segment) {
+        long windowMax = Math.max(1, segmentCapacity() * WINDOW_PERCENT / 100);
+        while (segment.window.weight > windowMax && segment.window.head != segment.window.tail) {
+            Node<K, V> candidate = segment.window.head;
+            segment.window.remove(candidate);
+            candidate.queue = Queue.PROBATION;
+            segment.probation.addLast(candidate);
+        }
+    }
+
+    private void demoteProtected(Segment<K, V> segment) {
+        long protectedMax = segmentCapacity() * PROTECTED_PERCENT / 100;
+        while (segment.protectedArea.weight > protectedMax && segment.protectedArea.head != segment.protectedArea.tail) {
+            Node<K, V> demoted = segment.protectedArea.head;
+            segment.protectedArea.remove(demoted);
+            demoted.queue = Queue.PROBATION;
+            segment.probation.addLast(demoted);
+        }
+    }
+
+    /**
+     * Evicts from the given (locked) segment until the cache fits its budget or the segment has
+     * nothing left at the allowed level. The probation head is the victim; the probation tail, which
+     * is the entry most recently moved out of the window, is the candidate, and the one with the lower
+     * estimated frequency is dropped. Protected and window entries are only taken at higher levels.
+     * Under {@link EvictionPolicy#LRU} every entry stays in the window and its head is dropped.
+     */
+    private void evictEntries(Segment<K, V> segment, int level) {
+        while (weightedSize.get() > maxCacheSize) {
+            if (evictionPolicy == EvictionPolicy.LRU) {
+                Node<K, V> eldest = segment.window.head;
+                if (eldest == null) {
+                    return;
+                }
+                removeNode(segment, eldest);
+                evictionCount.increment();
+                logger.info("Cache is full, evicting entry: {}", eldest.key);
+                continue;
+            }
+            Node<K, V> victim = segment.probation.head;
+            if (victim == null && level >= EVICT_PROTECTED) {
+                victim = segment.protectedArea.head;
+            }
+            if (victim == null && level >= EVICT_WINDOW) {
+                victim = segment.window.head;
+            }
+            if (victim == null) {
+                return;
+            }
+            Node<K, V> candidate = segment.probation.tail;
+            Node<K, V> evicted = victim;
+            if (victim.queue == Queue.PROBATION && candidate != victim
+                    && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                evicted = candidate;
+            }
+            removeNode(segment, evicted);
+            evictionCount.increment();
+            logger.info("Cache is full, evicting entry: {}", evicted.key);
+        }
+    }
+
+    private void evictAcrossSegments() {
+        for (int level = EVICT_PROBATION; level <= EVICT_WINDOW; level++) {
+            for (Segment<K, V> segment : segments) {
+                if (weightedSize.get() <= maxCacheSize) {
+                    return;
+                }
+                segment.lock.lock();
+                try {
+                    evictEntries(segment, level);
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /** Replaces the node's tags and keeps the tag index in step; callers hold the segment lock. */
+    private void setTags(Node<K, V> node, Collection<String> tags) {
+        Set<String> newTags = tags.isEmpty() ? Set.of() : Set.copyOf(tags);
+        for (String tag : node.tags) {
+            if (!newTags.contains(tag)) {
+                unindexTag(tag, node.key);
+            }
+        }
+        for (String tag : newTags) {
+            if (!node.tags.contains(tag)) {
+                // compute() keeps adding and the empty-set removal in unindexTag atomic per tag.
+                tagIndex.compute(tag, (t, keys) -> {
+                    Set<K> result = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                    result.add(node.key);
+                    return result;
+                });
+            }
+        }
+        node.tags = newTags;
+    }
+
+    private void unindexTag(String tag, K key) {
+        tagIndex.computeIfPresent(tag, (t, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private void removeNode(Segment<K, V> segment, Node<K, V> node) {
+        for (String tag : node.tags) {
+            unindexTag(tag, node.key);
+        }
+        data.remove(node.key, node);
+        segment.queue(node.queue).remove(node);
+        weightedSize.addAndGet(-node.weight);
+        node.removed = true;
+        timerLock.lock();
+        try {
+            timerWheel.deschedule(node);
+        } finally {
+            timerLock.unlock();
+        }
+    }
+
+    private enum Queue { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<K, V> extends TimerWheel.Timer {
+        private final K key;
+        private volatile V value;
+        private volatile long writeTime;
+        private volatile long accessTime;
+        // Bumped on every value change under the segment lock, so a refresh can tell an in-place update.
+        private volatile long version;
+        private long timeToLiveNanos;
+        private Set<String> tags = Set.of();
+        private int weight;
+        private Queue queue = Queue.WINDOW;
+        private boolean removed;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** Intrusive doubly-linked list, head is the eldest entry. Guarded by the segment lock. */
+    private static final class AccessOrderDeque<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+        private long weight;
+
+        private void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        private void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    private static final class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+        private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+        private final AccessOrderDeque<K, V> protectedArea = new AccessOrderDeque<>();
+        // Stamp of the last eviction of a key of this segment; guarded by the lock.
+        private long lastInvalidation;
+
+        private AccessOrderDeque<K, V> queue(Queue queue) {
+            switch (queue) {
+                case WINDOW:
+                    return window;
+                case PROBATION:
+                    return probation;
+                default:
+                    return protectedArea;
+            }
+        }
+
+        private Node<K, V> first() {
+            if (probation.head != null) {
+                return probation.head;
+            }
+            return protectedArea.head != null ? protectedArea.head : window.head;
+        }
+    }
+
+    public static final class Builder<K, V> {
+        private long maximumSize = Long.MAX_VALUE;
+        private Weigher<? super K, ? super V> weigher = Weigher.retainedSize();
+        private EvictionPolicy evictionPolicy = EvictionPolicy.TINY_LFU;
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private long refreshAfterWriteNanos;
+        private long loadTimeoutNanos;
+        private Executor executor = ForkJoinPool.commonPool();
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder<K, V> maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> evictionPolicy(EvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        /** Zero or negative disables it. */
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            this.expireAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        /** Zero or negative disables it. */
+        public Builder<K, V> expireAfterAccess(Duration duration) {
+            this.expireAfterAccessNanos = duration.toNanos();
+            return this;
+        }
+
+        /** Reload age for {@link InMemoryCache#get(Object, Function)}; zero or negative disables it. */
+        public Builder<K, V> refreshAfterWrite(Duration duration) {
+            this.refreshAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        /** How long a caller waits for another caller's load of the same key; zero or negative waits indefinitely. */
+        public Builder<K, V> loadTimeout(Duration duration) {
+            this.loadTimeoutNanos = duration.toNanos();
+            return this;
+        }
+
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /** Nanosecond time source, replaceable in tests. */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public InMemoryCache<K, V> build() {
+            return new InMemoryCache<>(this);
+        }
     }
-}
\ No newline at end of file
+}
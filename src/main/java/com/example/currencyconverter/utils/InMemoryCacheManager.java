@@ -0,0 +1,79 @@
+package com.example.currencyconverter.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the named cache regions of the application. Each region is an independent
+ * {@link InMemoryCache} with its own budget and eviction policy, so a burst of keys in one region
+ * cannot push out entries of another.
+ */
+public class InMemoryCacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryCacheManager.class);
+
+    private final Map<String, InMemoryCache<?, ?>> caches = new LinkedHashMap<>();
+
+    public synchronized <K, V> InMemoryCacheManager register(CacheRegion<K, V> region, InMemoryCache<K, V> cache) {
+        if (caches.putIfAbsent(region.getName(), cache) != null) {
+            throw new IllegalStateException("Cache region already registered: " + region);
+        }
+        logger.info("Registered cache region '{}' with max size {} ({})",
+                region, cache.getMaxSize(), cache.getEvictionPolicy());
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <K, V> InMemoryCache<K, V> getCache(CacheRegion<K, V> region) {
+        InMemoryCache<?, ?> cache = caches.get(region.getName());
+        if (cache == null) {
+            throw new IllegalArgumentException("Unknown cache region: " + region);
+        }
+        return (InMemoryCache<K, V>) cache;
+    }
+
+    public synchronized Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.stats()));
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /** Total weighted size of all regions. */
+    public synchronized long getCurrentSize() {
+        long total = 0;
+        for (InMemoryCache<?, ?> cache : caches.values()) {
+            total += cache.getCurrentSize();
+        }
+        return total;
+    }
+
+    /** Drops the entries carrying any of the tags from every region. */
+    public void invalidateTags(Collection<String> tags) {
+        List<InMemoryCache<?, ?>> regions;
+        synchronized (this) {
+            regions = List.copyOf(caches.values());
+        }
+        int removed = 0;
+        for (String tag : tags) {
+            for (InMemoryCache<?, ?> cache : regions) {
+                removed += cache.invalidateTag(tag);
+            }
+        }
+        logger.debug("Invalidated {} cache entries for tags {}", removed, tags);
+    }
+
+    public synchronized void clear() {
+        caches.values().forEach(InMemoryCache::clear);
+    }
+
+    public void clear(CacheRegion<?, ?>... regions) {
+        for (CacheRegion<?, ?> region : regions) {
+            getCache(region).clear();
+        }
+    }
+}
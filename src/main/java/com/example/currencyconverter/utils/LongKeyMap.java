@@ -0,0 +1,207 @@
+package com.example.currencyconverter.utils;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Map from primitive {@code long} keys to values, using open addressing with linear probing over
+ * parallel key and value arrays, so neither lookups nor stores box the key or allocate a node.
+ *
+ * <p>Lookups are optimistic reads of a {@link StampedLock} and retry under the read lock only if a
+ * write happened meanwhile; writes take the write lock. The table is kept at most half full and
+ * removals shift the following entries back instead of leaving tombstones. {@code null} values are
+ * not allowed, an empty value slot marks a free slot.
+ */
+public final class LongKeyMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+    // Replaced as a whole on resize, so a reader always sees keys and values of the same size.
+    private Table table;
+    private int size;
+
+    public LongKeyMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongKeyMap(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        V value = find(table, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = find(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /** Stores the value and returns the previous one, or {@code null}. */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int mask = current.keys.length - 1;
+            int index = indexOf(key, mask);
+            while (current.values[index] != null) {
+                if (current.keys[index] == key) {
+                    Object previous = current.values[index];
+                    current.values[index] = value;
+                    return (V) previous;
+                }
+                index = (index + 1) & mask;
+            }
+            current.keys[index] = key;
+            current.values[index] = value;
+            if (++size * 2 > current.keys.length) {
+                resize(current.keys.length * 2);
+            }
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Removes the key and returns its value, or {@code null} if it was absent. */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            long[] keys = current.keys;
+            Object[] values = current.values;
+            int mask = keys.length - 1;
+            int index = indexOf(key, mask);
+            while (values[index] != null && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            Object previous = values[index];
+            if (previous == null) {
+                return null;
+            }
+            // Shift back every following entry of the run whose home slot does not lie after the hole.
+            int hole = index;
+            for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = indexOf(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            values[hole] = null;
+            size--;
+            return (V) previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int result = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /** Returns a copy of the keys present, in no particular order. */
+    public long[] keys() {
+        long stamp = lock.readLock();
+        try {
+            long[] result = new long[size];
+            int count = 0;
+            for (int i = 0; i < table.keys.length; i++) {
+                if (table.values[i] != null) {
+                    result[count++] = table.keys[i];
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(MIN_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V find(Table table, long key) {
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = keys.length - 1;
+        int index = indexOf(key, mask);
+        // Bounded so that a torn optimistic read can never loop forever; validate() rejects the result.
+        for (int probes = 0; probes <= mask; probes++) {
+            Object value = values[index];
+            if (value == null) {
+                return null;
+            }
+            if (keys[index] == key) {
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private void resize(int capacity) {
+        Table old = table;
+        Table resized = new Table(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.values[i] != null) {
+                int index = indexOf(old.keys[i], mask);
+                while (resized.values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                resized.keys[index] = old.keys[i];
+                resized.values[index] = old.values[i];
+            }
+        }
+        table = resized;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2) - 1) << 1;
+        return capacity < 0 ? 1 << 30 : capacity;
+    }
+
+    private static int indexOf(long key, int mask) {
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+}
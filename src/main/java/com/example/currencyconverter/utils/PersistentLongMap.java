@@ -0,0 +1,297 @@
+package com.example.currencyconverter.utils;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Immutable map from non-negative {@code long} keys to values, iterated in key order.
+ *
+ * <p>Entries sit in a radix tree of 32-slot nodes indexed by 5 bits of the key at a time, as deep
+ * as the largest key needs. A new version is made through an {@link Editor}, which copies only the
+ * nodes on the paths of the keys it changes and shares all others with the map it started from, so
+ * a change costs a few small arrays however many entries the map holds. Nodes copied by an editor
+ * are changed in place by its later edits until {@link Editor#build()}, so a batch of changes near
+ * each other copies each node once. {@code null} values are not allowed.
+ */
+public final class PersistentLongMap<V> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(null, 0, 0);
+
+    private final Node root;
+    // Bits of the key below the root's level; leaves, which hold the values, are at shift 0.
+    private final int shift;
+    private final int size;
+
+    private PersistentLongMap(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) find(root, shift, key);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Returns the values in key order. */
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(root, shift);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public Editor<V> edit() {
+        return new Editor<>(this);
+    }
+
+    private static Object find(Node root, int shift, long key) {
+        if (root == null || key < 0 || (shift + BITS < Long.SIZE && key >>> (shift + BITS) != 0)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(int) (key >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.slots[(int) key & MASK];
+    }
+
+    /** Changes on top of a map. An editor may be used again after {@link #build()}; it then copies anew. */
+    public static final class Editor<V> {
+        // Marks the nodes this editor copied since the last build, which it may change in place.
+        private Object owner = new Object();
+        private Node root;
+        private int shift;
+        private int size;
+
+        private Editor(PersistentLongMap<V> base) {
+            this.root = base.root;
+            this.shift = base.shift;
+            this.size = base.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(long key) {
+            return (V) find(root, shift, key);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Maps the key to the value and returns the previous value, or {@code null}. */
+        @SuppressWarnings("unchecked")
+        public V put(long key, V value) {
+            if (key < 0) {
+                throw new IllegalArgumentException("Negative key: " + key);
+            }
+            if (value == null) {
+                throw new NullPointerException("value");
+            }
+            if (root == null) {
+                root = new Node(owner);
+                shift = 0;
+            }
+            while (shift + BITS < Long.SIZE && key >>> (shift + BITS) != 0) {
+                Node grown = new Node(owner);
+                grown.slots[0] = root;
+                root = grown;
+                shift += BITS;
+            }
+            root = editable(root);
+            Node node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                int index = (int) (key >>> level) & MASK;
+                Node child = (Node) node.slots[index];
+                child = child == null ? new Node(owner) : editable(child);
+                node.slots[index] = child;
+                node = child;
+            }
+            int index = (int) key & MASK;
+            V previous = (V) node.slots[index];
+            node.slots[index] = value;
+            if (previous == null) {
+                size++;
+            }
+            return previous;
+        }
+
+        /** Removes the key and returns its value, or {@code null} if it was not mapped. */
+        @SuppressWarnings("unchecked")
+        public V remove(long key) {
+            if (find(root, shift, key) == null) {
+                return null;
+            }
+            Node[] path = new Node[shift / BITS + 1];
+            root = editable(root);
+            Node node = root;
+            path[0] = node;
+            for (int level = shift, depth = 1; level > 0; level -= BITS, depth++) {
+                int index = (int) (key >>> level) & MASK;
+                Node child = editable((Node) node.slots[index]);
+                node.slots[index] = child;
+                node = child;
+                path[depth] = node;
+            }
+            int index = (int) key & MASK;
+            V previous = (V) node.slots[index];
+            node.slots[index] = null;
+            size--;
+            // Unlinks the nodes left empty, from the leaf up.
+            for (int depth = path.length - 1; depth > 0 && path[depth].isEmpty(); depth--) {
+                path[depth - 1].slots[(int) (key >>> (shift - (depth - 1) * BITS)) & MASK] = null;
+            }
+            if (size == 0) {
+                root = null;
+                shift = 0;
+            }
+            return previous;
+        }
+
+        /** Removes the entries whose value matches, visiting every entry. Returns the values removed, in key order. */
+        public List<V> removeIf(Predicate<? super V> filter) {
+            List<Long> keys = new ArrayList<>();
+            collectKeys(root, shift, 0L, filter, keys);
+            List<V> removed = new ArrayList<>(keys.size());
+            for (long key : keys) {
+                removed.add(remove(key));
+            }
+            return removed;
+        }
+
+        public PersistentLongMap<V> build() {
+            // Nodes handed out are shared from now on, so later edits must copy them again.
+            owner = new Object();
+            return size == 0 ? empty() : new PersistentLongMap<>(root, shift, size);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void collectKeys(Node node, int level, long prefix, Predicate<? super V> filter, List<Long> keys) {
+            if (node == null) {
+                return;
+            }
+            for (int i = 0; i < WIDTH; i++) {
+                Object slot = node.slots[i];
+                if (slot == null) {
+                    continue;
+                }
+                long key = prefix | ((long) i << level);
+                if (level == 0) {
+                    if (filter.test((V) slot)) {
+                        keys.add(key);
+                    }
+                } else {
+                    collectKeys((Node) slot, level - BITS, key, filter, keys);
+                }
+            }
+        }
+
+        private Node editable(Node node) {
+            return node.owner == owner ? node : new Node(owner, node.slots.clone());
+        }
+    }
+
+    private static final class Node {
+        private final Object owner;
+        private final Object[] slots;
+
+        private Node(Object owner) {
+            this(owner, new Object[WIDTH]);
+        }
+
+        private Node(Object owner, Object[] slots) {
+            this.owner = owner;
+            this.slots = slots;
+        }
+
+        private boolean isEmpty() {
+            for (Object slot : slots) {
+                if (slot != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Depth-first walk over the slots in index order, which is key order. */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Node[] nodes;
+        private final int[] indexes;
+        private int depth;
+        private Object next;
+
+        private ValueIterator(Node root, int shift) {
+            int levels = shift / BITS + 1;
+            nodes = new Node[levels];
+            indexes = new int[levels];
+            nodes[0] = root;
+            depth = root == null ? -1 : 0;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) next;
+            advance();
+            return value;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (indexes[depth] == WIDTH) {
+                    depth--;
+                    continue;
+                }
+                Object slot = nodes[depth].slots[indexes[depth]++];
+                if (slot == null) {
+                    continue;
+                }
+                if (depth == nodes.length - 1) {
+                    next = slot;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) slot;
+                indexes[depth] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Best conversion paths over the exchange rates, within one bank or across all banks.
+ *
+ * <p>Each bank has a graph with a node per currency and an edge per rate; a graph for
+ * {@link #ANY_BANK} has, for each pair, the best rate any bank offers. The best path maximizes the
+ * product of the rates, found by Floyd-Warshall over {@code -log(rate)} weights. The all-pairs result
+ * is kept as an immutable snapshot, so a lookup only walks the hops of its path. A new or better
+ * rate updates the snapshot in O(n<sup>2</sup>), copying only the rows of the result it changes. A
+ * removed or worse rate marks the graph stale: the first lookup then starts a recomputation on the
+ * executor, under a lock of that graph alone, and lookups keep answering from the previous snapshot
+ * meanwhile as long as every hop of their path still has the same rate. A lookup whose previous
+ * answer no longer holds, or that had none, waits for the recomputation. Pairs reachable through a
+ * cycle whose rates multiply to more than one (an arbitrage loop) have no well-defined best path
+ * and only use their direct rate, if any.
+ */
+public final class RateGraph {
+
+    /** Bank id of the graph that combines the rates of all banks. */
+    public static final long ANY_BANK = -1L;
+
+    private static final double EPSILON = 1e-12;
+    private static final MathContext PRODUCT_CONTEXT = MathContext.DECIMAL64;
+
+    private final Executor executor;
+    private final Map<Long, Graph> graphs = new ConcurrentHashMap<>();
+    private final BestRates bestRates = new BestRates();
+
+    public RateGraph() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Recomputes stale graphs on the executor. */
+    public RateGraph(Executor executor) {
+        this.executor = executor;
+    }
+
+    /** Sets the bank's rate for the pair. */
+    public synchronized void put(long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        if (rate.signum() <= 0) {
+            remove(bankId, fromCurrencyCode, toCurrencyCode);
+            return;
+        }
+        graphs.computeIfAbsent(bankId, id -> new Graph()).setEdge(fromCurrencyCode, toCurrencyCode, rate, bankId);
+        bestRates.put(bankId, fromCurrencyCode, toCurrencyCode, rate);
+        updateAnyBank(fromCurrencyCode, toCurrencyCode);
+    }
+
+    /** Removes the bank's rate for the pair. */
+    public synchronized void remove(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        Graph graph = graphs.get(bankId);
+        if (graph != null) {
+            graph.removeEdge(fromCurrencyCode, toCurrencyCode);
+        }
+        if (bestRates.remove(bankId, fromCurrencyCode, toCurrencyCode)) {
+            updateAnyBank(fromCurrencyCode, toCurrencyCode);
+        }
+    }
+
+    /** Removes every rate of the bank. */
+    public synchronized void removeBank(long bankId) {
+        if (graphs.remove(bankId) != null) {
+            bestRates.removeBank(bankId, this::updateAnyBank);
+        }
+    }
+
+    public synchronized void clear() {
+        graphs.clear();
+        bestRates.clear();
+    }
+
+    /**
+     * Marks the computed paths of every graph stale, so that the writes that follow, such as a bulk
+     * import, do not each update them; the next lookup of a graph starts its recomputation.
+     */
+    public synchronized void invalidate() {
+        graphs.values().forEach(graph -> graph.version++);
+    }
+
+    /**
+     * Returns the path with the best overall rate from one currency to the other using the rates of
+     * the bank, or of all banks for {@link #ANY_BANK}; {@code null} if there is none.
+     */
+    public Path findBestPath(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        Graph graph = graphs.get(bankId);
+        if (graph == null) {
+            return null;
+        }
+        Closure closure = graph.closure;
+        if (closure.version == graph.version) {
+            return closure.path(fromCurrencyCode, toCurrencyCode, null);
+        }
+        Path path = closure.path(fromCurrencyCode, toCurrencyCode, graph.edges);
+        scheduleRecompute(graph);
+        return path != null ? path : recompute(graph).path(fromCurrencyCode, toCurrencyCode, null);
+    }
+
+    private void scheduleRecompute(Graph graph) {
+        if (!graph.recomputeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    recompute(graph);
+                } finally {
+                    graph.recomputeScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            graph.recomputeScheduled.set(false);
+        }
+    }
+
+    /** Brings the closure of the graph up to date with its edges; writers only wait for the copy of the edges. */
+    private Closure recompute(Graph graph) {
+        synchronized (graph.recomputeLock) {
+            Closure current = graph.closure;
+            if (current.version == graph.version) {
+                return current;
+            }
+            Map<String, Integer> index;
+            List<String> codes;
+            List<Edge> edges;
+            long version;
+            synchronized (this) {
+                index = Map.copyOf(graph.index);
+                codes = List.copyOf(graph.codes);
+                edges = List.copyOf(graph.edges.values());
+                version = graph.version;
+            }
+            Closure computed = Closure.compute(index, codes, edges, version);
+            synchronized (this) {
+                if (graph.closure.version < version) {
+                    graph.closure = computed;
+                }
+            }
+            return computed;
+        }
+    }
+
+    private void updateAnyBank(String fromCurrencyCode, String toCurrencyCode) {
+        BestRates.Offer best = bestRates.best(fromCurrencyCode, toCurrencyCode);
+        Graph any = graphs.computeIfAbsent(ANY_BANK, id -> new Graph());
+        if (best == null) {
+            any.removeEdge(fromCurrencyCode, toCurrencyCode);
+        } else {
+            any.setEdge(fromCurrencyCode, toCurrencyCode, best.rate, best.bankId);
+        }
+    }
+
+    /** One conversion step of a path. */
+    public static final class Hop {
+        private final long bankId;
+        private final String fromCurrencyCode;
+        private final String toCurrencyCode;
+        private final BigDecimal rate;
+
+        Hop(long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+            this.bankId = bankId;
+            this.fromCurrencyCode = fromCurrencyCode;
+            this.toCurrencyCode = toCurrencyCode;
+            this.rate = rate;
+        }
+
+        public long getBankId() {
+            return bankId;
+        }
+
+        public String getFromCurrencyCode() {
+            return fromCurrencyCode;
+        }
+
+        public String getToCurrencyCode() {
+            return toCurrencyCode;
+        }
+
+        public BigDecimal getRate() {
+            return rate;
+        }
+    }
+
+    /** Hops of a conversion and their combined rate. A conversion to the same currency has no hops. */
+    public static final class Path {
+        private final List<Hop> hops;
+        private final BigDecimal rate;
+
+        Path(List<Hop> hops) {
+            this.hops = List.copyOf(hops);
+            if (hops.size() == 1) {
+                this.rate = hops.get(0).getRate();
+            } else {
+                BigDecimal product = BigDecimal.ONE;
+                for (Hop hop : hops) {
+                    product = product.multiply(hop.getRate(), PRODUCT_CONTEXT);
+                }
+                this.rate = product;
+            }
+        }
+
+        public List<Hop> getHops() {
+            return hops;
+        }
+
+        /** Product of the hop rates, rounded to 16 significant digits when there is more than one hop. */
+        public BigDecimal getRate() {
+            return rate;
+        }
+    }
+
+    private static final class Edge {
+        final int from;
+        final int to;
+        final BigDecimal rate;
+        final long bankId;
+        final double weight;
+
+        Edge(int from, int to, BigDecimal rate, long bankId) {
+            this.from = from;
+            this.to = to;
+            this.rate = rate;
+            this.bankId = bankId;
+            this.weight = -Math.log(rate.doubleValue());
+        }
+    }
+
+    /**
+     * Edges of one graph and the latest closure over them. Changes hold the {@link RateGraph} lock;
+     * lookups read the closure, and the edges to check the hops of a stale one, without it.
+     */
+    private static final class Graph {
+        final Map<String, Integer> index = new HashMap<>();
+        final List<String> codes = new ArrayList<>();
+        final Map<Integer, Edge> edges = new ConcurrentHashMap<>();
+        // Bumped on every change of the edges; the closure is stale while it was built from an older one.
+        volatile long version;
+        volatile Closure closure = Closure.EMPTY;
+        final Object recomputeLock = new Object();
+        final AtomicBoolean recomputeScheduled = new AtomicBoolean();
+
+        void setEdge(String fromCode, String toCode, BigDecimal rate, long bankId) {
+            int nodes = codes.size();
+            Edge edge = new Edge(node(fromCode), node(toCode), rate, bankId);
+            Edge previous = edges.put(edge.from << 16 | edge.to, edge);
+            Closure current = closure;
+            if (current.version == version && codes.size() == nodes && current.size == nodes
+                    && (previous == null || previous.weight >= edge.weight)) {
+                Closure relaxed = current.relax(edge, version + 1);
+                if (relaxed != null) {
+                    closure = relaxed;
+                }
+            }
+            version++;
+        }
+
+        void removeEdge(String fromCode, String toCode) {
+            Integer from = index.get(fromCode);
+            Integer to = index.get(toCode);
+            if (from != null && to != null && edges.remove(from << 16 | to) != null) {
+                version++;
+            }
+        }
+
+        private int node(String code) {
+            Integer id = index.get(code);
+            if (id == null) {
+                id = codes.size();
+                index.put(code, id);
+                codes.add(code);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * All-pairs best paths of a graph: {@code dist[i][j]} holds the summed {@code -log(rate)}
+     * weights and {@code next[i][j]} the node after {@code i} on the way to {@code j}. Rows are
+     * shared with the closure this one was relaxed from and copied before they are changed.
+     */
+    private static final class Closure {
+        static final Closure EMPTY = new Closure(Map.of(), List.of(), 0, 0);
+
+        final Map<String, Integer> index;
+        final List<String> codes;
+        final int size;
+        // Version of the graph's edges this closure was built from.
+        final long version;
+        final double[][] dist;
+        final int[][] next;
+        final Edge[][] edgeAt;
+
+        private Closure(Map<String, Integer> index, List<String> codes, int size, long version) {
+            this.index = index;
+            this.codes = codes;
+            this.size = size;
+            this.version = version;
+            this.dist = new double[size][size];
+            this.next = new int[size][size];
+            this.edgeAt = new Edge[size][size];
+        }
+
+        private Closure(Closure source, long version) {
+            this.index = source.index;
+            this.codes = source.codes;
+            this.size = source.size;
+            this.version = version;
+            this.dist = source.dist.clone();
+            this.next = source.next.clone();
+            this.edgeAt = source.edgeAt.clone();
+        }
+
+        static Closure compute(Map<String, Integer> index, List<String> codes, List<Edge> edges, long version) {
+            int n = codes.size();
+            Closure closure = new Closure(index, codes, n, version);
+            double[][] dist = closure.dist;
+            int[][] next = closure.next;
+            for (int i = 0; i < n; i++) {
+                Arrays.fill(dist[i], Double.POSITIVE_INFINITY);
+                dist[i][i] = 0;
+                next[i][i] = i;
+            }
+            for (Edge edge : edges) {
+                closure.edgeAt[edge.from][edge.to] = edge;
+                if (edge.from != edge.to && edge.weight < dist[edge.from][edge.to]) {
+                    dist[edge.from][edge.to] = edge.weight;
+                    next[edge.from][edge.to] = edge.to;
+                }
+            }
+            for (int k = 0; k < n; k++) {
+                double[] fromK = dist[k];
+                for (int i = 0; i < n; i++) {
+                    double[] fromI = dist[i];
+                    double viaK = fromI[k];
+                    if (viaK == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    int[] nextI = next[i];
+                    int hop = nextI[k];
+                    for (int j = 0; j < n; j++) {
+                        double candidate = viaK + fromK[j];
+                        if (candidate < fromI[j] - EPSILON) {
+                            fromI[j] = candidate;
+                            nextI[j] = hop;
+                        }
+                    }
+                }
+            }
+            closure.dropArbitragePaths();
+            return closure;
+        }
+
+        /** Returns a copy with paths through the new or improved edge, or {@code null} if it closes an arbitrage loop. */
+        Closure relax(Edge edge, long version) {
+            int n = size;
+            Closure result = new Closure(this, version);
+            double[][] dist = result.dist;
+            int[][] next = result.next;
+            int u = edge.from;
+            int v = edge.to;
+            Edge[] edgesFromU = result.edgeAt[u].clone();
+            edgesFromU[v] = edge;
+            result.edgeAt[u] = edgesFromU;
+            if (u == v) {
+                return result;
+            }
+            boolean[] copied = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                double toU = dist[i][u];
+                if (toU == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int firstHop = i == u ? v : next[i][u];
+                for (int j = 0; j < n; j++) {
+                    double candidate = toU + edge.weight + dist[v][j];
+                    if (candidate < dist[i][j] - EPSILON) {
+                        if (!copied[i]) {
+                            dist[i] = dist[i].clone();
+                            next[i] = next[i].clone();
+                            copied[i] = true;
+                        }
+                        dist[i][j] = candidate;
+                        next[i][j] = firstHop;
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (dist[i][i] < -EPSILON) {
+                    return null;
+                }
+            }
+            return result;
+        }
+
+        /** Falls back to the direct edge for pairs whose best path could run through an arbitrage loop. */
+        private void dropArbitragePaths() {
+            int n = size;
+            boolean[] onLoop = new boolean[n];
+            boolean any = false;
+            for (int k = 0; k < n; k++) {
+                onLoop[k] = dist[k][k] < -EPSILON;
+                any |= onLoop[k];
+            }
+            if (!any) {
+                return;
+            }
+            boolean[][] affected = new boolean[n][n];
+            for (int k = 0; k < n; k++) {
+                if (!onLoop[k]) {
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (dist[i][k] == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    for (int j = 0; j < n; j++) {
+                        if (dist[k][j] != Double.POSITIVE_INFINITY) {
+                            affected[i][j] = true;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (!affected[i][j]) {
+                        continue;
+                    }
+                    Edge direct = edgeAt[i][j];
+                    if (i == j) {
+                        dist[i][j] = 0;
+                        next[i][j] = i;
+                    } else if (direct != null) {
+                        dist[i][j] = direct.weight;
+                        next[i][j] = j;
+                    } else {
+                        dist[i][j] = Double.POSITIVE_INFINITY;
+                    }
+                }
+            }
+            // Paths kept for unaffected pairs never pass through an affected pair, as those touch no loop.
+        }
+
+        /**
+         * Returns the best path, or {@code null} if there is none. With {@code current} edges given,
+         * also returns {@code null} if a hop's edge is no longer the current one.
+         */
+        Path path(String fromCode, String toCode, Map<Integer, Edge> current) {
+            Integer from = index.get(fromCode);
+            Integer to = index.get(toCode);
+            if (from == null || to == null || dist[from][to] == Double.POSITIVE_INFINITY) {
+                return null;
+            }
+            List<Hop> hops = new ArrayList<>(4);
+            for (int at = from; at != to && hops.size() < size; ) {
+                int hopTo = next[at][to];
+                Edge edge = edgeAt[at][hopTo];
+                if (edge == null || (current != null && current.get(at << 16 | hopTo) != edge)) {
+                    return null;
+                }
+                hops.add(new Hop(edge.bankId, codes.get(at), codes.get(hopTo), edge.rate));
+                at = hopTo;
+            }
+            return new Path(hops);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Recent rate changes of every bank and currency pair, kept column-wise in two primitive arrays
+ * per pair: the times in epoch milliseconds and the rates scaled like in {@link RateMatrix}, so a
+ * point costs 16 bytes and a lookup is a binary search.
+ *
+ * <p>A series holds every change from its oldest point on. Points older than the window before the
+ * newest point appended are dropped as new points arrive, except the one still in effect at the
+ * start of the window; series of removed rates are dropped once the removal left the window. When
+ * a series reaches the maximum number of points its oldest quarter is dropped as well. Lookups
+ * before the oldest point return {@code null}, and callers then ask the database. Pairs whose key
+ * does not pack into a {@code long} are not kept.
+ */
+public final class RateHistory {
+
+    /** Scaled rate of a point that marks the removal of the rate. */
+    public static final long REMOVED = RateMatrix.NO_RATE;
+
+    private static final int INITIAL_CAPACITY = 8;
+    // Fewest appends between two sweeps for expired series; sweeps are also spaced by the series count.
+    private static final int SWEEP_INTERVAL = 4096;
+
+    private final int maxPointsPerSeries;
+    private final long windowMillis;
+    private final LongKeyMap<Series> series = new LongKeyMap<>(256);
+    private final Object createLock = new Object();
+    private final AtomicLong pointCount = new AtomicLong();
+    private final AtomicLong newestMillis = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong appendsSinceSweep = new AtomicLong();
+
+    /** A history without a window, bounded only by the number of points per series. */
+    public RateHistory(int maxPointsPerSeries) {
+        this(maxPointsPerSeries, Long.MAX_VALUE);
+    }
+
+    public RateHistory(int maxPointsPerSeries, long windowMillis) {
+        if (maxPointsPerSeries < INITIAL_CAPACITY) {
+            throw new IllegalArgumentException("maxPointsPerSeries must be at least " + INITIAL_CAPACITY);
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be positive");
+        }
+        this.maxPointsPerSeries = maxPointsPerSeries;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Adds a point at its place in time; a point equal to one already there is ignored.
+     *
+     * @return {@code false} if the pair is not kept
+     */
+    public boolean append(long bankId, String fromCurrencyCode, String toCurrencyCode, long timeMillis, long scaledRate) {
+        long key = RateKey.pack(bankId, fromCurrencyCode, toCurrencyCode);
+        if (key == RateKey.NOT_PACKED) {
+            return false;
+        }
+        Series target = series.get(key);
+        if (target == null) {
+            synchronized (createLock) {
+                target = series.get(key);
+                if (target == null) {
+                    target = new Series(bankId);
+                    series.put(key, target);
+                }
+            }
+        }
+        long cutoff = cutoff(newestMillis.accumulateAndGet(timeMillis, Math::max));
+        pointCount.addAndGet(target.insert(timeMillis, scaledRate, maxPointsPerSeries, cutoff));
+        if (appendsSinceSweep.incrementAndGet() >= Math.max(SWEEP_INTERVAL, series.size())) {
+            appendsSinceSweep.set(0);
+            expireBefore(cutoff);
+        }
+        return true;
+    }
+
+    /** Drops the points and series that left the window ending at {@code nowMillis}. */
+    public void expire(long nowMillis) {
+        expireBefore(cutoff(nowMillis));
+    }
+
+    /** Marks every series of the bank as removed at the time. */
+    public void appendRemovalOfBank(long bankId, long timeMillis) {
+        long cutoff = cutoff(newestMillis.accumulateAndGet(timeMillis, Math::max));
+        for (long key : series.keys()) {
+            Series target = series.get(key);
+            if (target != null && target.bankId == bankId) {
+                pointCount.addAndGet(target.insert(timeMillis, REMOVED, maxPointsPerSeries, cutoff));
+            }
+        }
+    }
+
+    /** Forgets the pair, so its lookups go to the database until new points arrive. */
+    public void evict(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        long key = RateKey.pack(bankId, fromCurrencyCode, toCurrencyCode);
+        if (key != RateKey.NOT_PACKED) {
+            synchronized (createLock) {
+                Series removed = series.remove(key);
+                if (removed != null) {
+                    pointCount.addAndGet(-removed.size());
+                }
+            }
+        }
+    }
+
+    /** Returns the point in effect at the time, or {@code null} if the series does not reach back to it. */
+    public Point asOf(long bankId, String fromCurrencyCode, String toCurrencyCode, long timeMillis) {
+        Series target = find(bankId, fromCurrencyCode, toCurrencyCode);
+        return target == null ? null : target.asOf(timeMillis);
+    }
+
+    /**
+     * Returns at most {@code limit} points with times in [{@code fromMillis}, {@code toMillis}],
+     * oldest first, or {@code null} if the series does not reach back to {@code fromMillis}.
+     */
+    public List<Point> range(long bankId, String fromCurrencyCode, String toCurrencyCode, long fromMillis, long toMillis, int limit) {
+        Series target = find(bankId, fromCurrencyCode, toCurrencyCode);
+        return target == null ? null : target.range(fromMillis, toMillis, limit);
+    }
+
+    public int seriesCount() {
+        return series.size();
+    }
+
+    public long pointCount() {
+        return pointCount.get();
+    }
+
+    public void clear() {
+        synchronized (createLock) {
+            series.clear();
+            pointCount.set(0);
+        }
+    }
+
+    private long cutoff(long nowMillis) {
+        // Saturates instead of overflowing for the history without a window.
+        return nowMillis < Long.MIN_VALUE + windowMillis ? Long.MIN_VALUE : nowMillis - windowMillis;
+    }
+
+    private void expireBefore(long cutoff) {
+        for (long key : series.keys()) {
+            Series target = series.get(key);
+            if (target == null) {
+                continue;
+            }
+            pointCount.addAndGet(-target.dropExpired(cutoff));
+            if (target.isRemovedBefore(cutoff)) {
+                synchronized (createLock) {
+                    // A point appended meanwhile to the dropped series is lost, and lookups of the pair
+                    // go to the database until its next point, as after an eviction.
+                    if (series.get(key) == target && series.remove(key) != null) {
+                        pointCount.addAndGet(-target.size());
+                    }
+                }
+            }
+        }
+    }
+
+    private Series find(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        long key = RateKey.pack(bankId, fromCurrencyCode, toCurrencyCode);
+        return key == RateKey.NOT_PACKED ? null : series.get(key);
+    }
+
+    /** A rate change: the time it took effect and the scaled rate, {@link #REMOVED} for a removal. */
+    public static final class Point {
+        private final long timeMillis;
+        private final long scaledRate;
+
+        Point(long timeMillis, long scaledRate) {
+            this.timeMillis = timeMillis;
+            this.scaledRate = scaledRate;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getScaledRate() {
+            return scaledRate;
+        }
+
+        /** Returns the rate, or {@code null} for a removal. */
+        public BigDecimal getRate() {
+            return scaledRate == REMOVED ? null : BigDecimal.valueOf(scaledRate, RateMatrix.SCALE);
+        }
+    }
+
+    /** Points of one pair ordered by time, points of equal time in the order they were added. */
+    private static final class Series {
+        private final long bankId;
+        private final StampedLock lock = new StampedLock();
+        private long[] times = new long[INITIAL_CAPACITY];
+        private long[] rates = new long[INITIAL_CAPACITY];
+        private int size;
+        // Set once points were dropped; points older than the oldest kept one are ignored from then on.
+        private boolean truncated;
+
+        Series(long bankId) {
+            this.bankId = bankId;
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /** Inserts the point, drops the points that left the window and returns the change in the number of points. */
+        int insert(long time, long rate, int maxPoints, long cutoff) {
+            long stamp = lock.writeLock();
+            try {
+                return insertLocked(time, rate, maxPoints) - dropExpiredLocked(cutoff);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /** Drops the points no longer in effect at {@code cutoff} or later and returns how many. */
+        int dropExpired(long cutoff) {
+            long stamp = lock.writeLock();
+            try {
+                return dropExpiredLocked(cutoff);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /** Returns {@code true} if the pair is no longer quoted since before {@code cutoff}. */
+        boolean isRemovedBefore(long cutoff) {
+            long stamp = lock.readLock();
+            try {
+                return size == 0 || rates[size - 1] == REMOVED && times[size - 1] < cutoff;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private int dropExpiredLocked(long cutoff) {
+            // The newest point at or before the cutoff is still in effect at the cutoff, so it is kept.
+            int expired = 0;
+            while (expired + 1 < size && times[expired + 1] <= cutoff) {
+                expired++;
+            }
+            if (expired > 0) {
+                System.arraycopy(times, expired, times, 0, size - expired);
+                System.arraycopy(rates, expired, rates, 0, size - expired);
+                size -= expired;
+                truncated = true;
+                if (times.length > INITIAL_CAPACITY && size <= times.length / 4) {
+                    int capacity = Math.max(INITIAL_CAPACITY, times.length / 2);
+                    times = Arrays.copyOf(times, capacity);
+                    rates = Arrays.copyOf(rates, capacity);
+                }
+            }
+            return expired;
+        }
+
+        private int insertLocked(long time, long rate, int maxPoints) {
+            int index = upperBound(time);
+            if (index == 0 && truncated) {
+                return 0;
+            }
+            // Equal points come from a load overlapping with live writes.
+            for (int i = index - 1; i >= 0 && times[i] == time; i--) {
+                if (rates[i] == rate) {
+                    return 0;
+                }
+            }
+            int dropped = 0;
+            if (size == times.length) {
+                if (times.length < maxPoints) {
+                    int capacity = (int) Math.min((long) times.length * 2, maxPoints);
+                    times = Arrays.copyOf(times, capacity);
+                    rates = Arrays.copyOf(rates, capacity);
+                } else {
+                    dropped = Math.max(1, size / 4);
+                    System.arraycopy(times, dropped, times, 0, size - dropped);
+                    System.arraycopy(rates, dropped, rates, 0, size - dropped);
+                    size -= dropped;
+                    index -= dropped;
+                    truncated = true;
+                    if (index <= 0) {
+                        // Older than every point kept.
+                        return -dropped;
+                    }
+                }
+            }
+            System.arraycopy(times, index, times, index + 1, size - index);
+            System.arraycopy(rates, index, rates, index + 1, size - index);
+            times[index] = time;
+            rates[index] = rate;
+            size++;
+            return 1 - dropped;
+        }
+
+        Point asOf(long time) {
+            long stamp = lock.readLock();
+            try {
+                if (size == 0 || time < times[0]) {
+                    return null;
+                }
+                int index = upperBound(time) - 1;
+                return new Point(times[index], rates[index]);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        List<Point> range(long from, long to, int limit) {
+            long stamp = lock.readLock();
+            try {
+                if (size == 0 || from < times[0]) {
+                    return null;
+                }
+                int start = upperBound(from - 1);
+                int end = Math.min(upperBound(to), start + Math.max(0, limit));
+                List<Point> points = new ArrayList<>(Math.max(0, end - start));
+                for (int i = start; i < end; i++) {
+                    points.add(new Point(times[i], rates[i]));
+                }
+                return points;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /** First index whose time is after the given one. */
+        private int upperBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.currencyconverter.utils;
+
+import java.util.Objects;
+
+/**
+ * Key of an exchange rate: bank id plus source and target currency codes.
+ *
+ * <p>For the usual case of three upper-case letter codes and a bank id below 2<sup>33</sup> the
+ * key fits in one non-negative {@code long}: the bank id in the high 33 bits and each code as
+ * three 5-bit letters. {@link #of} returns a shared instance per packed value, looked up in a
+ * {@link LongKeyMap} without building any string, so repeated lookups of the same pair allocate
+ * nothing; equality and hashing then work on the packed value alone. Keys that do not pack are
+ * built on each call and compared by their fields.
+ */
+public final class RateKey {
+
+    /** Returned by {@link #pack} for keys that do not fit. */
+    public static final long NOT_PACKED = -1L;
+
+    private static final int LETTER_BITS = 5;
+    private static final int CODE_BITS = 3 * LETTER_BITS;
+    private static final long MAX_BANK_ID = (1L << (Long.SIZE - 1 - 2 * CODE_BITS)) - 1;
+    private static final int MAX_INTERNED = 1 << 16;
+    private static final LongKeyMap<RateKey> INTERNED = new LongKeyMap<>(1024);
+
+    private final long bankId;
+    private final String fromCurrencyCode;
+    private final String toCurrencyCode;
+    private final long packed;
+
+    private RateKey(long bankId, String fromCurrencyCode, String toCurrencyCode, long packed) {
+        this.bankId = bankId;
+        this.fromCurrencyCode = fromCurrencyCode;
+        this.toCurrencyCode = toCurrencyCode;
+        this.packed = packed;
+    }
+
+    public static RateKey of(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        long packed = pack(bankId, fromCurrencyCode, toCurrencyCode);
+        if (packed == NOT_PACKED) {
+            return new RateKey(bankId, fromCurrencyCode, toCurrencyCode, NOT_PACKED);
+        }
+        RateKey key = INTERNED.get(packed);
+        if (key == null) {
+            key = new RateKey(bankId, fromCurrencyCode, toCurrencyCode, packed);
+            // Pairs are bounded by banks times currencies; the cap only guards against junk input.
+            if (INTERNED.size() < MAX_INTERNED) {
+                INTERNED.put(packed, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Parses the {@link #toString()} form of a key whose codes contain no {@code '-'}.
+     *
+     * @throws IllegalArgumentException if the text is not in that form
+     */
+    public static RateKey parse(String text) {
+        int first = text.indexOf('-');
+        int last = text.lastIndexOf('-');
+        if (first <= 0 || last == first || last == text.length() - 1) {
+            throw new IllegalArgumentException("Not a rate key: " + text);
+        }
+        try {
+            return of(Long.parseLong(text.substring(0, first)), text.substring(first + 1, last), text.substring(last + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a rate key: " + text, e);
+        }
+    }
+
+    /** Packs the key into a non-negative long, or returns {@link #NOT_PACKED}. */
+    public static long pack(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        if (bankId < 0 || bankId > MAX_BANK_ID) {
+            return NOT_PACKED;
+        }
+        int from = packCode(fromCurrencyCode);
+        int to = packCode(toCurrencyCode);
+        if (from < 0 || to < 0) {
+            return NOT_PACKED;
+        }
+        return bankId << (2 * CODE_BITS) | (long) from << CODE_BITS | to;
+    }
+
+    private static int packCode(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            packed = packed << LETTER_BITS | (c - 'A' + 1);
+        }
+        return packed;
+    }
+
+    public long getBankId() {
+        return bankId;
+    }
+
+    public String getFromCurrencyCode() {
+        return fromCurrencyCode;
+    }
+
+    public String getToCurrencyCode() {
+        return toCurrencyCode;
+    }
+
+    /** The packed form, or {@link #NOT_PACKED}. */
+    public long getPacked() {
+        return packed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RateKey)) {
+            return false;
+        }
+        RateKey other = (RateKey) o;
+        if (packed != NOT_PACKED || other.packed != NOT_PACKED) {
+            return packed == other.packed;
+        }
+        return bankId == other.bankId
+                && Objects.equals(fromCurrencyCode, other.fromCurrencyCode)
+                && Objects.equals(toCurrencyCode, other.toCurrencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+        if (packed != NOT_PACKED) {
+            long hash = packed * 0x9e3779b97f4a7c15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+        return Objects.hash(bankId, fromCurrencyCode, toCurrencyCode);
+    }
+
+    @Override
+    public String toString() {
+        return bankId + "-" + fromCurrencyCode + "-" + toCurrencyCode;
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Exchange rates of every bank as scaled {@code long}s, for lookups that need neither the database
+ * nor a cache key.
+ *
+ * <p>Currency codes are interned to small int ids in the order they are first stored. A bank
+ * whose rates cover at least a quarter of the possible pairs keeps a dense matrix indexed by the
+ * two ids; other banks keep a compact open-addressing table of the pairs they have, which is
+ * replaced as a whole on each change. Rates keep {@link #SCALE} fraction digits, like the
+ * {@code exchange_rates.rate} column. Lookups take no lock; changes are serialized.
+ */
+public final class RateMatrix {
+
+    /** Fraction digits of the stored rates. */
+    public static final int SCALE = 4;
+    /** Returned by {@link #getScaled} for pairs without a rate. */
+    public static final long NO_RATE = Long.MIN_VALUE;
+
+    private static final int MAX_CURRENCIES = 1 << 15;
+    private static final int DENSE_MIN_FILL_PERCENT = 25;
+
+    private final ConcurrentHashMap<String, Integer> currencyIds = new ConcurrentHashMap<>();
+    // Codes by id; replaced when a code is interned, before any rate refers to the new id.
+    private volatile String[] currencyCodes = new String[0];
+    private final LongKeyMap<BankRates> banks = new LongKeyMap<>(64);
+    private final Object writeLock = new Object();
+    private volatile int size;
+
+    /** Returns the rate scaled by 10<sup>{@link #SCALE}</sup>, or {@link #NO_RATE}. */
+    public long getScaled(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        Integer from = currencyIds.get(fromCurrencyCode);
+        Integer to = currencyIds.get(toCurrencyCode);
+        if (from == null || to == null) {
+            return NO_RATE;
+        }
+        BankRates rates = banks.get(bankId);
+        return rates == null ? NO_RATE : rates.get(from, to);
+    }
+
+    /** Returns the rate, or {@code null} if the bank has none for the pair. */
+    public BigDecimal get(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        long scaled = getScaled(bankId, fromCurrencyCode, toCurrencyCode);
+        return scaled == NO_RATE ? null : BigDecimal.valueOf(scaled, SCALE);
+    }
+
+    /**
+     * Passes every rate of the bank from the currency to the consumer, in the order of the target
+     * currencies' ids, in one pass over the bank's rates.
+     */
+    public void forEachRateFrom(long bankId, String fromCurrencyCode, RateConsumer consumer) {
+        Integer from = currencyIds.get(fromCurrencyCode);
+        BankRates rates = from == null ? null : banks.get(bankId);
+        if (rates != null) {
+            rates.forEachFrom(from, currencyCodes, bankId, consumer);
+        }
+    }
+
+    /** Passes every rate from the currency to the consumer, bank by bank in ascending id order. */
+    public void forEachRateFrom(String fromCurrencyCode, RateConsumer consumer) {
+        Integer from = currencyIds.get(fromCurrencyCode);
+        if (from == null) {
+            return;
+        }
+        long[] bankIds = banks.keys();
+        Arrays.sort(bankIds);
+        for (long bankId : bankIds) {
+            BankRates rates = banks.get(bankId);
+            if (rates != null) {
+                rates.forEachFrom(from, currencyCodes, bankId, consumer);
+            }
+        }
+    }
+
+    /**
+     * Stores the rate, rounded half-up to {@link #SCALE} digits.
+     *
+     * @throws ArithmeticException if the scaled rate does not fit in a {@code long}
+     */
+    public void put(long bankId, String fromCurrencyCode, String toCurrencyCode, BigDecimal rate) {
+        long scaled = toScaled(rate);
+        synchronized (writeLock) {
+            int from = intern(fromCurrencyCode);
+            int to = intern(toCurrencyCode);
+            BankRates current = banks.get(bankId);
+            BankRates next = current == null ? SparseRates.EMPTY : current;
+            long previous = next.get(from, to);
+            next = next.with(from, to, scaled);
+            if (next instanceof SparseRates && isDenseEnough(next.count)) {
+                next = DenseRates.copyOf(next, currencyIds.size());
+            }
+            if (next != current) {
+                banks.put(bankId, next);
+            }
+            if (previous == NO_RATE) {
+                size++;
+            }
+        }
+    }
+
+    /** Removes the rate; returns {@code false} if there was none. */
+    public boolean remove(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        synchronized (writeLock) {
+            Integer from = currencyIds.get(fromCurrencyCode);
+            Integer to = currencyIds.get(toCurrencyCode);
+            BankRates current = from == null || to == null ? null : banks.get(bankId);
+            if (current == null || current.get(from, to) == NO_RATE) {
+                return false;
+            }
+            BankRates next = current.without(from, to);
+            if (next.count == 0) {
+                banks.remove(bankId);
+            } else if (next != current) {
+                banks.put(bankId, next);
+            }
+            size--;
+            return true;
+        }
+    }
+
+    /** Removes every rate of the bank. */
+    public void removeBank(long bankId) {
+        synchronized (writeLock) {
+            BankRates removed = banks.remove(bankId);
+            if (removed != null) {
+                size -= removed.count;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            banks.clear();
+            size = 0;
+        }
+    }
+
+    /** Number of rates stored. */
+    public int size() {
+        return size;
+    }
+
+    public int currencyCount() {
+        return currencyIds.size();
+    }
+
+    /**
+     * Scales the rate to {@link #SCALE} digits, rounding half-up.
+     *
+     * @throws ArithmeticException if the result does not fit in a {@code long}
+     */
+    public static long toScaled(BigDecimal rate) {
+        long scaled = rate.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        if (scaled == NO_RATE) {
+            throw new ArithmeticException("Rate out of range: " + rate);
+        }
+        return scaled;
+    }
+
+    private int intern(String code) {
+        Integer id = currencyIds.get(code);
+        if (id != null) {
+            return id;
+        }
+        if (currencyIds.size() >= MAX_CURRENCIES) {
+            throw new IllegalStateException("Too many currencies: " + currencyIds.size());
+        }
+        int next = currencyIds.size();
+        String[] codes = Arrays.copyOf(currencyCodes, next + 1);
+        codes[next] = code;
+        currencyCodes = codes;
+        currencyIds.put(code, next);
+        return next;
+    }
+
+    private boolean isDenseEnough(int count) {
+        long currencies = currencyIds.size();
+        return count * 100L >= currencies * currencies * DENSE_MIN_FILL_PERCENT;
+    }
+
+    /** Receives the rates of {@link #forEachRateFrom}. */
+    @FunctionalInterface
+    public interface RateConsumer {
+        void accept(long bankId, String toCurrencyCode, long scaledRate);
+    }
+
+    /** Rates of one bank. Instances are only changed under the matrix write lock. */
+    private abstract static class BankRates {
+        int count;
+
+        abstract long get(int from, int to);
+
+        /** Returns the rates with the pair set, which may be this instance changed in place. */
+        abstract BankRates with(int from, int to, long scaled);
+
+        /** Returns the rates without the pair, which may be this instance changed in place. */
+        abstract BankRates without(int from, int to);
+
+        abstract void forEachFrom(int from, String[] codes, long bankId, RateConsumer consumer);
+    }
+
+    /** Square matrix of {@code 2^shift} currencies per side, changed in place. */
+    private static final class DenseRates extends BankRates {
+        private final int shift;
+        private final AtomicLongArray rates;
+
+        private DenseRates(int shift) {
+            this.shift = shift;
+            this.rates = new AtomicLongArray(1 << (2 * shift));
+            for (int i = 0; i < rates.length(); i++) {
+                rates.set(i, NO_RATE);
+            }
+        }
+
+        static DenseRates copyOf(BankRates source, int currencies) {
+            int shift = Math.max(1, 32 - Integer.numberOfLeadingZeros(currencies - 1));
+            DenseRates dense = new DenseRates(shift);
+            int side = 1 << shift;
+            for (int from = 0; from < side; from++) {
+                for (int to = 0; to < side; to++) {
+                    long rate = source.get(from, to);
+                    if (rate != NO_RATE) {
+                        dense.rates.set(from << shift | to, rate);
+                    }
+                }
+            }
+            dense.count = source.count;
+            return dense;
+        }
+
+        @Override
+        long get(int from, int to) {
+            if ((from | to) >>> shift != 0) {
+                return NO_RATE;
+            }
+            return rates.get(from << shift | to);
+        }
+
+        @Override
+        BankRates with(int from, int to, long scaled) {
+            if ((from | to) >>> shift != 0) {
+                return copyOf(this, Math.max(from, to) + 1).with(from, to, scaled);
+            }
+            if (rates.getAndSet(from << shift | to, scaled) == NO_RATE) {
+                count++;
+            }
+            return this;
+        }
+
+        @Override
+        BankRates without(int from, int to) {
+            if ((from | to) >>> shift == 0 && rates.getAndSet(from << shift | to, NO_RATE) != NO_RATE) {
+                count--;
+            }
+            return this;
+        }
+
+        @Override
+        void forEachFrom(int from, String[] codes, long bankId, RateConsumer consumer) {
+            if (from >>> shift != 0) {
+                return;
+            }
+            int row = from << shift;
+            // Ids past the codes read were interned after them and have no rate here yet.
+            int side = Math.min(1 << shift, codes.length);
+            for (int to = 0; to < side; to++) {
+                long rate = rates.get(row | to);
+                if (rate != NO_RATE) {
+                    consumer.accept(bankId, codes[to], rate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable open-addressing table from {@code from << 16 | to} to the rate, at most half full,
+     * so readers never see a partly updated table.
+     */
+    private static final class SparseRates extends BankRates {
+        static final SparseRates EMPTY = new SparseRates(new int[0], new long[0], 0);
+
+        private static final int FREE = -1;
+
+        private final int[] keys;
+        private final long[] values;
+
+        private SparseRates(int[] keys, long[] values, int count) {
+            this.keys = keys;
+            this.values = values;
+            this.count = count;
+        }
+
+        @Override
+        long get(int from, int to) {
+            if (keys.length == 0) {
+                return NO_RATE;
+            }
+            int key = from << 16 | to;
+            int mask = keys.length - 1;
+            for (int index = mix(key) & mask; keys[index] != FREE; index = (index + 1) & mask) {
+                if (keys[index] == key) {
+                    return values[index];
+                }
+            }
+            return NO_RATE;
+        }
+
+        @Override
+        BankRates with(int from, int to, long scaled) {
+            boolean present = get(from, to) != NO_RATE;
+            return rebuild(present ? count : count + 1, from << 16 | to, scaled);
+        }
+
+        @Override
+        BankRates without(int from, int to) {
+            return rebuild(count - 1, from << 16 | to, NO_RATE);
+        }
+
+        @Override
+        void forEachFrom(int from, String[] codes, long bankId, RateConsumer consumer) {
+            int found = 0;
+            int[] slots = null;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE && keys[i] >>> 16 == from) {
+                    if (slots == null) {
+                        slots = new int[count];
+                    }
+                    slots[found++] = i;
+                }
+            }
+            if (found == 0) {
+                return;
+            }
+            // Sorted by target id like the row of a dense matrix: the target in the high half, the slot in the low one.
+            long[] order = new long[found];
+            for (int i = 0; i < found; i++) {
+                order[i] = (long) (keys[slots[i]] & 0xffff) << 32 | slots[i];
+            }
+            Arrays.sort(order);
+            for (long entry : order) {
+                int slot = (int) entry;
+                consumer.accept(bankId, codes[keys[slot] & 0xffff], values[slot]);
+            }
+        }
+
+        /** Copies the entries into a table sized for {@code newCount}, setting or dropping {@code changedKey}. */
+        private SparseRates rebuild(int newCount, int changedKey, long changedValue) {
+            int capacity = Math.max(8, Integer.highestOneBit(Math.max(1, newCount) * 2 - 1) << 1);
+            int[] newKeys = new int[capacity];
+            long[] newValues = new long[capacity];
+            Arrays.fill(newKeys, FREE);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE && keys[i] != changedKey) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            if (changedValue != NO_RATE) {
+                insert(newKeys, newValues, changedKey, changedValue);
+            }
+            return new SparseRates(newKeys, newValues, newCount);
+        }
+
+        private static void insert(int[] keys, long[] values, int key, long value) {
+            int mask = keys.length - 1;
+            int index = mix(key) & mask;
+            while (keys[index] != FREE) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
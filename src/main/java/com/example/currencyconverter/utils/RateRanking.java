@@ -0,0 +1,208 @@
+package com.example.currencyconverter.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rates of all banks for each currency pair, ordered from the lowest to the highest, so the best
+ * rates of a pair are read without a query.
+ *
+ * <p>Each pair keeps an immutable {@link Ranking} of parallel primitive arrays sorted by rate and
+ * then by bank id. A change finds the new position by binary search and publishes a copied
+ * ranking, so readers take no lock and always see one consistent order; changes are serialized.
+ * Rates are scaled like in {@link RateMatrix}.
+ */
+public final class RateRanking {
+
+    private final ConcurrentHashMap<String, Integer> currencyIds = new ConcurrentHashMap<>();
+    private final LongKeyMap<Ranking> pairs = new LongKeyMap<>(256);
+    private final Object writeLock = new Object();
+    private volatile int size;
+
+    /** Returns the rates of the pair in ascending order; empty if no bank has one. */
+    public Ranking get(String fromCurrencyCode, String toCurrencyCode) {
+        Integer from = currencyIds.get(fromCurrencyCode);
+        Integer to = currencyIds.get(toCurrencyCode);
+        if (from == null || to == null) {
+            return Ranking.EMPTY;
+        }
+        Ranking ranking = pairs.get(pairKey(from, to));
+        return ranking == null ? Ranking.EMPTY : ranking;
+    }
+
+    /** Stores the bank's rate for the pair, replacing its previous one. */
+    public void put(long rateId, long bankId, String fromCurrencyCode, String toCurrencyCode, long scaledRate) {
+        synchronized (writeLock) {
+            long key = pairKey(intern(fromCurrencyCode), intern(toCurrencyCode));
+            Ranking current = pairs.get(key);
+            if (current == null) {
+                current = Ranking.EMPTY;
+            }
+            Ranking next = current.with(rateId, bankId, scaledRate);
+            pairs.put(key, next);
+            size += next.size() - current.size();
+        }
+    }
+
+    /** Removes the bank's rate for the pair; returns {@code false} if there was none. */
+    public boolean remove(long bankId, String fromCurrencyCode, String toCurrencyCode) {
+        synchronized (writeLock) {
+            Integer from = currencyIds.get(fromCurrencyCode);
+            Integer to = currencyIds.get(toCurrencyCode);
+            if (from == null || to == null) {
+                return false;
+            }
+            long key = pairKey(from, to);
+            Ranking current = pairs.get(key);
+            if (current == null || current.indexOfBank(bankId) < 0) {
+                return false;
+            }
+            store(key, current.without(bankId));
+            size--;
+            return true;
+        }
+    }
+
+    /** Removes every rate of the bank, which visits every pair. */
+    public void removeBank(long bankId) {
+        synchronized (writeLock) {
+            for (long key : pairs.keys()) {
+                Ranking current = pairs.get(key);
+                if (current != null && current.indexOfBank(bankId) >= 0) {
+                    store(key, current.without(bankId));
+                    size--;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            pairs.clear();
+            size = 0;
+        }
+    }
+
+    /** Number of rates stored. */
+    public int size() {
+        return size;
+    }
+
+    private void store(long key, Ranking ranking) {
+        if (ranking.size() == 0) {
+            pairs.remove(key);
+        } else {
+            pairs.put(key, ranking);
+        }
+    }
+
+    private int intern(String code) {
+        Integer id = currencyIds.get(code);
+        if (id != null) {
+            return id;
+        }
+        int next = currencyIds.size();
+        currencyIds.put(code, next);
+        return next;
+    }
+
+    private static long pairKey(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    /** Immutable rates of one pair, ordered by rate and then by bank id. */
+    public static final class Ranking {
+        static final Ranking EMPTY = new Ranking(new long[0], new long[0], new long[0]);
+
+        private final long[] rates;
+        private final long[] bankIds;
+        private final long[] rateIds;
+
+        private Ranking(long[] rates, long[] bankIds, long[] rateIds) {
+            this.rates = rates;
+            this.bankIds = bankIds;
+            this.rateIds = rateIds;
+        }
+
+        public int size() {
+            return rates.length;
+        }
+
+        /** Rate at the position, scaled by 10<sup>{@link RateMatrix#SCALE}</sup>. */
+        public long scaledRate(int index) {
+            return rates[index];
+        }
+
+        public BigDecimal rate(int index) {
+            return BigDecimal.valueOf(rates[index], RateMatrix.SCALE);
+        }
+
+        public long bankId(int index) {
+            return bankIds[index];
+        }
+
+        /** Id of the {@code exchange_rates} row at the position. */
+        public long rateId(int index) {
+            return rateIds[index];
+        }
+
+        /** Returns the position of the bank's rate, or {@code -1}. Banks are not ordered, so this is linear. */
+        public int indexOfBank(long bankId) {
+            for (int i = 0; i < bankIds.length; i++) {
+                if (bankIds[i] == bankId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Ranking with(long rateId, long bankId, long scaledRate) {
+            Ranking base = indexOfBank(bankId) < 0 ? this : without(bankId);
+            int n = base.size();
+            int index = base.insertionPoint(scaledRate, bankId);
+            long[] newRates = new long[n + 1];
+            long[] newBankIds = new long[n + 1];
+            long[] newRateIds = new long[n + 1];
+            copyAround(base.rates, newRates, index, scaledRate);
+            copyAround(base.bankIds, newBankIds, index, bankId);
+            copyAround(base.rateIds, newRateIds, index, rateId);
+            return new Ranking(newRates, newBankIds, newRateIds);
+        }
+
+        Ranking without(long bankId) {
+            int index = indexOfBank(bankId);
+            if (index < 0) {
+                return this;
+            }
+            return new Ranking(removeAt(rates, index), removeAt(bankIds, index), removeAt(rateIds, index));
+        }
+
+        /** First position whose (rate, bank id) is greater than the given one. */
+        private int insertionPoint(long scaledRate, long bankId) {
+            int low = 0;
+            int high = rates.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (rates[mid] < scaledRate || rates[mid] == scaledRate && bankIds[mid] < bankId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static void copyAround(long[] source, long[] target, int index, long value) {
+            System.arraycopy(source, 0, target, 0, index);
+            target[index] = value;
+            System.arraycopy(source, index, target, index + 1, source.length - index);
+        }
+
+        private static long[] removeAt(long[] source, int index) {
+            long[] result = Arrays.copyOf(source, source.length - 1);
+            System.arraycopy(source, index + 1, result, index, source.length - index - 1);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.currencyconverter.utils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the retained heap size of cached keys and values by walking the object graph.
+ *
+ * <p>Sizes follow the 64-bit HotSpot layout with compressed oops (12-byte object header, 4-byte
+ * references, 8-byte alignment). Strings, BigDecimal/BigInteger, boxed primitives, arrays, and
+ * JDK collections and maps are sized from their known layout. Application classes and library
+ * classes outside the JDK (DTOs, {@code ResponseEntity}, {@code HttpHeaders}) are sized from their
+ * declared fields, which are read reflectively; per-class layouts are computed once.
+ *
+ * <p>Objects shared with the rest of the heap (enums, classes) and anything reached after
+ * {@link #MAX_VISITED} objects are not counted.
+ */
+public final class RetainedSizeWeigher implements Weigher<Object, Object> {
+
+    static final RetainedSizeWeigher INSTANCE = new RetainedSizeWeigher();
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+    private static final int MAX_VISITED = 100_000;
+
+    /** InMemoryCache node plus the ConcurrentHashMap node that points at it. */
+    private static final int ENTRY_OVERHEAD = 40 + 32;
+    private static final int STRING_SHALLOW = align(OBJECT_HEADER + REFERENCE + 4 + 1 + 1);
+    private static final int BIG_DECIMAL_SHALLOW = align(OBJECT_HEADER + 8 + 4 + 4 + REFERENCE + REFERENCE);
+    private static final int BIG_INTEGER_SHALLOW = align(OBJECT_HEADER + 4 + 4 * 4 + REFERENCE);
+    private static final int COLLECTION_SHALLOW = align(OBJECT_HEADER + 4 + 4 + REFERENCE);
+    private static final int MAP_SHALLOW = align(OBJECT_HEADER + 4 * 3 + 4 + REFERENCE * 4);
+    private static final int MAP_NODE = align(OBJECT_HEADER + 4 + REFERENCE * 3);
+
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return ClassLayout.of(type);
+        }
+    };
+
+    private RetainedSizeWeigher() {
+    }
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    public long sizeOf(Object root) {
+        if (root == null) {
+            return 0;
+        }
+        IdentityHashMap<Object, Boolean> visited = new IdentityHashMap<>();
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        long total = 0;
+        while (!pending.isEmpty() && visited.size() < MAX_VISITED) {
+            Object current = pending.pop();
+            if (visited.put(current, Boolean.TRUE) != null) {
+                continue;
+            }
+            total += shallowSizeAndChildren(current, pending);
+        }
+        return total;
+    }
+
+    private long shallowSizeAndChildren(Object object, Deque<Object> pending) {
+        Class<?> type = object.getClass();
+        if (object instanceof String) {
+            return stringSize((String) object);
+        }
+        if (object instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) object;
+            // Values with more than 18 digits do not fit the inlined long and carry a BigInteger.
+            return BIG_DECIMAL_SHALLOW + (decimal.precision() > 18 ? bigIntegerSize(decimal.unscaledValue()) : 0);
+        }
+        if (object instanceof BigInteger) {
+            return bigIntegerSize((BigInteger) object);
+        }
+        if (object instanceof Enum || object instanceof Class) {
+            return 0;
+        }
+        if (type.isArray()) {
+            return arraySize(object, pending);
+        }
+        if (object instanceof Collection && isJdkType(type)) {
+            Collection<?> collection = (Collection<?>) object;
+            collection.forEach(element -> push(pending, element));
+            return COLLECTION_SHALLOW + align(ARRAY_HEADER + (long) REFERENCE * collection.size());
+        }
+        if (object instanceof Map && isJdkType(type)) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            map.forEach((key, value) -> {
+                push(pending, key);
+                push(pending, value);
+            });
+            int buckets = Integer.highestOneBit(Math.max(1, map.size() * 4 / 3)) << 1;
+            return MAP_SHALLOW + align(ARRAY_HEADER + (long) REFERENCE * buckets) + (long) MAP_NODE * map.size();
+        }
+        ClassLayout layout = LAYOUTS.get(type);
+        for (Field field : layout.references) {
+            try {
+                push(pending, field.get(object));
+            } catch (IllegalAccessException ignored) {
+                // Field is counted in the shallow size, only the referenced object is skipped.
+            }
+        }
+        return layout.shallowSize;
+    }
+
+    private static void push(Deque<Object> pending, Object child) {
+        if (child != null) {
+            pending.push(child);
+        }
+    }
+
+    private static long stringSize(String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        return STRING_SHALLOW + align(ARRAY_HEADER + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    private static long bigIntegerSize(BigInteger value) {
+        return BIG_INTEGER_SHALLOW + align(ARRAY_HEADER + 4L * ((value.bitLength() + 31) / 32));
+    }
+
+    private static long arraySize(Object array, Deque<Object> pending) {
+        Class<?> component = array.getClass().getComponentType();
+        int length = Array.getLength(array);
+        if (component.isPrimitive()) {
+            return align(ARRAY_HEADER + (long) length * primitiveSize(component));
+        }
+        Object[] elements = (Object[]) array;
+        for (Object element : elements) {
+            push(pending, element);
+        }
+        return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static final class ClassLayout {
+        private final long shallowSize;
+        private final List<Field> references;
+
+        private ClassLayout(long shallowSize, List<Field> references) {
+            this.shallowSize = shallowSize;
+            this.references = references;
+        }
+
+        private static ClassLayout of(Class<?> type) {
+            long size = OBJECT_HEADER;
+            List<Field> references = new ArrayList<>();
+            // JDK internals are closed to reflection, and Hibernate proxies/collections would drag the session in.
+            boolean traverse = !isJdkType(type) && !type.getName().startsWith("org.hibernate.")
+                    && !type.getName().contains("$HibernateProxy");
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.getType().isPrimitive()) {
+                        size += primitiveSize(field.getType());
+                        continue;
+                    }
+                    size += REFERENCE;
+                    if (traverse && field.trySetAccessible()) {
+                        references.add(field);
+                    }
+                }
+            }
+            return new ClassLayout(align(size), List.copyOf(references));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.currencyconverter.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel used by {@link InMemoryCache} to find expired entries without scanning.
+ *
+ * <p>Five wheels with bucket widths of about 1 second, 1 minute, 1 hour, 20 hours and 3 days hold
+ * the timers. Advancing the clock only visits the buckets whose time span has passed; timers found
+ * there that are not due yet are moved down to a finer wheel. Scheduling and descheduling are O(1).
+ * Not thread-safe, callers guard it with a lock.
+ */
+final class TimerWheel<T extends TimerWheel.Timer> {
+
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+        1L << 30, // 1.07s
+        1L << 36, // 1.14m
+        1L << 42, // 1.22h
+        1L << 46, // 19.5h
+        1L << 48  // 3.26d
+    };
+    private static final long[] SHIFT = {30, 36, 42, 46, 48};
+
+    private final Timer[][] wheel;
+    private long nanos;
+
+    TimerWheel(long currentTimeNanos) {
+        this.nanos = currentTimeNanos;
+        this.wheel = new Timer[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Timer[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new Sentinel();
+            }
+        }
+    }
+
+    /** Base class for anything that can be put on the wheel. */
+    abstract static class Timer {
+        long deadline;
+        Timer timerPrev;
+        Timer timerNext;
+    }
+
+    private static final class Sentinel extends Timer {
+        Sentinel() {
+            timerPrev = this;
+            timerNext = this;
+        }
+    }
+
+    void schedule(T timer, long deadline) {
+        deschedule(timer);
+        timer.deadline = deadline;
+        link(findBucket(deadline), timer);
+    }
+
+    void deschedule(T timer) {
+        if (timer.timerNext != null) {
+            unlink(timer);
+        }
+    }
+
+    /**
+     * Moves the wheel to {@code currentTimeNanos} and returns the timers whose deadline has passed.
+     * Returned timers are no longer scheduled.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> advance(long currentTimeNanos) {
+        List<T> expired = new ArrayList<>();
+        long previousTimeNanos = nanos;
+        nanos = currentTimeNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTimeNanos >>> SHIFT[i];
+            long currentTicks = currentTimeNanos >>> SHIFT[i];
+            long delta = currentTicks - previousTicks;
+            if (delta <= 0L) {
+                break;
+            }
+            Timer[] buckets = wheel[i];
+            int mask = buckets.length - 1;
+            int steps = (int) Math.min(1 + delta, buckets.length);
+            int start = (int) (previousTicks & mask);
+            for (int j = start; j < start + steps; j++) {
+                Timer sentinel = buckets[j & mask];
+                Timer timer = sentinel.timerNext;
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                while (timer != sentinel) {
+                    Timer next = timer.timerNext;
+                    timer.timerPrev = null;
+                    timer.timerNext = null;
+                    if (timer.deadline - nanos <= 0) {
+                        expired.add((T) timer);
+                    } else {
+                        link(findBucket(timer.deadline), timer);
+                    }
+                    timer = next;
+                }
+            }
+        }
+        return expired;
+    }
+
+    private Timer findBucket(long deadline) {
+        long duration = deadline - nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private static void link(Timer sentinel, Timer timer) {
+        timer.timerPrev = sentinel.timerPrev;
+        timer.timerNext = sentinel;
+        sentinel.timerPrev.timerNext = timer;
+        sentinel.timerPrev = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.timerPrev.timerNext = timer.timerNext;
+        timer.timerNext.timerPrev = timer.timerPrev;
+        timer.timerPrev = null;
+        timer.timerNext = null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.currencyconverter.utils;
+
+/**
+ * Computes how much of the cache budget an entry consumes. Weights are calculated once, when the
+ * entry is stored, and must not be negative.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+
+    /** Approximate retained heap size of key and value in bytes, see {@link RetainedSizeWeigher}. */
+    static Weigher<Object, Object> retainedSize() {
+        return RetainedSizeWeigher.INSTANCE;
+    }
+
+    /** Every entry weighs 1, so the budget becomes a maximum number of entries. */
+    static Weigher<Object, Object> singleton() {
+        return (key, value) -> 1;
+    }
+}
@@ -0,0 +1,34 @@
+-- Run on every startup (spring.sql.init.mode=always), so every statement must be idempotent.
+
+CREATE TABLE IF NOT EXISTS exchange_rate_history (
+    id                 BIGSERIAL PRIMARY KEY,
+    bank_id            BIGINT         NOT NULL,
+    from_currency_code VARCHAR(3)     NOT NULL,
+    to_currency_code   VARCHAR(3)     NOT NULL,
+    rate               NUMERIC(19, 4),
+    valid_from         TIMESTAMPTZ    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_rate_history_pair_time
+    ON exchange_rate_history (bank_id, from_currency_code, to_currency_code, valid_from);
+
+CREATE INDEX IF NOT EXISTS idx_rate_history_time ON exchange_rate_history (valid_from);
+
+-- Hibernate's pooled optimizer draws ids in blocks of 50 (allocationSize on the entities), so the
+-- sequences must step by the same size. Sequence values handed out before the change stay below
+-- the next block, so ids never overlap.
+ALTER SEQUENCE exchange_rates_id_seq INCREMENT BY 50;
+ALTER SEQUENCE exchange_rate_history_id_seq INCREMENT BY 50;
+
+-- Bulk upserts resolve conflicts on the unique index of a bank's pair. Before it exists, all but
+-- the newest rate of pairs stored twice are deleted; once it exists the delete is skipped.
+DELETE FROM exchange_rates r
+USING exchange_rates newer
+WHERE newer.bank_id = r.bank_id
+  AND newer.from_currency_code = r.from_currency_code
+  AND newer.to_currency_code = r.to_currency_code
+  AND newer.id > r.id
+  AND NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'uk_exchange_rates_bank_pair');
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_exchange_rates_bank_pair
+    ON exchange_rates (bank_id, from_currency_code, to_currency_code);
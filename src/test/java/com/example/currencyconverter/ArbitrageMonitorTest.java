@@ -0,0 +1,228 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.ArbitrageMonitor;
+import com.example.currencyconverter.utils.RateGraph;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArbitrageMonitorTest {
+
+    private static String describe(RateGraph.Path path) {
+        StringBuilder text = new StringBuilder();
+        for (RateGraph.Hop hop : path.getHops()) {
+            text.append(hop.getBankId()).append(':').append(hop.getFromCurrencyCode())
+                    .append('>').append(hop.getToCurrencyCode()).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    @Test
+    @DisplayName("Should report a loop across banks once its rates multiply to more than one")
+    void reportsLoopAcrossBanks() {
+        ArbitrageMonitor monitor = new ArbitrageMonitor(4, new BigDecimal("0.0001"));
+        monitor.put(1L, "USD", "EUR", new BigDecimal("0.9"));
+        monitor.put(1L, "EUR", "GBP", new BigDecimal("0.85"));
+        monitor.put(1L, "GBP", "USD", new BigDecimal("1.3"));
+        assertTrue(monitor.loops().isEmpty());
+
+        monitor.put(2L, "GBP", "USD", new BigDecimal("1.32"));
+
+        List<RateGraph.Path> loops = monitor.loops();
+        assertEquals(1, loops.size());
+        assertEquals("1:EUR>GBP 2:GBP>USD 1:USD>EUR", describe(loops.get(0)));
+        assertEquals(0, new BigDecimal("1.0098").compareTo(loops.get(0).getRate()));
+    }
+
+    @Test
+    @DisplayName("Should drop a loop when one of its rates gets worse or is removed")
+    void dropsLoop() {
+        ArbitrageMonitor monitor = new ArbitrageMonitor(4, BigDecimal.ZERO);
+        monitor.put(1L, "USD", "EUR", new BigDecimal("0.9"));
+        monitor.put(1L, "EUR", "USD", new BigDecimal("1.2"));
+        monitor.put(2L, "EUR", "USD", new BigDecimal("1.15"));
+        assertEquals(1, monitor.loops().size());
+
+        monitor.put(1L, "EUR", "USD", new BigDecimal("1.1"));
+        assertEquals("2:EUR>USD 1:USD>EUR", describe(monitor.loops().get(0)));
+
+        monitor.remove(2L, "EUR", "USD");
+        assertTrue(monitor.loops().isEmpty());
+
+        monitor.put(3L, "EUR", "USD", new BigDecimal("1.2"));
+        assertEquals(1, monitor.loops().size());
+        monitor.removeBank(3L);
+        assertTrue(monitor.loops().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should report every loop through a changed pair, not only the most profitable")
+    void findsAllLoopsThroughPair() {
+        ArbitrageMonitor monitor = new ArbitrageMonitor(3, BigDecimal.ZERO);
+        monitor.put(1L, "EUR", "USD", new BigDecimal("1.1"));
+        monitor.put(1L, "EUR", "GBP", new BigDecimal("1"));
+        monitor.put(1L, "GBP", "USD", new BigDecimal("1.05"));
+        // Both loops start with this pair.
+        monitor.put(1L, "USD", "EUR", new BigDecimal("1"));
+        assertEquals(2, monitor.loops().size());
+        assertEquals("1:EUR>USD 1:USD>EUR", describe(monitor.loops().get(0)));
+        assertEquals("1:EUR>GBP 1:GBP>USD 1:USD>EUR", describe(monitor.loops().get(1)));
+
+        monitor.remove(1L, "EUR", "USD");
+
+        assertEquals(1, monitor.loops().size());
+        assertEquals("1:EUR>GBP 1:GBP>USD 1:USD>EUR", describe(monitor.loops().get(0)));
+    }
+
+    @Test
+    @DisplayName("Should stop a search at the most loops it may keep")
+    void boundsLoopsPerSearch() {
+        ArbitrageMonitor monitor = new ArbitrageMonitor(3, BigDecimal.ZERO, 2);
+        monitor.batch(() -> {
+            for (String via : List.of("BYN", "GBP", "PLN")) {
+                monitor.put(1L, "EUR", via, new BigDecimal("1"));
+                monitor.put(1L, via, "USD", new BigDecimal("1"));
+            }
+        });
+        monitor.put(1L, "USD", "EUR", new BigDecimal("1.1"));
+
+        assertEquals(2, monitor.loops().size());
+    }
+
+    @Test
+    @DisplayName("Should ignore loops longer than the limit and profits within the tolerance")
+    void respectsLimits() {
+        ArbitrageMonitor monitor = new ArbitrageMonitor(2, new BigDecimal("0.001"));
+        monitor.put(1L, "USD", "EUR", new BigDecimal("0.9235"));
+        monitor.put(1L, "EUR", "USD", new BigDecimal("1.0829"));
+        monitor.put(1L, "EUR", "GBP", new BigDecimal("2"));
+        monitor.put(1L, "GBP", "USD", new BigDecimal("2"));
+
+        assertTrue(monitor.loops().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should publish the loops of a batch of writes once the batch ends")
+    void batchesWrites() {
+        ArbitrageMonitor monitor = new ArbitrageMonitor(3, BigDecimal.ZERO);
+        monitor.batch(() -> {
+            monitor.put(1L, "USD", "EUR", new BigDecimal("0.9"));
+            monitor.put(1L, "EUR", "USD", new BigDecimal("1.2"));
+            monitor.put(1L, "EUR", "GBP", new BigDecimal("0.85"));
+            monitor.put(1L, "GBP", "USD", new BigDecimal("1.4"));
+            monitor.remove(1L, "EUR", "USD");
+            assertTrue(monitor.loops().isEmpty());
+        });
+
+        assertEquals(1, monitor.loops().size());
+        assertEquals("1:EUR>GBP 1:GBP>USD 1:USD>EUR", describe(monitor.loops().get(0)));
+    }
+
+    @Test
+    @DisplayName("Should report exactly the loops a brute-force search finds, after random writes and batches")
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        String[] codes = {"AAA", "BBB", "CCC", "DDD", "EEE", "FFF"};
+        for (int round = 0; round < 100; round++) {
+            ArbitrageMonitor monitor = new ArbitrageMonitor(4, new BigDecimal("0.0001"));
+            // Rates around a consistent set of values, so that only some loops turn a profit.
+            double[] values = new double[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                values[i] = 0.5 + random.nextDouble() * 3;
+            }
+            Map<String, BigDecimal> rates = new HashMap<>();
+            for (int step = 0; step < 100; step++) {
+                if (random.nextInt(3) == 0) {
+                    int writes = 1 + random.nextInt(random.nextBoolean() ? 4 : 40);
+                    monitor.batch(() -> {
+                        for (int i = 0; i < writes; i++) {
+                            randomWrite(random, monitor, rates, codes, values);
+                        }
+                    });
+                } else {
+                    randomWrite(random, monitor, rates, codes, values);
+                }
+
+                Map<String, BigDecimal> best = new HashMap<>();
+                rates.forEach((key, rate) -> best.merge(key.substring(key.indexOf('|') + 1), rate, BigDecimal::max));
+                Set<String> reported = new TreeSet<>();
+                for (RateGraph.Path loop : monitor.loops()) {
+                    StringBuilder key = new StringBuilder();
+                    for (RateGraph.Hop hop : loop.getHops()) {
+                        String pair = hop.getFromCurrencyCode() + "|" + hop.getToCurrencyCode();
+                        assertEquals(best.get(pair), hop.getRate());
+                        assertEquals(hop.getRate(), rates.get(hop.getBankId() + "|" + pair));
+                        key.append(hop.getFromCurrencyCode()).append('>');
+                    }
+                    reported.add(key.toString());
+                }
+                assertEquals(bruteForceLoops(best, codes, 4, new BigDecimal("1.0001")), reported);
+            }
+        }
+    }
+
+    private static void randomWrite(Random random, ArbitrageMonitor monitor, Map<String, BigDecimal> rates,
+                                    String[] codes, double[] values) {
+        long bankId = random.nextInt(3);
+        int from = random.nextInt(codes.length);
+        int to = random.nextInt(codes.length);
+        if (from == to && random.nextInt(5) > 0) {
+            return;
+        }
+        String key = bankId + "|" + codes[from] + "|" + codes[to];
+        if (random.nextInt(5) == 0) {
+            monitor.remove(bankId, codes[from], codes[to]);
+            rates.remove(key);
+        } else if (random.nextInt(40) == 0) {
+            monitor.removeBank(bankId);
+            rates.keySet().removeIf(rateKey -> rateKey.startsWith(bankId + "|"));
+        } else {
+            double noise = 1 + (random.nextDouble() - 0.6) * 0.02;
+            BigDecimal rate = BigDecimal.valueOf(values[to] / values[from] * noise).setScale(4, RoundingMode.HALF_UP);
+            if (rate.signum() > 0) {
+                monitor.put(bankId, codes[from], codes[to], rate);
+                rates.put(key, rate);
+            }
+        }
+    }
+
+    /** Every simple cycle of at most {@code maxLength} best rates multiplying to more than {@code minProduct}, as its codes from the smallest. */
+    private static Set<String> bruteForceLoops(Map<String, BigDecimal> best, String[] codes, int maxLength, BigDecimal minProduct) {
+        Set<String> loops = new TreeSet<>();
+        for (int start = 0; start < codes.length; start++) {
+            collectLoops(best, codes, maxLength, minProduct, start, start, BigDecimal.ONE, new ArrayList<>(), loops);
+        }
+        return loops;
+    }
+
+    private static void collectLoops(Map<String, BigDecimal> best, String[] codes, int maxLength, BigDecimal minProduct,
+                                     int start, int at, BigDecimal product, List<Integer> path, Set<String> loops) {
+        path.add(at);
+        for (int to = start; to < codes.length; to++) {
+            BigDecimal rate = best.get(codes[at] + "|" + codes[to]);
+            if (rate == null) {
+                continue;
+            }
+            if (to == start) {
+                if (product.multiply(rate).compareTo(minProduct) > 0) {
+                    StringBuilder key = new StringBuilder();
+                    path.forEach(node -> key.append(codes[node]).append('>'));
+                    loops.add(key.toString());
+                }
+            } else if (path.size() < maxLength && !path.contains(to)) {
+                collectLoops(best, codes, maxLength, minProduct, start, to, product.multiply(rate), path, loops);
+            }
+        }
+        path.remove(path.size() - 1);
+    }
+}
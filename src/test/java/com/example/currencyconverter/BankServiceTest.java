@@ -1,8 +1,13 @@
 package com.example.currencyconverter;
 
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.entity.Bank;
 import com.example.currencyconverter.repository.BankRepository;
 import com.example.currencyconverter.service.BankService;
+import com.example.currencyconverter.service.CacheInvalidator;
+import com.example.currencyconverter.service.RateEngine;
+import com.example.currencyconverter.service.RateHistoryService;
+import com.example.currencyconverter.service.SnapshotStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -29,6 +34,14 @@ class BankServiceTest {
 
     @Mock
     private BankRepository bankRepository;
+    @Mock
+    private CacheInvalidator cacheInvalidator;
+    @Mock
+    private RateEngine rateEngine;
+    @Mock
+    private SnapshotStore snapshotStore;
+    @Mock
+    private RateHistoryService rateHistoryService;
 
     @InjectMocks
     private BankService bankService;
@@ -118,6 +131,7 @@ class BankServiceTest {
         verify(bankRepository).save(bankCaptor.capture());
         assertEquals(newName, bankCaptor.getValue().getName()); // Verify name was updated before save
         verify(bankRepository).findById(1L);
+        verify(cacheInvalidator).invalidate(CacheTags.BANKS, CacheTags.bank(1L));
     }
 
     @Test
@@ -131,6 +145,7 @@ class BankServiceTest {
         assertNull(result);
         verify(bankRepository).findById(99L);
         verify(bankRepository, never()).save(any());
+        verifyNoInteractions(cacheInvalidator);
     }
 
     @Test
@@ -144,6 +159,10 @@ class BankServiceTest {
         assertTrue(result);
         verify(bankRepository).existsById(1L);
         verify(bankRepository).deleteById(1L);
+        verify(cacheInvalidator).invalidate(CacheTags.BANKS, CacheTags.RATES, CacheTags.bank(1L));
+        verify(rateEngine).recordBankRemoval(1L);
+        verify(snapshotStore).recordBankRemoval(1L);
+        verify(rateHistoryService).recordBankRemoval(1L);
     }
 
     @Test
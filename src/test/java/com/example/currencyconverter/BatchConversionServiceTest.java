@@ -0,0 +1,136 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.dto.BatchConversionResultDto;
+import com.example.currencyconverter.dto.ConversionStepDto;
+import com.example.currencyconverter.model.ConversionMode;
+import com.example.currencyconverter.model.ConversionRequest;
+import com.example.currencyconverter.service.BatchConversionService;
+import com.example.currencyconverter.service.CurrencyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchConversionServiceTest {
+
+    @Mock
+    private CurrencyService currencyService;
+
+    @InjectMocks
+    private BatchConversionService batchConversionService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(batchConversionService, "parallelThreshold", 2000);
+        ReflectionTestUtils.setField(batchConversionService, "chunkSize", 1000);
+        ReflectionTestUtils.setField(batchConversionService, "parallelism", 2);
+        ReflectionTestUtils.invokeMethod(batchConversionService, "createPool");
+        // The mock skips field initializers, so the real toResponse needs its rounding settings.
+        ReflectionTestUtils.setField(currencyService, "resultScale", 4);
+        ReflectionTestUtils.setField(currencyService, "rounding", RoundingMode.HALF_UP);
+        lenient().when(currencyService.toResponse(any(), any())).thenCallRealMethod();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(batchConversionService, "shutdownPool");
+    }
+
+    @Test
+    @DisplayName("Should quote each pair once and report errors per request")
+    void convert_GroupsRequests() {
+        when(currencyService.quote(argThat(r -> r != null && "EUR".equals(r.getToCurrencyCode()))))
+                .thenReturn(quote(1L, "USD", "EUR", "0.9200"));
+        when(currencyService.quote(argThat(r -> r != null && "JPY".equals(r.getToCurrencyCode()))))
+                .thenThrow(new IllegalArgumentException("Exchange rate not found for this bank and currency pair."));
+
+        List<BatchConversionResultDto> results = batchConversionService.convert(Arrays.asList(
+                request(1L, "USD", "EUR", "100"),
+                request(1L, "USD", "JPY", "100"),
+                request(1L, "USD", "EUR", "50"),
+                request(1L, "USD", "EUR", null)));
+
+        assertEquals(4, results.size());
+        assertEquals(0, results.get(0).getIndex());
+        assertEquals(0, new BigDecimal("92.0000").compareTo(results.get(0).getResult().getConvertedAmount()));
+        assertNull(results.get(1).getResult());
+        assertEquals("Exchange rate not found for this bank and currency pair.", results.get(1).getError());
+        assertEquals(0, new BigDecimal("46.0000").compareTo(results.get(2).getResult().getConvertedAmount()));
+        assertEquals("amount is required.", results.get(3).getError());
+        verify(currencyService, times(2)).quote(any());
+    }
+
+    @Test
+    @DisplayName("Should keep the order of requests when converting in parallel chunks")
+    void convert_InParallelChunks() {
+        ReflectionTestUtils.setField(batchConversionService, "parallelThreshold", 4);
+        ReflectionTestUtils.setField(batchConversionService, "chunkSize", 3);
+        when(currencyService.quote(any())).thenAnswer(inv -> {
+            ConversionRequest r = inv.getArgument(0);
+            return quote(r.getBankId(), r.getFromCurrencyCode(), r.getToCurrencyCode(), r.getBankId() + ".0000");
+        });
+
+        List<ConversionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(request((long) (i % 7) + 1, "USD", "EUR", String.valueOf(i)));
+        }
+        List<BatchConversionResultDto> results = batchConversionService.convert(requests);
+
+        assertEquals(20, results.size());
+        for (int i = 0; i < 20; i++) {
+            BigDecimal expected = BigDecimal.valueOf((long) i * ((i % 7) + 1));
+            assertEquals(i, results.get(i).getIndex());
+            assertEquals(0, expected.compareTo(results.get(i).getResult().getConvertedAmount()));
+        }
+        verify(currencyService, times(7)).quote(any());
+    }
+
+    @Test
+    @DisplayName("Should require a bank only for modes that use one")
+    void convert_BankOptionalAcrossBanks() {
+        when(currencyService.quote(any())).thenReturn(quote(2L, "USD", "EUR", "0.9300"));
+        ConversionRequest anyBank = request(null, "USD", "EUR", "100");
+        anyBank.setMode(ConversionMode.BEST_PATH_ANY_BANK);
+        ConversionRequest otherBankGiven = request(5L, "USD", "EUR", "10");
+        otherBankGiven.setMode(ConversionMode.BEST_PATH_ANY_BANK);
+
+        List<BatchConversionResultDto> results = batchConversionService.convert(Arrays.asList(
+                anyBank, otherBankGiven, request(null, "USD", "EUR", "100")));
+
+        assertEquals(0, new BigDecimal("93.0000").compareTo(results.get(0).getResult().getConvertedAmount()));
+        assertEquals(0, new BigDecimal("9.3000").compareTo(results.get(1).getResult().getConvertedAmount()));
+        assertEquals("bankId is required.", results.get(2).getError());
+        verify(currencyService).quote(any());
+    }
+
+    private static ConversionRequest request(Long bankId, String from, String to, String amount) {
+        ConversionRequest request = new ConversionRequest();
+        request.setBankId(bankId);
+        request.setFromCurrencyCode(from);
+        request.setToCurrencyCode(to);
+        request.setAmount(amount == null ? null : new BigDecimal(amount));
+        return request;
+    }
+
+    private static CurrencyService.Quote quote(Long bankId, String from, String to, String rate) {
+        BigDecimal value = new BigDecimal(rate);
+        return new CurrencyService.Quote(value, List.of(new ConversionStepDto(bankId, from, to, value)));
+    }
+}
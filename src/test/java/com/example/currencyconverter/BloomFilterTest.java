@@ -0,0 +1,53 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.BloomFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    private static final String[] CODES = {"USD", "EUR", "BYN", "RUB", "GBP", "PLN", "CNY", "JPY"};
+
+    @Test
+    @DisplayName("Should always match keys that were put")
+    void hasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int bank = 1; bank <= 100; bank++) {
+            for (String from : CODES) {
+                filter.put(bank + "-" + from + "-BYN");
+            }
+        }
+
+        for (int bank = 1; bank <= 100; bank++) {
+            for (String from : CODES) {
+                assertTrue(filter.mightContain(bank + "-" + from + "-BYN"));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep false positives near the configured rate")
+    void boundsFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(5_000, 0.01);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put(i + "-USD-EUR");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(i + "-EUR-USD")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Should reject a false positive rate outside (0, 1)")
+    void rejectsInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.service.CacheWarmer;
+import com.example.currencyconverter.service.ExchangeRateService;
+import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.utils.RateKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmerTest {
+
+    @Mock
+    private ExchangeRateService exchangeRateService;
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+    @Mock
+    private InMemoryCache<RateKey, BigDecimal> exchangeRateCache;
+
+    @TempDir
+    Path tempDir;
+
+    private CacheWarmer cacheWarmer;
+
+    @BeforeEach
+    void setUp() {
+        cacheWarmer = new CacheWarmer(exchangeRateService, exchangeRateRepository, exchangeRateCache);
+        ReflectionTestUtils.setField(cacheWarmer, "cacheEnabled", true);
+        ReflectionTestUtils.setField(cacheWarmer, "enabled", true);
+        ReflectionTestUtils.setField(cacheWarmer, "preloadAll", true);
+        ReflectionTestUtils.setField(cacheWarmer, "pageSize", 1000);
+        ReflectionTestUtils.setField(cacheWarmer, "parallelism", 1);
+        ReflectionTestUtils.setField(cacheWarmer, "timeBudget", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(cacheWarmer, "hotKeysEnabled", false);
+        ReflectionTestUtils.setField(cacheWarmer, "hotKeysFile", tempDir.resolve("cache/hot-rate-keys.txt").toString());
+        ReflectionTestUtils.setField(cacheWarmer, "maxHotKeys", 10);
+    }
+
+    @Test
+    @DisplayName("Should page through sparse ids after the last id read and report completion within the budget")
+    void preloadsByKeysetWithinBudget() {
+        when(exchangeRateRepository.findMaxId()).thenReturn(60_000L);
+        when(exchangeRateService.preloadExchangeRateValues(0L, 60_000L, 1000))
+                .thenReturn(new ExchangeRateService.PreloadedPage(1000, 50_000L));
+        when(exchangeRateService.preloadExchangeRateValues(50_000L, 60_000L, 1000))
+                .thenReturn(new ExchangeRateService.PreloadedPage(3, 59_950L));
+
+        cacheWarmer.run(new DefaultApplicationArguments());
+
+        Health health = cacheWarmer.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("COMPLETED", health.getDetails().get("phase").toString());
+        assertEquals(1003L, health.getDetails().get("ratesLoaded"));
+        verify(exchangeRateService, times(2)).preloadExchangeRateValues(anyLong(), eq(60_000L), eq(1000));
+    }
+
+    @Test
+    @DisplayName("Should stop the warm-up once the time budget runs out and leave the rest to on-demand loads")
+    void stopsWhenBudgetRunsOut() {
+        ReflectionTestUtils.setField(cacheWarmer, "timeBudget", Duration.ofMillis(100));
+        when(exchangeRateRepository.findMaxId()).thenReturn(1_000_000_000L);
+        when(exchangeRateService.preloadExchangeRateValues(anyLong(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            long afterId = invocation.getArgument(0);
+            return new ExchangeRateService.PreloadedPage(1000, afterId + 1000);
+        });
+
+        assertTimeout(Duration.ofSeconds(5), () -> cacheWarmer.run(new DefaultApplicationArguments()));
+
+        Health health = cacheWarmer.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("TIMED_OUT", health.getDetails().get("phase").toString());
+    }
+
+    @Test
+    @DisplayName("Should save the hottest packable keys on shutdown and load them first on the next start")
+    void hotKeysRoundTrip() throws Exception {
+        ReflectionTestUtils.setField(cacheWarmer, "hotKeysEnabled", true);
+        ReflectionTestUtils.setField(cacheWarmer, "preloadAll", false);
+        when(exchangeRateCache.hottestKeys(10)).thenReturn(List.of(
+                RateKey.of(1L, "USD", "EUR"), RateKey.of(2L, "EUR", "GBP"), RateKey.of(3L, "XAU-OZ", "USD")));
+        when(exchangeRateService.getExchangeRateValue(1L, "USD", "EUR")).thenReturn(new BigDecimal("0.9200"));
+        when(exchangeRateService.getExchangeRateValue(2L, "EUR", "GBP")).thenReturn(new BigDecimal("0.8600"));
+
+        cacheWarmer.saveHotKeys();
+        assertEquals(List.of("1-USD-EUR", "2-EUR-GBP"), Files.readAllLines(tempDir.resolve("cache/hot-rate-keys.txt")));
+
+        cacheWarmer.run(new DefaultApplicationArguments());
+
+        Health health = cacheWarmer.health();
+        assertEquals("COMPLETED", health.getDetails().get("phase").toString());
+        assertEquals(2, health.getDetails().get("hotKeysLoaded"));
+        verify(exchangeRateService, never()).preloadExchangeRateValues(anyLong(), anyLong(), anyInt());
+        verifyNoInteractions(exchangeRateRepository);
+    }
+}
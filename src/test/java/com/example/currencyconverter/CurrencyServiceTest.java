@@ -1,13 +1,25 @@
 // src/test/java/com/example/currencyconverter/service/CurrencyServiceTest.java
 package com.example.currencyconverter;
 
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.dto.ConversionResponseDto;
+import com.example.currencyconverter.dto.FanOutConversionDto;
+import com.example.currencyconverter.dto.FanOutTargetDto;
 import com.example.currencyconverter.entity.Currency;
+import com.example.currencyconverter.entity.ExchangeRateHistory;
+import com.example.currencyconverter.model.ConversionMode;
 import com.example.currencyconverter.model.ConversionRequest;
 import com.example.currencyconverter.repository.CurrencyRepository;
 import com.example.currencyconverter.repository.ExchangeRateRepository; // Нужен для delete
+import com.example.currencyconverter.service.CacheInvalidator;
+import com.example.currencyconverter.service.CurrencyRegistry;
 import com.example.currencyconverter.service.CurrencyService;
 import com.example.currencyconverter.service.ExchangeRateService;
+import com.example.currencyconverter.service.RateEngine;
+import com.example.currencyconverter.service.RateHistoryService;
+import com.example.currencyconverter.service.SnapshotStore;
+import com.example.currencyconverter.utils.RateGraph;
+import com.example.currencyconverter.utils.RateMatrix;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -19,6 +31,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -26,6 +39,8 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +52,16 @@ class CurrencyServiceTest {
     private ExchangeRateService exchangeRateService; // Mocked dependency
     @Mock
     private ExchangeRateRepository exchangeRateRepository; // Mocked for delete check (if implemented)
+    @Mock
+    private CacheInvalidator cacheInvalidator;
+    @Mock
+    private RateEngine rateEngine;
+    @Mock
+    private SnapshotStore snapshotStore;
+    @Mock
+    private RateHistoryService rateHistoryService;
+    @Mock
+    private CurrencyRegistry currencyRegistry;
 
     @InjectMocks
     private CurrencyService currencyService;
@@ -96,24 +121,204 @@ class CurrencyServiceTest {
             assertEquals("Exchange rate not found for this bank and currency pair.", exception.getMessage());
             verify(exchangeRateService).getExchangeRateValue(10L, "USD", "JPY");
         }
+
+        @Test
+        @DisplayName("Should convert over the best chain of rates in best-path mode")
+        void convertCurrency_BestPath() {
+            ConversionRequest request = new ConversionRequest();
+            request.setBankId(10L);
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+            request.setMode(ConversionMode.BEST_PATH);
+            RateGraph graph = new RateGraph();
+            graph.put(10L, "USD", "BYN", new BigDecimal("3.2000"));
+            graph.put(10L, "BYN", "EUR", new BigDecimal("0.2800"));
+
+            when(rateEngine.isLoaded()).thenReturn(true);
+            when(rateEngine.findBestPath(10L, "USD", "EUR")).thenReturn(graph.findBestPath(10L, "USD", "EUR"));
+
+            ConversionResponseDto response = currencyService.convertCurrency(request);
+
+            assertEquals(0, new BigDecimal("0.896").compareTo(response.getExchangeRate()));
+            assertEquals(0, new BigDecimal("89.6").compareTo(response.getConvertedAmount()));
+            assertEquals(2, response.getPath().size());
+            assertEquals("BYN", response.getPath().get(0).getToCurrency());
+            verify(exchangeRateService, never()).getExchangeRateValue(anyLong(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should reject a single-bank best path without a bank instead of searching all banks")
+        void convertCurrency_BestPathWithoutBank() {
+            ConversionRequest request = new ConversionRequest();
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+            request.setMode(ConversionMode.BEST_PATH);
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> currencyService.convertCurrency(request));
+
+            assertEquals("bankId is required.", exception.getMessage());
+            verify(rateEngine, never()).findBestPath(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should take the rate from the rate engine once it is loaded")
+        void convertCurrency_FromRateEngine() {
+            ConversionRequest request = new ConversionRequest();
+            request.setBankId(10L);
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+
+            when(rateEngine.canAnswer(10L, "USD", "EUR")).thenReturn(true);
+            when(rateEngine.getRate(10L, "USD", "EUR")).thenReturn(new BigDecimal("0.9500"));
+
+            ConversionResponseDto response = currencyService.convertCurrency(request);
+
+            assertEquals(0, new BigDecimal("95.00").compareTo(response.getConvertedAmount()));
+            verify(exchangeRateService, never()).getExchangeRateValue(anyLong(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should take the rate in effect at asOf from the rate history")
+        void convertCurrency_AsOf() {
+            Instant asOf = Instant.parse("2024-05-01T14:00:00Z");
+            ConversionRequest request = new ConversionRequest();
+            request.setBankId(10L);
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+            request.setAsOf(asOf);
+
+            when(rateHistoryService.getRateAsOf(10L, "USD", "EUR", asOf)).thenReturn(ExchangeRateHistory.builder()
+                    .bankId(10L).fromCurrencyCode("USD").toCurrencyCode("EUR")
+                    .rate(new BigDecimal("0.9100")).validFrom(asOf.minusSeconds(3600)).build());
+
+            ConversionResponseDto response = currencyService.convertCurrency(request);
+
+            assertEquals(0, new BigDecimal("91.00").compareTo(response.getConvertedAmount()));
+            verifyNoInteractions(rateEngine, exchangeRateService);
+        }
+
+        @Test
+        @DisplayName("Should reject a direct conversion without a bank before looking up any rate")
+        void convertCurrency_DirectWithoutBank() {
+            ConversionRequest request = new ConversionRequest();
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> currencyService.convertCurrency(request));
+
+            assertEquals("bankId is required.", exception.getMessage());
+            verifyNoInteractions(rateEngine, exchangeRateService, rateHistoryService);
+        }
+
+        @Test
+        @DisplayName("Should reject an asOf conversion without a bank before reading the history")
+        void convertCurrency_AsOfWithoutBank() {
+            ConversionRequest request = new ConversionRequest();
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+            request.setAsOf(Instant.parse("2024-05-01T14:00:00Z"));
+
+            assertThrows(IllegalArgumentException.class, () -> currencyService.convertCurrency(request));
+            verifyNoInteractions(rateHistoryService);
+        }
+
+        @Test
+        @DisplayName("Should reject asOf outside the direct mode")
+        void convertCurrency_AsOfWithBestPath() {
+            ConversionRequest request = new ConversionRequest();
+            request.setBankId(10L);
+            request.setFromCurrencyCode("USD");
+            request.setToCurrencyCode("EUR");
+            request.setAmount(new BigDecimal("100.00"));
+            request.setMode(ConversionMode.BEST_PATH);
+            request.setAsOf(Instant.parse("2024-05-01T14:00:00Z"));
+
+            assertThrows(IllegalArgumentException.class, () -> currencyService.convertCurrency(request));
+            verifyNoInteractions(rateHistoryService);
+        }
+    }
+
+    @Nested
+    @DisplayName("convertToAll Tests")
+    class ConvertToAllTests {
+
+        @Test
+        @DisplayName("Should convert into every target from one pass over the rate engine")
+        void convertToAll_FromRateEngine() {
+            when(currencyRegistry.contains("USD")).thenReturn(true);
+            when(rateEngine.canFanOut(null, "USD")).thenReturn(true);
+            doAnswer(invocation -> {
+                RateMatrix.RateConsumer consumer = invocation.getArgument(2);
+                consumer.accept(2L, "EUR", 9000);
+                consumer.accept(1L, "GBP", 7912);
+                consumer.accept(1L, "EUR", 9500);
+                return null;
+            }).when(rateEngine).forEachRateFrom(isNull(), eq("USD"), any());
+
+            FanOutConversionDto result = currencyService.convertToAll(null, "USD", new BigDecimal("100.00"));
+
+            List<FanOutTargetDto> conversions = result.getConversions();
+            assertEquals(3, conversions.size());
+            assertEquals(1L, conversions.get(0).getBankId());
+            assertEquals("EUR", conversions.get(0).getToCurrency());
+            assertEquals(new BigDecimal("95.0000"), conversions.get(0).getConvertedAmount());
+            assertEquals("GBP", conversions.get(1).getToCurrency());
+            assertEquals(new BigDecimal("79.1200"), conversions.get(1).getConvertedAmount());
+            assertEquals(2L, conversions.get(2).getBankId());
+            verify(exchangeRateService, never()).getRatesFrom(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should fall back to one query when the rate engine cannot answer")
+        void convertToAll_FromDatabase() {
+            when(currencyRegistry.contains("USD")).thenReturn(true);
+            when(rateEngine.canFanOut(10L, "USD")).thenReturn(false);
+            when(exchangeRateService.getRatesFrom(10L, "USD")).thenReturn(List.of(
+                    new Object[]{10L, "EUR", new BigDecimal("0.95")},
+                    new Object[]{10L, "BYN", new BigDecimal("3.2")}));
+
+            FanOutConversionDto result = currencyService.convertToAll(10L, "USD", new BigDecimal("10"));
+
+            assertEquals("BYN", result.getConversions().get(0).getToCurrency());
+            assertEquals(new BigDecimal("32.0000"), result.getConversions().get(0).getConvertedAmount());
+            assertEquals(new BigDecimal("9.5000"), result.getConversions().get(1).getConvertedAmount());
+        }
+
+        @Test
+        @DisplayName("Should reject an unknown currency")
+        void convertToAll_UnknownCurrency() {
+            when(currencyRegistry.contains("XXX")).thenReturn(false);
+
+            assertThrows(IllegalArgumentException.class, () -> currencyService.convertToAll(null, "XXX", BigDecimal.ONE));
+            verifyNoInteractions(rateEngine, exchangeRateService);
+        }
     }
 
     @Test
     @DisplayName("getCurrencyByCode should return currency when found")
     void getCurrencyByCode_Found() {
-        when(currencyRepository.findByCode("USD")).thenReturn(usd);
+        when(currencyRegistry.find("USD")).thenReturn(usd);
         Currency result = currencyService.getCurrencyByCode("USD");
         assertSame(usd, result);
-        verify(currencyRepository).findByCode("USD");
+        verify(currencyRegistry).find("USD");
+        verifyNoInteractions(currencyRepository);
     }
 
     @Test
     @DisplayName("getCurrencyByCode should return null when not found")
     void getCurrencyByCode_NotFound() {
-        when(currencyRepository.findByCode("JPY")).thenReturn(null);
+        when(currencyRegistry.find("JPY")).thenReturn(null);
         Currency result = currencyService.getCurrencyByCode("JPY");
         assertNull(result);
-        verify(currencyRepository).findByCode("JPY");
+        verify(currencyRegistry).find("JPY");
     }
 
     @Test
@@ -176,6 +381,7 @@ class CurrencyServiceTest {
     void updateCurrency_Found() {
         String newCode = "USS";
         String newName = "United States Dollar Updated";
+        String oldCode = usd.getCode();
         when(currencyRepository.findById(1L)).thenReturn(Optional.of(usd));
         when(currencyRepository.save(any(Currency.class))).thenAnswer(inv -> inv.getArgument(0));
 
@@ -191,6 +397,9 @@ class CurrencyServiceTest {
         assertEquals(newCode, captor.getValue().getCode());
         assertEquals(newName, captor.getValue().getName());
         verify(currencyRepository).findById(1L);
+        verify(cacheInvalidator).invalidate(CacheTags.CURRENCIES, CacheTags.currencyId(1L),
+                CacheTags.currency(oldCode), CacheTags.currency(newCode));
+        verify(currencyRegistry).recordCurrency(usd);
     }
 
     @Test
@@ -220,6 +429,9 @@ class CurrencyServiceTest {
         assertTrue(result);
         verify(currencyRepository).existsById(1L);
         verify(currencyRepository).deleteById(1L);
+        verify(cacheInvalidator).invalidate(CacheTags.CURRENCIES, CacheTags.currencyId(1L));
+        verify(snapshotStore).recordCurrencyRemoval(1L);
+        verify(currencyRegistry).recordCurrencyRemoval(1L);
     }
 
     @Test
@@ -0,0 +1,49 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.CurrencyTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyTableTest {
+
+    @Test
+    @DisplayName("Should find currencies by code and keep earlier tables unchanged")
+    void findsByCode() {
+        CurrencyTable first = CurrencyTable.EMPTY.toBuilder()
+                .put(1L, "USD", "US Dollar")
+                .put(2L, "ZZZ", null)
+                .put(3L, "usd", "Lower case")
+                .build();
+        CurrencyTable second = first.toBuilder()
+                .removeId(1L)
+                .put(1L, "USX", "US Dollar Updated")
+                .remove("usd")
+                .build();
+
+        assertTrue(first.contains("USD"));
+        assertEquals("US Dollar", first.nameOf("USD"));
+        assertEquals(2L, first.idOf("ZZZ"));
+        assertNull(first.nameOf("ZZZ"));
+        assertEquals(3L, first.idOf("usd"));
+        assertEquals(3, first.size());
+        assertFalse(first.contains("EUR"));
+        assertFalse(first.contains(null));
+
+        assertFalse(second.contains("USD"));
+        assertEquals(1L, second.idOf("USX"));
+        assertFalse(second.contains("usd"));
+        assertEquals(2, second.size());
+    }
+
+    @Test
+    @DisplayName("Should map three-letter codes to distinct slots")
+    void mapsCodesToSlots() {
+        assertEquals(0, CurrencyTable.slotOf("AAA"));
+        assertEquals(CurrencyTable.SLOTS - 1, CurrencyTable.slotOf("ZZZ"));
+        assertEquals(-1, CurrencyTable.slotOf("US"));
+        assertEquals(-1, CurrencyTable.slotOf("U$D"));
+        assertNotEquals(CurrencyTable.slotOf("USD"), CurrencyTable.slotOf("SUD"));
+    }
+}
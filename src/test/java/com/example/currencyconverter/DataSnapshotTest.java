@@ -0,0 +1,83 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.service.DataSnapshot;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataSnapshotTest {
+
+    @Test
+    @DisplayName("Should leave earlier versions unchanged when building the next one")
+    void keepsEarlierVersions() {
+        DataSnapshot first = DataSnapshot.EMPTY.toBuilder()
+                .putBank(new DataSnapshot.BankRow(1L, "Alfa"))
+                .putCurrency(new DataSnapshot.CurrencyRow(10L, "USD", "US Dollar"))
+                .putRate(new DataSnapshot.RateRow(100L, 1L, "USD", "EUR", new BigDecimal("0.9200")))
+                .build(1);
+
+        DataSnapshot second = first.toBuilder()
+                .putRate(new DataSnapshot.RateRow(100L, 1L, "USD", "EUR", new BigDecimal("0.9300")))
+                .putRate(new DataSnapshot.RateRow(101L, 1L, "EUR", "USD", new BigDecimal("1.0800")))
+                .build(2);
+
+        assertEquals(1, first.getVersion());
+        assertEquals(1, first.getRates().size());
+        assertEquals(new BigDecimal("0.9200"), first.getRate(100L).getRate());
+        assertEquals(2, second.getVersion());
+        assertEquals(List.of(100L, 101L), second.getRates().stream().map(DataSnapshot.RateRow::getId).collect(Collectors.toList()));
+        assertEquals(new BigDecimal("0.9300"), second.getRate(100L).getRate());
+        assertEquals(2, second.getRatesOfBank(1L).size());
+        assertEquals(1, second.getCurrencies().size());
+    }
+
+    @Test
+    @DisplayName("Should drop the rates of a removed bank")
+    void removesBankWithRates() {
+        DataSnapshot snapshot = DataSnapshot.EMPTY.toBuilder()
+                .putBank(new DataSnapshot.BankRow(1L, "Alfa"))
+                .putBank(new DataSnapshot.BankRow(2L, "Belarusbank"))
+                .putRate(new DataSnapshot.RateRow(100L, 1L, "USD", "EUR", new BigDecimal("0.9200")))
+                .putRate(new DataSnapshot.RateRow(101L, 2L, "USD", "EUR", new BigDecimal("0.9300")))
+                .build(1)
+                .toBuilder()
+                .removeBank(1L)
+                .build(2);
+
+        assertEquals(1, snapshot.getBanks().size());
+        assertNull(snapshot.getRate(100L));
+        assertTrue(snapshot.getRatesOfBank(1L).isEmpty());
+        assertEquals(1, snapshot.getRatesOfBank(2L).size());
+    }
+
+    @Test
+    @DisplayName("Should find rates by bank and pair in every version as rates move, go and come")
+    void indexesRatesByKey() {
+        DataSnapshot first = DataSnapshot.EMPTY.toBuilder()
+                .putBank(new DataSnapshot.BankRow(1L, "Alfa"))
+                .putBank(new DataSnapshot.BankRow(2L, "Belarusbank"))
+                .putRate(new DataSnapshot.RateRow(100L, 1L, "USD", "EUR", new BigDecimal("0.9200")))
+                .putRate(new DataSnapshot.RateRow(101L, 2L, "USD", "EUR", new BigDecimal("0.9300")))
+                .putRate(new DataSnapshot.RateRow(102L, 1L, "usd", "EUR", new BigDecimal("0.9400")))
+                .build(1);
+
+        DataSnapshot second = first.toBuilder()
+                .putRate(new DataSnapshot.RateRow(100L, 1L, "USD", "GBP", new BigDecimal("0.7900")))
+                .removeRate(102L)
+                .removeBank(2L)
+                .build(2);
+
+        assertEquals(100L, first.getRate(1L, "USD", "EUR").getId());
+        assertEquals(101L, first.getRate(2L, "USD", "EUR").getId());
+        assertEquals(102L, first.getRate(1L, "usd", "EUR").getId());
+        assertNull(first.getRate(1L, "USD", "GBP"));
+        assertNull(second.getRate(1L, "USD", "EUR"));
+        assertEquals(new BigDecimal("0.7900"), second.getRate(1L, "USD", "GBP").getRate());
+        assertNull(second.getRate(2L, "USD", "EUR"));
+        assertNull(second.getRate(1L, "usd", "EUR"));
+    }
+}
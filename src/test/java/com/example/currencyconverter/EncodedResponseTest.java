@@ -0,0 +1,67 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.EncodedResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncodedResponseTest {
+
+    private static byte[] json(int entries) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < entries; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"code\":\"USD\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Should derive the same ETag for the same bytes and a different one otherwise")
+    void etagFollowsContent() {
+        EncodedResponse first = EncodedResponse.of(json(3), 1024);
+        EncodedResponse same = EncodedResponse.of(json(3), 1024);
+        EncodedResponse other = EncodedResponse.of(json(4), 1024);
+
+        assertEquals(first.getEtag(), same.getEtag());
+        assertNotEquals(first.getEtag(), other.getEtag());
+        assertTrue(first.getEtag().startsWith("\"") && first.getEtag().endsWith("\""));
+        assertNotEquals(first.getEtag(), first.getGzipEtag());
+    }
+
+    @Test
+    @DisplayName("Should match If-None-Match lists, wildcards and weak validators")
+    void matchesIfNoneMatch() {
+        EncodedResponse response = EncodedResponse.of(json(100), 16);
+
+        assertTrue(response.matches(response.getEtag()));
+        assertTrue(response.matches("\"other\", " + response.getGzipEtag()));
+        assertTrue(response.matches("W/" + response.getEtag()));
+        assertTrue(response.matches("*"));
+        assertFalse(response.matches("\"other\""));
+        assertFalse(response.matches(null));
+        assertFalse(response.matches(" "));
+    }
+
+    @Test
+    @DisplayName("Should gzip bodies above the threshold and keep small ones as is")
+    void gzipsAboveThreshold() throws IOException {
+        byte[] body = json(100);
+        EncodedResponse large = EncodedResponse.of(body, 1024);
+        EncodedResponse small = EncodedResponse.of(json(3), 1024);
+        EncodedResponse disabled = EncodedResponse.of(body, -1);
+
+        assertTrue(large.hasGzipBody());
+        assertTrue(large.getGzipBody().length < body.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(large.getGzipBody()))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+        assertFalse(small.hasGzipBody());
+        assertNull(small.getGzipBody());
+        assertFalse(disabled.hasGzipBody());
+    }
+}
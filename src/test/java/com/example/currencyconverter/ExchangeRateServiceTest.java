@@ -1,16 +1,27 @@
 package com.example.currencyconverter;
 
+import com.example.currencyconverter.config.CacheTags;
 import com.example.currencyconverter.dto.ExchangeRateCreateRequestDto;
+import com.example.currencyconverter.dto.ExchangeRateUpsertResultDto;
 import com.example.currencyconverter.entity.Bank;
 import com.example.currencyconverter.entity.Currency;
 import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
 import com.example.currencyconverter.exception.CurrencyNotFoundException;
 import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.model.UpsertOutcome;
 import com.example.currencyconverter.repository.BankRepository;
-import com.example.currencyconverter.repository.CurrencyRepository;
 import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.service.CacheInvalidator;
+import com.example.currencyconverter.service.CurrencyRegistry;
 import com.example.currencyconverter.service.ExchangeRateService;
+import com.example.currencyconverter.service.NegativeLookupCache;
+import com.example.currencyconverter.service.RateEngine;
+import com.example.currencyconverter.service.RateHistoryService;
+import com.example.currencyconverter.service.SnapshotStore;
 import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.utils.RateKey;
+import com.example.currencyconverter.utils.RateRanking;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -21,6 +32,7 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.util.ReflectionTestUtils; // Для установки cacheEnabled
 
 import java.math.BigDecimal;
@@ -30,9 +42,12 @@ import java.util.Collections;
 import java.util.Set;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -47,9 +62,19 @@ class ExchangeRateServiceTest {
     @Mock
     private BankRepository bankRepository;
     @Mock
-    private CurrencyRepository currencyRepository;
+    private CurrencyRegistry currencyRegistry;
     @Mock
-    private InMemoryCache<String, Object> exchangeRateCache; // Мокаем кеш сервиса
+    private InMemoryCache<RateKey, BigDecimal> exchangeRateCache;
+    @Mock
+    private CacheInvalidator cacheInvalidator; // Мокаем кеш сервиса
+    @Mock
+    private NegativeLookupCache negativeLookupCache;
+    @Mock
+    private RateEngine rateEngine;
+    @Mock
+    private SnapshotStore snapshotStore;
+    @Mock
+    private RateHistoryService rateHistoryService;
 
     @InjectMocks
     private ExchangeRateService exchangeRateService;
@@ -59,9 +84,9 @@ class ExchangeRateServiceTest {
     @Captor
     private ArgumentCaptor<List<ExchangeRate>> exchangeRateListCaptor;
     @Captor
-    private ArgumentCaptor<String> cacheKeyCaptor;
+    private ArgumentCaptor<RateKey> cacheKeyCaptor;
     @Captor
-    private ArgumentCaptor<Object> cacheValueCaptor;
+    private ArgumentCaptor<BigDecimal> cacheValueCaptor;
 
 
     private Bank testBank;
@@ -105,8 +130,8 @@ class ExchangeRateServiceTest {
         @DisplayName("Should create rate successfully when data is valid")
         void createExchangeRateWithCodes_Success() {
             when(bankRepository.findById(testBank.getId())).thenReturn(Optional.of(testBank));
-            when(currencyRepository.findByCode(usd.getCode())).thenReturn(usd);
-            when(currencyRepository.findByCode(eur.getCode())).thenReturn(eur);
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(eur.getCode())).thenReturn(true);
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                     testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.empty()); // No duplicate
             when(exchangeRateRepository.save(any(ExchangeRate.class))).thenAnswer(invocation -> {
@@ -132,7 +157,9 @@ class ExchangeRateServiceTest {
             assertEquals(eur.getCode(), savedEntity.getToCurrencyCode());
             assertEquals(createDto.getRate(), savedEntity.getRate());
 
-            verify(exchangeRateCache).evict(eq("1-USD-EUR")); // Verify cache eviction
+            verify(exchangeRateCache).evict(eq(RateKey.of(1L, "USD", "EUR"))); // Verify cache eviction
+            verify(cacheInvalidator).invalidate(CacheTags.forRate(101L, testBank.getId(), usd.getCode(), eur.getCode()));
+            verify(negativeLookupCache).recordRate(testBank.getId(), usd.getCode(), eur.getCode());
         }
 
         @Test
@@ -146,15 +173,15 @@ class ExchangeRateServiceTest {
 
             assertEquals("Bank not found with id: 99", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
         @Test
         @DisplayName("Should throw InvalidInputDataException when 'from' currency not found")
         void createExchangeRateWithCodes_FromCurrencyNotFound() {
             when(bankRepository.findById(testBank.getId())).thenReturn(Optional.of(testBank));
-            when(currencyRepository.findByCode("XXX")).thenReturn(null); // From currency not found
-            //when(currencyRepository.findByCode(eur.getCode())).thenReturn(eur); // To currency found
+            when(currencyRegistry.contains("XXX")).thenReturn(false); // From currency not found
+            //when(currencyRegistry.contains(eur.getCode())).thenReturn(true); // To currency found
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.createExchangeRateWithCodes(testBank.getId(), "XXX", eur.getCode(), createDto.getRate())
@@ -162,15 +189,15 @@ class ExchangeRateServiceTest {
 
             assertEquals("Invalid 'from' currency code: XXX", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
         @Test
         @DisplayName("Should throw InvalidInputDataException when 'to' currency not found")
         void createExchangeRateWithCodes_ToCurrencyNotFound() {
             when(bankRepository.findById(testBank.getId())).thenReturn(Optional.of(testBank));
-            when(currencyRepository.findByCode(usd.getCode())).thenReturn(usd); // From currency found
-            when(currencyRepository.findByCode("YYY")).thenReturn(null); // To currency not found
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true); // From currency found
+            when(currencyRegistry.contains("YYY")).thenReturn(false); // To currency not found
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.createExchangeRateWithCodes(testBank.getId(), usd.getCode(), "YYY", createDto.getRate())
@@ -178,7 +205,7 @@ class ExchangeRateServiceTest {
 
             assertEquals("Invalid 'to' currency code: YYY", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
 
@@ -186,8 +213,8 @@ class ExchangeRateServiceTest {
         @DisplayName("Should throw InvalidInputDataException when duplicate rate exists")
         void createExchangeRateWithCodes_DuplicateRate() {
             when(bankRepository.findById(testBank.getId())).thenReturn(Optional.of(testBank));
-            when(currencyRepository.findByCode(usd.getCode())).thenReturn(usd);
-            when(currencyRepository.findByCode(eur.getCode())).thenReturn(eur);
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(eur.getCode())).thenReturn(true);
             // Simulate duplicate found
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                     testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.of(testRateUsdEur));
@@ -198,7 +225,7 @@ class ExchangeRateServiceTest {
 
             assertEquals("Exchange rate from USD to EUR already exists for this bank.", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
     }
 
@@ -226,13 +253,14 @@ class ExchangeRateServiceTest {
             // Mock finding banks and currencies
             when(bankRepository.findAllById(eq(Collections.singleton(testBank.getId()))))
                     .thenReturn(Collections.singletonList(testBank));
-            when(currencyRepository.findAll()).thenReturn(Arrays.asList(usd, eur, gbp)); // Return all needed
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(eur.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(gbp.getCode())).thenReturn(true);
 
-            // Mock duplicate checks (none found initially)
-            when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
-                    eq(testBank.getId()), eq(usd.getCode()), eq(eur.getCode()))).thenReturn(Optional.empty());
-            when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
-                    eq(testBank.getId()), eq(gbp.getCode()), eq(usd.getCode()))).thenReturn(Optional.empty());
+            // One duplicate check for all rates (none found)
+            when(exchangeRateRepository.findExistingRateKeys(aryEq(new Long[]{1L, 1L}),
+                    aryEq(new String[]{"USD", "GBP"}), aryEq(new String[]{"EUR", "USD"})))
+                    .thenReturn(Collections.emptyList());
 
             // Mock saveAll
             when(exchangeRateRepository.saveAll(anyList())).thenAnswer(invocation -> {
@@ -256,8 +284,11 @@ class ExchangeRateServiceTest {
             assertEquals(gbp.getCode(), savedList.get(1).getFromCurrencyCode());
 
             // Verify cache eviction for both created rates
-            verify(exchangeRateCache).evict(eq("1-USD-EUR"));
-            verify(exchangeRateCache).evict(eq("1-GBP-USD"));
+            verify(exchangeRateCache).evict(eq(RateKey.of(1L, "USD", "EUR")));
+            verify(exchangeRateCache).evict(eq(RateKey.of(1L, "GBP", "USD")));
+            verify(exchangeRateRepository, never()).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(any(), any(), any());
+            verify(rateEngine).recordRates(savedList);
+            verify(cacheInvalidator, times(1)).invalidate(anyCollection());
         }
 
         @Test
@@ -266,7 +297,7 @@ class ExchangeRateServiceTest {
             List<ExchangeRate> result = exchangeRateService.createExchangeRatesBulk(new ArrayList<>());
             assertTrue(result.isEmpty());
             verify(exchangeRateRepository, never()).saveAll(anyList());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
         @Test
@@ -283,7 +314,8 @@ class ExchangeRateServiceTest {
             // Mock finding banks (one is missing)
             when(bankRepository.findAllById(eq(Set.of(1L, 99L))))
                     .thenReturn(Collections.singletonList(testBank)); // Only returns the valid one
-            when(currencyRepository.findAll()).thenReturn(Arrays.asList(usd, eur));
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(eur.getCode())).thenReturn(true);
 
             CurrencyNotFoundException exception = assertThrows(CurrencyNotFoundException.class, () ->
                     exchangeRateService.createExchangeRatesBulk(requests)
@@ -291,7 +323,7 @@ class ExchangeRateServiceTest {
 
             assertEquals("Bank not found with id: 99", exception.getMessage());
             verify(exchangeRateRepository, never()).saveAll(anyList());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
         @Test
@@ -301,7 +333,7 @@ class ExchangeRateServiceTest {
             List<ExchangeRateCreateRequestDto> requests = Collections.singletonList(createDto);
 
             when(bankRepository.findAllById(anySet())).thenReturn(Collections.singletonList(testBank));
-            when(currencyRepository.findAll()).thenReturn(Arrays.asList(eur)); // Missing USD
+            when(currencyRegistry.contains("XXX")).thenReturn(false); // Unknown currency
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.createExchangeRatesBulk(requests)
@@ -309,7 +341,7 @@ class ExchangeRateServiceTest {
 
             assertTrue(exception.getMessage().contains("Invalid 'from' currency code: XXX"));
             verify(exchangeRateRepository, never()).saveAll(anyList());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
 
@@ -319,10 +351,11 @@ class ExchangeRateServiceTest {
             List<ExchangeRateCreateRequestDto> requests = Collections.singletonList(createDto); // Request to create USD-EUR
 
             when(bankRepository.findAllById(anySet())).thenReturn(Collections.singletonList(testBank));
-            when(currencyRepository.findAll()).thenReturn(Arrays.asList(usd, eur));
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(eur.getCode())).thenReturn(true);
             // Simulate USD-EUR already exists
-            when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
-                    testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.of(testRateUsdEur));
+            when(exchangeRateRepository.findExistingRateKeys(any(Long[].class), any(String[].class), any(String[].class)))
+                    .thenReturn(List.<Object[]>of(new Object[]{testBank.getId(), usd.getCode(), eur.getCode()}));
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.createExchangeRatesBulk(requests)
@@ -330,7 +363,119 @@ class ExchangeRateServiceTest {
 
             assertEquals("Exchange rate from USD to EUR already exists for this bank.", exception.getMessage());
             verify(exchangeRateRepository, never()).saveAll(anyList());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
+        }
+
+        @Test
+        @DisplayName("Should throw InvalidInputDataException if the same rate is in the list twice")
+        void createBulk_DuplicateInRequest() {
+            List<ExchangeRateCreateRequestDto> requests = Arrays.asList(createDto, createDto);
+
+            when(bankRepository.findAllById(anySet())).thenReturn(Collections.singletonList(testBank));
+            when(currencyRegistry.contains(usd.getCode())).thenReturn(true);
+            when(currencyRegistry.contains(eur.getCode())).thenReturn(true);
+
+            InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
+                    exchangeRateService.createExchangeRatesBulk(requests)
+            );
+
+            assertEquals("Exchange rate from USD to EUR already exists for this bank.", exception.getMessage());
+            verify(exchangeRateRepository, never()).findExistingRateKeys(any(), any(), any());
+            verify(exchangeRateRepository, never()).saveAll(anyList());
+        }
+    }
+
+
+    // --- Тесты для upsertExchangeRatesBulk ---
+    @Nested
+    @DisplayName("upsertExchangeRatesBulk Tests")
+    class UpsertBulkTests {
+
+        private ExchangeRateCreateRequestDto request(Long bankId, String from, String to, String rate) {
+            ExchangeRateCreateRequestDto dto = new ExchangeRateCreateRequestDto();
+            dto.setBankId(bankId);
+            dto.setFromCurrencyCode(from);
+            dto.setToCurrencyCode(to);
+            dto.setRate(new BigDecimal(rate));
+            return dto;
+        }
+
+        @Test
+        @DisplayName("Should report the outcome of each rate and record only the rates written")
+        void upsertBulk_MixedOutcomes() {
+            List<ExchangeRateCreateRequestDto> requests = Arrays.asList(
+                    createDto,                                  // updated
+                    request(1L, "GBP", "USD", "1.2500"),        // inserted
+                    request(1L, "EUR", "USD", "1.1000"),        // unchanged
+                    request(99L, "USD", "EUR", "0.9500"),       // unknown bank
+                    request(1L, "USD", "EUR", "0.9600"),        // listed twice
+                    request(1L, "XXX", "EUR", "1.0000"));       // unknown currency
+
+            when(bankRepository.findAllById(Set.of(1L, 99L))).thenReturn(Collections.singletonList(testBank));
+            when(currencyRegistry.contains("USD")).thenReturn(true);
+            when(currencyRegistry.contains("EUR")).thenReturn(true);
+            when(currencyRegistry.contains("GBP")).thenReturn(true);
+            when(currencyRegistry.contains("XXX")).thenReturn(false);
+            // Rates are passed sorted by bank and pair; the unchanged one is not returned.
+            when(exchangeRateRepository.upsertRates(
+                    aryEq(new Long[]{1L, 1L, 1L}),
+                    aryEq(new String[]{"EUR", "GBP", "USD"}),
+                    aryEq(new String[]{"USD", "USD", "EUR"}),
+                    aryEq(new BigDecimal[]{new BigDecimal("1.1000"), new BigDecimal("1.2500"), new BigDecimal("0.9500")})))
+                    .thenReturn(List.of(
+                            new Object[]{200L, 1L, "GBP", "USD", new BigDecimal("1.2500"), true},
+                            new Object[]{100L, 1L, "USD", "EUR", new BigDecimal("0.9500"), false}));
+
+            List<ExchangeRateUpsertResultDto> results = exchangeRateService.upsertExchangeRatesBulk(requests);
+
+            assertEquals(6, results.size());
+            assertEquals(UpsertOutcome.UPDATED, results.get(0).getOutcome());
+            assertEquals(100L, results.get(0).getId());
+            assertEquals(UpsertOutcome.INSERTED, results.get(1).getOutcome());
+            assertEquals(200L, results.get(1).getId());
+            assertEquals(UpsertOutcome.UNCHANGED, results.get(2).getOutcome());
+            assertNull(results.get(2).getId());
+            assertEquals(UpsertOutcome.REJECTED, results.get(3).getOutcome());
+            assertEquals("Bank not found with id: 99", results.get(3).getError());
+            assertEquals(UpsertOutcome.REJECTED, results.get(4).getOutcome());
+            assertEquals("Exchange rate from USD to EUR is listed more than once for this bank.", results.get(4).getError());
+            assertEquals(UpsertOutcome.REJECTED, results.get(5).getOutcome());
+            assertEquals("Invalid 'from' currency code: XXX", results.get(5).getError());
+
+            verify(rateEngine).recordRates(exchangeRateListCaptor.capture());
+            assertEquals(2, exchangeRateListCaptor.getValue().size());
+            verify(rateHistoryService).recordRates(anyList());
+            verify(exchangeRateCache).evict(RateKey.of(1L, "USD", "EUR"));
+            verify(exchangeRateCache).evict(RateKey.of(1L, "GBP", "USD"));
+            verify(exchangeRateCache, never()).evict(RateKey.of(1L, "EUR", "USD"));
+            verify(cacheInvalidator, times(1)).invalidate(anyCollection());
+        }
+
+        @Test
+        @DisplayName("Should write nothing else when every rate is unchanged")
+        void upsertBulk_AllUnchanged() {
+            when(bankRepository.findAllById(Set.of(1L))).thenReturn(Collections.singletonList(testBank));
+            when(currencyRegistry.contains(anyString())).thenReturn(true);
+            when(exchangeRateRepository.upsertRates(any(), any(), any(), any())).thenReturn(Collections.emptyList());
+
+            List<ExchangeRateUpsertResultDto> results = exchangeRateService.upsertExchangeRatesBulk(List.of(createDto));
+
+            assertEquals(UpsertOutcome.UNCHANGED, results.get(0).getOutcome());
+            verify(rateEngine, never()).recordRates(anyList());
+            verify(snapshotStore, never()).recordRates(anyList());
+            verify(rateHistoryService, never()).recordRates(anyList());
+            verify(cacheInvalidator, never()).invalidate(anyCollection());
+        }
+
+        @Test
+        @DisplayName("Should not run the upsert when every rate is rejected")
+        void upsertBulk_AllRejected() {
+            when(bankRepository.findAllById(Set.of(1L))).thenReturn(Collections.emptyList());
+
+            List<ExchangeRateUpsertResultDto> results = exchangeRateService.upsertExchangeRatesBulk(List.of(createDto));
+
+            assertEquals(UpsertOutcome.REJECTED, results.get(0).getOutcome());
+            verify(exchangeRateRepository, never()).upsertRates(any(), any(), any(), any());
         }
     }
 
@@ -349,8 +494,8 @@ class ExchangeRateServiceTest {
             BigDecimal newRate = new BigDecimal("1.2500");
 
             when(exchangeRateRepository.findById(rateIdToUpdate)).thenReturn(Optional.of(testRateUsdEur));
-            when(currencyRepository.findByCode(newFromCode)).thenReturn(gbp); // New currency GBP
-            when(currencyRepository.findByCode(newToCode)).thenReturn(usd); // New currency USD
+            when(currencyRegistry.contains(newFromCode)).thenReturn(true); // New currency GBP
+            when(currencyRegistry.contains(newToCode)).thenReturn(true); // New currency USD
             // Check for duplicates with the *new* pair (none found)
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                     testBank.getId(), newFromCode, newToCode)).thenReturn(Optional.empty());
@@ -373,8 +518,8 @@ class ExchangeRateServiceTest {
             assertEquals(newRate, savedEntity.getRate());
 
             // Verify cache eviction for old and potentially new key
-            verify(exchangeRateCache).evict(eq("1-USD-EUR")); // Old key
-            verify(exchangeRateCache).evict(eq("1-GBP-USD")); // New key
+            verify(exchangeRateCache).evict(eq(RateKey.of(1L, "USD", "EUR"))); // Old key
+            verify(exchangeRateCache).evict(eq(RateKey.of(1L, "GBP", "USD"))); // New key
         }
 
         @Test
@@ -388,14 +533,14 @@ class ExchangeRateServiceTest {
 
             assertEquals("Exchange Rate not found with id: 999", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
         @Test
         @DisplayName("Should throw InvalidInputDataException when new 'from' currency invalid")
         void update_InvalidFromCurrency() {
             when(exchangeRateRepository.findById(testRateUsdEur.getId())).thenReturn(Optional.of(testRateUsdEur));
-            when(currencyRepository.findByCode("XXX")).thenReturn(null); // Invalid from currency
+            when(currencyRegistry.contains("XXX")).thenReturn(false); // Invalid from currency
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.updateExchangeRate(testRateUsdEur.getId(), "XXX", eur.getCode(), BigDecimal.ONE)
@@ -403,7 +548,7 @@ class ExchangeRateServiceTest {
 
             assertEquals("Invalid 'from' currency code: XXX", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            verify(exchangeRateCache, never()).evict(anyString()); // Cache for old key is evicted *before* validation fail
+            verify(exchangeRateCache, never()).evict(any()); // Cache for old key is evicted *before* validation fail
         }
 
 
@@ -419,8 +564,8 @@ class ExchangeRateServiceTest {
             ExchangeRate existingGbpUsd = ExchangeRate.builder().id(200L).bank(testBank).fromCurrencyCode("GBP").toCurrencyCode("USD").rate(BigDecimal.TEN).build();
 
             when(exchangeRateRepository.findById(rateIdToUpdate)).thenReturn(Optional.of(testRateUsdEur));
-            when(currencyRepository.findByCode(newFromCode)).thenReturn(gbp);
-            when(currencyRepository.findByCode(newToCode)).thenReturn(usd);
+            when(currencyRegistry.contains(newFromCode)).thenReturn(true);
+            when(currencyRegistry.contains(newToCode)).thenReturn(true);
             // Simulate finding the *other* existing rate when checking for duplicates
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                     testBank.getId(), newFromCode, newToCode)).thenReturn(Optional.of(existingGbpUsd));
@@ -431,8 +576,8 @@ class ExchangeRateServiceTest {
 
             assertEquals("Another exchange rate from GBP to USD already exists for this bank.", exception.getMessage());
             verify(exchangeRateRepository, never()).save(any());
-            //verify(exchangeRateCache).evict(eq("1-USD-EUR")); // Old cache key evicted
-            verify(exchangeRateCache, never()).evict(eq("1-GBP-USD")); // New key not evicted as save failed
+            //verify(exchangeRateCache).evict(eq(RateKey.of(1L, "USD", "EUR"))); // Old cache key evicted
+            verify(exchangeRateCache, never()).evict(eq(RateKey.of(1L, "GBP", "USD"))); // New key not evicted as save failed
         }
     }
 
@@ -441,83 +586,117 @@ class ExchangeRateServiceTest {
     @DisplayName("getExchangeRateValue Tests")
     class GetValueTests {
 
-        private final String cacheKey = "1-USD-EUR";
+        private final RateKey cacheKey = RateKey.of(1L, "USD", "EUR");
         private final BigDecimal rateValue = new BigDecimal("0.9000");
 
+        @SuppressWarnings("unchecked")
+        private void stubCacheMiss() {
+            when(exchangeRateCache.get(eq(cacheKey), any(), any())).thenAnswer(invocation ->
+                    ((Function<RateKey, BigDecimal>) invocation.getArgument(1)).apply(cacheKey));
+        }
+
         @Test
         @DisplayName("Should return value from cache when cache hit")
         void getValue_CacheHit() {
-            when(exchangeRateCache.get(cacheKey)).thenReturn(rateValue); // Cache hit
+            when(exchangeRateCache.get(eq(cacheKey), any(), any())).thenReturn(rateValue); // Cache hit
 
             BigDecimal result = exchangeRateService.getExchangeRateValue(testBank.getId(), usd.getCode(), eur.getCode());
 
             assertEquals(rateValue, result);
-            verify(exchangeRateCache).get(cacheKey);
+            verify(exchangeRateCache).get(eq(cacheKey), any(), any());
             verify(exchangeRateRepository, never()).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(anyLong(), anyString(), anyString());
-            verify(exchangeRateCache, never()).put(anyString(), any());
+            verify(exchangeRateCache, never()).put(any(), any());
         }
 
         @Test
         @DisplayName("Should return value from DB and put in cache when cache miss")
         void getValue_CacheMiss_DbHit() {
-            when(exchangeRateCache.get(cacheKey)).thenReturn(null); // Cache miss
+            stubCacheMiss(); // Cache miss, the cache calls the loader
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                     testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.of(testRateUsdEur));
 
             BigDecimal result = exchangeRateService.getExchangeRateValue(testBank.getId(), usd.getCode(), eur.getCode());
 
             assertEquals(testRateUsdEur.getRate(), result);
-            verify(exchangeRateCache).get(cacheKey);
+            verify(exchangeRateCache).get(eq(cacheKey), any(), any());
             verify(exchangeRateRepository).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(testBank.getId(), usd.getCode(), eur.getCode());
-            verify(exchangeRateCache).put(cacheKeyCaptor.capture(), cacheValueCaptor.capture());
-            assertEquals(cacheKey, cacheKeyCaptor.getValue());
-            assertEquals(testRateUsdEur.getRate(), cacheValueCaptor.getValue());
+            verify(exchangeRateCache, never()).evict(any());
         }
 
         @Test
         @DisplayName("Should return null when rate not found in DB and cache miss")
         void getValue_CacheMiss_DbMiss() {
-            when(exchangeRateCache.get(cacheKey)).thenReturn(null); // Cache miss
+            stubCacheMiss(); // Cache miss
+            when(negativeLookupCache.invalidationStamp()).thenReturn(3L);
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
                     testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.empty()); // DB miss
 
             BigDecimal result = exchangeRateService.getExchangeRateValue(testBank.getId(), usd.getCode(), eur.getCode());
 
             assertNull(result);
-            verify(exchangeRateCache).get(cacheKey);
+            verify(exchangeRateCache).get(eq(cacheKey), any(), any());
             verify(exchangeRateRepository).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(testBank.getId(), usd.getCode(), eur.getCode());
-            verify(exchangeRateCache, never()).put(anyString(), any()); // Should not cache null/absence
+            verify(exchangeRateCache, never()).put(any(), any()); // Should not cache null/absence
+            verify(negativeLookupCache).recordMiss(cacheKey, 3L);
         }
 
         @Test
-        @DisplayName("Should not use cache when cacheEnabled is false")
-        void getValue_CacheDisabled() {
-            ReflectionTestUtils.setField(exchangeRateService, "cacheEnabled", false); // Disable cache
+        @DisplayName("Should return null without cache or DB when the pair is known to be missing")
+        void getValue_KnownMissing() {
+            when(negativeLookupCache.isKnownMissing(RateKey.of(testBank.getId(), usd.getCode(), gbp.getCode()))).thenReturn(true);
 
-            when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
-                    testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.of(testRateUsdEur));
+            BigDecimal result = exchangeRateService.getExchangeRateValue(testBank.getId(), usd.getCode(), gbp.getCode());
 
-            BigDecimal result = exchangeRateService.getExchangeRateValue(testBank.getId(), usd.getCode(), eur.getCode());
+            assertNull(result);
+            verify(exchangeRateCache, never()).get(any(), any(), any());
+            verify(exchangeRateRepository, never()).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(anyLong(), anyString(), anyString());
+        }
 
-            assertEquals(testRateUsdEur.getRate(), result);
-            verify(exchangeRateCache, never()).get(anyString());
-            verify(exchangeRateRepository).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(testBank.getId(), usd.getCode(), eur.getCode());
-            verify(exchangeRateCache, never()).put(anyString(), any());
+        @Test
+        @DisplayName("Should reject a lookup without a bank instead of failing on the cache key")
+        void getValue_NoBank() {
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> exchangeRateService.getExchangeRateValue(null, usd.getCode(), eur.getCode()));
+
+            assertEquals("bankId is required.", exception.getMessage());
+            verify(exchangeRateCache, never()).get(any(), any(), any());
+            verify(exchangeRateRepository, never()).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(any(), anyString(), anyString());
         }
+
+        @Test
+        @DisplayName("Should preload a page of rates into the cache without replacing cached values")
+        void preloadValues_PutsIfAbsent() {
+            when(exchangeRateCache.invalidationStamp()).thenReturn(7L);
+            when(exchangeRateRepository.findRateValuesAfterId(0L, 5000L, PageRequest.of(0, 1000))).thenReturn(List.<Object[]>of(
+                    new Object[]{12L, testBank.getId(), usd.getCode(), eur.getCode(), new BigDecimal("0.9000")},
+                    new Object[]{62L, testBank.getId(), eur.getCode(), usd.getCode(), new BigDecimal("1.1000")}));
+
+            ExchangeRateService.PreloadedPage page = exchangeRateService.preloadExchangeRateValues(0L, 5000L, 1000);
+
+            assertEquals(2, page.getCount());
+            assertEquals(62L, page.getLastId());
+            verify(exchangeRateCache).putIfAbsent(eq(RateKey.of(testBank.getId(), usd.getCode(), eur.getCode())),
+                    eq(new BigDecimal("0.9000")), eq(List.of(CacheTags.bank(testBank.getId()), CacheTags.pair(usd.getCode(), eur.getCode()))), eq(7L));
+            verify(exchangeRateCache).putIfAbsent(eq(RateKey.of(testBank.getId(), eur.getCode(), usd.getCode())),
+                    eq(new BigDecimal("1.1000")), anyList(), eq(7L));
+            verify(exchangeRateCache, never()).put(any(), any());
+        }
+
         @Test
-        @DisplayName("Should evict invalid cache entry and fetch from DB")
-        void getValue_InvalidCacheEntryType() {
-            when(exchangeRateCache.get(cacheKey)).thenReturn("not a BigDecimal"); // Invalid entry
+        @DisplayName("Should not use cache when cacheEnabled is false")
+        void getValue_CacheDisabled() {
+            ReflectionTestUtils.setField(exchangeRateService, "cacheEnabled", false); // Disable cache
+
             when(exchangeRateRepository.findByBankIdAndFromCurrencyCodeAndToCurrencyCode(
-                    testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.of(testRateUsdEur)); // DB has correct value
+                    testBank.getId(), usd.getCode(), eur.getCode())).thenReturn(Optional.of(testRateUsdEur));
 
             BigDecimal result = exchangeRateService.getExchangeRateValue(testBank.getId(), usd.getCode(), eur.getCode());
 
             assertEquals(testRateUsdEur.getRate(), result);
-            verify(exchangeRateCache).get(cacheKey);
-            verify(exchangeRateCache).evict(cacheKey); // Verify eviction of invalid entry
+            verify(exchangeRateCache, never()).get(any());
+            verify(exchangeRateCache, never()).get(any(), any(), any());
             verify(exchangeRateRepository).findByBankIdAndFromCurrencyCodeAndToCurrencyCode(testBank.getId(), usd.getCode(), eur.getCode());
-            verify(exchangeRateCache).put(cacheKey, testRateUsdEur.getRate()); // Verify putting correct entry
+            verify(exchangeRateCache, never()).put(any(), any());
         }
 
     }
@@ -533,8 +712,8 @@ class ExchangeRateServiceTest {
             ExchangeRate minRate = ExchangeRate.builder().id(200L).rate(new BigDecimal("1.20")).fromCurrencyCode("GBP").toCurrencyCode("USD").build();
             ExchangeRate higherRate = ExchangeRate.builder().id(201L).rate(new BigDecimal("1.25")).fromCurrencyCode("GBP").toCurrencyCode("USD").build();
 
-            when(currencyRepository.findByCode("GBP")).thenReturn(gbp);
-            when(currencyRepository.findByCode("USD")).thenReturn(usd);
+            when(currencyRegistry.contains("GBP")).thenReturn(true);
+            when(currencyRegistry.contains("USD")).thenReturn(true);
             // findMinRate repository method is expected to return the one with the lowest rate
             when(exchangeRateRepository.findMinRate("GBP", "USD")).thenReturn(Collections.singletonList(minRate));
 
@@ -549,8 +728,8 @@ class ExchangeRateServiceTest {
         @Test
         @DisplayName("Should return null when no rate found")
         void getMinRate_NotFound() {
-            when(currencyRepository.findByCode("GBP")).thenReturn(gbp);
-            when(currencyRepository.findByCode("EUR")).thenReturn(eur);
+            when(currencyRegistry.contains("GBP")).thenReturn(true);
+            when(currencyRegistry.contains("EUR")).thenReturn(true);
             when(exchangeRateRepository.findMinRate("GBP", "EUR")).thenReturn(new ArrayList<>()); // Empty list
 
             ExchangeRate result = exchangeRateService.getMinRate("GBP", "EUR");
@@ -562,7 +741,7 @@ class ExchangeRateServiceTest {
         @Test
         @DisplayName("Should throw InvalidInputDataException for invalid 'from' currency")
         void getMinRate_InvalidFromCurrency() {
-            when(currencyRepository.findByCode("XXX")).thenReturn(null); // Invalid 'from'
+            when(currencyRegistry.contains("XXX")).thenReturn(false); // Invalid 'from'
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.getMinRate("XXX", "USD")
@@ -574,8 +753,8 @@ class ExchangeRateServiceTest {
         @Test
         @DisplayName("Should throw InvalidInputDataException for invalid 'to' currency")
         void getMinRate_InvalidToCurrency() {
-            when(currencyRepository.findByCode("GBP")).thenReturn(gbp);
-            when(currencyRepository.findByCode("YYY")).thenReturn(null); // Invalid 'to'
+            when(currencyRegistry.contains("GBP")).thenReturn(true);
+            when(currencyRegistry.contains("YYY")).thenReturn(false); // Invalid 'to'
 
             InvalidInputDataException exception = assertThrows(InvalidInputDataException.class, () ->
                     exchangeRateService.getMinRate("GBP", "YYY")
@@ -583,6 +762,53 @@ class ExchangeRateServiceTest {
             assertEquals("Invalid 'to' currency code: YYY", exception.getMessage());
             verify(exchangeRateRepository, never()).findMinRate(anyString(), anyString());
         }
+
+        @Test
+        @DisplayName("Should answer min and max rate from the rate engine without queries")
+        void getMinAndMaxRate_FromRateEngine() {
+            RateRanking ranking = new RateRanking();
+            ranking.put(200L, 1L, "GBP", "USD", 12000);
+            ranking.put(201L, 2L, "GBP", "USD", 12500);
+            when(rateEngine.canRank("GBP", "USD")).thenReturn(true);
+            when(rateEngine.getRanking("GBP", "USD")).thenReturn(ranking.get("GBP", "USD"));
+
+            ExchangeRate min = exchangeRateService.getMinRate("GBP", "USD");
+            ExchangeRate max = exchangeRateService.getMaxRate("GBP", "USD");
+
+            assertEquals(200L, min.getId());
+            assertEquals(1L, min.getBank().getId());
+            assertEquals(new BigDecimal("1.2000"), min.getRate());
+            assertEquals(201L, max.getId());
+            assertEquals(new BigDecimal("1.2500"), max.getRate());
+            verifyNoInteractions(exchangeRateRepository, currencyRegistry);
+        }
+
+        @Test
+        @DisplayName("Should rank rates from the highest when asked and apply the limit")
+        void getRankedRates_FromRateEngine() {
+            RateRanking ranking = new RateRanking();
+            ranking.put(200L, 1L, "GBP", "USD", 12000);
+            ranking.put(201L, 2L, "GBP", "USD", 12500);
+            ranking.put(202L, 3L, "GBP", "USD", 12200);
+            when(rateEngine.canRank("GBP", "USD")).thenReturn(true);
+            when(rateEngine.getRanking("GBP", "USD")).thenReturn(ranking.get("GBP", "USD"));
+
+            List<ExchangeRate> result = exchangeRateService.getRankedRates("GBP", "USD", true, 2);
+
+            assertEquals(2, result.size());
+            assertEquals(201L, result.get(0).getId());
+            assertEquals(202L, result.get(1).getId());
+            verifyNoInteractions(exchangeRateRepository);
+        }
+
+        @Test
+        @DisplayName("Should refuse to list arbitrage loops until the rate engine is loaded")
+        void getArbitrageLoops_NotLoaded() {
+            when(rateEngine.isLoaded()).thenReturn(false);
+
+            assertThrows(CacheLoadTimeoutException.class, () -> exchangeRateService.getArbitrageLoops());
+            verify(rateEngine, never()).getArbitrageLoops();
+        }
     }
 
 
@@ -603,7 +829,10 @@ class ExchangeRateServiceTest {
             assertTrue(result);
             verify(exchangeRateRepository).findById(rateId);
             verify(exchangeRateRepository).deleteById(rateId);
-            verify(exchangeRateCache).evict(eq("1-USD-EUR"));
+            verify(exchangeRateCache).evict(eq(RateKey.of(1L, "USD", "EUR")));
+            verify(rateEngine).recordRemoval(1L, "USD", "EUR");
+            verify(snapshotStore).recordRateRemoval(100L);
+            verify(rateHistoryService).recordRemoval(1L, "USD", "EUR");
         }
 
         @Test
@@ -617,7 +846,7 @@ class ExchangeRateServiceTest {
             assertFalse(result);
             verify(exchangeRateRepository).findById(rateId);
             verify(exchangeRateRepository, never()).deleteById(anyLong());
-            verify(exchangeRateCache, never()).evict(anyString());
+            verify(exchangeRateCache, never()).evict(any());
         }
     }
 
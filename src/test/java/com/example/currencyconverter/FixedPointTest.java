@@ -0,0 +1,90 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.FixedPoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+
+    private static final int CASES = 200_000;
+
+    @Test
+    @DisplayName("Should equal BigDecimal multiply and setScale for random amounts, rates, scales and rounding modes")
+    void matchesBigDecimal() {
+        Random random = new Random(20240601L);
+        for (int i = 0; i < CASES; i++) {
+            BigDecimal amount = randomDecimal(random);
+            BigDecimal rate = randomDecimal(random);
+            int scale = random.nextInt(12) - 2;
+            RoundingMode mode = RoundingMode.values()[random.nextInt(RoundingMode.values().length)];
+            String expected = product(amount, rate, scale, mode);
+            assertEquals(expected, fixedPoint(amount, rate, scale, mode),
+                    () -> amount + " * " + rate + " at scale " + scale + " " + mode);
+            if (rate.scale() >= 0 && rate.precision() <= 18) {
+                String unscaled = fixedPoint(amount, rate.unscaledValue().longValueExact(), rate.scale(), scale, mode);
+                assertEquals(expected, unscaled, () -> amount + " * " + rate + " unscaled at scale " + scale + " " + mode);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should fall back to BigDecimal when the long product overflows")
+    void fallsBackOnOverflow() {
+        BigDecimal amount = new BigDecimal("999999999999999999");
+        BigDecimal rate = new BigDecimal("12345.6789");
+        assertEquals(amount.multiply(rate).setScale(4, RoundingMode.HALF_UP),
+                FixedPoint.multiply(amount, rate, 4, RoundingMode.HALF_UP));
+        assertEquals(new BigDecimal("92.0000"), FixedPoint.multiply(new BigDecimal("100"), new BigDecimal("0.9200"), 4, RoundingMode.HALF_UP));
+        assertEquals(new BigDecimal("-0.01"), FixedPoint.multiply(new BigDecimal("-0.005"), BigDecimal.ONE, 2, RoundingMode.HALF_UP));
+        assertEquals(new BigDecimal("0.00"), FixedPoint.multiply(new BigDecimal("0.005"), BigDecimal.ONE, 2, RoundingMode.HALF_EVEN));
+    }
+
+    /** Mixes small values, values near the limits of long and values of many scales. */
+    private static BigDecimal randomDecimal(Random random) {
+        long unscaled;
+        switch (random.nextInt(4)) {
+            case 0:
+                unscaled = random.nextInt(2000) - 1000;
+                break;
+            case 1:
+                unscaled = random.nextLong() >> random.nextInt(64);
+                break;
+            case 2:
+                unscaled = (long) (random.nextGaussian() * 1e9);
+                break;
+            default:
+                unscaled = random.nextBoolean() ? Long.MAX_VALUE - random.nextInt(5) : Long.MIN_VALUE + random.nextInt(5);
+        }
+        return BigDecimal.valueOf(unscaled, random.nextInt(22) - 2);
+    }
+
+    private static String product(BigDecimal amount, BigDecimal rate, int scale, RoundingMode mode) {
+        try {
+            return amount.multiply(rate).setScale(scale, mode).toString();
+        } catch (ArithmeticException e) {
+            return "ArithmeticException";
+        }
+    }
+
+    private static String fixedPoint(BigDecimal amount, BigDecimal rate, int scale, RoundingMode mode) {
+        try {
+            return FixedPoint.multiply(amount, rate, scale, mode).toString();
+        } catch (ArithmeticException e) {
+            return "ArithmeticException";
+        }
+    }
+
+    private static String fixedPoint(BigDecimal amount, long unscaledRate, int rateScale, int scale, RoundingMode mode) {
+        try {
+            return FixedPoint.multiply(amount, unscaledRate, rateScale, scale, mode).toString();
+        } catch (ArithmeticException e) {
+            return "ArithmeticException";
+        }
+    }
+}
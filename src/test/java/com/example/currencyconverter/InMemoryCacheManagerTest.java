@@ -0,0 +1,62 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.CacheRegion;
+import com.example.currencyconverter.utils.EvictionPolicy;
+import com.example.currencyconverter.utils.InMemoryCache;
+import com.example.currencyconverter.utils.InMemoryCacheManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryCacheManagerTest {
+
+    private static final CacheRegion<String, BigDecimal> RATES = CacheRegion.of("rates");
+    private static final CacheRegion<String, String> SEARCHES = CacheRegion.of("searches");
+
+    private static InMemoryCacheManager manager() {
+        return new InMemoryCacheManager()
+                .register(RATES, InMemoryCache.<String, BigDecimal>builder()
+                        .maximumSize(1000L)
+                        .weigher((key, value) -> 10)
+                        .build())
+                .register(SEARCHES, InMemoryCache.<String, String>builder()
+                        .maximumSize(100L)
+                        .weigher((key, value) -> 10)
+                        .evictionPolicy(EvictionPolicy.LRU)
+                        .build());
+    }
+
+    @Test
+    @DisplayName("Should keep rate entries when another region is flooded")
+    void isolatesRegions() {
+        InMemoryCacheManager manager = manager();
+        manager.getCache(RATES).put("1-USD-EUR", new BigDecimal("0.9250"));
+
+        for (int i = 0; i < 1000; i++) {
+            manager.getCache(SEARCHES).put("/banks/search?name=" + i, "[]");
+        }
+
+        assertEquals(new BigDecimal("0.9250"), manager.getCache(RATES).get("1-USD-EUR"));
+        assertTrue(manager.getCache(SEARCHES).getCurrentSize() <= 100);
+        assertTrue(manager.stats().get("searches").getEvictionCount() > 0);
+        assertEquals(0, manager.stats().get("rates").getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Should clear only the given regions")
+    void clearsSelectedRegions() {
+        InMemoryCacheManager manager = manager();
+        manager.getCache(RATES).put("1-USD-EUR", BigDecimal.ONE);
+        manager.getCache(SEARCHES).put("/banks/search?name=a", "[]");
+
+        manager.clear(SEARCHES);
+
+        assertNotNull(manager.getCache(RATES).get("1-USD-EUR"));
+        assertNull(manager.getCache(SEARCHES).get("/banks/search?name=a"));
+        assertThrows(IllegalArgumentException.class, () -> manager.getCache(CacheRegion.of("unknown")));
+        assertThrows(IllegalStateException.class, () -> manager.register(RATES, InMemoryCache.<String, BigDecimal>builder().build()));
+    }
+}
@@ -0,0 +1,492 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
+import com.example.currencyconverter.utils.CacheStats;
+import com.example.currencyconverter.utils.EvictionPolicy;
+import com.example.currencyconverter.utils.InMemoryCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryCacheTest {
+
+    private static int weightOf(String key, String value) {
+        return key.length() * 2 + value.length() * 2;
+    }
+
+    @Test
+    @DisplayName("Should return stored value and forget it after evict")
+    void putGetEvict() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+
+        cache.put("1-USD-EUR", "0.9000");
+
+        assertEquals("0.9000", cache.get("1-USD-EUR"));
+        assertEquals(weightOf("1-USD-EUR", "0.9000"), cache.getCurrentSize());
+
+        cache.evict("1-USD-EUR");
+
+        assertNull(cache.get("1-USD-EUR"));
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Should replace value and its weight on repeated put")
+    void putReplacesValue() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+
+        cache.put("key", "a");
+        cache.put("key", "abc");
+
+        assertEquals("abc", cache.get("key"));
+        assertEquals(weightOf("key", "abc"), cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Should never exceed the size budget")
+    void staysWithinBudget() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(500L, InMemoryCacheTest::weightOf);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i);
+            assertTrue(cache.getCurrentSize() <= 500);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep frequently read keys when flooded with one-off keys")
+    void keepsHotKeys() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(2000L, InMemoryCacheTest::weightOf);
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot" + i, "value");
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get("hot" + i);
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("scan" + i, "value");
+        }
+
+        int hotResident = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.get("hot" + i) != null) {
+                hotResident++;
+            }
+        }
+        assertTrue(hotResident >= 8, "hot keys resident: " + hotResident);
+    }
+
+    @Test
+    @DisplayName("Should keep size accounting exact under concurrent access")
+    void exactAccountingUnderContention() throws Exception {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(5000L, InMemoryCacheTest::weightOf);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50_000; i++) {
+                    String key = "k" + random.nextInt(400);
+                    int op = random.nextInt(20);
+                    if (op < 2) {
+                        cache.put(key, "v" + key);
+                    } else if (op == 2) {
+                        cache.evict(key);
+                    } else {
+                        cache.get(key);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        int expected = 0;
+        for (int i = 0; i < 400; i++) {
+            String key = "k" + i;
+            String value = cache.get(key);
+            if (value != null) {
+                expected += weightOf(key, value);
+            }
+        }
+        assertEquals(expected, cache.getCurrentSize());
+        assertTrue(cache.getCurrentSize() <= 5000);
+
+        cache.clear();
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Should expire entries after write, per entry when a TTL is given")
+    void expiresAfterWrite() {
+        AtomicLong now = new AtomicLong();
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(1000L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .ticker(now::get)
+                .build();
+
+        cache.put("default", "a");
+        cache.put("short", "b", Duration.ofSeconds(30));
+
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertNull(cache.get("short"));
+        assertEquals("a", cache.get("default"));
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        cache.cleanUp();
+        assertEquals(0, cache.getCurrentSize());
+        assertNull(cache.get("default"));
+    }
+
+    @Test
+    @DisplayName("Should expire entries that were not read for the idle time")
+    void expiresAfterAccess() {
+        AtomicLong now = new AtomicLong();
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(1000L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .ticker(now::get)
+                .build();
+        cache.put("read", "a");
+        cache.put("idle", "b");
+
+        for (int i = 0; i < 3; i++) {
+            now.addAndGet(Duration.ofSeconds(40).toNanos());
+            assertEquals("a", cache.get("read"));
+        }
+        cache.cleanUp();
+
+        assertNull(cache.get("idle"));
+        assertEquals(weightOf("read", "a"), cache.getCurrentSize());
+    }
+
+    @Test
+    @DisplayName("Should serve the old value and reload in the background when refresh is due")
+    void refreshesAhead() {
+        AtomicLong now = new AtomicLong();
+        List<Runnable> tasks = new ArrayList<>();
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(1000L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .refreshAfterWrite(Duration.ofMinutes(8))
+                .executor(tasks::add)
+                .ticker(now::get)
+                .build();
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = key -> "v" + loads.incrementAndGet();
+
+        assertEquals("v1", cache.get("rate", loader));
+        now.addAndGet(Duration.ofMinutes(9).toNanos());
+
+        assertEquals("v1", cache.get("rate", loader));
+        assertEquals("v1", cache.get("rate", loader));
+        assertEquals(1, tasks.size(), "one refresh per key at a time");
+
+        tasks.get(0).run();
+        assertEquals("v2", cache.get("rate", loader));
+
+        // Still alive two minutes past the original write deadline, since the refresh rewrote it.
+        now.addAndGet(Duration.ofMinutes(3).toNanos());
+        assertEquals("v2", cache.get("rate"));
+    }
+
+    @Test
+    @DisplayName("Should drop a refreshed value when the entry changed meanwhile")
+    void discardsStaleRefresh() {
+        AtomicLong now = new AtomicLong();
+        List<Runnable> tasks = new ArrayList<>();
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(1000L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .refreshAfterWrite(Duration.ofMinutes(1))
+                .executor(tasks::add)
+                .ticker(now::get)
+                .build();
+        cache.put("rate", "old");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        assertEquals("old", cache.get("rate", key -> "reloaded"));
+        cache.evict("rate");
+        cache.put("rate", "written");
+        tasks.forEach(Runnable::run);
+
+        assertEquals("written", cache.get("rate"));
+    }
+
+    @Test
+    @DisplayName("Should drop a refreshed value when the entry was updated in place meanwhile")
+    void discardsRefreshAfterInPlaceUpdate() {
+        AtomicLong now = new AtomicLong();
+        List<Runnable> tasks = new ArrayList<>();
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(1000L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .refreshAfterWrite(Duration.ofMinutes(1))
+                .executor(tasks::add)
+                .ticker(now::get)
+                .build();
+        cache.put("rate", "old");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        assertEquals("old", cache.get("rate", key -> "reloaded"));
+        cache.put("rate", "written");
+        tasks.forEach(Runnable::run);
+
+        assertEquals("written", cache.get("rate"));
+    }
+
+    @Test
+    @DisplayName("Should not store a loaded value when the key is evicted or its tag invalidated during the load")
+    void discardsLoadOverlappingInvalidation() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+
+        // The writer commits and evicts while the loader still holds the value read before the write.
+        assertEquals("stale", cache.get("rate", key -> {
+            cache.evict("rate");
+            return "stale";
+        }));
+        assertNull(cache.get("rate"));
+
+        assertEquals("stale", cache.get("rate", key -> {
+            cache.invalidateTag("bank:1");
+            return "stale";
+        }, (key, value) -> List.of("bank:1")));
+        assertNull(cache.get("rate"));
+
+        assertEquals("fresh", cache.get("rate", key -> "fresh"));
+        assertEquals("fresh", cache.get("rate"));
+    }
+
+    @Test
+    @DisplayName("Should not preload a value read before the key was evicted")
+    void putIfAbsentSkipsValueReadBeforeEviction() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+        long stamp = cache.invalidationStamp();
+        cache.evict("1-USD-EUR");
+
+        assertFalse(cache.putIfAbsent("1-USD-EUR", "0.9000", List.of("bank:1"), stamp));
+        assertTrue(cache.putIfAbsent("1-USD-EUR", "0.9100", List.of("bank:1"), cache.invalidationStamp()));
+        assertEquals("0.9100", cache.get("1-USD-EUR"));
+    }
+
+    @Test
+    @DisplayName("Should drop the least recently used entry under the LRU policy")
+    void lruPolicyEvictsEldest() {
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(weightOf("k0", "v") * 3L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .evictionPolicy(EvictionPolicy.LRU)
+                .build();
+        cache.put("k0", "v");
+        cache.put("k1", "v");
+        cache.put("k2", "v");
+        cache.get("k0");
+
+        cache.put("k3", "v");
+
+        assertNull(cache.get("k1"));
+        assertEquals("v", cache.get("k0"));
+        assertEquals("v", cache.get("k2"));
+        assertEquals("v", cache.get("k3"));
+    }
+
+    @Test
+    @DisplayName("Should count hits, misses and evictions")
+    void recordsStats() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(weightOf("k0", "v") * 2L, InMemoryCacheTest::weightOf);
+
+        cache.put("k0", "v");
+        cache.get("k0");
+        cache.get("k0");
+        cache.get("missing");
+        cache.put("k1", "v");
+        cache.put("k2", "v");
+
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(2, stats.getEntryCount());
+        assertEquals(2.0 / 3, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should store with putIfAbsent only when the key has no value, without counting a miss")
+    void putIfAbsentKeepsExistingValue() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+        cache.put("1-USD-EUR", "0.9000");
+
+        assertFalse(cache.putIfAbsent("1-USD-EUR", "0.8000", List.of("bank:1")));
+        assertTrue(cache.putIfAbsent("1-EUR-USD", "1.1000", List.of("bank:1")));
+
+        assertEquals("0.9000", cache.get("1-USD-EUR"));
+        assertEquals("1.1000", cache.get("1-EUR-USD"));
+        assertEquals(0, cache.stats().getMissCount());
+        assertEquals(1, cache.invalidateTag("bank:1"));
+    }
+
+    @Test
+    @DisplayName("Should list the most frequently read keys first")
+    void listsHottestKeys() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(10_000L, InMemoryCacheTest::weightOf);
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, "v");
+        }
+        for (int read = 0; read < 10; read++) {
+            cache.get("k3");
+        }
+        for (int read = 0; read < 5; read++) {
+            cache.get("k1");
+        }
+
+        List<String> hottest = cache.hottestKeys(2);
+
+        assertEquals(List.of("k3", "k1"), hottest);
+        assertEquals(5, cache.hottestKeys(10).size());
+    }
+
+    @Test
+    @DisplayName("Should drop only the entries carrying an invalidated tag")
+    void invalidatesByTag() {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+        cache.put("/banks/1", "b1", List.of("bank:1"));
+        cache.put("/banks", "all", List.of("banks", "bank:1", "bank:2"));
+        cache.put("/banks/2", "b2", List.of("bank:2"));
+
+        assertEquals(2, cache.invalidateTag("bank:1"));
+
+        assertNull(cache.get("/banks/1"));
+        assertNull(cache.get("/banks"));
+        assertEquals("b2", cache.get("/banks/2"));
+        assertEquals(0, cache.invalidateTag("bank:1"));
+
+        // Re-putting a key without the tag detaches it from that tag.
+        cache.put("/banks/2", "b2", List.of());
+        assertEquals(0, cache.invalidateTag("bank:2"));
+        assertEquals("b2", cache.get("/banks/2"));
+        assertEquals(2, cache.stats().getInvalidationCount());
+    }
+
+    @Test
+    @DisplayName("Should run one load for concurrent misses on the same key")
+    void coalescesConcurrentLoads() throws Exception {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, String> loader = key -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "loaded";
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> cache.get("rate", loader)));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 7; i++) {
+            futures.add(executor.submit(() -> cache.get("rate", loader)));
+        }
+        Thread.sleep(50);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertEquals("loaded", future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getLoadSuccessCount());
+    }
+
+    @Test
+    @DisplayName("Should hand a failed load's exception to every waiter and cache nothing")
+    void propagatesLoadFailure() throws Exception {
+        InMemoryCache<String, String> cache = new InMemoryCache<>(1000L, InMemoryCacheTest::weightOf);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> leader = executor.submit(() -> cache.get("rate", key -> {
+            loaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("database down");
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+        Future<String> waiter = executor.submit(() -> cache.get("rate", key -> "unused"));
+        Thread.sleep(50);
+        release.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+        ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, waiterError.getCause());
+        executor.shutdown();
+
+        assertNull(cache.get("rate"));
+        assertEquals("fresh", cache.get("rate", key -> "fresh"));
+        assertEquals(1, cache.stats().getLoadFailureCount());
+    }
+
+    @Test
+    @DisplayName("Should stop waiting for another caller's load after the load timeout")
+    void timesOutWaitingForLoad() throws Exception {
+        InMemoryCache<String, String> cache = InMemoryCache.<String, String>builder()
+                .maximumSize(1000L)
+                .weigher(InMemoryCacheTest::weightOf)
+                .loadTimeout(Duration.ofMillis(50))
+                .build();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> leader = executor.submit(() -> cache.get("rate", key -> {
+            loaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        assertThrows(CacheLoadTimeoutException.class, () -> cache.get("rate", key -> "unused"));
+
+        release.countDown();
+        assertEquals("slow", leader.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals("slow", cache.get("rate"));
+    }
+}
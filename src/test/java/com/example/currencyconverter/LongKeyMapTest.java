@@ -0,0 +1,67 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.LongKeyMap;
+import com.example.currencyconverter.utils.RateKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongKeyMapTest {
+
+    @Test
+    @DisplayName("Should behave like a HashMap under random puts and removes")
+    void matchesHashMap() {
+        LongKeyMap<Long> map = new LongKeyMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // Multiples of a large number collide in the low bits, which exercises probing.
+            long key = random.nextInt(2_000) * (random.nextBoolean() ? 1L : -(1L << 40));
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    }
+
+    @Test
+    @DisplayName("Should pack rate keys and share one instance per pair")
+    void packsRateKeys() {
+        RateKey key = RateKey.of(1L, "USD", "EUR");
+
+        assertSame(key, RateKey.of(1L, "USD", "EUR"));
+        assertNotEquals(key, RateKey.of(1L, "EUR", "USD"));
+        assertNotEquals(key, RateKey.of(2L, "USD", "EUR"));
+        assertEquals("1-USD-EUR", key.toString());
+        assertTrue(key.getPacked() >= 0);
+
+        // Codes outside A-Z do not pack, but still make equal keys.
+        assertEquals(RateKey.NOT_PACKED, RateKey.pack(1L, "usd", "EUR"));
+        assertEquals(RateKey.of(1L, "usd", "EUR"), RateKey.of(1L, "usd", "EUR"));
+        assertEquals(RateKey.of(1L, "usd", "EUR").hashCode(), RateKey.of(1L, "usd", "EUR").hashCode());
+    }
+
+    @Test
+    @DisplayName("Should parse rate keys back from their string form")
+    void parsesRateKeys() {
+        RateKey key = RateKey.of(42L, "USD", "EUR");
+
+        assertSame(key, RateKey.parse(key.toString()));
+        assertThrows(IllegalArgumentException.class, () -> RateKey.parse("42-USD"));
+        assertThrows(IllegalArgumentException.class, () -> RateKey.parse("x-USD-EUR"));
+        assertThrows(IllegalArgumentException.class, () -> RateKey.parse("42-USD-"));
+    }
+}
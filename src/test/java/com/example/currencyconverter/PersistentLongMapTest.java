@@ -0,0 +1,72 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.PersistentLongMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentLongMapTest {
+
+    @Test
+    @DisplayName("Should behave like a TreeMap under random puts and removes, keeping every built version")
+    void matchesTreeMap() {
+        Random random = new Random(42);
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        List<PersistentLongMap<Long>> versions = new ArrayList<>();
+        List<TreeMap<Long, Long>> expectedVersions = new ArrayList<>();
+        for (int round = 0; round < 200; round++) {
+            PersistentLongMap.Editor<Long> editor = map.edit();
+            for (int i = 0; i < 500; i++) {
+                // Small keys share nodes, large ones make the tree grow deeper.
+                long key = random.nextBoolean() ? random.nextInt(5_000) : (random.nextLong() >>> 1) >>> random.nextInt(63);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), editor.remove(key));
+                } else {
+                    assertEquals(expected.put(key, (long) i), editor.put(key, (long) i));
+                }
+            }
+            map = editor.build();
+            versions.add(map);
+            expectedVersions.add(new TreeMap<>(expected));
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            TreeMap<Long, Long> version = expectedVersions.get(i);
+            assertEquals(version.size(), versions.get(i).size());
+            assertEquals(new ArrayList<>(version.values()), new ArrayList<>(versions.get(i).values()));
+        }
+        for (long key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    @DisplayName("Should remove matching values and drop emptied nodes")
+    void removesIf() {
+        PersistentLongMap.Editor<Long> editor = PersistentLongMap.<Long>empty().edit();
+        for (long key = 0; key < 10_000; key += 7) {
+            editor.put(key, key % 2);
+        }
+        PersistentLongMap<Long> all = editor.build();
+
+        PersistentLongMap.Editor<Long> odd = all.edit();
+        assertEquals(715, odd.removeIf(value -> value == 0).size());
+        PersistentLongMap<Long> remaining = odd.build();
+
+        assertEquals(1429, all.size());
+        assertEquals(714, remaining.size());
+        assertTrue(remaining.values().stream().allMatch(value -> value == 1));
+        assertNull(remaining.get(14));
+        assertEquals(1L, remaining.get(7));
+
+        PersistentLongMap.Editor<Long> none = remaining.edit();
+        none.removeIf(value -> true);
+        assertEquals(0, none.build().values().size());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.RateGraph;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateGraphTest {
+
+    private static String describe(RateGraph.Path path) {
+        StringBuilder text = new StringBuilder();
+        for (RateGraph.Hop hop : path.getHops()) {
+            text.append(hop.getBankId()).append(':').append(hop.getFromCurrencyCode())
+                    .append('>').append(hop.getToCurrencyCode()).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    @Test
+    @DisplayName("Should go through another currency when the direct pair is missing or worse")
+    void findsMultiHopPath() {
+        RateGraph graph = new RateGraph();
+        graph.put(1L, "USD", "BYN", new BigDecimal("3.2"));
+        graph.put(1L, "BYN", "EUR", new BigDecimal("0.28"));
+
+        RateGraph.Path path = graph.findBestPath(1L, "USD", "EUR");
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(path));
+        assertEquals(0, new BigDecimal("0.896").compareTo(path.getRate()));
+
+        graph.put(1L, "USD", "EUR", new BigDecimal("0.80"));
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+
+        graph.put(1L, "USD", "EUR", new BigDecimal("0.95"));
+        assertEquals("1:USD>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+
+        graph.remove(1L, "USD", "EUR");
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+        assertNull(graph.findBestPath(1L, "EUR", "USD"));
+        assertTrue(graph.findBestPath(1L, "USD", "USD").getHops().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should combine the best rates of different banks only across banks")
+    void combinesBanks() {
+        RateGraph graph = new RateGraph();
+        graph.put(1L, "USD", "BYN", new BigDecimal("3.2"));
+        graph.put(1L, "BYN", "EUR", new BigDecimal("0.28"));
+        graph.put(2L, "BYN", "EUR", new BigDecimal("0.30"));
+
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+        assertEquals("1:USD>BYN 2:BYN>EUR", describe(graph.findBestPath(RateGraph.ANY_BANK, "USD", "EUR")));
+
+        graph.removeBank(2L);
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(RateGraph.ANY_BANK, "USD", "EUR")));
+    }
+
+    @Test
+    @DisplayName("Should not route through an arbitrage loop")
+    void ignoresArbitrageLoops() {
+        RateGraph graph = new RateGraph();
+        graph.put(1L, "USD", "EUR", new BigDecimal("2"));
+        graph.put(1L, "EUR", "USD", new BigDecimal("1"));
+        graph.put(1L, "EUR", "BYN", new BigDecimal("3"));
+        graph.put(1L, "GBP", "PLN", new BigDecimal("5"));
+
+        assertEquals("1:EUR>BYN", describe(graph.findBestPath(1L, "EUR", "BYN")));
+        assertNull(graph.findBestPath(1L, "USD", "BYN"));
+        assertEquals("1:GBP>PLN", describe(graph.findBestPath(1L, "GBP", "PLN")));
+    }
+
+    @Test
+    @DisplayName("Should answer from the previous paths while the graph is recomputed in the background")
+    void recomputesInBackground() {
+        List<Runnable> tasks = new ArrayList<>();
+        RateGraph graph = new RateGraph(tasks::add);
+        graph.put(1L, "USD", "BYN", new BigDecimal("3.2"));
+        graph.put(1L, "BYN", "EUR", new BigDecimal("0.28"));
+        graph.put(1L, "USD", "EUR", new BigDecimal("0.80"));
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+
+        graph.invalidate();
+        graph.put(1L, "GBP", "USD", new BigDecimal("1.25"));
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+        assertEquals("1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+        assertEquals(1, tasks.size());
+
+        // Not known to the previous paths, so the lookup recomputes them itself.
+        assertEquals("1:GBP>USD 1:USD>BYN 1:BYN>EUR", describe(graph.findBestPath(1L, "GBP", "EUR")));
+
+        // A worse rate on a hop of the previous path.
+        graph.put(1L, "USD", "BYN", new BigDecimal("1.0"));
+        assertEquals("1:USD>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+
+        tasks.forEach(Runnable::run);
+        assertEquals("1:USD>EUR", describe(graph.findBestPath(1L, "USD", "EUR")));
+        assertEquals(1, tasks.size());
+    }
+}
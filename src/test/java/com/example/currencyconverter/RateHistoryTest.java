@@ -0,0 +1,97 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.RateHistory;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateHistoryTest {
+
+    @Test
+    @DisplayName("Should return the point in effect and null before the oldest point")
+    void findsPointAsOf() {
+        RateHistory history = new RateHistory(1000);
+        history.append(1L, "USD", "EUR", 1_000, 9_100);
+        history.append(1L, "USD", "EUR", 3_000, RateHistory.REMOVED);
+        history.append(1L, "USD", "EUR", 2_000, 9_200);
+
+        assertNull(history.asOf(1L, "USD", "EUR", 999));
+        assertEquals(new BigDecimal("0.9100"), history.asOf(1L, "USD", "EUR", 1_000).getRate());
+        assertEquals(new BigDecimal("0.9200"), history.asOf(1L, "USD", "EUR", 2_999).getRate());
+        assertNull(history.asOf(1L, "USD", "EUR", 5_000).getRate());
+        assertNull(history.asOf(2L, "USD", "EUR", 5_000));
+    }
+
+    @Test
+    @DisplayName("Should scan ranges oldest first with a limit and skip repeated points")
+    void scansRanges() {
+        RateHistory history = new RateHistory(1000);
+        for (int i = 0; i < 10; i++) {
+            history.append(1L, "USD", "EUR", 1_000L * i, 9_000 + i);
+        }
+        history.append(1L, "USD", "EUR", 5_000, 9_005);
+
+        List<RateHistory.Point> points = history.range(1L, "USD", "EUR", 2_000, 6_000, 3);
+
+        assertEquals(3, points.size());
+        assertEquals(2_000, points.get(0).getTimeMillis());
+        assertEquals(9_004, points.get(2).getScaledRate());
+        assertEquals(5, history.range(1L, "USD", "EUR", 2_000, 6_000, 100).size());
+        assertEquals(10, history.pointCount());
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest points of a full series and stop answering before them")
+    void dropsOldestPoints() {
+        RateHistory history = new RateHistory(8);
+        for (int i = 0; i < 9; i++) {
+            history.append(1L, "USD", "EUR", 1_000L * i, 9_000 + i);
+        }
+
+        assertEquals(7, history.pointCount());
+        assertNull(history.asOf(1L, "USD", "EUR", 1_500));
+        assertNull(history.range(1L, "USD", "EUR", 0, 9_000, 100));
+        assertEquals(9_008, history.asOf(1L, "USD", "EUR", 9_000).getScaledRate());
+    }
+
+    @Test
+    @DisplayName("Should drop points that left the window but keep the one in effect at its start")
+    void dropsPointsOutsideWindow() {
+        RateHistory history = new RateHistory(1000, 10_000);
+        for (int i = 0; i < 5; i++) {
+            history.append(1L, "USD", "EUR", 1_000L * i, 9_000 + i);
+        }
+        history.append(2L, "USD", "EUR", 1_000, 9_300);
+        history.append(2L, "USD", "EUR", 2_000, RateHistory.REMOVED);
+
+        history.append(1L, "USD", "EUR", 13_500, 9_100);
+
+        assertEquals(9_003, history.asOf(1L, "USD", "EUR", 3_500).getScaledRate());
+        assertNull(history.asOf(1L, "USD", "EUR", 2_999));
+        assertEquals(5, history.pointCount());
+
+        history.expire(13_500);
+
+        assertEquals(1, history.seriesCount());
+        assertNull(history.asOf(2L, "USD", "EUR", 5_000));
+        assertEquals(3, history.pointCount());
+    }
+
+    @Test
+    @DisplayName("Should mark every series of a removed bank")
+    void removesBank() {
+        RateHistory history = new RateHistory(1000);
+        history.append(1L, "USD", "EUR", 1_000, 9_100);
+        history.append(1L, "EUR", "USD", 1_000, 10_800);
+        history.append(2L, "USD", "EUR", 1_000, 9_300);
+
+        history.appendRemovalOfBank(1L, 2_000);
+
+        assertNull(history.asOf(1L, "USD", "EUR", 2_000).getRate());
+        assertNull(history.asOf(1L, "EUR", "USD", 2_000).getRate());
+        assertEquals(new BigDecimal("0.9300"), history.asOf(2L, "USD", "EUR", 2_000).getRate());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.config.CacheTags;
+import com.example.currencyconverter.dto.ExchangeRateUpsertResultDto;
+import com.example.currencyconverter.dto.RateImportChunkDto;
+import com.example.currencyconverter.dto.RateImportResultDto;
+import com.example.currencyconverter.exception.InvalidInputDataException;
+import com.example.currencyconverter.model.UpsertOutcome;
+import com.example.currencyconverter.model.WrittenRates;
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.service.CacheInvalidator;
+import com.example.currencyconverter.service.ExchangeRateService;
+import com.example.currencyconverter.service.NegativeLookupCache;
+import com.example.currencyconverter.service.RateEngine;
+import com.example.currencyconverter.service.RateHistoryService;
+import com.example.currencyconverter.service.RateImportService;
+import com.example.currencyconverter.service.SnapshotStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateImportServiceTest {
+
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+    @Mock
+    private CacheInvalidator cacheInvalidator;
+    @Mock
+    private NegativeLookupCache negativeLookupCache;
+    @Mock
+    private RateEngine rateEngine;
+    @Mock
+    private SnapshotStore snapshotStore;
+    @Mock
+    private RateHistoryService rateHistoryService;
+    @Mock
+    private ExchangeRateService exchangeRateService;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @InjectMocks
+    private RateImportService rateImportService;
+
+    @Captor
+    private ArgumentCaptor<WrittenRates> ratesCaptor;
+    @Captor
+    private ArgumentCaptor<Collection<String>> tagsCaptor;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rateImportService, "bufferSize", 1024);
+        ReflectionTestUtils.setField(rateImportService, "chunkSize", 2);
+    }
+
+    private static InputStream csv(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should skip the header, count each outcome and record only the rates written")
+    void importCsv_CountsOutcomes() throws Exception {
+        Instant at = Instant.parse("2024-01-01T00:00:00Z");
+        when(exchangeRateRepository.copyToStaging(any(Reader.class))).thenAnswer(invocation -> {
+            List<String> lines = new BufferedReader(invocation.<Reader>getArgument(0)).lines().collect(Collectors.toList());
+            assertEquals("1,USD,EUR,0.9", lines.get(0));
+            return (long) lines.size();
+        });
+        when(exchangeRateRepository.deleteInvalidStaged()).thenReturn(1);
+        when(exchangeRateRepository.deleteSupersededStaged()).thenReturn(1);
+        when(rateHistoryService.historyTimestamp()).thenReturn(at);
+        when(exchangeRateRepository.mergeStaged(eq(at), any(WrittenRates.class))).thenAnswer(invocation -> {
+            WrittenRates written = invocation.getArgument(1);
+            written.add(100L, 1L, "USD", "EUR", new BigDecimal("0.9500"));
+            written.add(200L, 2L, "GBP", "USD", new BigDecimal("1.2500"));
+            return 1L;
+        });
+
+        RateImportResultDto result = rateImportService.importCsv(csv(
+                "bankId,fromCurrencyCode,toCurrencyCode,rate\n"
+                        + "1,USD,EUR,0.9\n1,USD,EUR,0.95\n2,GBP,USD,1.25\n1,EUR,USD,1.1\n99,USD,EUR,1\n"));
+
+        assertEquals(new RateImportResultDto(5, 1, 1, 1, 1, 1), result);
+        verify(rateEngine).recordRates(ratesCaptor.capture());
+        assertEquals(2, ratesCaptor.getValue().size());
+        assertEquals(2L, ratesCaptor.getValue().getBankId(1));
+        assertEquals("GBP", ratesCaptor.getValue().getFromCurrencyCode(1));
+        verify(snapshotStore).recordRates(ratesCaptor.getValue());
+        verify(negativeLookupCache).recordRates(ratesCaptor.getValue());
+        verify(rateHistoryService).recordWrittenRates(ratesCaptor.getValue(), at);
+        verify(cacheInvalidator).invalidate(tagsCaptor.capture());
+        assertTrue(tagsCaptor.getValue().containsAll(List.of(CacheTags.RATES, CacheTags.bank(1L), CacheTags.bank(2L),
+                CacheTags.pair("USD", "EUR"), CacheTags.pair("GBP", "USD"))));
+    }
+
+    @Test
+    @DisplayName("Should record nothing when no rate changed")
+    void importCsv_NothingWritten() throws Exception {
+        when(exchangeRateRepository.copyToStaging(any(Reader.class))).thenReturn(1L);
+        when(exchangeRateRepository.mergeStaged(isNull(), any(WrittenRates.class))).thenReturn(0L);
+
+        RateImportResultDto result = rateImportService.importCsv(csv("1,USD,EUR,0.9\n"));
+
+        assertEquals(1, result.getUnchanged());
+        verify(rateEngine, never()).recordRates(any(WrittenRates.class));
+        verify(snapshotStore, never()).recordRates(any(WrittenRates.class));
+        verify(cacheInvalidator, never()).invalidate(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should reject a file that is not CSV of the expected fields")
+    void importCsv_Malformed() {
+        when(exchangeRateRepository.copyToStaging(any(Reader.class)))
+                .thenThrow(new DataIntegrityViolationException("invalid input syntax for type numeric: \"abc\""));
+
+        InvalidInputDataException exception = assertThrows(InvalidInputDataException.class,
+                () -> rateImportService.importCsv(csv("1,USD,EUR,abc\n")));
+
+        assertTrue(exception.getMessage().startsWith("Invalid rate file: "));
+        verify(exchangeRateRepository, never()).mergeStaged(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should upsert NDJSON records in chunks and report each chunk")
+    void importNdjson_ReportsChunks() throws Exception {
+        when(exchangeRateService.upsertExchangeRatesBulk(anyList()))
+                .thenReturn(List.of(new ExchangeRateUpsertResultDto(0, UpsertOutcome.UPDATED, 100L, null)))
+                .thenReturn(List.of(new ExchangeRateUpsertResultDto(0, UpsertOutcome.INSERTED, 200L, null)))
+                .thenThrow(new IllegalStateException("connection lost"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long records = rateImportService.importNdjson(csv(
+                "{\"bankId\":1,\"fromCurrencyCode\":\"USD\",\"toCurrencyCode\":\"EUR\",\"rate\":0.95}\n"
+                        + "oops\n\n"
+                        + "{\"bankId\":1,\"fromCurrencyCode\":\"GBP\",\"toCurrencyCode\":\"USD\",\"rate\":1.25}\n"
+                        + "{\"bankId\":1,\"fromCurrencyCode\":\"US\",\"toCurrencyCode\":\"EUR\",\"rate\":1}\n"
+                        + "{\"bankId\":2,\"fromCurrencyCode\":\"USD\",\"toCurrencyCode\":\"EUR\",\"rate\":0.9}\n"), output);
+
+        assertEquals(5, records);
+        List<RateImportChunkDto> reports = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            reports.add(objectMapper.readValue(line, RateImportChunkDto.class));
+        }
+        assertEquals(3, reports.size());
+
+        RateImportChunkDto first = reports.get(0);
+        assertEquals(1, first.getChunk());
+        assertEquals(2, first.getRecords());
+        assertEquals(1, first.getUpdated());
+        assertEquals(1, first.getRejected());
+        assertEquals(1, first.getRejections().get(0).getIndex());
+        assertTrue(first.getRejections().get(0).getError().startsWith("Malformed record"));
+        assertNull(first.getError());
+
+        RateImportChunkDto second = reports.get(1);
+        assertEquals(2, second.getFirstRecord());
+        assertEquals(1, second.getInserted());
+        assertEquals(3, second.getRejections().get(0).getIndex());
+        assertEquals("From currency code must be 3 characters long", second.getRejections().get(0).getError());
+
+        RateImportChunkDto third = reports.get(2);
+        assertEquals(4, third.getFirstRecord());
+        assertEquals(1, third.getRecords());
+        assertEquals("Chunk rolled back; no record of it was imported.", third.getError());
+        verify(exchangeRateService, times(3)).upsertExchangeRatesBulk(argThat(requests -> requests.size() == 1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.RateMatrix;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateMatrixTest {
+
+    private static final String[] CODES = {"USD", "EUR", "BYN", "RUB", "GBP", "PLN", "CNY", "JPY"};
+
+    @Test
+    @DisplayName("Should return stored rates at scale 4 and null for missing pairs")
+    void storesScaledRates() {
+        RateMatrix matrix = new RateMatrix();
+
+        matrix.put(1L, "USD", "EUR", new BigDecimal("0.92345"));
+        matrix.put(2L, "USD", "EUR", new BigDecimal("0.9"));
+
+        assertEquals(new BigDecimal("0.9235"), matrix.get(1L, "USD", "EUR"));
+        assertEquals(9000, matrix.getScaled(2L, "USD", "EUR"));
+        assertNull(matrix.get(1L, "EUR", "USD"));
+        assertNull(matrix.get(3L, "USD", "EUR"));
+        assertNull(matrix.get(1L, "USD", "XXX"));
+        assertEquals(RateMatrix.NO_RATE, matrix.getScaled(1L, "EUR", "USD"));
+        assertEquals(2, matrix.size());
+    }
+
+    @Test
+    @DisplayName("Should keep rates when a bank switches to the dense layout and grows")
+    void switchesToDenseLayout() {
+        RateMatrix matrix = new RateMatrix();
+        for (String from : CODES) {
+            for (String to : CODES) {
+                matrix.put(1L, from, to, BigDecimal.valueOf(from.charAt(0) * 100 + to.charAt(0)));
+            }
+        }
+        matrix.put(1L, "KZT", "USD", new BigDecimal("0.0021"));
+
+        for (String from : CODES) {
+            for (String to : CODES) {
+                assertEquals(0, BigDecimal.valueOf(from.charAt(0) * 100 + to.charAt(0)).compareTo(matrix.get(1L, from, to)));
+            }
+        }
+        assertEquals(new BigDecimal("0.0021"), matrix.get(1L, "KZT", "USD"));
+        assertEquals(CODES.length * CODES.length + 1, matrix.size());
+    }
+
+    @Test
+    @DisplayName("Should remove single rates and whole banks")
+    void removesRates() {
+        RateMatrix matrix = new RateMatrix();
+        matrix.put(1L, "USD", "EUR", new BigDecimal("0.9"));
+        matrix.put(1L, "EUR", "USD", new BigDecimal("1.1"));
+        matrix.put(2L, "USD", "EUR", new BigDecimal("0.8"));
+
+        assertTrue(matrix.remove(1L, "USD", "EUR"));
+        assertFalse(matrix.remove(1L, "USD", "EUR"));
+        assertNull(matrix.get(1L, "USD", "EUR"));
+        assertEquals(new BigDecimal("1.1000"), matrix.get(1L, "EUR", "USD"));
+
+        matrix.removeBank(1L);
+        assertNull(matrix.get(1L, "EUR", "USD"));
+        assertEquals(new BigDecimal("0.8000"), matrix.get(2L, "USD", "EUR"));
+        assertEquals(1, matrix.size());
+    }
+
+    @Test
+    @DisplayName("Should reject rates that do not fit a scaled long")
+    void rejectsOversizedRates() {
+        RateMatrix matrix = new RateMatrix();
+
+        assertThrows(ArithmeticException.class, () -> matrix.put(1L, "USD", "EUR", new BigDecimal("999999999999999999")));
+        assertNull(matrix.get(1L, "USD", "EUR"));
+    }
+
+    @Test
+    @DisplayName("Should visit the rates from a currency of one bank or of all banks, in bank order")
+    void visitsRatesFromCurrency() {
+        RateMatrix matrix = new RateMatrix();
+        for (String from : CODES) {
+            for (String to : CODES) {
+                matrix.put(2L, from, to, BigDecimal.valueOf(from.charAt(0) * 100 + to.charAt(0)));
+            }
+        }
+        matrix.put(1L, "USD", "EUR", new BigDecimal("0.9"));
+        matrix.put(1L, "EUR", "USD", new BigDecimal("1.1"));
+
+        List<String> bankOne = new ArrayList<>();
+        matrix.forEachRateFrom(1L, "USD", (bankId, to, scaled) -> bankOne.add(bankId + to + scaled));
+        assertEquals(List.of("1EUR9000"), bankOne);
+
+        List<String> denseBank = new ArrayList<>();
+        matrix.forEachRateFrom(2L, "USD", (bankId, to, scaled) -> denseBank.add(to));
+        assertEquals(List.of(CODES), denseBank);
+
+        List<Long> allBanks = new ArrayList<>();
+        matrix.forEachRateFrom("USD", (bankId, to, scaled) -> allBanks.add(bankId));
+        assertEquals(1 + CODES.length, allBanks.size());
+        assertEquals(1L, allBanks.get(0));
+
+        matrix.forEachRateFrom(3L, "USD", (bankId, to, scaled) -> fail("No rates expected"));
+        matrix.forEachRateFrom("XXX", (bankId, to, scaled) -> fail("No rates expected"));
+    }
+}
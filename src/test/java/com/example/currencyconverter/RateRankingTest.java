@@ -0,0 +1,76 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.utils.RateRanking;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateRankingTest {
+
+    @Test
+    @DisplayName("Should order the banks of a pair by rate and then by bank id")
+    void ordersBanksByRate() {
+        RateRanking ranking = new RateRanking();
+
+        ranking.put(100L, 1L, "USD", "EUR", 9300);
+        ranking.put(101L, 2L, "USD", "EUR", 9100);
+        ranking.put(102L, 3L, "USD", "EUR", 9300);
+        ranking.put(103L, 4L, "USD", "EUR", 9500);
+        ranking.put(104L, 1L, "EUR", "USD", 10800);
+
+        RateRanking.Ranking usdEur = ranking.get("USD", "EUR");
+        assertEquals(4, usdEur.size());
+        assertArrayEquals(new long[] {2L, 1L, 3L, 4L}, bankIds(usdEur));
+        assertEquals(101L, usdEur.rateId(0));
+        assertEquals(new BigDecimal("0.9100"), usdEur.rate(0));
+        assertEquals(new BigDecimal("0.9500"), usdEur.rate(usdEur.size() - 1));
+        assertEquals(1, ranking.get("EUR", "USD").size());
+        assertEquals(0, ranking.get("USD", "GBP").size());
+        assertEquals(5, ranking.size());
+    }
+
+    @Test
+    @DisplayName("Should move a bank when its rate changes and drop it when removed")
+    void updatesInPlace() {
+        RateRanking ranking = new RateRanking();
+        ranking.put(100L, 1L, "USD", "EUR", 9100);
+        ranking.put(101L, 2L, "USD", "EUR", 9200);
+        ranking.put(102L, 3L, "USD", "EUR", 9300);
+        RateRanking.Ranking before = ranking.get("USD", "EUR");
+
+        ranking.put(100L, 1L, "USD", "EUR", 9400);
+        assertArrayEquals(new long[] {2L, 3L, 1L}, bankIds(ranking.get("USD", "EUR")));
+        assertArrayEquals(new long[] {1L, 2L, 3L}, bankIds(before), "Published rankings must not change");
+
+        assertTrue(ranking.remove(3L, "USD", "EUR"));
+        assertFalse(ranking.remove(3L, "USD", "EUR"));
+        assertFalse(ranking.remove(1L, "USD", "XXX"));
+        assertArrayEquals(new long[] {2L, 1L}, bankIds(ranking.get("USD", "EUR")));
+        assertEquals(2, ranking.size());
+    }
+
+    @Test
+    @DisplayName("Should remove every rate of a bank")
+    void removesBank() {
+        RateRanking ranking = new RateRanking();
+        ranking.put(100L, 1L, "USD", "EUR", 9100);
+        ranking.put(101L, 2L, "USD", "EUR", 9200);
+        ranking.put(102L, 1L, "EUR", "USD", 10800);
+
+        ranking.removeBank(1L);
+
+        assertArrayEquals(new long[] {2L}, bankIds(ranking.get("USD", "EUR")));
+        assertEquals(0, ranking.get("EUR", "USD").size());
+        assertEquals(1, ranking.size());
+    }
+
+    private static long[] bankIds(RateRanking.Ranking ranking) {
+        long[] ids = new long[ranking.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ranking.bankId(i);
+        }
+        return ids;
+    }
+}
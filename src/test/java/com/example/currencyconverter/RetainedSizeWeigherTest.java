@@ -0,0 +1,72 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.dto.ExchangeRateDto;
+import com.example.currencyconverter.utils.RetainedSizeWeigher;
+import com.example.currencyconverter.utils.Weigher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetainedSizeWeigherTest {
+
+    private final RetainedSizeWeigher weigher = (RetainedSizeWeigher) Weigher.retainedSize();
+
+    private static ExchangeRateDto dto(long id) {
+        ExchangeRateDto dto = new ExchangeRateDto();
+        dto.setId(id);
+        dto.setBankId(1L);
+        dto.setFromCurrencyCode("USD");
+        dto.setToCurrencyCode("EUR");
+        dto.setRate(new BigDecimal("0.9250"));
+        return dto;
+    }
+
+    @Test
+    @DisplayName("Should size strings and BigDecimals from their layout")
+    void sizesLeafValues() {
+        assertEquals(24 + 24, weigher.sizeOf("USD"));
+        assertEquals(40, weigher.sizeOf(new BigDecimal("0.9250")));
+        assertTrue(weigher.sizeOf(new BigDecimal("123456789012345678901234567890.1234")) > 40);
+    }
+
+    @Test
+    @DisplayName("Should grow linearly with the number of cached DTOs")
+    void sizesDtoLists() {
+        List<ExchangeRateDto> small = new ArrayList<>();
+        List<ExchangeRateDto> large = new ArrayList<>();
+        for (long i = 1000; i < 1010; i++) {
+            small.add(dto(i));
+        }
+        for (long i = 1000; i < 1100; i++) {
+            large.add(dto(i));
+        }
+
+        long smallSize = weigher.sizeOf(new ResponseEntity<>(small, HttpStatus.OK));
+        long largeSize = weigher.sizeOf(new ResponseEntity<>(large, HttpStatus.OK));
+
+        assertTrue(smallSize > 10 * 40, "10 DTOs: " + smallSize);
+        // Each extra DTO holds at least its own fields, a BigDecimal and a Long id.
+        assertTrue(largeSize - smallSize >= 90 * (32 + 40 + 16), "100 DTOs: " + largeSize);
+    }
+
+    @Test
+    @DisplayName("Should count shared objects once")
+    void countsSharedObjectsOnce() {
+        ExchangeRateDto shared = dto(1L);
+        List<ExchangeRateDto> list = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add(shared);
+        }
+
+        long sizeWithShared = weigher.sizeOf(list);
+
+        assertTrue(sizeWithShared < weigher.sizeOf(shared) + 100 * 8 + 64);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.entity.Bank;
+import com.example.currencyconverter.entity.ExchangeRate;
+import com.example.currencyconverter.repository.BankRepository;
+import com.example.currencyconverter.repository.CurrencyRepository;
+import com.example.currencyconverter.repository.ExchangeRateRepository;
+import com.example.currencyconverter.service.DataSnapshot;
+import com.example.currencyconverter.service.SnapshotStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotStoreTest {
+
+    @Mock
+    private BankRepository bankRepository;
+    @Mock
+    private CurrencyRepository currencyRepository;
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+
+    private SnapshotStore snapshotStore;
+    private final Bank bank = Bank.builder().id(1L).name("Alfa").build();
+
+    @BeforeEach
+    void setUp() {
+        snapshotStore = new SnapshotStore(bankRepository, currencyRepository, exchangeRateRepository);
+        ReflectionTestUtils.setField(snapshotStore, "enabled", true);
+        when(currencyRepository.findAll()).thenReturn(List.of());
+        when(bankRepository.findAll()).thenReturn(List.of(bank));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(snapshotStore);
+    }
+
+    private ExchangeRate rate(long id, String fromCurrencyCode, String toCurrencyCode, String value) {
+        return ExchangeRate.builder().id(id).bank(bank).fromCurrencyCode(fromCurrencyCode)
+                .toCurrencyCode(toCurrencyCode).rate(new BigDecimal(value)).build();
+    }
+
+    private List<TransactionSynchronization> completeTransaction(boolean commit) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (commit) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        int status = commit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK;
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+        return synchronizations;
+    }
+
+    @Test
+    @DisplayName("Should publish the changes of a transaction as one version only once it commits")
+    void publishesAfterCommit() {
+        when(exchangeRateRepository.findAllRateValues()).thenReturn(List.of());
+        snapshotStore.load();
+        DataSnapshot loaded = snapshotStore.current();
+
+        TransactionSynchronizationManager.initSynchronization();
+        snapshotStore.recordRate(rate(100L, "USD", "EUR", "0.9200"));
+        snapshotStore.recordRate(rate(101L, "EUR", "USD", "1.0800"));
+        assertSame(loaded, snapshotStore.current());
+
+        assertEquals(1, completeTransaction(true).size());
+
+        DataSnapshot committed = snapshotStore.current();
+        assertEquals(loaded.getVersion() + 1, committed.getVersion());
+        assertEquals(2, committed.getRates().size());
+        assertTrue(loaded.getRates().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should drop the changes of a rolled back transaction")
+    void dropsRolledBackChanges() {
+        when(exchangeRateRepository.findAllRateValues()).thenReturn(List.of());
+        snapshotStore.load();
+        DataSnapshot loaded = snapshotStore.current();
+
+        TransactionSynchronizationManager.initSynchronization();
+        snapshotStore.recordRate(rate(100L, "USD", "EUR", "0.9200"));
+        completeTransaction(false);
+
+        assertSame(loaded, snapshotStore.current());
+        assertNull(TransactionSynchronizationManager.getResource(snapshotStore));
+    }
+
+    @Test
+    @DisplayName("Should replay changes committed while the tables are read on top of the rows read")
+    void replaysChangesCommittedDuringLoad() {
+        long loadStart = System.currentTimeMillis();
+        when(exchangeRateRepository.findAllRateValues()).thenAnswer(invocation -> {
+            // Committed while the rates are read, but after the row of rate 100 was read.
+            assertNull(snapshotStore.current());
+            snapshotStore.recordRate(rate(100L, "USD", "EUR", "0.9300"));
+            snapshotStore.recordRate(rate(101L, "EUR", "USD", "1.0800"));
+            return List.<Object[]>of(new Object[]{1L, "USD", "EUR", new BigDecimal("0.9200"), 100L});
+        });
+
+        snapshotStore.load();
+
+        DataSnapshot loaded = snapshotStore.current();
+        assertEquals(new BigDecimal("0.9300"), loaded.getRate(100L).getRate());
+        assertEquals(new BigDecimal("1.0800"), loaded.getRate(101L).getRate());
+        assertEquals(2, loaded.getRates().size());
+        // Versions of a later run start above those of this one.
+        assertTrue(loaded.getVersion() >= loadStart * 1_000);
+
+        snapshotStore.recordRateRemoval(101L);
+        assertEquals(loaded.getVersion() + 1, snapshotStore.current().getVersion());
+        assertNull(snapshotStore.current().getRate(101L));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.currencyconverter;
+
+import com.example.currencyconverter.dto.ConversionStepDto;
+import com.example.currencyconverter.exception.CacheLoadTimeoutException;
+import com.example.currencyconverter.exception.CurrencyNotFoundException;
+import com.example.currencyconverter.service.CurrencyService;
+import com.example.currencyconverter.service.DataSnapshot;
+import com.example.currencyconverter.service.SnapshotStore;
+import com.example.currencyconverter.service.StreamingConversionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingConversionServiceTest {
+
+    @Mock
+    private SnapshotStore snapshotStore;
+    @Mock
+    private CurrencyService currencyService;
+
+    private StreamingConversionService streamingConversionService;
+
+    @BeforeEach
+    void setUp() {
+        streamingConversionService = new StreamingConversionService(snapshotStore, currencyService,
+                new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(streamingConversionService, "bufferSize", 64);
+        ReflectionTestUtils.setField(streamingConversionService, "maxCachedPairs", 100);
+    }
+
+    @Test
+    @DisplayName("Should convert CSV records with the pinned snapshot and keep their order")
+    void convertCsv_WithSnapshot() throws IOException {
+        when(snapshotStore.current()).thenReturn(DataSnapshot.EMPTY.toBuilder()
+                .putRate(new DataSnapshot.RateRow(100L, 1L, "USD", "EUR", new BigDecimal("0.9200")))
+                .build(7));
+        StreamingConversionService.PinnedRates rates = streamingConversionService.pinRates();
+
+        String output = convertCsv("bankId,from,to,amount\n1,USD,EUR,100\n\n1,USD,JPY,5\nbroken\n1, USD ,EUR,2.5\n", rates);
+
+        assertEquals(7L, rates.getVersion());
+        assertEquals(List.of(
+                StreamingConversionService.CSV_HEADER,
+                "1,USD,EUR,100,0.9200,92.0000,",
+                "1,USD,JPY,5,,,Exchange rate not found for this bank and currency pair.",
+                ",,,,,,\"Expected 4 fields: bankId,fromCurrencyCode,toCurrencyCode,amount.\"",
+                "1,USD,EUR,2.5,0.9200,2.3000,"), List.of(output.split("\n")));
+        verifyNoInteractions(currencyService);
+    }
+
+    @Test
+    @DisplayName("Should convert NDJSON records and look each pair up once without a snapshot")
+    void convertNdjson_WithoutSnapshot() throws IOException {
+        when(snapshotStore.current()).thenReturn(null);
+        when(currencyService.quote(any())).thenReturn(new CurrencyService.Quote(new BigDecimal("2.00"),
+                List.of(new ConversionStepDto(1L, "USD", "BYN", new BigDecimal("2.00")))));
+        StreamingConversionService.PinnedRates rates = streamingConversionService.pinRates();
+
+        String input = "{\"bankId\":1,\"fromCurrencyCode\":\"USD\",\"toCurrencyCode\":\"BYN\",\"amount\":10}\n"
+                + "{\"bankId\":1,\"fromCurrencyCode\":\"USD\",\"toCurrencyCode\":\"BYN\",\"amount\":3}\n"
+                + "{not json\n"
+                + "{\"bankId\":1,\"fromCurrencyCode\":\"USD\",\"toCurrencyCode\":\"BYN\",\"amount\":1,\"mode\":\"BEST_PATH\"}\n";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long records = streamingConversionService.convertNdjson(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output, rates);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, records);
+        assertEquals(4, lines.length);
+        assertEquals("{\"bankId\":1,\"fromCurrencyCode\":\"USD\",\"toCurrencyCode\":\"BYN\",\"amount\":10,\"rate\":2.00,\"convertedAmount\":20.0000}", lines[0]);
+        assertTrue(lines[1].endsWith("\"convertedAmount\":6.0000}"));
+        assertTrue(lines[2].startsWith("{\"error\":\"Malformed record"));
+        assertTrue(lines[3].contains("\"error\":\"Only direct conversions"));
+        assertNull(rates.getVersion());
+        verify(currencyService, times(1)).quote(any());
+    }
+
+    @Test
+    @DisplayName("Should write failed lookups as record errors and retry only those that timed out")
+    void convertCsv_LookupErrors() throws IOException {
+        when(snapshotStore.current()).thenReturn(null);
+        when(currencyService.quote(argThat(request -> request != null && "XXX".equals(request.getToCurrencyCode()))))
+                .thenThrow(new CurrencyNotFoundException("Currency not found: XXX"));
+        when(currencyService.quote(argThat(request -> request != null && "EUR".equals(request.getToCurrencyCode()))))
+                .thenThrow(new CacheLoadTimeoutException("Timed out loading the exchange rate."))
+                .thenReturn(new CurrencyService.Quote(new BigDecimal("0.9200"),
+                        List.of(new ConversionStepDto(1L, "USD", "EUR", new BigDecimal("0.9200")))));
+        StreamingConversionService.PinnedRates rates = streamingConversionService.pinRates();
+
+        String output = convertCsv("1,USD,XXX,1\n1,USD,XXX,2\n1,USD,EUR,100\n1,USD,EUR,10\n", rates);
+
+        assertEquals(List.of(
+                StreamingConversionService.CSV_HEADER,
+                "1,USD,XXX,1,,,Currency not found: XXX",
+                "1,USD,XXX,2,,,Currency not found: XXX",
+                "1,USD,EUR,100,,,Timed out loading the exchange rate.",
+                "1,USD,EUR,10,0.9200,9.2000,"), List.of(output.split("\n")));
+        verify(currencyService, times(3)).quote(any());
+    }
+
+    private String convertCsv(String input, StreamingConversionService.PinnedRates rates) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamingConversionService.convertCsv(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output, rates);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}